@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+
+import renderer.AntiAliasing;
+import renderer.AntiAliasing.Mode;
+import renderer.BVH;
+import renderer.GUI;
+import renderer.Scene;
+import renderer.Transform;
+import renderer.ViewBuffer;
+
+/**
+ * Compares the cost of each way of smoothing edges, drawing a whole frame
+ * (including making the image) for each model.
+ */
+public class AntiAliasingBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Bench.row("model", "triangles", "off ms", "ss2x ms", "ss4x ms", "coverage ms");
+		for (String name : Bench.MODELS) {
+			run(name, Bench.model(name));
+		}
+		run("sphere 40k", Bench.sphere(100, 300));
+	}
+
+	private static void run(String name, final Scene scene) {
+		final ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newYRotation(0.5f).compose(Transform.newXRotation(0.3f)));
+		final int[] visible = view.getBVH().cull(new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT));
+		final ArrayList<Color> colours = new ArrayList<>();
+		colours.add(new Color(100, 100, 100));
+		final Color ambient = new Color(128, 128, 128);
+
+		Object[] times = new Object[Mode.values().length + 1];
+		times[0] = scene.getPolygons().size();
+		for (Mode mode : Mode.values()) {
+			final AntiAliasing aa = new AntiAliasing(mode, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+			times[mode.ordinal() + 1] = Bench.time(mode == Mode.SUPERSAMPLE_4X ? 5 : 15, new Runnable() {
+				public void run() {
+					aa.render(view, visible, scene.getLights(), colours, ambient);
+				}
+			});
+		}
+		Bench.row(name, times);
+	}
+}
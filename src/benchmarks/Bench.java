@@ -0,0 +1,106 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Vector3D;
+
+/**
+ * Shared helpers for the benchmarks: loading the models in data/, making
+ * bigger models than those, and timing things.
+ *
+ * The benchmarks are plain main methods rather than tests, since they only
+ * print numbers. Run them with the project root as the working directory.
+ */
+public class Bench {
+
+	/** The models in data/ that every benchmark runs over. */
+	public static final String[] MODELS = { "ball", "bigboxes", "car", "monkey", "shapes", "tetras" };
+
+	/**
+	 * Loads one of the models in data/.
+	 *
+	 * @param name
+	 * 			The name of the model, without the .txt.
+	 */
+	public static Scene model(String name) throws IOException {
+		return Scene.load(new File("data", name + ".txt"));
+	}
+
+	/**
+	 * Makes a sphere out of latitude/longitude quads, for testing on models much
+	 * bigger than the ones in data/. It has 4 * n * n triangles.
+	 *
+	 * @param n
+	 * 			The number of bands of latitude.
+	 * @param radius
+	 * 			The radius of the sphere.
+	 */
+	public static Scene sphere(int n, float radius) {
+		List<Polygon> polys = new ArrayList<>();
+		int[] col = new int[] { 200, 120, 60 };
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < 2 * n; j++) {
+				float[] a = point(i, j, n, radius), b = point(i + 1, j, n, radius);
+				float[] c = point(i + 1, j + 1, n, radius), d = point(i, j + 1, n, radius);
+				polys.add(new Polygon(join(a, b, c), col));
+				polys.add(new Polygon(join(a, c, d), col));
+			}
+		}
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		lights.add(new Vector3D(-1, 1, 1));
+		return new Scene(polys, lights);
+	}
+
+	private static float[] point(int i, int j, int n, float radius) {
+		double theta = Math.PI * i / n;
+		double phi = Math.PI * j / n;
+		return new float[] {
+				(float) (radius * Math.sin(theta) * Math.cos(phi)),
+				(float) (radius * Math.cos(theta)),
+				(float) (radius * Math.sin(theta) * Math.sin(phi)) };
+	}
+
+	private static float[] join(float[] a, float[] b, float[] c) {
+		return new float[] { a[0], a[1], a[2], b[0], b[1], b[2], c[0], c[1], c[2] };
+	}
+
+	/**
+	 * Runs something a few times to warm up, then times it.
+	 *
+	 * @param runs
+	 * 			How many timed runs to do.
+	 * @param task
+	 * 			The thing to time.
+	 * @return the median time of one run, in milliseconds.
+	 */
+	public static double time(int runs, Runnable task) {
+		for (int i = 0; i < Math.max(3, runs / 2); i++) {
+			task.run();
+		}
+		double[] times = new double[runs];
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			task.run();
+			times[i] = (System.nanoTime() - start) / 1e6;
+		}
+		Arrays.sort(times);
+		return times[runs / 2];
+	}
+
+	/**
+	 * Prints one row of a results table.
+	 */
+	public static void row(String name, Object... values) {
+		StringBuilder str = new StringBuilder(String.format("%-16s", name));
+		for (Object v : values) {
+			str.append(v instanceof Double ? String.format("%12.3f", v) : String.format("%12s", v));
+		}
+		System.out.println(str);
+	}
+}
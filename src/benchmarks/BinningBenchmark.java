@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.awt.Rectangle;
+import java.util.concurrent.ForkJoinPool;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.Scene;
+import renderer.TileBinner;
+import renderer.Transform;
+import renderer.ViewBuffer;
+import renderer.VisibilityBuffer;
+
+/**
+ * Times finding the visible polygon at every pixel on one thread, and split
+ * into tiles on pools of more and more threads, along with how many tiles
+ * each frame was split into and the least and most busy of the pool's
+ * threads. The car crowds most of its polygons into a small part of the
+ * canvas, which a fixed grid of tiles would leave to one or two threads. Tiles
+ * hold at most a 64th of the polygons in view, so that the car, which is far
+ * smaller than the default tile size, is split up as a bigger model would be.
+ *
+ * More threads than there are cores can't be any faster, and the
+ * utilisation then mostly shows time spent waiting for a core.
+ */
+public class BinningBenchmark {
+
+	private static final int[] THREADS = { 1, 2, 4, 8 };
+
+	public static void main(String[] args) throws Exception {
+		System.out.println(Runtime.getRuntime().availableProcessors() + " cores");
+		Bench.row("model", "threads", "ms", "tiles", "least busy", "most busy");
+		run("car", Bench.model("car"));
+		run("sphere 160k", Bench.sphere(200, 300));
+	}
+
+	private static void run(String name, Scene scene) {
+		final ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newYRotation(0.5f).compose(Transform.newXRotation(0.3f)));
+		final int[] visible = view.getBVH().cull(new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT));
+		final VisibilityBuffer visibility = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+
+		double serial = Bench.time(15, new Runnable() {
+			public void run() {
+				visibility.draw(view, visible);
+			}
+		});
+		Bench.row(name, "serial", serial, 1, "", "");
+
+		for (int threads : THREADS) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			final TileBinner tiles = new TileBinner(pool, Math.max(1, visible.length / 64));
+			double tiled = Bench.time(15, new Runnable() {
+				public void run() {
+					visibility.draw(view, visible, tiles);
+				}
+			});
+			double[] utilisation = tiles.getUtilisation();
+			double least = 1, most = 0;
+			// the last is the thread asking for the frame, which only waits.
+			for (int i = 0; i < utilisation.length - 1; i++) {
+				least = Math.min(least, utilisation[i]);
+				most = Math.max(most, utilisation[i]);
+			}
+			Bench.row(name, threads, tiled, tiles.getTileCount(), least, most);
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package benchmarks;
+
+import java.awt.Rectangle;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.Projection;
+import renderer.Renderer;
+import renderer.Scene;
+import renderer.Transform;
+import renderer.ViewBuffer;
+import renderer.VisibilityBuffer;
+import renderer.VisibilityBuffer.Depth;
+
+/**
+ * Times finding the visible polygon at every pixel with each way of keeping
+ * the depths, along with how many bytes each pixel's depth takes and how many
+ * pixels end up with a different polygon than with float depths, both
+ * looking straight down the z-axis and in perspective.
+ */
+public class DepthBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Bench.row("model", "frame", "depth", "ms", "bytes", "differ");
+		for (String name : Bench.MODELS) {
+			run(name, Bench.model(name));
+		}
+		run("sphere 160k", Bench.sphere(200, 300));
+	}
+
+	private static void run(String name, Scene scene) {
+		final ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newYRotation(0.5f).compose(Transform.newXRotation(0.3f)));
+		run(name, view, null, null, view.getBVH().cull(new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT)));
+		Transform eye = Renderer.perspectiveView(view.getBVH(), 0);
+		Projection projection = Renderer.perspectiveProjection(view.getBVH(), 0);
+		run(name, view, eye, projection, view.getBVH().cull(projection.compose(eye)));
+	}
+
+	/**
+	 * Times each way of keeping the depths, in perspective if an eye and
+	 * projection are given.
+	 */
+	private static void run(String name, final ViewBuffer view, final Transform eye, final Projection projection,
+			final int[] visible) {
+		VisibilityBuffer reference = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		draw(reference, view, visible, eye, projection);
+
+		VisibilityBuffer[] buffers = new VisibilityBuffer[Depth.values().length];
+		for (Depth depth : Depth.values()) {
+			buffers[depth.ordinal()] = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT, false, depth);
+		}
+		// every mode is drawn a few times first, so that none is timed while
+		// the others are still being compiled.
+		for (int i = 0; i < 20; i++) {
+			for (VisibilityBuffer visibility : buffers) {
+				draw(visibility, view, visible, eye, projection);
+			}
+		}
+		for (Depth depth : Depth.values()) {
+			final VisibilityBuffer visibility = buffers[depth.ordinal()];
+			double ms = Bench.time(15, new Runnable() {
+				public void run() {
+					draw(visibility, view, visible, eye, projection);
+				}
+			});
+			Bench.row(name, eye == null ? "straight" : "perspective", depth, ms, depth == Depth.BITS_16 ? 2 : 4,
+					differ(reference, visibility));
+		}
+	}
+
+	private static void draw(VisibilityBuffer visibility, ViewBuffer view, int[] visible, Transform eye,
+			Projection projection) {
+		if (eye == null) {
+			visibility.draw(view, visible);
+		} else {
+			visibility.drawInPerspective(view, visible, eye, projection);
+		}
+	}
+
+	/**
+	 * @return how many pixels two buffers have different polygons at.
+	 */
+	private static int differ(VisibilityBuffer a, VisibilityBuffer b) {
+		int count = 0;
+		for (int x = 0; x < a.getWidth(); x++) {
+			for (int y = 0; y < a.getHeight(); y++) {
+				if (a.getId(x, y) != b.getId(x, y)) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import renderer.BVH;
+import renderer.EdgeList;
+import renderer.GUI;
+import renderer.LightManager;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Transform;
+import renderer.ViewBuffer;
+import renderer.VisibilityBuffer;
+
+/**
+ * Measures how much a frame allocates, and how long it takes, filling in the
+ * visible polygons with a new edge list for each, as every frame used to, and
+ * with one edge list filled in again for each polygon. Then the same for
+ * whole frames from Pipeline.drawPolygons and VisibilityBuffer.draw, which
+ * now reuse theirs.
+ *
+ * Allocation is counted for the thread drawing the frame, so it only covers
+ * the one-thread paths.
+ */
+public class EdgeListBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Bench.row("model", "frame", "ms", "KB/frame");
+		run("car", Bench.model("car"));
+		run("sphere 160k", Bench.sphere(200, 300));
+	}
+
+	private static void run(String name, Scene scene) {
+		final ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newYRotation(0.5f).compose(Transform.newXRotation(0.3f)));
+		final int[] visible = view.getBVH().cull(new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT));
+		final float[] vertices = view.getVertices();
+		final int[][] zBuffer = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		final float[][] zDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(new Color(150, 120, 100));
+		final LightManager lights = LightManager.exact(new ArrayList<>(scene.getLights()), colours);
+		final Color ambient = new Color(40, 40, 40);
+		final VisibilityBuffer visibility = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+
+		measure(name, "new lists", new Runnable() {
+			public void run() {
+				Pipeline.clearBuffers(zBuffer, zDepth);
+				for (int i : visible) {
+					if (!Pipeline.isHidden(vertices, i * 9)) {
+						Pipeline.computeZBuffer(zBuffer, zDepth, Pipeline.computeEdgeList(vertices, i * 9), 0);
+					}
+				}
+			}
+		});
+		measure(name, "one list", new Runnable() {
+			public void run() {
+				Pipeline.clearBuffers(zBuffer, zDepth);
+				EdgeList edges = new EdgeList(0, 0);
+				for (int i : visible) {
+					if (!Pipeline.isHidden(vertices, i * 9)) {
+						Pipeline.computeZBuffer(zBuffer, zDepth, Pipeline.computeEdgeList(vertices, i * 9, edges), 0);
+					}
+				}
+			}
+		});
+		measure(name, "drawPolys", new Runnable() {
+			public void run() {
+				Pipeline.clearBuffers(zBuffer, zDepth);
+				Pipeline.drawPolygons(zBuffer, zDepth, view, visible, lights, ambient);
+			}
+		});
+		measure(name, "visibility", new Runnable() {
+			public void run() {
+				visibility.draw(view, visible);
+			}
+		});
+	}
+
+	private static void measure(String name, String frame, Runnable task) {
+		double ms = Bench.time(9, task);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long id = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(id);
+		task.run();
+		Bench.row(name, frame, ms, (threads.getThreadAllocatedBytes(id) - before) / 1e3);
+	}
+}
@@ -0,0 +1,82 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.GeometryStage;
+import renderer.LightManager;
+import renderer.Pipeline;
+import renderer.Projection;
+import renderer.Scene;
+import renderer.Transform;
+import renderer.ViewBuffer;
+
+/**
+ * Times hiding, shading and finding the edge lists of a frame's polygons on
+ * one thread, as Pipeline.drawPolygons does before filling them in, and on
+ * pools of more and more threads, straight on and in perspective. The speed-up
+ * is against the one-thread pool, so the cost of splitting the work into
+ * chunks and joining their lists shows up as the gap between it and serial.
+ *
+ * More threads than there are cores can't be any faster.
+ */
+public class GeometryBenchmark {
+
+	private static final int[] THREADS = { 1, 2, 4, 8 };
+
+	public static void main(String[] args) throws Exception {
+		System.out.println(Runtime.getRuntime().availableProcessors() + " cores");
+		Bench.row("model", "camera", "threads", "ms", "speed-up");
+		Scene scene = Bench.sphere(200, 300);
+		final ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newYRotation(0.5f).compose(Transform.newXRotation(0.3f)));
+		final int[] visible = view.getBVH().cull(new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT));
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(new Color(150, 120, 100));
+		final LightManager lights = LightManager.exact(new ArrayList<>(scene.getLights()), colours);
+		final Color ambient = new Color(40, 40, 40);
+		final Transform eye = Transform.newTranslation(-GUI.CANVAS_WIDTH / 2, -GUI.CANVAS_HEIGHT / 2, 900);
+		final Projection projection = Projection.newPerspective((float) (Math.PI / 3),
+				(float) GUI.CANVAS_WIDTH / GUI.CANVAS_HEIGHT, 1, 2000);
+
+		double serial = Bench.time(9, new Runnable() {
+			public void run() {
+				for (int i : visible) {
+					if (!Pipeline.isHidden(view.getVertices(), i * 9)) {
+						lights.getShadingRGB(view.getSource().getPolygons().get(i), ambient.getRGB(), view.getViewer(),
+								-1);
+						Pipeline.computeEdgeList(view.getVertices(), i * 9);
+					}
+				}
+			}
+		});
+		Bench.row("sphere 160k", "straight", "serial", serial, "");
+
+		for (final boolean perspective : new boolean[] { false, true }) {
+			double one = 0;
+			for (int threads : THREADS) {
+				ForkJoinPool pool = new ForkJoinPool(threads);
+				final GeometryStage stage = new GeometryStage(pool);
+				double ms = Bench.time(9, new Runnable() {
+					public void run() {
+						if (perspective) {
+							stage.processInPerspective(view, visible, eye, projection, GUI.CANVAS_WIDTH,
+									GUI.CANVAS_HEIGHT, lights, ambient);
+						} else {
+							stage.process(view, visible, lights, ambient);
+						}
+					}
+				});
+				if (threads == 1) {
+					one = ms;
+				}
+				Bench.row("sphere 160k", perspective ? "perspective" : "straight", threads, ms, one / ms);
+				pool.shutdown();
+			}
+		}
+	}
+}
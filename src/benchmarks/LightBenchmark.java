@@ -0,0 +1,89 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.LightManager;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.ViewBuffer;
+import renderer.Vector3D;
+
+/**
+ * Times a frame with more and more random light sources, as added by the GUI's
+ * light button: shading every light per polygon with Pipeline.getShading ("per
+ * light"), with every light through an exact LightManager, and with a
+ * LightManager combining them to its default budget. Combining is timed on its own, since it only
+ * happens when the lights change.
+ */
+public class LightBenchmark {
+
+	private static final int[] LIGHTS = { 1, 10, 100, 1000 };
+
+	public static void main(String[] args) throws Exception {
+		Bench.row("model", "lights", "per light ms", "exact ms", "managed ms", "combine ms");
+		run("monkey", Bench.model("monkey"));
+		run("sphere 40k", Bench.sphere(100, 300));
+	}
+
+	private static void run(String name, Scene scene) {
+		final ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newYRotation(0.5f).compose(Transform.newXRotation(0.3f)));
+		final int[] visible = view.getBVH().cull(new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT));
+		final int[][] zBuffer = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		final float[][] zDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		final Color ambient = new Color(30, 30, 30);
+
+		Random random = new Random(1);
+		final ArrayList<Vector3D> lights = new ArrayList<>();
+		final ArrayList<Color> colours = new ArrayList<>();
+		for (int count : LIGHTS) {
+			while (lights.size() < count) {
+				// the same distribution as Renderer.addNewLightSource.
+				colours.add(new Color(random.nextInt(255), random.nextInt(255), random.nextInt(255)));
+				lights.add(new Vector3D(random.nextFloat() - random.nextFloat(), random.nextFloat() - random.nextFloat(),
+						random.nextFloat() - random.nextFloat()));
+			}
+			final List<Polygon> polygons = view.getSource().getPolygons();
+			final float[] vertices = view.getVertices();
+			double direct = Bench.time(count >= 1000 ? 3 : 9, new Runnable() {
+				public void run() {
+					Pipeline.clearBuffers(zBuffer, zDepth);
+					for (int i : visible) {
+						if (!Pipeline.isHidden(vertices, i * 9)) {
+							Color c = Pipeline.getShading(polygons.get(i), lights, colours, ambient);
+							Pipeline.computeZBuffer(zBuffer, zDepth, Pipeline.computeEdgeList(vertices, i * 9), c.getRGB());
+						}
+					}
+				}
+			});
+			double exact = Bench.time(9, new Runnable() {
+				public void run() {
+					Pipeline.clearBuffers(zBuffer, zDepth);
+					Pipeline.drawPolygons(zBuffer, zDepth, view, visible, lights, colours, ambient);
+				}
+			});
+			final LightManager manager = new LightManager();
+			double combine = Bench.time(9, new Runnable() {
+				public void run() {
+					new LightManager().update(lights, colours);
+				}
+			});
+			manager.update(lights, colours);
+			double managed = Bench.time(9, new Runnable() {
+				public void run() {
+					Pipeline.clearBuffers(zBuffer, zDepth);
+					Pipeline.drawPolygons(zBuffer, zDepth, view, visible, manager, ambient);
+				}
+			});
+			Bench.row(name, count, direct, exact, managed, combine);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import java.awt.Rectangle;
+
+import renderer.BVH;
+import renderer.EdgeList;
+import renderer.GUI;
+import renderer.Meshlets;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Transform;
+import renderer.ViewBuffer;
+
+/**
+ * Times everything before filling in a frame's triangles, i.e. finding those
+ * on the canvas, hiding those facing away and finding edge lists, starting
+ * from the BVH and from the meshlets, along with how many triangles each
+ * passed on and how many clusters were skipped. The models in data/ are only
+ * a few clusters each, so there is also a sphere big enough for whole
+ * clusters at its back to be skipped.
+ */
+public class MeshletBenchmark {
+
+	private static final Rectangle CANVAS = new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+
+	public static void main(String[] args) throws Exception {
+		Bench.row("model", "culling", "ms", "triangles", "clusters", "skipped");
+		for (String name : Bench.MODELS) {
+			run(name, Bench.model(name));
+		}
+		run("sphere 160k", Bench.sphere(200, 300));
+	}
+
+	private static void run(String name, Scene scene) {
+		final ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newYRotation(0.5f).compose(Transform.newXRotation(0.3f)));
+		final Meshlets meshlets = Meshlets.build(scene.getPolygons());
+		final EdgeList edges = new EdgeList(0, 0);
+
+		double bvh = Bench.time(15, new Runnable() {
+			public void run() {
+				edges(view, view.getBVH().cull(CANVAS), edges);
+			}
+		});
+		Bench.row(name, "bvh", bvh, view.getBVH().cull(CANVAS).length, "", "");
+		double clusters = Bench.time(15, new Runnable() {
+			public void run() {
+				edges(view, meshlets.cull(view, CANVAS), edges);
+			}
+		});
+		Bench.row(name, "meshlets", clusters, meshlets.cull(view, CANVAS).length, meshlets.getClusterCount(),
+				meshlets.getBackFacingCount() + meshlets.getOffCanvasCount());
+	}
+
+	private static void edges(ViewBuffer view, int[] indices, EdgeList edges) {
+		float[] vertices = view.getVertices();
+		for (int i : indices) {
+			if (!Pipeline.isHidden(vertices, i * 9)) {
+				Pipeline.computeEdgeList(vertices, i * 9, edges);
+			}
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package benchmarks;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.OcclusionCuller;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.Vector3D;
+import renderer.ViewBuffer;
+import renderer.VisibilityBuffer;
+
+/**
+ * Times finding the visible polygon at every pixel with and without leaving
+ * out the polygons hidden behind big near ones first, and how many were left
+ * out. The models in data/ are single objects of small polygons, which have
+ * nothing big enough to hide behind, so there is also a scene of many
+ * objects: detailed spheres behind a row of big, flat boxes.
+ */
+public class OcclusionBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Bench.row("model", "culling", "ms", "culled", "of", "cull ms");
+		for (String name : Bench.MODELS) {
+			run(name, Bench.model(name));
+		}
+		run("crowd", crowd());
+	}
+
+	/**
+	 * @return 64 spheres of 1600 triangles spread over the canvas, behind
+	 * 			boxes of 12 triangles covering about half of it.
+	 */
+	private static Scene crowd() {
+		Random random = new Random(1);
+		List<Polygon> polys = new ArrayList<>();
+		Scene sphere = Bench.sphere(20, 40);
+		for (int i = 0; i < 64; i++) {
+			float dx = random.nextFloat() * 500 - 250, dy = random.nextFloat() * 500 - 250;
+			float dz = 100 + random.nextFloat() * 200;
+			for (Polygon p : sphere.getPolygons()) {
+				Vector3D[] v = p.getVertices();
+				polys.add(new Polygon(new float[] { v[0].x + dx, v[0].y + dy, v[0].z + dz, v[1].x + dx, v[1].y + dy,
+						v[1].z + dz, v[2].x + dx, v[2].y + dy, v[2].z + dz }, new int[] { 200, 120, 60 }));
+			}
+		}
+		for (int i = 0; i < 6; i++) {
+			box(polys, -300 + i * 100, -120, -100, 70, 240, 40);
+		}
+		return new Scene(polys, sphere.getLights());
+	}
+
+	/** Adds the 12 triangles of a box, wound to face outwards. */
+	private static void box(List<Polygon> polys, float x, float y, float z, float w, float h, float d) {
+		float[][] c = new float[8][];
+		for (int i = 0; i < 8; i++) {
+			c[i] = new float[] { x + ((i & 1) == 0 ? 0 : w), y + ((i & 2) == 0 ? 0 : h), z + ((i & 4) == 0 ? 0 : d) };
+		}
+		int[][] faces = { { 0, 2, 3, 1 }, { 4, 5, 7, 6 }, { 0, 1, 5, 4 }, { 2, 6, 7, 3 }, { 0, 4, 6, 2 },
+				{ 1, 3, 7, 5 } };
+		int[] colour = { 120, 120, 200 };
+		for (int[] f : faces) {
+			polys.add(new Polygon(join(c[f[0]], c[f[1]], c[f[2]]), colour));
+			polys.add(new Polygon(join(c[f[0]], c[f[2]], c[f[3]]), colour));
+		}
+	}
+
+	private static float[] join(float[] a, float[] b, float[] c) {
+		return new float[] { a[0], a[1], a[2], b[0], b[1], b[2], c[0], c[1], c[2] };
+	}
+
+	private static void run(String name, Scene scene) {
+		final ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newYRotation(0.2f).compose(Transform.newXRotation(0.1f)));
+		final int[] visible = view.getBVH().cull(new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT));
+		final VisibilityBuffer visibility = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		final OcclusionCuller occlusion = new OcclusionCuller(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+
+		double off = Bench.time(15, new Runnable() {
+			public void run() {
+				visibility.draw(view, visible);
+			}
+		});
+		Bench.row(name, "off", off, "", visible.length, "");
+		double cull = Bench.time(15, new Runnable() {
+			public void run() {
+				occlusion.cull(view.getVertices(), visible);
+			}
+		});
+		double on = Bench.time(15, new Runnable() {
+			public void run() {
+				visibility.draw(view, occlusion.cull(view.getVertices(), visible));
+			}
+		});
+		Bench.row(name, "on", on, occlusion.getCulledCount(), visible.length, cull);
+	}
+}
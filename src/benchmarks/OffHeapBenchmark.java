@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.awt.Rectangle;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.Scene;
+import renderer.Transform;
+import renderer.ViewBuffer;
+import renderer.VisibilityBuffer;
+
+/**
+ * Compares views and visibility buffers kept in the heap with ones keeping
+ * their big buffers outside it: how much the heap grows to hold one, and how
+ * long a camera move (ViewBuffer.update) and a frame's visibility
+ * (VisibilityBuffer.draw) take, since buffers outside the heap are read and
+ * written a value at a time through a ByteBuffer.
+ *
+ * Pass "on" or "off" to time only one of them. Timing both in the same JVM
+ * makes the buffer calls see two kinds of buffer, which the JIT can't inline
+ * as well, so each is slower than it would be on its own.
+ */
+public class OffHeapBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Bench.row("model", "heap", "view MB", "update ms", "frame MB", "draw ms");
+		Scene scene = Bench.sphere(289, 300);
+		if (args.length == 0 || args[0].equals("on")) {
+			run("sphere 1M", scene, false);
+		}
+		if (args.length == 0 || args[0].equals("off")) {
+			run("sphere 1M", scene, true);
+		}
+	}
+
+	private static void run(String name, Scene scene, boolean offHeap) {
+		BVH bvh = BVH.build(scene.getPolygons());
+		long before = used();
+		final ViewBuffer view = new ViewBuffer(scene, bvh, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT, offHeap);
+		double viewMB = (used() - before) / 1e6;
+		final float[] angle = new float[1];
+		double update = Bench.time(9, new Runnable() {
+			public void run() {
+				view.update(Transform.newYRotation(angle[0] += 0.05f));
+			}
+		});
+
+		before = used();
+		final VisibilityBuffer visibility = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT, offHeap);
+		double frameMB = (used() - before) / 1e6;
+		final int[] visible = view.getBVH().cull(new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT));
+		double draw = Bench.time(9, new Runnable() {
+			public void run() {
+				visibility.draw(view, visible);
+			}
+		});
+		Bench.row(name, offHeap ? "off" : "on", viewMB, update, frameMB, draw);
+	}
+
+	/** @return how many bytes of the heap are in use, after collecting what can be. */
+	private static long used() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.util.ArrayList;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.LevelOfDetail;
+import renderer.LightManager;
+import renderer.Pipeline;
+import renderer.Projection;
+import renderer.Renderer;
+import renderer.Scene;
+import renderer.Transform;
+import renderer.ViewBuffer;
+
+/**
+ * Compares how long the GUI takes to show something after the camera turns
+ * with progressive rendering, i.e. the preview from the coarsest level, with
+ * how long the full frame takes. Both are drawn in perspective, which always
+ * uses the full detail level, and include moving the vertices to the new
+ * camera and making the image.
+ */
+public class ProgressiveBenchmark {
+
+	private static final int[][] zBuffer = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+	private static final float[][] zDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+	private static final Color ambient = new Color(128, 128, 128);
+
+	public static void main(String[] args) throws Exception {
+		Bench.row("model", "triangles", "preview", "preview ms", "full ms", "ratio");
+		run("monkey", Bench.model("monkey"));
+		run("sphere 40k", Bench.sphere(100, 300));
+		run("sphere 160k", Bench.sphere(200, 300));
+	}
+
+	private static void run(String name, Scene scene) {
+		LevelOfDetail lod = LevelOfDetail.build(scene.getPolygons(), scene.getLights());
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(new Color(100, 100, 100));
+		LightManager lights = new LightManager();
+		lights.update(scene.getLights(), colours);
+
+		int coarsest = lod.getLevelCount() - 1;
+		double preview = time(lod, coarsest, lights);
+		double full = time(lod, 0, lights);
+		Bench.row(name, scene.getPolygons().size(), lod.getLevel(coarsest).getPolygons().size(), preview, full,
+				preview / full);
+	}
+
+	/**
+	 * Times drawing a level in perspective, turning the camera a little before
+	 * each frame as a held-down key would.
+	 */
+	private static double time(final LevelOfDetail lod, final int level, final LightManager lights) {
+		final ViewBuffer view = new ViewBuffer(lod.getLevel(level), lod.getBVH(level));
+		final float[] angle = new float[1];
+		return Bench.time(15, new Runnable() {
+			public void run() {
+				angle[0] += 0.05f;
+				view.update(Transform.newYRotation(angle[0]));
+				BVH bvh = view.getBVH();
+				Transform eye = Renderer.perspectiveView(bvh, 0);
+				Projection projection = Renderer.perspectiveProjection(bvh, 0);
+
+				Pipeline.clearBuffers(zBuffer, zDepth);
+				Pipeline.drawPolygonsInPerspective(zBuffer, zDepth, view, bvh.cull(projection.compose(eye)), eye,
+						projection, lights, ambient);
+				Pipeline.toImage(zBuffer);
+			}
+		});
+	}
+}
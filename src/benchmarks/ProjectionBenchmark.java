@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.util.ArrayList;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.Pipeline;
+import renderer.Projection;
+import renderer.Renderer;
+import renderer.Scene;
+import renderer.Transform;
+import renderer.Vector3D;
+import renderer.ViewBuffer;
+
+/**
+ * Compares the cost of drawing a frame looking straight down the z-axis with
+ * drawing it in perspective, both with the whole model in view and with the
+ * camera close enough that polygons have to be clipped.
+ */
+public class ProjectionBenchmark {
+
+	private static final int[][] zBuffer = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+	private static final float[][] zDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+	private static final ArrayList<Color> lightColours = new ArrayList<>();
+	private static final Color ambient = new Color(128, 128, 128);
+
+	public static void main(String[] args) throws Exception {
+		lightColours.add(new Color(100, 100, 100));
+
+		Bench.row("model", "triangles", "ortho ms", "persp ms", "close ms", "persp/ortho");
+		for (String name : Bench.MODELS) {
+			run(name, Bench.model(name));
+		}
+		run("sphere 40k", Bench.sphere(100, 300));
+		run("sphere 360k", Bench.sphere(300, 300));
+	}
+
+	private static void run(String name, Scene loaded) {
+		final ViewBuffer view = new ViewBuffer(loaded, BVH.build(loaded.getPolygons()));
+		view.update(Transform.identity());
+
+		final ArrayList<Vector3D> lights = loaded.getLights();
+		final int[] all = new int[loaded.getPolygons().size()];
+		for (int i = 0; i < all.length; i++) {
+			all[i] = i;
+		}
+
+		double ortho = Bench.time(20, new Runnable() {
+			public void run() {
+				Pipeline.clearBuffers(zBuffer, zDepth);
+				Pipeline.drawPolygons(zBuffer, zDepth, view, all, lights, lightColours, ambient);
+			}
+		});
+		// the whole model in view, then close up so that some of it is clipped.
+		double persp = perspective(view, all, lights, 0);
+		double close = perspective(view, all, lights, 0.7f);
+
+		Bench.row(name, all.length, ortho, persp, close, persp / ortho);
+	}
+
+	private static double perspective(final ViewBuffer view, final int[] all,
+			final ArrayList<Vector3D> lights, float dolly) {
+		final Transform eye = Renderer.perspectiveView(view.getBVH(), dolly);
+		final Projection projection = Renderer.perspectiveProjection(view.getBVH(), dolly);
+
+		return Bench.time(20, new Runnable() {
+			public void run() {
+				Pipeline.clearBuffers(zBuffer, zDepth);
+				Pipeline.drawPolygonsInPerspective(zBuffer, zDepth, view, all, eye, projection,
+						lights, lightColours, ambient);
+			}
+		});
+	}
+}
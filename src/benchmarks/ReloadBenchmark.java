@@ -0,0 +1,118 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import renderer.LevelOfDetail;
+import renderer.ModelWatcher;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Vector3D;
+
+/**
+ * Times loading a model file from scratch, as opening it does, against
+ * reading it again after a change, as watching it does, for a change to one
+ * line, to a tenth of the lines and to the light source only, up to when
+ * level 0 can be swapped in. Simplifying the coarser levels again comes
+ * after, and is timed on its own. The models in data/ load too quickly for
+ * the difference to matter, so there is also a sphere written out to a file.
+ */
+public class ReloadBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Bench.row("model", "change", "ms", "kept", "parsed", "removed");
+		for (String name : Bench.MODELS) {
+			run(name, Bench.model(name));
+		}
+		run("sphere 160k", Bench.sphere(200, 300));
+	}
+
+	private static void run(String name, Scene scene) throws IOException {
+		File file = File.createTempFile("reload", ".txt");
+		file.deleteOnExit();
+		final List<String> lines = new ArrayList<>();
+		lines.add("0 0 -1");
+		for (Polygon poly : scene.getPolygons()) {
+			lines.add(line(poly));
+		}
+		Files.write(file.toPath(), lines);
+
+		final File model = file;
+		double load = Bench.time(5, new Runnable() {
+			public void run() {
+				try {
+					Scene loaded = Scene.load(model);
+					LevelOfDetail.build(loaded.getPolygons(), new ArrayList<>(loaded.getLights()));
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		Bench.row(name, "load", load, "", lines.size() - 1, "");
+
+		Scene loaded = Scene.load(file);
+		ArrayList<Vector3D> lights = new ArrayList<>(loaded.getLights());
+		ModelWatcher watcher = new ModelWatcher(file, LevelOfDetail.build(loaded.getPolygons(), lights),
+				lights.get(0), lights, null);
+		watcher.reload();
+		reload(name, "one line", watcher, file, lines, 1);
+		long start = System.nanoTime();
+		watcher.resimplify();
+		Bench.row(name, "simplify", (System.nanoTime() - start) / 1e6, "", "", "");
+		reload(name, "a tenth", watcher, file, lines, 10);
+		reload(name, "light", watcher, file, lines, 0);
+		watcher.close();
+	}
+
+	/**
+	 * Changes every nth polygon line, or only the light source if n is 0, and
+	 * times reading the file again, twice over so the file ends up as it
+	 * started.
+	 */
+	private static void reload(String name, String change, ModelWatcher watcher, File file, List<String> lines,
+			int n) throws IOException {
+		List<String> changed = new ArrayList<>(lines);
+		if (n == 0) {
+			changed.set(0, "0 -1 -1");
+		} else if (n == 1) {
+			changed.set(changed.size() / 2, nudge(changed.get(changed.size() / 2)));
+		} else {
+			for (int i = 1; i < changed.size(); i += n) {
+				changed.set(i, nudge(changed.get(i)));
+			}
+		}
+		ModelWatcher.Reload reload = null;
+		long total = 0;
+		for (int run = 0; run < 2; run++) {
+			Files.write(file.toPath(), run == 0 ? changed : lines);
+			long start = System.nanoTime();
+			ModelWatcher.Reload r = watcher.reload();
+			total += System.nanoTime() - start;
+			reload = run == 0 ? r : reload;
+		}
+		Bench.row(name, change, total / 2 / 1e6, reload.getReusedCount(), reload.getParsedCount(),
+				reload.getRemovedCount());
+	}
+
+	/**
+	 * @return the line with its first vertex moved a little.
+	 */
+	private static String nudge(String line) {
+		int space = line.indexOf(' ');
+		return (Float.parseFloat(line.substring(0, space)) + 0.5f) + line.substring(space);
+	}
+
+	private static String line(Polygon poly) {
+		StringBuilder s = new StringBuilder();
+		for (Vector3D v : poly.getVertices()) {
+			s.append(v.x).append(' ').append(v.y).append(' ').append(v.z).append(' ');
+		}
+		Color c = poly.getReflectance();
+		return s.append(c.getRed()).append(' ').append(c.getGreen()).append(' ').append(c.getBlue()).append(' ')
+				.append(poly.getShininess()).toString();
+	}
+}
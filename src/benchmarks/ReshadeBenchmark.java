@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.LightManager;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Transform;
+import renderer.ViewBuffer;
+import renderer.VisibilityBuffer;
+
+/**
+ * Compares drawing a frame in full with shading the last frame again, as the
+ * renderer does when only the ambient light has changed, e.g. while its
+ * slider is dragged. The full frame is drawn both straight into a zbuffer
+ * of colours and, as the renderer now does, into the visibility buffer and
+ * then shaded. All of them include making the image.
+ */
+public class ReshadeBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Bench.row("model", "triangles", "visible", "full ms", "deferred ms", "reshade ms", "speedup");
+		run("monkey", Bench.model("monkey"));
+		run("sphere 40k", Bench.sphere(100, 300));
+		run("sphere 160k", Bench.sphere(200, 300));
+	}
+
+	private static void run(String name, Scene scene) {
+		final ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newYRotation(0.5f).compose(Transform.newXRotation(0.3f)));
+		final int[] visible = view.getBVH().cull(new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT));
+		final int[][] zBuffer = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		final float[][] zDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(new Color(100, 100, 100));
+		final LightManager lights = new LightManager();
+		lights.update(scene.getLights(), colours);
+		// a different ambient light every frame, as the slider would give.
+		final int[] level = new int[1];
+
+		double full = Bench.time(15, new Runnable() {
+			public void run() {
+				Color ambient = new Color(level[0]++ % 256, 40, 40);
+				Pipeline.clearBuffers(zBuffer, zDepth);
+				Pipeline.drawPolygons(zBuffer, zDepth, view, visible, lights, ambient);
+				Pipeline.toImage(zBuffer);
+			}
+		});
+		final VisibilityBuffer visibility = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		double deferred = Bench.time(15, new Runnable() {
+			public void run() {
+				visibility.draw(view, visible);
+				visibility.shade(lights, new Color(level[0]++ % 256, 40, 40));
+			}
+		});
+		double reshade = Bench.time(15, new Runnable() {
+			public void run() {
+				visibility.shade(lights, new Color(level[0]++ % 256, 40, 40));
+			}
+		});
+		Bench.row(name, scene.getPolygons().size(), visibility.getVisibleCount(), full, deferred, reshade, full / reshade);
+	}
+}
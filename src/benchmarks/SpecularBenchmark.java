@@ -0,0 +1,100 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.LightManager;
+import renderer.Pipeline;
+import renderer.PowerTable;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.ViewBuffer;
+import renderer.Vector3D;
+
+/**
+ * Compares a frame of each model drawn matte, as loaded, with the same frame
+ * with every polygon made shiny, so every polygon facing a light pays for a
+ * highlight. Also compares a million lookups in the power table with a million
+ * calls to Math.pow.
+ */
+public class SpecularBenchmark {
+
+	private static final int SHININESS = 32;
+
+	public static void main(String[] args) throws Exception {
+		Bench.row("model", "triangles", "diffuse ms", "specular ms", "ratio");
+		for (String name : Bench.MODELS) {
+			run(name, Bench.model(name));
+		}
+		run("sphere 40k", Bench.sphere(100, 300));
+
+		final float[] bases = new float[1000000];
+		for (int i = 0; i < bases.length; i++) {
+			bases[i] = (float) i / bases.length;
+		}
+		final float[] sink = new float[1];
+		double table = Bench.time(9, new Runnable() {
+			public void run() {
+				float sum = 0;
+				float[] powers = PowerTable.table(SHININESS);
+				for (float x : bases) {
+					sum += PowerTable.pow(x, powers);
+				}
+				sink[0] = sum;
+			}
+		});
+		double pow = Bench.time(9, new Runnable() {
+			public void run() {
+				float sum = 0;
+				for (float x : bases) {
+					sum += (float) Math.pow(x, SHININESS);
+				}
+				sink[0] = sum;
+			}
+		});
+		System.out.println();
+		Bench.row("1M powers", "", table, pow, pow / table);
+		System.out.println("(table ms, Math.pow ms, speedup)");
+	}
+
+	private static void run(String name, Scene scene) {
+		List<Polygon> shiny = new ArrayList<>();
+		for (Polygon p : scene.getPolygons()) {
+			Vector3D[] v = p.getVertices();
+			shiny.add(new Polygon(v[0], v[1], v[2], p.getReflectance(), SHININESS));
+		}
+		// lit from over the viewer's shoulder, so plenty of polygons are lit.
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		lights.add(new Vector3D(0.3f, -0.4f, -1));
+		lights.add(new Vector3D(-0.6f, 0.2f, -1));
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(new Color(150, 150, 150));
+		colours.add(new Color(80, 90, 120));
+		LightManager manager = new LightManager();
+		manager.update(lights, colours);
+
+		double diffuse = time(scene, manager);
+		double specular = time(new Scene(shiny, lights), manager);
+		Bench.row(name, scene.getPolygons().size(), diffuse, specular, specular / diffuse);
+	}
+
+	private static double time(Scene scene, final LightManager lights) {
+		final ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newYRotation(0.5f).compose(Transform.newXRotation(0.3f)));
+		final int[] visible = view.getBVH().cull(new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT));
+		final int[][] zBuffer = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		final float[][] zDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		final Color ambient = new Color(40, 40, 40);
+		return Bench.time(31, new Runnable() {
+			public void run() {
+				Pipeline.clearBuffers(zBuffer, zDepth);
+				Pipeline.drawPolygons(zBuffer, zDepth, view, visible, lights, ambient);
+			}
+		});
+	}
+}
@@ -0,0 +1,83 @@
+package benchmarks;
+
+import java.util.List;
+
+import renderer.BVH;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.Vector3D;
+import renderer.ViewBuffer;
+
+/**
+ * Times moving about a million vertices to where the camera sees them: one
+ * Vector3D at a time through Transform.multiply, as ViewBuffer used to
+ * ("scalar"), and through the bulk Transform.multiply over separate x, y and z
+ * arrays, a block at a time ("bulk"). Also times a whole ViewBuffer.update,
+ * which adds fitting the vertices to the canvas and refitting the BVH.
+ */
+public class TransformBenchmark {
+
+	private static final int BLOCK = 1024;
+
+	public static void main(String[] args) throws Exception {
+		Bench.row("model", "vertices", "scalar ms", "bulk ms", "speedup", "update ms");
+		run("sphere 1M", Bench.sphere(289, 300));
+		run("sphere 4M", Bench.sphere(578, 300));
+	}
+
+	private static void run(String name, Scene scene) {
+		final List<Polygon> polygons = scene.getPolygons();
+		final int n = polygons.size() * 3;
+		final float[] packed = new float[n * 3];
+		final float[] xs = new float[n], ys = new float[n], zs = new float[n];
+		for (int i = 0; i < polygons.size(); i++) {
+			Vector3D[] v = polygons.get(i).getVertices();
+			for (int k = 0; k < 3; k++) {
+				xs[i * 3 + k] = v[k].x;
+				ys[i * 3 + k] = v[k].y;
+				zs[i * 3 + k] = v[k].z;
+			}
+		}
+		final float[] blockX = new float[BLOCK], blockY = new float[BLOCK], blockZ = new float[BLOCK];
+		final float[] angle = new float[1];
+
+		double scalar = Bench.time(9, new Runnable() {
+			public void run() {
+				Transform camera = Transform.newYRotation(angle[0] += 0.05f);
+				for (int i = 0; i < polygons.size(); i++) {
+					Vector3D[] v = polygons.get(i).getVertices();
+					for (int k = 0; k < 3; k++) {
+						Vector3D moved = camera.multiply(v[k]);
+						int o = i * 9 + k * 3;
+						packed[o] = moved.x;
+						packed[o + 1] = moved.y;
+						packed[o + 2] = moved.z;
+					}
+				}
+			}
+		});
+		double bulk = Bench.time(9, new Runnable() {
+			public void run() {
+				Transform camera = Transform.newYRotation(angle[0] += 0.05f);
+				for (int start = 0; start < n; start += BLOCK) {
+					int count = Math.min(BLOCK, n - start);
+					camera.multiply(xs, ys, zs, start, count, blockX, blockY, blockZ);
+					for (int k = 0; k < count; k++) {
+						int o = (start + k) * 3;
+						packed[o] = blockX[k];
+						packed[o + 1] = blockY[k];
+						packed[o + 2] = blockZ[k];
+					}
+				}
+			}
+		});
+		final ViewBuffer view = new ViewBuffer(scene, BVH.build(polygons));
+		double update = Bench.time(9, new Runnable() {
+			public void run() {
+				view.update(Transform.newYRotation(angle[0] += 0.05f));
+			}
+		});
+		Bench.row(name, n, scalar, bulk, scalar / bulk, update);
+	}
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.Scene;
+import renderer.Transform;
+import renderer.TurntableExporter;
+
+/**
+ * Exports a turntable of each model and compares how long it took with how
+ * long each stage was busy for. With the stages overlapping, the total should
+ * be close to the slowest stage rather than the sum of all three, given at
+ * least three cores.
+ */
+public class TurntableBenchmark {
+
+	private static final int FRAMES = 36;
+
+	public static void main(String[] args) throws IOException {
+		System.out.println(Runtime.getRuntime().availableProcessors() + " cores");
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(new Color(100, 100, 100));
+		File dir = Files.createTempDirectory("turntable").toFile();
+
+		Bench.row("model", "render ms", "convert ms", "encode ms", "sum ms", "total ms", "total/max");
+		for (String name : Bench.MODELS) {
+			run(name, Bench.model(name), colours, dir);
+		}
+		run("sphere 90k", Bench.sphere(150, 300), colours, dir);
+
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	private static void run(String name, Scene scene, ArrayList<Color> colours, File dir) throws IOException {
+		TurntableExporter exporter = new TurntableExporter(scene, BVH.build(scene.getPolygons()), scene.getLights(),
+				colours, new Color(128, 128, 128), GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		// once to warm up, then once to time.
+		exporter.export(dir, FRAMES, Transform.identity());
+		exporter.export(dir, FRAMES, Transform.identity());
+
+		long[] stages = exporter.getStageMillis();
+		long sum = stages[0] + stages[1] + stages[2];
+		long max = Math.max(stages[0], Math.max(stages[1], stages[2]));
+		Bench.row(name, stages[0], stages[1], stages[2], sum, exporter.getTotalMillis(),
+				(double) exporter.getTotalMillis() / max);
+	}
+}
@@ -0,0 +1,45 @@
+package benchmarks;
+
+import renderer.Transform;
+import renderer.Vector3D;
+
+/**
+ * Times moving a million vertices through Transform.multiply, as the rotate,
+ * translate and scale passes do, now that the new vertices don't work out
+ * their magnitudes, against doing the same and then asking each for its
+ * magnitude, which is what every new Vector3D used to cost.
+ */
+public class VectorBenchmark {
+
+	private static final int VERTICES = 1000000;
+
+	public static void main(String[] args) throws Exception {
+		final Vector3D[] vertices = new Vector3D[VERTICES];
+		for (int i = 0; i < VERTICES; i++) {
+			vertices[i] = new Vector3D(i % 1000, i / 1000, (i * 7) % 500);
+		}
+		final Transform transform = Transform.newYRotation(0.3f).compose(Transform.newTranslation(10, 20, 30));
+		final float[] sink = new float[1];
+
+		double lazy = Bench.time(15, new Runnable() {
+			public void run() {
+				float sum = 0;
+				for (Vector3D v : vertices) {
+					sum += transform.multiply(v).x;
+				}
+				sink[0] = sum;
+			}
+		});
+		double eager = Bench.time(15, new Runnable() {
+			public void run() {
+				float sum = 0;
+				for (Vector3D v : vertices) {
+					sum += transform.multiply(v).mag();
+				}
+				sink[0] = sum;
+			}
+		});
+		Bench.row("vertices", "lazy ms", "eager ms", "speedup");
+		Bench.row("1M transforms", lazy, eager, eager / lazy);
+	}
+}
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import renderer.LevelOfDetail;
+import renderer.Scene;
+import renderer.Transform;
+import renderer.Vector3D;
+import renderer.Viewport;
+import renderer.ViewportRenderer;
+
+/**
+ * Measures how well drawing several viewports of one model scales with the
+ * number of threads. Each row draws the same number of viewports, first on one
+ * thread and then on one thread per viewport (up to the number of cores), so
+ * the speedup should approach the smaller of the two.
+ */
+public class ViewportBenchmark {
+
+	private static final int SIZE = 300;
+
+	public static void main(String[] args) {
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.println(cores + " cores");
+
+		Scene scene = Bench.sphere(150, 300);
+		final ArrayList<Vector3D> lights = scene.getLights();
+		final ArrayList<Color> colours = new ArrayList<>();
+		colours.add(new Color(100, 100, 100));
+		final Color ambient = new Color(128, 128, 128);
+		LevelOfDetail lod = LevelOfDetail.build(scene.getPolygons(), lights);
+
+		Bench.row("viewports", "threads", "serial ms", "parallel ms", "speedup");
+		for (int n = 1; n <= Math.max(8, cores); n *= 2) {
+			List<Viewport> viewports = new ArrayList<>();
+			for (int i = 0; i < n; i++) {
+				// a different angle for each, so that no two draw the same thing.
+				Transform camera = Transform.newYRotation(i * 0.7f).compose(Transform.newXRotation(i * 0.3f));
+				viewports.add(new Viewport("view " + i, lod, camera, SIZE, SIZE));
+			}
+			int threads = Math.min(n, cores);
+			final ViewportRenderer serial = new ViewportRenderer(viewports, 1);
+			final ViewportRenderer parallel = new ViewportRenderer(viewports, threads);
+
+			double serialMs = Bench.time(10, new Runnable() {
+				public void run() {
+					serial.render(lights, colours, ambient);
+				}
+			});
+			double parallelMs = Bench.time(10, new Runnable() {
+				public void run() {
+					parallel.render(lights, colours, ambient);
+				}
+			});
+			Bench.row(String.valueOf(n), threads, serialMs, parallelMs, serialMs / parallelMs);
+			serial.shutdown();
+			parallel.shutdown();
+		}
+	}
+}
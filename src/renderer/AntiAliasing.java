@@ -0,0 +1,417 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import renderer.Scene.Polygon;
+
+/**
+ * Draws a view looking straight down the z-axis with its edges smoothed, in
+ * one of two ways.
+ *
+ * Supersampling draws the view with the usual pipeline at two or four times
+ * the width and height, so that each pixel gets 4 or 16 samples on an ordered
+ * grid, then averages each pixel's samples. It is exact but costs about as
+ * much as drawing an image that size.
+ *
+ * Coverage mode draws at the normal size, but works out which of 16 samples
+ * (on a 4x4 grid) in each pixel a polygon covers. Each pixel keeps up to two
+ * polygons' colours, each with a depth and a mask of the samples it covers,
+ * and is resolved to the colours weighted by how many samples they cover, plus
+ * the background for any not covered. Since a polygon has one colour, it is
+ * still only shaded once. Depth is only tested once per polygon per pixel,
+ * rather than per sample, so where two polygons cross within a pixel it is
+ * less exact than supersampling, and a pixel that touches more than two
+ * polygons gives the least covered one's samples to whichever of the other two
+ * is nearest in depth.
+ */
+public class AntiAliasing {
+
+	public enum Mode {
+		/** No smoothing, as drawn by Pipeline.drawPolygons. */
+		OFF(1),
+		/** Supersampling at twice the width and height, 4 samples a pixel. */
+		SUPERSAMPLE_2X(2),
+		/** Supersampling at four times the width and height, 16 samples a pixel. */
+		SUPERSAMPLE_4X(4),
+		/** 16 samples of coverage a pixel, drawn at the normal size. */
+		COVERAGE(1);
+
+		private final int factor;
+
+		private Mode(int factor) {
+			this.factor = factor;
+		}
+
+		/** @return the mode after this one, wrapping around. */
+		public Mode next() {
+			return values()[(ordinal() + 1) % values().length];
+		}
+	}
+
+	// coverage masks have 4 rows of 4 samples, row by row from the top.
+	private static final int SAMPLES = 16;
+	private static final int BACKGROUND = Pipeline.WHITE & 0xFFFFFF;
+
+	private final Mode mode;
+	private final int width;
+	private final int height;
+
+	// the buffers for supersampling, at factor times the size in each direction.
+	private int[][] samples;
+	private float[][] sampleDepth;
+	private float[] scaled;
+
+	// the two layers of each pixel for coverage mode, indexed by x + y * width.
+	private int[] colour0, colour1, mask0, mask1;
+	private float[] depth0, depth1;
+	// where each row of samples in a pixel row enters and leaves a triangle.
+	private final float[] left = new float[4], right = new float[4];
+
+	/**
+	 * @param mode
+	 * 			How to smooth the edges.
+	 * @param width
+	 * 			The width of the image to draw, in pixels.
+	 * @param height
+	 * 			The height of the image to draw, in pixels.
+	 */
+	public AntiAliasing(Mode mode, int width, int height) {
+		this.mode = mode;
+		this.width = width;
+		this.height = height;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Draws some of the polygons of a view into an image.
+	 *
+	 * @param view
+	 * 			The view to draw, which should have been fitted to this size.
+	 * @param indices
+	 * 			Which polygons to draw, e.g. from the view's BVH.
+	 * @param lightSources
+	 * 			The directions of the light sources, relative to the model.
+	 * @param lightColours
+	 * 			The colours of the light sources.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @return a new image of the view.
+	 */
+	public BufferedImage render(ViewBuffer view, int[] indices, ArrayList<Vector3D> lightSources,
+			ArrayList<Color> lightColours, Color ambientLight) {
+		return render(view, indices, LightManager.exact(lightSources, lightColours), ambientLight);
+	}
+
+	/**
+	 * Draws some of the polygons of a view into an image, shading them with
+	 * lights already combined by a LightManager.
+	 *
+	 * @param view
+	 * 			The view to draw, which should have been fitted to this size.
+	 * @param indices
+	 * 			Which polygons to draw, e.g. from the view's BVH.
+	 * @param lights
+	 * 			The light sources, relative to the model.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @return a new image of the view.
+	 */
+	public BufferedImage render(ViewBuffer view, int[] indices, LightManager lights, Color ambientLight) {
+		int[] pixels = mode == Mode.COVERAGE
+				? coverage(view, indices, lights, ambientLight)
+				: supersample(view, indices, lights, ambientLight);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, width, height, pixels, 0, width);
+		return image;
+	}
+
+	/**
+	 * Draws the view at factor times the size with the normal pipeline, then
+	 * averages each factor by factor block of samples into one pixel.
+	 *
+	 * @return the pixels of the image, row by row.
+	 */
+	private int[] supersample(ViewBuffer view, int[] indices, LightManager lights, Color ambientLight) {
+		int s = mode.factor;
+		if (samples == null) {
+			samples = new int[width * s][height * s];
+			sampleDepth = new float[width * s][height * s];
+		}
+		float[] vertices = view.getVertices();
+		if (scaled == null || scaled.length != vertices.length) {
+			scaled = new float[vertices.length];
+		}
+		List<Polygon> polygons = view.getSource().getPolygons();
+		int ambient = ambientLight.getRGB();
+
+		Pipeline.clearBuffers(samples, sampleDepth);
+		// filled in again for each polygon, rather than making one for each.
+		EdgeList edges = new EdgeList(0, 0);
+		for (int i : indices) {
+			int o = i * 9;
+			if (Pipeline.isHidden(vertices, o)) {
+				continue;
+			}
+			// only x and y are scaled, so depths compare the same as before.
+			for (int k = o; k < o + 9; k += 3) {
+				scaled[k] = vertices[k] * s;
+				scaled[k + 1] = vertices[k + 1] * s;
+				scaled[k + 2] = vertices[k + 2];
+			}
+			int c = lights.getShadingRGB(polygons.get(i), ambient, view.getViewer(), -1);
+			Pipeline.computeZBuffer(samples, sampleDepth, Pipeline.computeEdgeList(scaled, o, edges), c);
+		}
+
+		int[] pixels = new int[width * height];
+		int n = s * s;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int r = 0, g = 0, b = 0;
+				for (int sx = x * s; sx < x * s + s; sx++) {
+					int[] column = samples[sx];
+					for (int sy = y * s; sy < y * s + s; sy++) {
+						int rgb = column[sy];
+						r += (rgb >> 16) & 0xFF;
+						g += (rgb >> 8) & 0xFF;
+						b += rgb & 0xFF;
+					}
+				}
+				pixels[x + y * width] = 0xFF000000 | (r / n) << 16 | (g / n) << 8 | (b / n);
+			}
+		}
+		return pixels;
+	}
+
+	/**
+	 * Draws the view at the normal size, keeping track of which samples of each
+	 * pixel every polygon covers, then blends each pixel's colours by coverage.
+	 *
+	 * @return the pixels of the image, row by row.
+	 */
+	private int[] coverage(ViewBuffer view, int[] indices, LightManager lights, Color ambientLight) {
+		int size = width * height;
+		if (colour0 == null) {
+			colour0 = new int[size];
+			colour1 = new int[size];
+			mask0 = new int[size];
+			mask1 = new int[size];
+			depth0 = new float[size];
+			depth1 = new float[size];
+		} else {
+			Arrays.fill(mask0, 0);
+			Arrays.fill(mask1, 0);
+		}
+		float[] vertices = view.getVertices();
+		List<Polygon> polygons = view.getSource().getPolygons();
+		int ambient = ambientLight.getRGB();
+
+		for (int i : indices) {
+			int o = i * 9;
+			if (Pipeline.isHidden(vertices, o)) {
+				continue;
+			}
+			int c = lights.getShadingRGB(polygons.get(i), ambient, view.getViewer(), -1);
+			rasterise(vertices, o, c & 0xFFFFFF);
+		}
+
+		int[] pixels = new int[size];
+		for (int p = 0; p < size; p++) {
+			int n0 = Integer.bitCount(mask0[p]);
+			int n1 = Integer.bitCount(mask1[p]);
+			int nb = SAMPLES - n0 - n1;
+			int c0 = colour0[p], c1 = colour1[p];
+			int r = ((c0 >> 16) & 0xFF) * n0 + ((c1 >> 16) & 0xFF) * n1 + ((BACKGROUND >> 16) & 0xFF) * nb;
+			int g = ((c0 >> 8) & 0xFF) * n0 + ((c1 >> 8) & 0xFF) * n1 + ((BACKGROUND >> 8) & 0xFF) * nb;
+			int b = (c0 & 0xFF) * n0 + (c1 & 0xFF) * n1 + (BACKGROUND & 0xFF) * nb;
+			pixels[p] = 0xFF000000 | (r / SAMPLES) << 16 | (g / SAMPLES) << 8 | (b / SAMPLES);
+		}
+		return pixels;
+	}
+
+	/**
+	 * Finds the samples a triangle covers in each pixel it touches, and adds it
+	 * to those pixels.
+	 *
+	 * A sample is covered if it is inside all three edges. Along each row of
+	 * samples the triangle covers a span of x-values, which includes its left
+	 * end but not its right, so that of two triangles sharing an edge exactly
+	 * one covers each sample on it.
+	 */
+	private void rasterise(float[] v, int o, int colour) {
+		float ax = v[o], ay = v[o + 1], az = v[o + 2];
+		float bx = v[o + 3], by = v[o + 4], bz = v[o + 5];
+		float cx = v[o + 6], cy = v[o + 7], cz = v[o + 8];
+
+		// the plane of the triangle, to find its depth at each pixel.
+		float nx = (by - ay) * (cz - az) - (bz - az) * (cy - ay);
+		float ny = (bz - az) * (cx - ax) - (bx - ax) * (cz - az);
+		float nz = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+		if (nz == 0) {
+			return;
+		}
+		float sign = Math.signum(nz);
+
+		int minY = Math.max(0, (int) Math.floor(Math.min(ay, Math.min(by, cy))));
+		int maxY = Math.min(height, (int) Math.ceil(Math.max(ay, Math.max(by, cy))));
+
+		for (int y = minY; y < maxY; y++) {
+			float spanLeft = Float.POSITIVE_INFINITY, spanRight = Float.NEGATIVE_INFINITY;
+			for (int j = 0; j < 4; j++) {
+				float sy = y + (j + 0.5f) / 4;
+				float l = Float.NEGATIVE_INFINITY, r = Float.POSITIVE_INFINITY;
+				l = clipEdge(ax, ay, bx, by, sy, sign, l, r, true);
+				r = clipEdge(ax, ay, bx, by, sy, sign, l, r, false);
+				l = clipEdge(bx, by, cx, cy, sy, sign, l, r, true);
+				r = clipEdge(bx, by, cx, cy, sy, sign, l, r, false);
+				l = clipEdge(cx, cy, ax, ay, sy, sign, l, r, true);
+				r = clipEdge(cx, cy, ax, ay, sy, sign, l, r, false);
+				left[j] = l;
+				right[j] = r;
+				if (l < r) {
+					spanLeft = Math.min(spanLeft, l);
+					spanRight = Math.max(spanRight, r);
+				}
+			}
+			if (spanLeft >= spanRight) {
+				continue;
+			}
+			int fromX = Math.max(0, (int) Math.floor(spanLeft));
+			int toX = Math.min(width, (int) Math.ceil(spanRight));
+			for (int x = fromX; x < toX; x++) {
+				int mask = 0;
+				for (int j = 0; j < 4; j++) {
+					if (left[j] >= right[j]) {
+						continue;
+					}
+					// the samples in this row are at x + (i + 0.5) / 4.
+					int first = Math.max(0, (int) Math.ceil((left[j] - x) * 4 - 0.5f));
+					int last = Math.min(4, (int) Math.ceil((right[j] - x) * 4 - 0.5f));
+					if (first < last) {
+						mask |= ((1 << last) - (1 << first)) << (j * 4);
+					}
+				}
+				if (mask != 0) {
+					float z = az - (nx * (x + 0.5f - ax) + ny * (y + 0.5f - ay)) / nz;
+					insert(x + y * width, colour, z, mask);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Narrows a span of x-values on the line y = sy to the inside of one edge
+	 * of a triangle.
+	 *
+	 * @param sign
+	 * 			The sign of the triangle's area, which says which side of its
+	 * 			edges is the inside.
+	 * @param wantLeft
+	 * 			Whether to return the new left end of the span, rather than the
+	 * 			new right end.
+	 * @return the new left or right end of the span, which is empty if the
+	 * 			left end is not less than the right.
+	 */
+	private static float clipEdge(float px, float py, float qx, float qy, float sy, float sign,
+			float l, float r, boolean wantLeft) {
+		// the edge function (q - p) x (s - p) is a*x + c along the line.
+		float a = -(qy - py) * sign;
+		float c = ((qx - px) * (sy - py) + (qy - py) * px) * sign;
+		if (a == 0) {
+			// the edge is horizontal, so the line is all inside it or all outside.
+			if (c < 0) {
+				return wantLeft ? Float.POSITIVE_INFINITY : Float.NEGATIVE_INFINITY;
+			}
+			return wantLeft ? l : r;
+		}
+		float cross = -c / a;
+		if (a > 0) {
+			return wantLeft ? Math.max(l, cross) : r;
+		} else {
+			return wantLeft ? l : Math.min(r, cross);
+		}
+	}
+
+	/**
+	 * Adds a polygon's samples to a pixel. Samples that a nearer polygon
+	 * already covers are dropped, and the polygon takes any samples it covers
+	 * from those further away. The masks of a pixel's two layers never
+	 * overlap.
+	 */
+	private void insert(int p, int colour, float z, int mask) {
+		int m0 = mask0[p], m1 = mask1[p];
+		if (m0 != 0 && depth0[p] <= z) {
+			mask &= ~m0;
+		}
+		if (m1 != 0 && depth1[p] <= z) {
+			mask &= ~m1;
+		}
+		if (mask == 0) {
+			return;
+		}
+		if (depth0[p] > z) {
+			m0 &= ~mask;
+		}
+		if (depth1[p] > z) {
+			m1 &= ~mask;
+		}
+		mask1[p] = m1;
+		mask0[p] = m0;
+
+		// polygons of the same colour (e.g. neighbours on a flat face) share a layer.
+		if (m0 != 0 && colour0[p] == colour) {
+			mask0[p] = m0 | mask;
+			depth0[p] = Math.min(depth0[p], z);
+		} else if (m1 != 0 && colour1[p] == colour) {
+			mask1[p] = m1 | mask;
+			depth1[p] = Math.min(depth1[p], z);
+		} else if (m0 == 0) {
+			set0(p, colour, z, mask);
+		} else if (m1 == 0) {
+			set1(p, colour, z, mask);
+		} else {
+			// three polygons and two layers: the one covering least is dropped, and
+			// its samples go to whichever of the others is nearest to it in depth.
+			int n0 = Integer.bitCount(m0), n1 = Integer.bitCount(m1), n = Integer.bitCount(mask);
+			if (n0 <= n1 && n0 <= n) {
+				float dropped = depth0[p];
+				set0(p, colour, z, mask);
+				if (Math.abs(z - dropped) <= Math.abs(depth1[p] - dropped)) {
+					mask0[p] |= m0;
+				} else {
+					mask1[p] |= m0;
+				}
+			} else if (n1 <= n) {
+				float dropped = depth1[p];
+				set1(p, colour, z, mask);
+				if (Math.abs(z - dropped) <= Math.abs(depth0[p] - dropped)) {
+					mask1[p] |= m1;
+				} else {
+					mask0[p] |= m1;
+				}
+			} else if (Math.abs(depth0[p] - z) <= Math.abs(depth1[p] - z)) {
+				mask0[p] |= mask;
+			} else {
+				mask1[p] |= mask;
+			}
+		}
+	}
+
+	private void set0(int p, int colour, float z, int mask) {
+		colour0[p] = colour;
+		depth0[p] = z;
+		mask0[p] = mask;
+	}
+
+	private void set1(int p, int colour, float z, int mask) {
+		colour1[p] = colour;
+		depth1[p] = z;
+		mask1[p] = mask;
+	}
+}
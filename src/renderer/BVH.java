@@ -0,0 +1,491 @@
+package renderer;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import renderer.Scene.Polygon;
+
+/**
+ * A bounding volume hierarchy over the triangles of a scene. The tree is
+ * built once when a model is loaded, and only its boxes are recomputed
+ * (refitted) each frame, which is a single pass over the vertices. The boxes
+ * then give the overall bounds of the scene, let whole groups of triangles be
+ * skipped when they are off screen, and find the triangle under a point.
+ *
+ * The nodes are stored flattened in depth-first order, so the left child of a
+ * node is always the next node, and children always come after their parent.
+ *
+ * The shape of the tree never changes once built, so copies made for each view
+ * share it, and only have their own boxes.
+ */
+public class BVH {
+
+	/** The most triangles a leaf can hold. */
+	private static final int LEAF_SIZE = 4;
+
+	/** Ranges smaller than this are built on the current thread. */
+	private static final int PARALLEL_THRESHOLD = 2048;
+
+	private final int[] triangles;
+
+	// per node: the index of the right child, or -1 for a leaf.
+	private final int[] rightChild;
+	// per node: the range of triangles it covers, as indexes into triangles.
+	private final int[] first;
+	private final int[] count;
+	// per node: minX, minY, minZ, maxX, maxY, maxZ.
+	private final float[] boxes;
+
+	// the vertices the boxes were last fitted to, 9 floats per triangle.
+	private float[] vertices;
+
+	private BVH(int[] triangles, int nodeCount) {
+		this.triangles = triangles;
+		this.rightChild = new int[nodeCount];
+		this.first = new int[nodeCount];
+		this.count = new int[nodeCount];
+		this.boxes = new float[nodeCount * 6];
+	}
+
+	private BVH(BVH other) {
+		this.triangles = other.triangles;
+		this.rightChild = other.rightChild;
+		this.first = other.first;
+		this.count = other.count;
+		this.boxes = other.boxes.clone();
+		this.vertices = other.vertices;
+	}
+
+	/**
+	 * @return a BVH with the same tree as this one, but its own boxes, so it
+	 * 			can be refitted separately (e.g. for another view).
+	 */
+	public BVH copy() {
+		return new BVH(this);
+	}
+
+	/**
+	 * Builds a hierarchy over the given polygons, splitting each group in half
+	 * along its longest axis. Large groups are split in parallel.
+	 *
+	 * @param polygons
+	 * 			The polygons of the scene. The list should be random access, and
+	 * 			its order should not change afterwards.
+	 * @return a hierarchy already fitted to the polygons' current positions.
+	 */
+	public static BVH build(List<Polygon> polygons) {
+		float[] vertices = pack(polygons);
+		int n = polygons.size();
+		float[] centroids = new float[n * 3];
+		int[] triangles = new int[n];
+		for (int i = 0; i < n; i++) {
+			for (int a = 0; a < 3; a++) {
+				centroids[i * 3 + a] = (vertices[i * 9 + a] + vertices[i * 9 + 3 + a] + vertices[i * 9 + 6 + a]) / 3;
+			}
+			triangles[i] = i;
+		}
+
+		BuildNode root = ForkJoinPool.commonPool().invoke(new BuildTask(triangles, centroids, 0, n));
+
+		BVH bvh = new BVH(triangles, root.size);
+		bvh.flatten(root, 0);
+		bvh.refit(vertices);
+		return bvh;
+	}
+
+	/**
+	 * @return the vertices of the polygons, as x, y, z for each of the three
+	 * 			vertices of each polygon in turn.
+	 */
+	static float[] pack(List<Polygon> polygons) {
+		float[] vertices = new float[polygons.size() * 9];
+		for (int i = 0; i < polygons.size(); i++) {
+			Vector3D[] v = polygons.get(i).getVertices();
+			for (int k = 0; k < 3; k++) {
+				vertices[i * 9 + k * 3] = v[k].x;
+				vertices[i * 9 + k * 3 + 1] = v[k].y;
+				vertices[i * 9 + k * 3 + 2] = v[k].z;
+			}
+		}
+		return vertices;
+	}
+
+	/** A node of the tree while it is being built, before it is flattened. */
+	private static class BuildNode {
+		BuildNode left, right;
+		int first, count;
+		int size = 1;
+	}
+
+	private static class BuildTask extends RecursiveTask<BuildNode> {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] triangles;
+		private final float[] centroids;
+		private final int lo, hi;
+
+		BuildTask(int[] triangles, float[] centroids, int lo, int hi) {
+			this.triangles = triangles;
+			this.centroids = centroids;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected BuildNode compute() {
+			BuildNode node = new BuildNode();
+			node.first = lo;
+			node.count = hi - lo;
+			if (hi - lo <= LEAF_SIZE) {
+				return node;
+			}
+
+			// split along the axis the centroids are most spread out on.
+			float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+			float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+			for (int i = lo; i < hi; i++) {
+				for (int a = 0; a < 3; a++) {
+					float c = centroids[triangles[i] * 3 + a];
+					min[a] = Math.min(min[a], c);
+					max[a] = Math.max(max[a], c);
+				}
+			}
+			int axis = 0;
+			for (int a = 1; a < 3; a++) {
+				if (max[a] - min[a] > max[axis] - min[axis]) {
+					axis = a;
+				}
+			}
+
+			int mid = (lo + hi) >>> 1;
+			select(triangles, centroids, axis, lo, hi - 1, mid);
+
+			BuildTask leftTask = new BuildTask(triangles, centroids, lo, mid);
+			BuildTask rightTask = new BuildTask(triangles, centroids, mid, hi);
+			if (hi - lo > PARALLEL_THRESHOLD) {
+				rightTask.fork();
+				node.left = leftTask.compute();
+				node.right = rightTask.join();
+			} else {
+				node.left = leftTask.compute();
+				node.right = rightTask.compute();
+			}
+			node.size += node.left.size + node.right.size;
+			return node;
+		}
+	}
+
+	/**
+	 * Partially sorts triangles[lo..hi] by centroid so that the one at k is
+	 * in its sorted position, with smaller ones before it and larger after.
+	 */
+	static void select(int[] triangles, float[] centroids, int axis, int lo, int hi, int k) {
+		while (hi > lo) {
+			float pivot = centroids[triangles[(lo + hi) >>> 1] * 3 + axis];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (centroids[triangles[i] * 3 + axis] < pivot) i++;
+				while (centroids[triangles[j] * 3 + axis] > pivot) j--;
+				if (i <= j) {
+					int tmp = triangles[i];
+					triangles[i] = triangles[j];
+					triangles[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				hi = j;
+			} else if (k >= i) {
+				lo = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private int flatten(BuildNode node, int index) {
+		first[index] = node.first;
+		count[index] = node.count;
+		if (node.left == null) {
+			rightChild[index] = -1;
+			return index + 1;
+		}
+		int right = flatten(node.left, index + 1);
+		rightChild[index] = right;
+		return flatten(node.right, right);
+	}
+
+	/**
+	 * Recomputes every box from the current positions of the polygons' vertices.
+	 * The tree itself is left alone, so this is only valid for the same list
+	 * of polygons that it was built from, though they may have been moved.
+	 *
+	 * @param polygons
+	 * 			The polygons of the scene, in the same order as when built.
+	 */
+	public void refit(List<Polygon> polygons) {
+		refit(pack(polygons));
+	}
+
+	/**
+	 * Recomputes every box from a packed array of vertices, such as the one
+	 * in a ViewBuffer. The array is kept for picking.
+	 *
+	 * @param vertices
+	 * 			The vertices of the polygons, 9 floats per polygon, in the same
+	 * 			order as when built.
+	 */
+	public void refit(float[] vertices) {
+		this.vertices = vertices;
+		for (int node = rightChild.length - 1; node >= 0; node--) {
+			int b = node * 6;
+			if (rightChild[node] < 0) {
+				float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+				float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+				for (int i = first[node]; i < first[node] + count[node]; i++) {
+					for (int o = triangles[i] * 9; o < triangles[i] * 9 + 9; o += 3) {
+						minX = Math.min(minX, vertices[o]);
+						minY = Math.min(minY, vertices[o + 1]);
+						minZ = Math.min(minZ, vertices[o + 2]);
+						maxX = Math.max(maxX, vertices[o]);
+						maxY = Math.max(maxY, vertices[o + 1]);
+						maxZ = Math.max(maxZ, vertices[o + 2]);
+					}
+				}
+				boxes[b] = minX;
+				boxes[b + 1] = minY;
+				boxes[b + 2] = minZ;
+				boxes[b + 3] = maxX;
+				boxes[b + 4] = maxY;
+				boxes[b + 5] = maxZ;
+			} else {
+				// children come after their parent, so they're already done.
+				int l = (node + 1) * 6, r = rightChild[node] * 6;
+				for (int a = 0; a < 3; a++) {
+					boxes[b + a] = Math.min(boxes[l + a], boxes[r + a]);
+					boxes[b + 3 + a] = Math.max(boxes[l + 3 + a], boxes[r + 3 + a]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the bounding box of the whole scene in the x-y plane, in the same
+	 * 			form as Pipeline.boundingBox.
+	 */
+	public Rectangle getBounds() {
+		if (rightChild.length == 0 || count[0] == 0) {
+			return new Rectangle();
+		}
+		return new Rectangle(
+				Math.round(boxes[0]),
+				Math.round(boxes[1]),
+				Math.round(boxes[3] - boxes[0]),
+				Math.round(boxes[4] - boxes[1]));
+	}
+
+	/**
+	 * @return the nearest and farthest z of any vertex in the scene, or 0 and
+	 * 			0 if it is empty.
+	 */
+	public float[] getDepthRange() {
+		if (rightChild.length == 0 || count[0] == 0) {
+			return new float[] { 0, 0 };
+		}
+		return new float[] { boxes[2], boxes[5] };
+	}
+
+	/**
+	 * Finds the triangles whose boxes overlap a rectangle of the screen, skipping
+	 * whole subtrees that are entirely outside it.
+	 *
+	 * @param area
+	 * 			The visible part of the x-y plane, e.g. the canvas.
+	 * @return the indexes (into the polygon list) of the triangles that might be
+	 * 			visible.
+	 */
+	public int[] cull(Rectangle area) {
+		int[] result = new int[triangles.length];
+		int found = 0;
+		if (rightChild.length == 0) {
+			return result;
+		}
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			int b = node * 6;
+			if (boxes[b + 3] < area.x || boxes[b] > area.x + area.width
+					|| boxes[b + 4] < area.y || boxes[b + 1] > area.y + area.height) {
+				continue;
+			}
+			if (rightChild[node] < 0) {
+				for (int i = first[node]; i < first[node] + count[node]; i++) {
+					result[found++] = triangles[i];
+				}
+			} else {
+				stack[top++] = rightChild[node];
+				stack[top++] = node + 1;
+			}
+		}
+		return Arrays.copyOf(result, found);
+	}
+
+	/**
+	 * Finds the triangles whose boxes might be inside the view of a perspective
+	 * projection, skipping whole subtrees whose boxes are entirely outside one of
+	 * the sides of the view or behind the near plane.
+	 *
+	 * @param projection
+	 * 			Takes the scene's coordinates to clip coordinates, e.g. a
+	 * 			perspective projection composed with the viewer's transform.
+	 * @return the indexes (into the polygon list) of the triangles that might be
+	 * 			visible.
+	 */
+	public int[] cull(Projection projection) {
+		int[] result = new int[triangles.length];
+		int found = 0;
+		if (rightChild.length == 0) {
+			return result;
+		}
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		float[][] corners = new float[8][];
+		while (top > 0) {
+			int node = stack[--top];
+			int b = node * 6;
+			for (int i = 0; i < 8; i++) {
+				corners[i] = projection.multiply(
+						boxes[b + ((i & 1) == 0 ? 0 : 3)],
+						boxes[b + ((i & 2) == 0 ? 1 : 4)],
+						boxes[b + ((i & 4) == 0 ? 2 : 5)]);
+			}
+			if (outside(corners)) {
+				continue;
+			}
+			if (rightChild[node] < 0) {
+				for (int i = first[node]; i < first[node] + count[node]; i++) {
+					result[found++] = triangles[i];
+				}
+			} else {
+				stack[top++] = rightChild[node];
+				stack[top++] = node + 1;
+			}
+		}
+		return Arrays.copyOf(result, found);
+	}
+
+	/**
+	 * @return whether all of a box's corners, in clip coordinates, are on the
+	 * 			wrong side of the same plane of the view.
+	 */
+	private static boolean outside(float[][] corners) {
+		boolean behind = true, left = true, right = true, below = true, above = true;
+		for (float[] c : corners) {
+			behind &= c[2] < 0;
+			left &= c[0] < -c[3];
+			right &= c[0] > c[3];
+			below &= c[1] < -c[3];
+			above &= c[1] > c[3];
+		}
+		return behind || left || right || below || above;
+	}
+
+	/**
+	 * Finds the nearest triangle under a point on the screen, by following a ray
+	 * from the viewer straight down the z-axis.
+	 *
+	 * @param x
+	 * 			The x-position of the point.
+	 * @param y
+	 * 			The y-position of the point.
+	 * @return the index (into the polygon list) of the nearest triangle covering
+	 * 			the point, or -1 if there isn't one.
+	 */
+	public int pick(float x, float y) {
+		int best = -1;
+		float bestZ = Float.POSITIVE_INFINITY;
+		if (rightChild.length == 0) {
+			return best;
+		}
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			int b = node * 6;
+			if (x < boxes[b] || x > boxes[b + 3] || y < boxes[b + 1] || y > boxes[b + 4]
+					|| boxes[b + 2] >= bestZ) {
+				continue;
+			}
+			if (rightChild[node] < 0) {
+				for (int i = first[node]; i < first[node] + count[node]; i++) {
+					float z = depthAt(vertices, triangles[i] * 9, x, y);
+					if (z < bestZ) {
+						bestZ = z;
+						best = triangles[i];
+					}
+				}
+			} else {
+				stack[top++] = rightChild[node];
+				stack[top++] = node + 1;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return the z-value of the triangle at (x, y), or positive infinity if the
+	 * 			triangle doesn't cover that point.
+	 */
+	private static float depthAt(float[] v, int o, float x, float y) {
+		float ax = v[o], ay = v[o + 1], bx = v[o + 3], by = v[o + 4], cx = v[o + 6], cy = v[o + 7];
+		float area = (bx - ax) * (cy - ay) - (cx - ax) * (by - ay);
+		if (area == 0) {
+			return Float.POSITIVE_INFINITY;
+		}
+		float u = ((bx - x) * (cy - y) - (cx - x) * (by - y)) / area;
+		float w = ((cx - x) * (ay - y) - (ax - x) * (cy - y)) / area;
+		float t = 1 - u - w;
+		if (u < 0 || w < 0 || t < 0) {
+			return Float.POSITIVE_INFINITY;
+		}
+		return u * v[o + 2] + w * v[o + 5] + t * v[o + 8];
+	}
+
+	/**
+	 * @return the number of nodes in the tree.
+	 */
+	public int getNodeCount() {
+		return rightChild.length;
+	}
+
+	/**
+	 * @return roughly how many bytes the tree takes up, including the packed
+	 * 			vertices it keeps for refitting and picking, but not counting
+	 * 			the polygons themselves.
+	 */
+	public long getMemoryBytes() {
+		// 16 bytes of header for each array, plus its contents.
+		long bytes = 5 * 16L
+				+ 4L * triangles.length
+				+ 3 * 4L * rightChild.length
+				+ 4L * boxes.length;
+		if (vertices != null) {
+			bytes += 16 + 4L * vertices.length;
+		}
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return "BVH: " + triangles.length + " triangles, " + getNodeCount() + " nodes, "
+				+ (getMemoryBytes() + 512) / 1024 + " KB";
+	}
+}
@@ -29,6 +29,27 @@ public class EdgeList {
 		this.data = new float[4][size];
 	}
 	
+	/**
+	 * Makes this edgelist over for another polygon, so one edgelist can be
+	 * used for polygon after polygon instead of making one for each. Its
+	 * arrays are only made again if the new polygon is taller than any it has
+	 * had before, so rows past the end of the new polygon may be left over
+	 * from an old one.
+	 * 
+	 * @param startY
+	 * 			The lowest y-value of the edgelist.
+	 * @param endY
+	 * 			The highest y-value of the edgelist.
+	 */
+	public void reset(int startY, int endY) {
+		this.startY = startY;
+		this.endY = endY;
+		size = endY - startY + 1;
+		if (size > data[0].length) {
+			this.data = new float[4][Math.max(size, data[0].length * 2)];
+		}
+	}
+	
 	/*
 	 * Getters and setters.
 	 */
@@ -73,6 +94,10 @@ public class EdgeList {
         data[3][y-startY] = val;
     }
 	
+	/**
+	 * @return the rows as left x, left z, right x and right z, each indexed
+	 * 			from startY. Once reset, they can be longer than the edgelist.
+	 */
 	public float[][] getData() {
 		return this.data;
 	}
@@ -0,0 +1,115 @@
+package renderer;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the last rendered frame along with everything that went into it,
+ * so that asking for a frame again with nothing changed can skip rendering
+ * entirely. Keeps count of hits and misses so the saving can be checked.
+ */
+public class FrameCache {
+
+	private Key lastKey;
+	private BufferedImage lastFrame;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Describes the state a frame was rendered from. Two keys are equal if all
+	 * of their parts are equal, so every part needs a sensible equals method.
+	 * Parts are copied, so later changes to a list passed in don't affect the
+	 * key.
+	 */
+	public static class Key {
+		private final Object[] parts;
+
+		public Key(Object... parts) {
+			this.parts = new Object[parts.length];
+			for (int i = 0; i < parts.length; i++) {
+				this.parts[i] = copyOf(parts[i]);
+			}
+		}
+
+		private static Object copyOf(Object part) {
+			if (part instanceof Iterable) {
+				List<Object> list = new ArrayList<>();
+				for (Object o : (Iterable<?>) part) {
+					list.add(o);
+				}
+				return list;
+			}
+			if (part instanceof int[]) {
+				return ((int[]) part).clone();
+			}
+			if (part instanceof float[]) {
+				return ((float[]) part).clone();
+			}
+			return part;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			return Arrays.deepEquals(parts, ((Key) obj).parts);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.deepHashCode(parts);
+		}
+	}
+
+	/**
+	 * Looks up the frame for the given state.
+	 *
+	 * @param key
+	 * 			The state the frame would be rendered from.
+	 * @return the cached frame if the state hasn't changed since it was
+	 * 			stored, or null if it needs to be rendered again.
+	 */
+	public synchronized BufferedImage get(Key key) {
+		if (lastFrame != null && key.equals(lastKey)) {
+			hits.incrementAndGet();
+			return lastFrame;
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Stores a freshly rendered frame, replacing whatever was cached before.
+	 */
+	public synchronized void put(Key key, BufferedImage frame) {
+		lastKey = key;
+		lastFrame = frame;
+	}
+
+	/**
+	 * Drops the cached frame, e.g. when a new scene is loaded.
+	 */
+	public synchronized void invalidate() {
+		lastKey = null;
+		lastFrame = null;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public String toString() {
+		return "frame cache: " + getHits() + " hits, " + getMisses() + " misses";
+	}
+}
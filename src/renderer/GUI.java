@@ -10,6 +10,8 @@ import java.awt.KeyboardFocusManager;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -51,17 +53,54 @@ public abstract class GUI {
 	protected abstract void onKeyPress(KeyEvent ev);
 
 	/**
-	 * Is called every time the drawing canvas is drawn. This should return a
-	 * BufferedImage that is your render of the scene.
+	 * Is called every time a new frame is needed. This should return a
+	 * BufferedImage that is your render of the scene. It runs on the render
+	 * thread, as do onLoad, onKeyPress and the light source methods, so none
+	 * of them ever run at the same time as each other.
 	 */
 	protected abstract BufferedImage render();
 
 	/**
 	 * Forces a redraw of the drawing canvas. This is called for you, so you
-	 * don't need to call this unless you modify this GUI.
+	 * don't need to call this unless you modify this GUI. The new frame is
+	 * drawn on the render thread, and the canvas is repainted once it is done.
 	 */
 	public void redraw() {
-		frame.repaint();
+		renderLoop.requestFrame();
+	}
+
+	/**
+	 * Shows an image on the canvas straight away, before render() returns,
+	 * e.g. a rough version of the frame while the full one is drawn. Should
+	 * only be called from render().
+	 */
+	protected void showProgress(BufferedImage image) {
+		renderLoop.publish(image);
+	}
+
+	/**
+	 * Runs a task on the render thread before the next frame, as key presses
+	 * are, e.g. to swap in something made on another thread.
+	 */
+	protected void runOnRenderThread(Runnable task) {
+		renderLoop.submit(task);
+	}
+
+	/**
+	 * @return whether another frame has been asked for since render() was
+	 * 			called, e.g. by a key press, in which case the frame being drawn
+	 * 			is already out of date and needn't be finished.
+	 */
+	protected boolean isFrameOutOfDate() {
+		return renderLoop.isFrameRequested();
+	}
+
+	/**
+	 * Is called when the user clicks on the drawing canvas, and is passed the
+	 * MouseEvent, whose getX() and getY() give the pixel that was clicked. Does
+	 * nothing unless overridden.
+	 */
+	protected void onMouseClick(MouseEvent ev) {
 	}
 
 	/**
@@ -76,11 +115,13 @@ public abstract class GUI {
 
 	/**
 	 * Returns the values of the three sliders used for setting the ambient
-	 * light of the scene. The returned array in the form [R, G, B] where each
-	 * value is between 0 and 255.
+	 * light of the scene, as they were when the apply button was last pressed.
+	 * The returned array in the form [R, G, B] where each value is between 0
+	 * and 255, and must not be changed. It is safe to call from the render
+	 * thread, as the sliders themselves are only read on the event thread.
 	 */
 	public int[] getAmbientLight() {
-		return new int[] { redAmbient.getValue(), greenAmbient.getValue(), blueAmbient.getValue() };
+		return ambientLight;
 	}
 
 	public static final int CANVAS_WIDTH = 600;
@@ -93,9 +134,12 @@ public abstract class GUI {
 	// --------------------------------------------------------------------
 
 	private JFrame frame;
+	private RenderLoop renderLoop;
 	private final JSlider redAmbient = new JSlider(JSlider.HORIZONTAL, 0, 255, 128);
 	private final JSlider greenAmbient = new JSlider(JSlider.HORIZONTAL, 0, 255, 128);
 	private final JSlider blueAmbient = new JSlider(JSlider.HORIZONTAL, 0, 255, 128);
+	/** The slider values when last applied, replaced whole rather than changed. */
+	private volatile int[] ambientLight = { 128, 128, 128 };
 
 	private static final Dimension DRAWING_SIZE = new Dimension(CANVAS_WIDTH, CANVAS_HEIGHT);
 	private static final Dimension CONTROLS_SIZE = new Dimension(150, 600);
@@ -117,9 +161,15 @@ public abstract class GUI {
 
 		// set up the drawing canvas, hook it into the render() method, and give
 		// it a nice default if render() returns null.
-		JComponent drawing = new JComponent() {
+		// rendering happens on its own thread, so painting just draws
+		// whichever frame was finished last.
+		final JComponent drawing = new JComponent() {
 			protected void paintComponent(Graphics g) {
-				BufferedImage image = render();
+				BufferedImage image = renderLoop.getFrontBuffer();
+				if (image == null && renderLoop.getFramesCompleted() == 0) {
+					// nothing has been drawn yet, so ask for the first frame.
+					renderLoop.requestFrame();
+				}
 				if (image == null) {
 					g.setColor(Color.WHITE);
 					g.fillRect(0, 0, DRAWING_SIZE.width, DRAWING_SIZE.height);
@@ -131,6 +181,27 @@ public abstract class GUI {
 				}
 			}
 		};
+		renderLoop = new RenderLoop(new RenderLoop.FrameSource() {
+			public BufferedImage render() {
+				return GUI.this.render();
+			}
+		}, new Runnable() {
+			public void run() {
+				drawing.repaint();
+			}
+		});
+
+		// clicks are handled on the render thread, like key presses.
+		drawing.addMouseListener(new MouseAdapter() {
+			public void mouseClicked(final MouseEvent ev) {
+				renderLoop.submit(new Runnable() {
+					public void run() {
+						onMouseClick(ev);
+					}
+				});
+			}
+		});
+
 		// fix its size
 		drawing.setPreferredSize(DRAWING_SIZE);
 		drawing.setMinimumSize(DRAWING_SIZE);
@@ -149,13 +220,16 @@ public abstract class GUI {
 
 				// run the file chooser and check the user didn't hit cancel
 				if (fileChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
-					File file = fileChooser.getSelectedFile();
-					try {
-						onLoad(file);
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
-					redraw();
+					final File file = fileChooser.getSelectedFile();
+					renderLoop.submit(new Runnable() {
+						public void run() {
+							try {
+								onLoad(file);
+							} catch (IOException e) {
+								e.printStackTrace();
+							}
+						}
+					});
 				}
 			}
 		});
@@ -163,6 +237,7 @@ public abstract class GUI {
 		JButton applySliders = new JButton("Apply Colour");
 		applySliders.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent ev) {
+				ambientLight = new int[] { redAmbient.getValue(), greenAmbient.getValue(), blueAmbient.getValue() };
 				redraw();
 			}
 		});
@@ -170,16 +245,22 @@ public abstract class GUI {
 		JButton newLightSource = new JButton("Add Light");
 		newLightSource.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent ev) {
-				addNewLightSource();
-				redraw();
+				renderLoop.submit(new Runnable() {
+					public void run() {
+						addNewLightSource();
+					}
+				});
 			}
 		});
 		
 		JButton removeLightSource = new JButton("Remove Light");
 		removeLightSource.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent ev) {
-				removeLightSource();
-				redraw();
+				renderLoop.submit(new Runnable() {
+					public void run() {
+						removeLightSource();
+					}
+				});
 			}
 		});
 		// we have to put the button in its own panel to ensure it fills the
@@ -215,10 +296,16 @@ public abstract class GUI {
 		KeyboardFocusManager manager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
 		manager.addKeyEventDispatcher(new KeyEventDispatcher() {
 			@Override
-			public boolean dispatchKeyEvent(KeyEvent ev) {
+			public boolean dispatchKeyEvent(final KeyEvent ev) {
+				// key presses are handed to the render thread, so a held key
+				// that repeats faster than frames can be drawn just piles up
+				// and gets applied all at once before the next frame.
 				if (ev.getID() == KeyEvent.KEY_PRESSED) {
-					onKeyPress(ev);
-					redraw();
+					renderLoop.submit(new Runnable() {
+						public void run() {
+							onKeyPress(ev);
+						}
+					});
 				}
 				return true;
 			}
@@ -244,6 +331,7 @@ public abstract class GUI {
 		frame.add(controls);
 
 		frame.pack();
+		renderLoop.start();
 		frame.setVisible(true);
 	}
 
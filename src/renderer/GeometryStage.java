@@ -0,0 +1,291 @@
+package renderer;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import renderer.Scene.Polygon;
+
+/**
+ * Does everything to a frame's polygons that comes before filling them in,
+ * i.e. hiding those facing away, shading and finding edge lists, on several
+ * threads at once.
+ *
+ * The polygons are split into chunks of CHUNK, and each chunk is a fork-join
+ * task with a list of its own for the triangles it keeps, so the threads
+ * never share anything they write. Once every chunk is done their lists are
+ * joined up in the order the polygons were given, so filling in the batch
+ * gives the same frame as the one-thread Pipeline.drawPolygons and
+ * drawPolygonsInPerspective.
+ *
+ * The chunks' lists, and the edge lists in them, are kept from frame to frame
+ * and filled in again, so a frame makes next to nothing new once the stage has
+ * seen one as big. That means the batch returned is only good until the next
+ * call, and a stage can only work on one frame at a time.
+ */
+public class GeometryStage {
+
+	/** How many polygons each task works through. */
+	public static final int CHUNK = 2048;
+
+	private final ForkJoinPool pool;
+	// kept from the last frame to be filled in again.
+	private Batch[] chunks = new Batch[0];
+	private final Batch joined = new Batch(0);
+
+	/**
+	 * @param pool
+	 * 			The threads to work on.
+	 */
+	public GeometryStage(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Hides, shades and finds the edge lists of polygons looking straight down
+	 * the z-axis, as Pipeline.drawPolygons does.
+	 *
+	 * @param view
+	 * 			The scene as seen from the camera, already on the canvas.
+	 * @param indices
+	 * 			Which of the polygons to work through, in order.
+	 * @param lights
+	 * 			The light sources, relative to the model, or null to leave the
+	 * 			triangles unshaded, e.g. for a VisibilityBuffer.
+	 * @param ambientLight
+	 * 			The colour of the ambient light, or null if there are no lights.
+	 * @return the triangles to fill in, in order, until the next call.
+	 */
+	public Batch process(ViewBuffer view, int[] indices, LightManager lights, Color ambientLight) {
+		return run(view, indices, null, null, 0, 0, lights, ambientLight);
+	}
+
+	/**
+	 * Hides, shades, projects and finds the edge lists of polygons in
+	 * perspective, as Pipeline.drawPolygonsInPerspective does.
+	 *
+	 * @param view
+	 * 			The scene as seen from the camera, before the perspective
+	 * 			camera is placed.
+	 * @param indices
+	 * 			Which of the polygons to work through, in order.
+	 * @param eye
+	 * 			The transform from the view's space to the perspective camera's.
+	 * @param projection
+	 * 			The perspective projection onto the canvas.
+	 * @param width
+	 * 			The width of the canvas, which polygons are clipped to.
+	 * @param height
+	 * 			The height of the canvas.
+	 * @param lights
+	 * 			The light sources, or null to leave the triangles unshaded.
+	 * @param ambientLight
+	 * 			The colour of the ambient light, or null if there are no lights.
+	 * @return the triangles to fill in, in order, until the next call. A
+	 * 			polygon clipped into several triangles has them all, one after
+	 * 			another.
+	 */
+	public Batch processInPerspective(ViewBuffer view, int[] indices, Transform eye, Projection projection, int width,
+			int height, LightManager lights, Color ambientLight) {
+		return run(view, indices, eye, projection, width, height, lights, ambientLight);
+	}
+
+	private Batch run(ViewBuffer view, int[] indices, Transform eye, Projection projection, int width, int height,
+			LightManager lights, Color ambientLight) {
+		int count = (indices.length + CHUNK - 1) / CHUNK;
+		if (count > chunks.length) {
+			chunks = Arrays.copyOf(chunks, count);
+		}
+		if (count > 0) {
+			pool.invoke(new ChunkTask(view, indices, eye, projection, width, height, lights,
+					ambientLight == null ? 0 : ambientLight.getRGB(), chunks, 0, count));
+		}
+		joined.clear();
+		joined.projection = eye == null ? null : projection;
+		for (int i = 0; i < count; i++) {
+			joined.append(chunks[i]);
+		}
+		return joined;
+	}
+
+	/**
+	 * Triangles ready to be filled in: which polygon each came from, its
+	 * colour and its edge list.
+	 */
+	public static class Batch {
+		private int[] ids;
+		private int[] colours;
+		private EdgeList[] edges;
+		private int size;
+		private Projection projection;
+
+		Batch(int capacity) {
+			ids = new int[capacity];
+			colours = new int[capacity];
+			edges = new EdgeList[capacity];
+		}
+
+		/** Empties the batch, keeping its edge lists to fill in again. */
+		void clear() {
+			size = 0;
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > ids.length) {
+				capacity = Math.max(capacity, Math.max(16, ids.length * 2));
+				ids = Arrays.copyOf(ids, capacity);
+				colours = Arrays.copyOf(colours, capacity);
+				edges = Arrays.copyOf(edges, capacity);
+			}
+		}
+
+		/**
+		 * @return the edge list to fill in for the next triangle, which is
+		 * 			one from an earlier frame if there is one.
+		 */
+		EdgeList next() {
+			ensureCapacity(size + 1);
+			if (edges[size] == null) {
+				edges[size] = new EdgeList(0, 0);
+			}
+			return edges[size];
+		}
+
+		/** Adds the triangle whose edge list was last given by next. */
+		void add(int id, int colour) {
+			ids[size] = id;
+			colours[size] = colour;
+			size++;
+		}
+
+		/** Adds another batch's triangles after this one's. */
+		void append(Batch other) {
+			ensureCapacity(size + other.size);
+			System.arraycopy(other.ids, 0, ids, size, other.size);
+			System.arraycopy(other.colours, 0, colours, size, other.size);
+			System.arraycopy(other.edges, 0, edges, size, other.size);
+			size += other.size;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @return the projection the triangles were projected in perspective
+		 * 			by, so their depths run from 0 at the near plane to 1 at the
+		 * 			far, or null if they weren't.
+		 */
+		public Projection getProjection() {
+			return projection;
+		}
+
+		/** @return the index of the polygon the i-th triangle came from. */
+		public int getId(int i) {
+			return ids[i];
+		}
+
+		/** @return the colour of the i-th triangle, packed as by Color.getRGB. */
+		public int getColour(int i) {
+			return colours[i];
+		}
+
+		public EdgeList getEdges(int i) {
+			return edges[i];
+		}
+	}
+
+	/**
+	 * Works through a run of chunks, splitting it in half while there's more
+	 * than one.
+	 */
+	private static class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final ViewBuffer view;
+		private final int[] indices;
+		private final Transform eye;
+		private final Projection projection;
+		private final int width, height;
+		private final LightManager lights;
+		private final int ambient;
+		private final Batch[] chunks;
+		private final int lo, hi;
+
+		ChunkTask(ViewBuffer view, int[] indices, Transform eye, Projection projection, int width, int height,
+				LightManager lights, int ambient, Batch[] chunks, int lo, int hi) {
+			this.view = view;
+			this.indices = indices;
+			this.eye = eye;
+			this.projection = projection;
+			this.width = width;
+			this.height = height;
+			this.lights = lights;
+			this.ambient = ambient;
+			this.chunks = chunks;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				ChunkTask right = new ChunkTask(view, indices, eye, projection, width, height, lights, ambient, chunks,
+						mid, hi);
+				right.fork();
+				new ChunkTask(view, indices, eye, projection, width, height, lights, ambient, chunks, lo, mid)
+						.compute();
+				right.join();
+				return;
+			}
+			int from = lo * CHUNK, to = Math.min(from + CHUNK, indices.length);
+			if (chunks[lo] == null) {
+				chunks[lo] = new Batch(to - from);
+			}
+			Batch batch = chunks[lo];
+			batch.clear();
+			if (eye == null) {
+				straight(batch, from, to);
+			} else {
+				perspective(batch, from, to);
+			}
+		}
+
+		private void straight(Batch batch, int from, int to) {
+			List<Polygon> polygons = view.getSource().getPolygons();
+			Vector3D viewer = view.getViewer();
+			float[] vertices = view.getVertices();
+			for (int k = from; k < to; k++) {
+				int i = indices[k];
+				if (!Pipeline.isHidden(vertices, i * 9)) {
+					int c = lights == null ? 0 : lights.getShadingRGB(polygons.get(i), ambient, viewer, -1);
+					Pipeline.computeEdgeList(vertices, i * 9, batch.next());
+					batch.add(i, c);
+				}
+			}
+		}
+
+		private void perspective(Batch batch, int from, int to) {
+			List<Polygon> polygons = view.getSource().getPolygons();
+			Vector3D viewer = view.getViewer();
+			float[] v = view.getVertices();
+			Pipeline.Projector projector = new Pipeline.Projector(eye, projection, width, height);
+			float[] triangles = projector.getTriangles();
+			for (int k = from; k < to; k++) {
+				int i = indices[k];
+				int count = projector.project(v, i * 9);
+				if (count == 0) {
+					continue;
+				}
+				int c = lights == null ? 0 : lights.getShadingRGB(polygons.get(i), ambient, viewer, -1);
+				for (int t = 0; t < count; t++) {
+					Pipeline.computeEdgeList(triangles, t * 9, batch.next());
+					batch.add(i, c);
+				}
+			}
+		}
+	}
+}
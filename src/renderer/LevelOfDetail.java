@@ -0,0 +1,271 @@
+package renderer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import renderer.Scene.Polygon;
+
+/**
+ * Holds a model at several levels of detail, each with about half the triangles
+ * of the one before, and picks the coarsest level that still looks the same
+ * at the size the model is drawn on screen.
+ *
+ * Level 0 is always the model as loaded, and is the only level that holds the
+ * light sources. Every level has its own BVH and meshlets. The levels are never changed
+ * once built, so each view of them (see ViewBuffer) moves its own copy of the
+ * vertices instead.
+ *
+ * Levels rebuilt after a change to the model (see rebuild) can be stale,
+ * i.e. have new polygons at level 0 but still the simplified levels of the
+ * model before, until resimplify is called.
+ */
+public class LevelOfDetail {
+
+	/**
+	 * The furthest, in pixels, that a simplified level is allowed to stray from
+	 * the real model, going by the simplifier's estimate of the error.
+	 */
+	public static final float MAX_PIXEL_ERROR = 0.5f;
+
+	/** Models are not simplified below this many triangles. */
+	private static final int MIN_TRIANGLES = 64;
+
+	private static final int MAX_LEVELS = 5;
+
+	private final Scene[] levels;
+	private final BVH[] bvhs;
+	private final Meshlets[] meshlets;
+	// how far each level may be from the model as loaded, in its original units.
+	private final float[] errors;
+	// whether the simplified levels are of an older version of level 0.
+	private final boolean stale;
+
+	/**
+	 * @param bvhs
+	 * 			The BVHs of the levels, with null for those to build.
+	 * @param meshlets
+	 * 			The meshlets of the levels, with null for those to build.
+	 */
+	private LevelOfDetail(List<Scene> levels, List<Float> errors, BVH[] bvhs, Meshlets[] meshlets, boolean stale) {
+		int n = levels.size();
+		this.levels = levels.toArray(new Scene[n]);
+		this.bvhs = bvhs;
+		this.meshlets = meshlets;
+		this.errors = new float[n];
+		this.stale = stale;
+		for (int i = 0; i < n; i++) {
+			if (bvhs[i] == null) {
+				bvhs[i] = BVH.build(this.levels[i].getPolygons());
+			}
+			if (meshlets[i] == null) {
+				meshlets[i] = Meshlets.build(this.levels[i].getPolygons());
+			}
+			this.errors[i] = errors.get(i);
+		}
+	}
+
+	/**
+	 * Simplifies the model into a chain of levels, each with half the triangles
+	 * of the last, stopping once they get small.
+	 *
+	 * @param polygons
+	 * 			The model as loaded.
+	 * @param lights
+	 * 			The light sources, which are kept with level 0.
+	 * @return the levels of detail of the model.
+	 */
+	public static LevelOfDetail build(List<Polygon> polygons, ArrayList<Vector3D> lights) {
+		List<Scene> levels = new ArrayList<>();
+		List<Float> errors = new ArrayList<>();
+		levels.add(new Scene(polygons, lights));
+		errors.add(0f);
+		simplify(polygons, levels, errors);
+		return new LevelOfDetail(levels, errors, new BVH[levels.size()], new Meshlets[levels.size()], false);
+	}
+
+	/**
+	 * Builds the levels of a model that has been changed from one that was
+	 * built before, e.g. by editing and reloading its file, reusing what
+	 * hasn't changed.
+	 *
+	 * If no polygon has changed, the old levels are all kept. If most are new,
+	 * everything is built again. Otherwise, if the polygons are only changed
+	 * in place, so there are as many as before and each is new or where it
+	 * was, level 0 keeps the tree of its old BVH, refitted, and its old
+	 * meshlets, refitted only where a polygon has changed. If polygons have
+	 * been added, removed or moved, e.g. by adding or removing a line of the
+	 * file, the BVH is built again, as its tree holds the polygons' places,
+	 * but the meshlets follow each polygon to its new place (see
+	 * Meshlets.remap), so clusters that kept all their polygons are kept.
+	 * Simplifying takes far longer than the rest, and the simplified levels
+	 * depend on the whole model, so unless the polygons are only in another
+	 * order, the old ones are kept and the levels returned are stale.
+	 *
+	 * @param previous
+	 * 			The levels of the model before it changed.
+	 * @param polygons
+	 * 			The changed model.
+	 * @param lights
+	 * 			The light sources, which are kept with level 0.
+	 * @param previousIndex
+	 * 			For each polygon, where the same polygon was in the previous
+	 * 			model's level 0, or -1 if it is new.
+	 * @return the levels of detail of the changed model.
+	 */
+	public static LevelOfDetail rebuild(LevelOfDetail previous, List<Polygon> polygons, ArrayList<Vector3D> lights,
+			int[] previousIndex) {
+		List<Polygon> old = previous.levels[0].getPolygons();
+		boolean[] changed = new boolean[polygons.size()];
+		int added = 0;
+		boolean moved = old.size() != polygons.size();
+		for (int i = 0; i < changed.length; i++) {
+			changed[i] = previousIndex[i] < 0;
+			if (changed[i]) {
+				added++;
+			} else if (previousIndex[i] != i) {
+				moved = true;
+			}
+		}
+		// the old tree and clusters would fit a mostly new model badly.
+		if (added > polygons.size() / 2) {
+			return build(polygons, lights);
+		}
+		// whether the polygons are all the same as before, if maybe in another
+		// order.
+		boolean same = added == 0 && old.size() == polygons.size();
+		if (same && !moved && previous.levels[0].getLights() == lights) {
+			return previous;
+		}
+
+		List<Scene> levels = new ArrayList<>();
+		List<Float> errors = new ArrayList<>();
+		levels.add(new Scene(polygons, lights));
+		errors.add(0f);
+		for (int i = 1; i < previous.levels.length; i++) {
+			levels.add(previous.levels[i]);
+			errors.add(previous.errors[i]);
+		}
+		BVH[] bvhs = previous.bvhs.clone();
+		Meshlets[] meshlets = previous.meshlets.clone();
+		if (moved) {
+			bvhs[0] = null;
+			meshlets[0] = previous.meshlets[0].remap(polygons, previousIndex);
+		} else if (!same) {
+			bvhs[0] = previous.bvhs[0].copy();
+			bvhs[0].refit(polygons);
+			meshlets[0] = previous.meshlets[0].refit(polygons, changed);
+		}
+		return new LevelOfDetail(levels, errors, bvhs, meshlets, same ? previous.stale : previous.levels.length > 1);
+	}
+
+	/**
+	 * Simplifies level 0 again, after rebuild has left the simplified levels
+	 * stale, keeping level 0 as it is.
+	 *
+	 * @return the levels with new simplified levels, or these levels if they
+	 * 			aren't stale.
+	 */
+	public LevelOfDetail resimplify() {
+		if (!stale) {
+			return this;
+		}
+		List<Scene> fresh = new ArrayList<>();
+		List<Float> freshErrors = new ArrayList<>();
+		fresh.add(levels[0]);
+		freshErrors.add(0f);
+		simplify(levels[0].getPolygons(), fresh, freshErrors);
+		BVH[] freshBVHs = new BVH[fresh.size()];
+		Meshlets[] freshMeshlets = new Meshlets[fresh.size()];
+		freshBVHs[0] = bvhs[0];
+		freshMeshlets[0] = meshlets[0];
+		return new LevelOfDetail(fresh, freshErrors, freshBVHs, freshMeshlets, false);
+	}
+
+	/**
+	 * @return whether the simplified levels are still those of the model
+	 * 			before it was last changed, see resimplify.
+	 */
+	public boolean isStale() {
+		return stale;
+	}
+
+	/**
+	 * Adds the simplified levels of a model after level 0.
+	 */
+	private static void simplify(List<Polygon> polygons, List<Scene> levels, List<Float> errors) {
+		List<Integer> targets = new ArrayList<>();
+		for (int target = polygons.size() / 2; target >= MIN_TRIANGLES
+				&& targets.size() < MAX_LEVELS - 1; target /= 2) {
+			targets.add(target);
+		}
+		if (!targets.isEmpty()) {
+			int[] counts = new int[targets.size()];
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = targets.get(i);
+			}
+			int previous = polygons.size();
+			for (MeshSimplifier.Result r : new MeshSimplifier(polygons).simplify(counts)) {
+				// stop if the mesh couldn't be simplified any further.
+				if (r.polygons.size() >= previous) {
+					break;
+				}
+				previous = r.polygons.size();
+				levels.add(new Scene(r.polygons, new ArrayList<Vector3D>()));
+				errors.add(r.error);
+			}
+		}
+	}
+
+	/**
+	 * Picks the coarsest level whose estimated error is still under
+	 * MAX_PIXEL_ERROR when the model is drawn at the given size.
+	 *
+	 * @param pixelsPerUnit
+	 * 			How many pixels one unit of the model takes up on screen, e.g.
+	 * 			ViewBuffer.getScale of a view of the smallest level.
+	 * @return the index of the level to draw.
+	 */
+	public int selectLevel(float pixelsPerUnit) {
+		for (int i = levels.length - 1; i > 0; i--) {
+			if (errors[i] * pixelsPerUnit <= MAX_PIXEL_ERROR) {
+				return i;
+			}
+		}
+		return 0;
+	}
+
+	public int getLevelCount() {
+		return levels.length;
+	}
+
+	public Scene getLevel(int level) {
+		return levels[level];
+	}
+
+	public BVH getBVH(int level) {
+		return bvhs[level];
+	}
+
+	public Meshlets getMeshlets(int level) {
+		return meshlets[level];
+	}
+
+	/**
+	 * @return roughly how far the level is from the model as loaded, in the
+	 * 			units the model was loaded in, as MeshSimplifier.Result.error.
+	 */
+	public float getError(int level) {
+		return errors[level];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder("levels of detail:");
+		for (int i = 0; i < levels.length; i++) {
+			str.append("\n  ").append(i).append(": ")
+					.append(levels[i].getPolygons().size()).append(" triangles, error ")
+					.append(errors[i]).append(", ").append(bvhs[i]);
+		}
+		return str.toString();
+	}
+}
@@ -0,0 +1,411 @@
+package renderer;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import renderer.Scene.Polygon;
+
+/**
+ * Cuts the light sources down to the few that matter before anything is
+ * shaded, so that shading a polygon costs about the same however many lights
+ * have been added.
+ *
+ * Lights that add nothing, being black or having no direction, are dropped.
+ * Lights within a small angle of each other are merged into one light, which
+ * lights a surface facing all of them the same as they did together, exactly
+ * so if they are the same colour. If more lights are left than the budget
+ * allows, the weakest are merged into whichever of the strongest is nearest in
+ * direction, which keeps all of their light but puts it in the wrong place.
+ *
+ * The lights are only combined again when they change, so from one frame to
+ * the next all it costs is comparing the lists. Once combined, the manager is
+ * only read, so it can shade from several threads at once.
+ */
+public class LightManager {
+
+	/** How close in direction two lights must be to be merged, in radians. */
+	public static final float DEFAULT_MERGE_ANGLE = (float) Math.toRadians(5);
+
+	/** How many lights are shaded with at most, unless told otherwise. */
+	public static final int DEFAULT_BUDGET = 16;
+
+	private final float mergeCos;
+	private final int budget;
+	// false to keep every light as it is, in the same order.
+	private final boolean combine;
+
+	// the lights last combined, to tell whether they have changed.
+	private List<Vector3D> lastSources;
+	private List<Color> lastColours;
+	private int given;
+	private int rebuilds;
+
+	// the combined lights: a unit direction and an intensity for each, where an
+	// intensity of 1 is a full channel. Merged lights can be brighter than 1.
+	private ArrayList<Vector3D> directions = new ArrayList<>();
+	private float[] unit = new float[0];
+	private float[] intensity = new float[0];
+	private int count;
+
+	/**
+	 * @param mergeAngle
+	 * 			How close in direction two lights must be to be merged, in
+	 * 			radians. 0 only merges lights pointing exactly the same way.
+	 * @param budget
+	 * 			The most lights to shade with. Any more are merged into the
+	 * 			strongest of them.
+	 */
+	public LightManager(float mergeAngle, int budget) {
+		this(mergeAngle, budget, true);
+	}
+
+	private LightManager(float mergeAngle, int budget, boolean combine) {
+		if (budget < 1) {
+			throw new IllegalArgumentException("budget must be at least 1");
+		}
+		this.mergeCos = (float) Math.cos(mergeAngle);
+		this.budget = budget;
+		this.combine = combine;
+	}
+
+	/**
+	 * Makes a manager with the default merge angle and budget.
+	 */
+	public LightManager() {
+		this(DEFAULT_MERGE_ANGLE, DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Makes a manager that shades with the given lights as they are, keeping
+	 * every one in the same order, so that light i is still light i, e.g. for
+	 * matching up shadow maps.
+	 */
+	public static LightManager exact(List<Vector3D> lightSources, List<Color> lightColours) {
+		LightManager manager = new LightManager(0, Integer.MAX_VALUE, false);
+		manager.update(lightSources, lightColours);
+		return manager;
+	}
+
+	/**
+	 * Combines the given lights, unless they are the same as last time.
+	 *
+	 * @param lightSources
+	 * 			The directions of the light sources, pointing from the model
+	 * 			towards each light.
+	 * @param lightColours
+	 * 			The colour of each light source.
+	 */
+	public void update(List<Vector3D> lightSources, List<Color> lightColours) {
+		if (lastSources != null && lastSources.equals(lightSources) && lastColours.equals(lightColours)) {
+			return;
+		}
+		lastSources = new ArrayList<>(lightSources);
+		lastColours = new ArrayList<>(lightColours);
+		given = Math.min(lightSources.size(), lightColours.size());
+		rebuilds++;
+
+		// the lights that add something, strongest first, so that merged lights
+		// take their direction from the brightest of them.
+		List<Light> lights = new ArrayList<>(given);
+		for (int i = 0; i < given; i++) {
+			Vector3D d = lightSources.get(i);
+			Color c = lightColours.get(i);
+			if (!combine || d.mag() > 0 && (c.getRGB() & 0xFFFFFF) != 0) {
+				lights.add(new Light(d.unitVector(), c));
+			}
+		}
+		if (!combine) {
+			store(lights);
+			return;
+		}
+		Collections.sort(lights, STRONGEST_FIRST);
+
+		// each light joins the group whose first light is nearest to it, if that
+		// is close enough, or starts a group of its own.
+		List<Light> groups = new ArrayList<>();
+		for (Light light : lights) {
+			Light group = nearest(groups, light);
+			if (group != null && group.dot(light) >= mergeCos) {
+				group.add(light);
+			} else {
+				groups.add(light);
+			}
+		}
+
+		// over budget, the weakest groups are merged into the strongest.
+		if (groups.size() > budget) {
+			Collections.sort(groups, STRONGEST_FIRST);
+			List<Light> kept = new ArrayList<>(groups.subList(0, budget));
+			for (Light group : groups.subList(budget, groups.size())) {
+				nearest(kept, group).add(group);
+			}
+			groups = kept;
+		}
+		store(groups);
+	}
+
+	/**
+	 * Keeps the direction and intensity of each group of lights, leaving out
+	 * any that add nothing unless every light is being kept.
+	 */
+	private void store(List<Light> groups) {
+		directions = new ArrayList<>(groups.size());
+		unit = new float[groups.size() * 3];
+		intensity = new float[groups.size() * 3];
+		count = 0;
+		for (Light group : groups) {
+			unit[count * 3] = group.x;
+			unit[count * 3 + 1] = group.y;
+			unit[count * 3 + 2] = group.z;
+			// lights pointing opposite ways can cancel out completely.
+			float length = Vector3D.normalize(unit, count * 3);
+			if (length <= 0 && combine) {
+				continue;
+			}
+			// the intensity is scaled by how much the directions cancel, so that
+			// a surface facing every light in the group gets the same light.
+			float scale = length > 0 ? length / group.weight / 255 : 0;
+			intensity[count * 3] = group.red * scale;
+			intensity[count * 3 + 1] = group.green * scale;
+			intensity[count * 3 + 2] = group.blue * scale;
+			directions.add(new Vector3D(unit[count * 3], unit[count * 3 + 1], unit[count * 3 + 2]));
+			count++;
+		}
+	}
+
+	/**
+	 * Finds the group whose direction is nearest to a light's.
+	 *
+	 * @return the nearest group, or null if there are none.
+	 */
+	private static Light nearest(List<Light> groups, Light light) {
+		Light best = null;
+		float bestDot = Float.NEGATIVE_INFINITY;
+		for (Light group : groups) {
+			float dot = group.dot(light);
+			if (dot > bestDot) {
+				best = group;
+				bestDot = dot;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * One light, or a group of lights being merged. The direction is the sum of
+	 * the lights' unit directions weighted by how bright they are, and the
+	 * colour is the sum of their colours, both out of 255.
+	 */
+	private static class Light {
+		float x, y, z;
+		float red, green, blue;
+		float weight;
+		// the direction of the first light in the group, which the others are
+		// compared against.
+		final float ux, uy, uz;
+
+		Light(Vector3D unit, Color colour) {
+			red = colour.getRed();
+			green = colour.getGreen();
+			blue = colour.getBlue();
+			weight = red + green + blue;
+			x = unit.x * weight;
+			y = unit.y * weight;
+			z = unit.z * weight;
+			ux = unit.x;
+			uy = unit.y;
+			uz = unit.z;
+		}
+
+		float dot(Light other) {
+			return ux * other.ux + uy * other.uy + uz * other.uz;
+		}
+
+		void add(Light other) {
+			x += other.x;
+			y += other.y;
+			z += other.z;
+			red += other.red;
+			green += other.green;
+			blue += other.blue;
+			weight += other.weight;
+		}
+	}
+
+	private static final Comparator<Light> STRONGEST_FIRST = new Comparator<Light>() {
+		public int compare(Light a, Light b) {
+			return Float.compare(b.weight, a.weight);
+		}
+	};
+
+	/**
+	 * Computes the colour of a polygon from the combined lights, the same way
+	 * as Pipeline.getShading, with no specular highlights.
+	 *
+	 * @param poly
+	 * 			The polygon whose shading is being calculated.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @return the total shading of the polygon, as a colour.
+	 */
+	public Color getShading(Polygon poly, Color ambientLight) {
+		return getShading(poly, ambientLight, null, -1);
+	}
+
+	/**
+	 * Computes the colour of a polygon from the combined lights, including the
+	 * highlights of shiny polygons as seen from the given direction.
+	 *
+	 * @param poly
+	 * 			The polygon whose shading is being calculated.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @param viewer
+	 * 			The unit direction from the model towards the viewer, e.g. from
+	 * 			ViewBuffer.getViewer, or null to leave out highlights.
+	 * @return the total shading of the polygon, as a colour.
+	 */
+	public Color getShading(Polygon poly, Color ambientLight, Vector3D viewer) {
+		return getShading(poly, ambientLight, viewer, -1);
+	}
+
+	/**
+	 * Computes the colour of a polygon with some of the combined lights blocked,
+	 * e.g. by a shadow map.
+	 *
+	 * Shiny polygons get a Blinn-Phong highlight from each light that reaches
+	 * them: the light's colour times the cosine of the angle between the normal
+	 * and the half-way direction between the light and the viewer, raised to
+	 * the polygon's shininess. The highlight is the colour of the light rather
+	 * than of the polygon, so it isn't scaled by the reflectance.
+	 *
+	 * @param poly
+	 * 			The polygon whose shading is being calculated.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @param viewer
+	 * 			The unit direction from the model towards the viewer, or null to
+	 * 			leave out highlights.
+	 * @param litMask
+	 * 			Bit i is set if combined light i reaches the polygon. Lights from
+	 * 			the 32nd on always reach it.
+	 * @return the total shading of the polygon, given the lights that reach
+	 * 			it, as a colour.
+	 */
+	public Color getShading(Polygon poly, Color ambientLight, Vector3D viewer, int litMask) {
+		return new Color(getShadingRGB(poly, ambientLight.getRGB(), viewer, litMask));
+	}
+
+	/**
+	 * Computes the colour of a polygon as above, with the colours packed into
+	 * ints as by Color.getRGB, so that drawing a frame makes no Colors.
+	 *
+	 * @param poly
+	 * 			The polygon whose shading is being calculated.
+	 * @param ambientLight
+	 * 			The colour of the ambient light, packed.
+	 * @param viewer
+	 * 			The unit direction from the model towards the viewer, or null to
+	 * 			leave out highlights.
+	 * @param litMask
+	 * 			Bit i is set if combined light i reaches the polygon.
+	 * @return the total shading of the polygon, packed, with an alpha of 255.
+	 */
+	public int getShadingRGB(Polygon poly, int ambientLight, Vector3D viewer, int litMask) {
+		Vector3D[] v = poly.getVertices();
+		float abx = v[1].x - v[0].x, aby = v[1].y - v[0].y, abz = v[1].z - v[0].z;
+		float bcx = v[2].x - v[1].x, bcy = v[2].y - v[1].y, bcz = v[2].z - v[1].z;
+		float nx = aby * bcz - abz * bcy, ny = abz * bcx - abx * bcz, nz = abx * bcy - aby * bcx;
+		float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+		if (length > 0) {
+			nx /= length;
+			ny /= length;
+			nz /= length;
+		}
+
+		float red = ((ambientLight >> 16) & 0xFF) / 255f;
+		float green = ((ambientLight >> 8) & 0xFF) / 255f;
+		float blue = (ambientLight & 0xFF) / 255f;
+		float[] powers = viewer != null && poly.getShininess() > 0 ? PowerTable.table(poly.getShininess()) : null;
+		float specularRed = 0, specularGreen = 0, specularBlue = 0;
+		for (int j = 0; j < count; j++) {
+			if (j < 32 && (litMask & (1 << j)) == 0) {
+				continue;
+			}
+			float lx = unit[j * 3], ly = unit[j * 3 + 1], lz = unit[j * 3 + 2];
+			float cos = nx * lx + ny * ly + nz * lz;
+			if (cos > 0) {
+				red += intensity[j * 3] * cos;
+				green += intensity[j * 3 + 1] * cos;
+				blue += intensity[j * 3 + 2] * cos;
+				if (powers != null) {
+					float hx = lx + viewer.x, hy = ly + viewer.y, hz = lz + viewer.z;
+					// NaN if the light is straight behind the viewer, which the
+					// table treats as 0.
+					float specular = PowerTable.pow((nx * hx + ny * hy + nz * hz)
+							/ (float) Math.sqrt(hx * hx + hy * hy + hz * hz), powers);
+					specularRed += intensity[j * 3] * specular;
+					specularGreen += intensity[j * 3 + 1] * specular;
+					specularBlue += intensity[j * 3 + 2] * specular;
+				}
+			}
+		}
+		int r = poly.getReflectanceRGB();
+		return 0xFF000000 | channel(red * ((r >> 16) & 0xFF) + specularRed * 255) << 16
+				| channel(green * ((r >> 8) & 0xFF) + specularGreen * 255) << 8
+				| channel(blue * (r & 0xFF) + specularBlue * 255);
+	}
+
+	private static int channel(float value) {
+		return Math.min(Math.max((int) value, 0), 255);
+	}
+
+	/**
+	 * @return the unit direction of each combined light, which stay the same
+	 * 			objects until the lights change, e.g. for a ShadowCache.
+	 */
+	public List<Vector3D> getDirections() {
+		return directions;
+	}
+
+	/**
+	 * @return the unit direction of a combined light.
+	 */
+	public Vector3D getDirection(int light) {
+		return directions.get(light);
+	}
+
+	/**
+	 * @return how many lights are shaded with, after combining.
+	 */
+	public int getLightCount() {
+		return count;
+	}
+
+	/**
+	 * @return how many lights were given to the last update.
+	 */
+	public int getGivenCount() {
+		return given;
+	}
+
+	/**
+	 * @return how many times the lights have been combined.
+	 */
+	public int getRebuilds() {
+		return rebuilds;
+	}
+
+	public int getBudget() {
+		return budget;
+	}
+
+	@Override
+	public String toString() {
+		return "lights: " + given + " given, " + count + " shaded (budget " + budget + "), combined " + rebuilds
+				+ " times";
+	}
+}
@@ -0,0 +1,487 @@
+package renderer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import renderer.Scene.Polygon;
+
+/**
+ * Reduces the number of triangles in a mesh by repeatedly collapsing the edge
+ * whose removal changes the shape least, measured with quadric error metrics
+ * (Garland and Heckbert). Each vertex keeps a quadric that sums the squared
+ * distances to the planes of the triangles it started in, so the cost of moving
+ * a vertex is known without looking at the original mesh again.
+ *
+ * The models we load are lists of separate triangles, so vertices with exactly
+ * the same position are welded together first. Each triangle keeps the
+ * reflectance it started with.
+ */
+public class MeshSimplifier {
+
+	/**
+	 * How heavily edges with only one triangle are kept in place. Face planes
+	 * have a weight of 1, so the error stays in squared model units.
+	 */
+	private static final double BOUNDARY_WEIGHT = 10;
+
+	private final double[] positions;
+	private final double[] quadrics;
+	private final boolean[] vertexRemoved;
+	private final int[] versions;
+	private final int[][] incident;
+	private final int[] incidentCount;
+
+	private final int[] triangles;
+	private final int[] colours;
+	private final int[] shininess;
+	private final boolean[] triangleRemoved;
+	private int liveTriangles;
+
+	private final PriorityQueue<Collapse> queue = new PriorityQueue<>();
+	private double maxCost;
+
+	/**
+	 * A simplified copy of the mesh, along with roughly how far it is from the
+	 * original.
+	 */
+	public static class Result {
+		public final List<Polygon> polygons;
+		/**
+		 * An estimate of how far the surface has moved, in model units: the
+		 * square root of the largest collapse cost so far. The quadrics only
+		 * measure distance to the planes each vertex started in, not to the
+		 * original surface, so this is not a bound.
+		 */
+		public final float error;
+
+		Result(List<Polygon> polygons, float error) {
+			this.polygons = polygons;
+			this.error = error;
+		}
+	}
+
+	/** A candidate edge collapse, which is stale if either vertex has changed since. */
+	private static class Collapse implements Comparable<Collapse> {
+		final int a, b;
+		final int versionA, versionB;
+		final double cost;
+		final double x, y, z;
+
+		Collapse(int a, int b, int versionA, int versionB, double cost, double x, double y, double z) {
+			this.a = a;
+			this.b = b;
+			this.versionA = versionA;
+			this.versionB = versionB;
+			this.cost = cost;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+
+		@Override
+		public int compareTo(Collapse other) {
+			return Double.compare(cost, other.cost);
+		}
+	}
+
+	/** A vertex position used for welding, compared by exact value. */
+	private static class VertexKey {
+		final float x, y, z;
+
+		VertexKey(Vector3D v) {
+			x = v.x;
+			y = v.y;
+			z = v.z;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof VertexKey))
+				return false;
+			VertexKey other = (VertexKey) obj;
+			return Float.floatToIntBits(x) == Float.floatToIntBits(other.x)
+					&& Float.floatToIntBits(y) == Float.floatToIntBits(other.y)
+					&& Float.floatToIntBits(z) == Float.floatToIntBits(other.z);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * Float.floatToIntBits(x) + Float.floatToIntBits(y)) + Float.floatToIntBits(z);
+		}
+	}
+
+	/**
+	 * Welds the polygons into a mesh, ready to be simplified.
+	 */
+	public MeshSimplifier(List<Polygon> polygons) {
+		Map<VertexKey, Integer> welded = new HashMap<>();
+		List<Vector3D> vertices = new ArrayList<>();
+		triangles = new int[polygons.size() * 3];
+		colours = new int[polygons.size()];
+		shininess = new int[polygons.size()];
+		triangleRemoved = new boolean[polygons.size()];
+		liveTriangles = polygons.size();
+
+		for (int t = 0; t < polygons.size(); t++) {
+			Polygon p = polygons.get(t);
+			for (int i = 0; i < 3; i++) {
+				Vector3D v = p.getVertices()[i];
+				VertexKey key = new VertexKey(v);
+				Integer index = welded.get(key);
+				if (index == null) {
+					index = vertices.size();
+					welded.put(key, index);
+					vertices.add(v);
+				}
+				triangles[t * 3 + i] = index;
+			}
+			colours[t] = p.getReflectanceRGB();
+			shininess[t] = p.getShininess();
+			// triangles with two corners in the same place don't really exist.
+			if (triangles[t * 3] == triangles[t * 3 + 1] || triangles[t * 3 + 1] == triangles[t * 3 + 2]
+					|| triangles[t * 3 + 2] == triangles[t * 3]) {
+				triangleRemoved[t] = true;
+				liveTriangles--;
+			}
+		}
+
+		int n = vertices.size();
+		positions = new double[n * 3];
+		quadrics = new double[n * 10];
+		vertexRemoved = new boolean[n];
+		versions = new int[n];
+		incident = new int[n][];
+		incidentCount = new int[n];
+		for (int v = 0; v < n; v++) {
+			positions[v * 3] = vertices.get(v).x;
+			positions[v * 3 + 1] = vertices.get(v).y;
+			positions[v * 3 + 2] = vertices.get(v).z;
+			incident[v] = new int[6];
+		}
+
+		// every vertex starts with the planes of the triangles around it.
+		Map<Long, Integer> edgeUses = new HashMap<>();
+		for (int t = 0; t < colours.length; t++) {
+			if (triangleRemoved[t]) {
+				continue;
+			}
+			double[] plane = plane(t);
+			for (int i = 0; i < 3; i++) {
+				int v = triangles[t * 3 + i];
+				addIncident(v, t);
+				if (plane != null) {
+					addPlane(v, plane, 1);
+				}
+				Long edge = edgeKey(v, triangles[t * 3 + (i + 1) % 3]);
+				Integer uses = edgeUses.get(edge);
+				edgeUses.put(edge, uses == null ? 1 : uses + 1);
+			}
+		}
+
+		// edges on the boundary get an extra plane at right angles to their
+		// triangle, so the outline of the mesh doesn't shrink away.
+		for (int t = 0; t < colours.length; t++) {
+			double[] plane = triangleRemoved[t] ? null : plane(t);
+			if (plane == null) {
+				continue;
+			}
+			for (int i = 0; i < 3; i++) {
+				int a = triangles[t * 3 + i], b = triangles[t * 3 + (i + 1) % 3];
+				if (edgeUses.get(edgeKey(a, b)) != 1) {
+					continue;
+				}
+				double ex = positions[b * 3] - positions[a * 3];
+				double ey = positions[b * 3 + 1] - positions[a * 3 + 1];
+				double ez = positions[b * 3 + 2] - positions[a * 3 + 2];
+				double nx = ey * plane[2] - ez * plane[1];
+				double ny = ez * plane[0] - ex * plane[2];
+				double nz = ex * plane[1] - ey * plane[0];
+				double len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+				if (len == 0) {
+					continue;
+				}
+				nx /= len;
+				ny /= len;
+				nz /= len;
+				double d = -(nx * positions[a * 3] + ny * positions[a * 3 + 1] + nz * positions[a * 3 + 2]);
+				double[] side = { nx, ny, nz, d };
+				addPlane(a, side, BOUNDARY_WEIGHT);
+				addPlane(b, side, BOUNDARY_WEIGHT);
+			}
+		}
+
+		for (Long edge : edgeUses.keySet()) {
+			pushCollapse((int) (edge >>> 32), (int) (long) edge);
+		}
+	}
+
+	/**
+	 * Simplifies the mesh several times over, each time to a smaller fraction of
+	 * the triangles, continuing on from the previous level so the work isn't
+	 * repeated.
+	 *
+	 * @param targets
+	 * 			The triangle counts to stop at, from largest to smallest.
+	 * @return one result per target. A level may have more triangles than its
+	 * 			target if no more edges could be collapsed without folding the mesh.
+	 */
+	public List<Result> simplify(int... targets) {
+		List<Result> results = new ArrayList<>();
+		for (int target : targets) {
+			while (liveTriangles > target && !queue.isEmpty()) {
+				Collapse c = queue.poll();
+				if (vertexRemoved[c.a] || vertexRemoved[c.b]
+						|| versions[c.a] != c.versionA || versions[c.b] != c.versionB) {
+					continue;
+				}
+				if (flips(c)) {
+					continue;
+				}
+				collapse(c);
+			}
+			results.add(new Result(currentPolygons(), (float) Math.sqrt(maxCost)));
+		}
+		return results;
+	}
+
+	/**
+	 * @return the number of triangles left in the mesh.
+	 */
+	public int getTriangleCount() {
+		return liveTriangles;
+	}
+
+	private void collapse(Collapse c) {
+		int a = c.a, b = c.b;
+		positions[a * 3] = c.x;
+		positions[a * 3 + 1] = c.y;
+		positions[a * 3 + 2] = c.z;
+		for (int i = 0; i < 10; i++) {
+			quadrics[a * 10 + i] += quadrics[b * 10 + i];
+		}
+		maxCost = Math.max(maxCost, c.cost);
+
+		for (int i = 0; i < incidentCount[b]; i++) {
+			int t = incident[b][i];
+			if (triangleRemoved[t]) {
+				continue;
+			}
+			if (contains(t, a)) {
+				// the triangle had both ends of the edge, so it's now flat.
+				triangleRemoved[t] = true;
+				liveTriangles--;
+			} else {
+				for (int k = 0; k < 3; k++) {
+					if (triangles[t * 3 + k] == b) {
+						triangles[t * 3 + k] = a;
+					}
+				}
+				addIncident(a, t);
+			}
+		}
+		vertexRemoved[b] = true;
+		versions[a]++;
+
+		// drop removed triangles from a's list, and queue up its new edges.
+		int kept = 0;
+		for (int i = 0; i < incidentCount[a]; i++) {
+			int t = incident[a][i];
+			if (!triangleRemoved[t]) {
+				incident[a][kept++] = t;
+			}
+		}
+		incidentCount[a] = kept;
+		for (int i = 0; i < kept; i++) {
+			int t = incident[a][i];
+			for (int k = 0; k < 3; k++) {
+				int v = triangles[t * 3 + k];
+				if (v != a) {
+					pushCollapse(a, v);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return whether doing the collapse would turn any remaining triangle
+	 * 			around to face the other way.
+	 */
+	private boolean flips(Collapse c) {
+		return flips(c.a, c.b, c) || flips(c.b, c.a, c);
+	}
+
+	private boolean flips(int moved, int other, Collapse c) {
+		for (int i = 0; i < incidentCount[moved]; i++) {
+			int t = incident[moved][i];
+			if (triangleRemoved[t] || contains(t, other)) {
+				continue;
+			}
+			double[] before = normal(t, -1, 0, 0, 0);
+			double[] after = normal(t, moved, c.x, c.y, c.z);
+			double dot = before[0] * after[0] + before[1] * after[1] + before[2] * after[2];
+			// squashing a triangle flat counts too, unless it was flat already.
+			if (dot < 0 || (dot == 0 && before[0] * before[0] + before[1] * before[1] + before[2] * before[2] > 0)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void pushCollapse(int a, int b) {
+		double[] q = new double[10];
+		for (int i = 0; i < 10; i++) {
+			q[i] = quadrics[a * 10 + i] + quadrics[b * 10 + i];
+		}
+
+		// try the best point for the combined quadric, then both ends and the middle.
+		double[] mid = { (positions[a * 3] + positions[b * 3]) / 2,
+				(positions[a * 3 + 1] + positions[b * 3 + 1]) / 2,
+				(positions[a * 3 + 2] + positions[b * 3 + 2]) / 2 };
+		double[] optimal = optimalPoint(q);
+		// a nearly flat quadric can put the best point miles away, so ignore it
+		// if it's not near the edge.
+		if (optimal != null && distanceSquared(optimal, mid) > 4 * distanceSquared(a, b)) {
+			optimal = null;
+		}
+
+		double[] best = null;
+		double bestCost = Double.POSITIVE_INFINITY;
+		double[][] candidates = {
+				optimal,
+				{ positions[a * 3], positions[a * 3 + 1], positions[a * 3 + 2] },
+				{ positions[b * 3], positions[b * 3 + 1], positions[b * 3 + 2] },
+				mid };
+		for (double[] p : candidates) {
+			if (p == null) {
+				continue;
+			}
+			double cost = Math.max(0, error(q, p));
+			if (cost < bestCost) {
+				bestCost = cost;
+				best = p;
+			}
+		}
+		queue.add(new Collapse(a, b, versions[a], versions[b], bestCost, best[0], best[1], best[2]));
+	}
+
+	/**
+	 * @return the point where the quadric's error is smallest, or null if it
+	 * 			can't be found reliably (e.g. the surface is flat there).
+	 */
+	private static double[] optimalPoint(double[] q) {
+		double a = q[0], b = q[1], c = q[2], e = q[4], f = q[5], h = q[7];
+		double det = a * (e * h - f * f) - b * (b * h - f * c) + c * (b * f - e * c);
+		if (Math.abs(det) < 1e-10) {
+			return null;
+		}
+		double rx = -q[3], ry = -q[6], rz = -q[8];
+		return new double[] {
+				(rx * (e * h - f * f) - b * (ry * h - f * rz) + c * (ry * f - e * rz)) / det,
+				(a * (ry * h - f * rz) - rx * (b * h - f * c) + c * (b * rz - ry * c)) / det,
+				(a * (e * rz - ry * f) - b * (b * rz - ry * c) + rx * (b * f - e * c)) / det };
+	}
+
+	private static double distanceSquared(double[] p, double[] q) {
+		double dx = p[0] - q[0], dy = p[1] - q[1], dz = p[2] - q[2];
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private double distanceSquared(int a, int b) {
+		double dx = positions[a * 3] - positions[b * 3];
+		double dy = positions[a * 3 + 1] - positions[b * 3 + 1];
+		double dz = positions[a * 3 + 2] - positions[b * 3 + 2];
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private static double error(double[] q, double[] p) {
+		double x = p[0], y = p[1], z = p[2];
+		return q[0] * x * x + 2 * q[1] * x * y + 2 * q[2] * x * z + 2 * q[3] * x
+				+ q[4] * y * y + 2 * q[5] * y * z + 2 * q[6] * y
+				+ q[7] * z * z + 2 * q[8] * z
+				+ q[9];
+	}
+
+	private void addPlane(int v, double[] plane, double weight) {
+		double a = plane[0], b = plane[1], c = plane[2], d = plane[3];
+		int o = v * 10;
+		quadrics[o] += weight * a * a;
+		quadrics[o + 1] += weight * a * b;
+		quadrics[o + 2] += weight * a * c;
+		quadrics[o + 3] += weight * a * d;
+		quadrics[o + 4] += weight * b * b;
+		quadrics[o + 5] += weight * b * c;
+		quadrics[o + 6] += weight * b * d;
+		quadrics[o + 7] += weight * c * c;
+		quadrics[o + 8] += weight * c * d;
+		quadrics[o + 9] += weight * d * d;
+	}
+
+	/**
+	 * @return the plane of a triangle as {a, b, c, d}, where ax + by + cz + d = 0
+	 * 			and (a, b, c) is a unit normal, or null if the triangle has no
+	 * 			area.
+	 */
+	private double[] plane(int t) {
+		double[] n = normal(t, -1, 0, 0, 0);
+		double len = Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+		if (len == 0) {
+			return null;
+		}
+		int v = triangles[t * 3];
+		double a = n[0] / len, b = n[1] / len, c = n[2] / len;
+		double d = -(a * positions[v * 3] + b * positions[v * 3 + 1] + c * positions[v * 3 + 2]);
+		return new double[] { a, b, c, d };
+	}
+
+	/**
+	 * @return the (not unit) normal of a triangle, with one of its vertices
+	 * 			optionally moved to (x, y, z) first.
+	 */
+	private double[] normal(int t, int moved, double x, double y, double z) {
+		double[][] p = new double[3][];
+		for (int k = 0; k < 3; k++) {
+			int v = triangles[t * 3 + k];
+			p[k] = v == moved ? new double[] { x, y, z }
+					: new double[] { positions[v * 3], positions[v * 3 + 1], positions[v * 3 + 2] };
+		}
+		double ux = p[1][0] - p[0][0], uy = p[1][1] - p[0][1], uz = p[1][2] - p[0][2];
+		double vx = p[2][0] - p[1][0], vy = p[2][1] - p[1][1], vz = p[2][2] - p[1][2];
+		return new double[] { uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx };
+	}
+
+	private boolean contains(int t, int v) {
+		return triangles[t * 3] == v || triangles[t * 3 + 1] == v || triangles[t * 3 + 2] == v;
+	}
+
+	private void addIncident(int v, int t) {
+		if (incidentCount[v] == incident[v].length) {
+			incident[v] = Arrays.copyOf(incident[v], incident[v].length * 2);
+		}
+		incident[v][incidentCount[v]++] = t;
+	}
+
+	private static long edgeKey(int a, int b) {
+		return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+	}
+
+	private List<Polygon> currentPolygons() {
+		List<Polygon> polygons = new ArrayList<>(liveTriangles);
+		for (int t = 0; t < colours.length; t++) {
+			if (triangleRemoved[t]) {
+				continue;
+			}
+			Vector3D[] v = new Vector3D[3];
+			for (int k = 0; k < 3; k++) {
+				int i = triangles[t * 3 + k];
+				v[k] = new Vector3D((float) positions[i * 3], (float) positions[i * 3 + 1],
+						(float) positions[i * 3 + 2]);
+			}
+			polygons.add(new Polygon(v[0], v[1], v[2], colours[t], shininess[t]));
+		}
+		return polygons;
+	}
+}
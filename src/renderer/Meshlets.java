@@ -0,0 +1,417 @@
+package renderer;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+
+import renderer.Scene.Polygon;
+
+/**
+ * The triangles of a scene split into small clusters (meshlets) of nearby
+ * triangles, so whole clusters can be skipped with one test each before any
+ * work is done on their triangles.
+ *
+ * Each cluster has a bounding sphere, for skipping clusters off the canvas,
+ * and a cone that all its triangles' normals lie within. Straight down the
+ * z-axis, a cluster whose cone points far enough away from the viewer has
+ * every triangle facing away, so Pipeline.isHidden would hide them all. On a
+ * smooth model, clusters are small patches of nearly the same normal, so
+ * most of the back of the model goes with one test per cluster. Clusters
+ * with a triangle too thin to have a reliable normal, such as the slivers
+ * at the poles of a sphere, are never skipped this way.
+ *
+ * The clusters are found once, in the scene's own coordinates, by splitting
+ * the triangles in half along the longest axis of their centroids (as BVH
+ * does) until each group is small enough. They are never changed afterwards,
+ * so every view of the scene can share them. A changed scene gets new
+ * clusters made from the old ones (see refit and remap).
+ */
+public class Meshlets {
+
+	/**
+	 * The most triangles a cluster can hold. Clusters hold at least half as
+	 * many, unless the scene is smaller or they have lost triangles since
+	 * (see remap).
+	 */
+	public static final int MAX_TRIANGLES = 128;
+
+	// how far past a cone's edge the viewer must be before the cluster is
+	// skipped, allowing for rounding in the normals and in isHidden.
+	private static final float CONE_MARGIN = 0.01f;
+
+	// a triangle less tall than this fraction of the whole scene has too
+	// unreliable a normal to go in a cone, as rounding its vertices on the
+	// canvas can turn it round.
+	private static final float MIN_HEIGHT = 1e-4f;
+
+	// how many pixels past its vertices filling in a triangle can go, as
+	// Pipeline.pixelBox allows.
+	private static final int PIXEL_MARGIN = 2;
+
+	// the triangles, cluster by cluster, and where each cluster starts in it,
+	// with one more for where the last ends.
+	private final int[] triangles;
+	private final int[] first;
+	// per cluster: the centre and radius of its bounding sphere.
+	private final float[] spheres;
+	// per cluster: the unit axis of its cone of normals, and how far below
+	// zero the viewer's direction along the axis must be to skip it.
+	private final float[] cones;
+
+	// the largest extent of the scene the clusters were last fitted to.
+	private final float size;
+
+	// about the last cull.
+	private int backFacing, offCanvas;
+
+	private Meshlets(int[] triangles, int[] first, float size) {
+		this.triangles = triangles;
+		this.first = first;
+		this.size = size;
+		int clusters = first.length - 1;
+		this.spheres = new float[clusters * 4];
+		this.cones = new float[clusters * 4];
+	}
+
+	/**
+	 * Makes clusters of the same triangles as another's, starting with its
+	 * spheres and cones, for a scene of the given size.
+	 */
+	private Meshlets(Meshlets other, float size) {
+		this.triangles = other.triangles;
+		this.first = other.first;
+		this.size = size;
+		this.spheres = other.spheres.clone();
+		this.cones = other.cones.clone();
+	}
+
+	/**
+	 * Splits a scene's triangles into clusters of nearby triangles.
+	 *
+	 * @param polygons
+	 * 			The polygons of the scene. The list should be random access,
+	 * 			and its order should not change afterwards.
+	 * @return the clusters.
+	 */
+	public static Meshlets build(List<Polygon> polygons) {
+		int n = polygons.size();
+		float[] vertices = BVH.pack(polygons);
+		float[] centroids = new float[n * 3];
+		int[] triangles = new int[n];
+		for (int i = 0; i < n; i++) {
+			centroid(vertices, i, centroids);
+			triangles[i] = i;
+		}
+
+		int[] first = new int[maxClusters(n) + 1];
+		int clusters = split(triangles, centroids, 0, n, first, 0);
+		first[clusters] = n;
+		Meshlets meshlets = new Meshlets(triangles, Arrays.copyOf(first, clusters + 1), size(vertices));
+		for (int c = 0; c < clusters; c++) {
+			meshlets.fit(c, vertices, MIN_HEIGHT * meshlets.size);
+		}
+		return meshlets;
+	}
+
+	/**
+	 * Fits the same clusters to the triangles after some of them have been
+	 * changed, e.g. by editing the model file, working out the spheres and
+	 * cones again only for the clusters that hold a changed triangle. Clusters
+	 * made for the old triangles can be looser than new ones would be, but
+	 * are never wrong.
+	 *
+	 * @param polygons
+	 * 			The changed polygons, as many as before and in the same order.
+	 * @param changed
+	 * 			Which of the polygons are different from before.
+	 * @return the refitted clusters. These are left alone.
+	 */
+	public Meshlets refit(List<Polygon> polygons, boolean[] changed) {
+		if (polygons.size() != triangles.length) {
+			throw new IllegalArgumentException("can't refit " + triangles.length + " triangles to "
+					+ polygons.size());
+		}
+		float[] vertices = BVH.pack(polygons);
+		Meshlets meshlets = new Meshlets(this, size(vertices));
+		// how thin a triangle can be depends on the size of the whole scene.
+		boolean all = meshlets.size != size;
+		for (int c = 0; c < first.length - 1; c++) {
+			boolean fit = all;
+			for (int i = first[c]; i < first[c + 1] && !fit; i++) {
+				fit = changed[triangles[i]];
+			}
+			if (fit) {
+				meshlets.fit(c, vertices, MIN_HEIGHT * meshlets.size);
+			}
+		}
+		return meshlets;
+	}
+
+	/**
+	 * Follows the clusters to a changed list of triangles whose triangles may
+	 * have been added, removed or moved, e.g. by adding or removing lines of
+	 * the model file. Each cluster keeps those of its triangles that are left,
+	 * at their new places. A cluster that kept them all keeps its sphere and
+	 * cone, one that lost some is fitted again, and one that lost all is
+	 * dropped. The new triangles are split into clusters of their own.
+	 *
+	 * @param polygons
+	 * 			The changed polygons.
+	 * @param previousIndex
+	 * 			For each polygon, where it was in the polygons these clusters
+	 * 			were made for, or -1 if it is new.
+	 * @return the clusters of the changed polygons. These are left alone.
+	 */
+	public Meshlets remap(List<Polygon> polygons, int[] previousIndex) {
+		int n = polygons.size();
+		int[] newIndex = new int[triangles.length];
+		Arrays.fill(newIndex, -1);
+		int added = 0;
+		for (int i = 0; i < n; i++) {
+			if (previousIndex[i] >= 0) {
+				newIndex[previousIndex[i]] = i;
+			} else {
+				added++;
+			}
+		}
+		float[] vertices = BVH.pack(polygons);
+		float newSize = size(vertices);
+		// how thin a triangle can be depends on the size of the whole scene.
+		boolean all = newSize != size;
+
+		int[] newTriangles = new int[n];
+		int[] newFirst = new int[first.length + maxClusters(added)];
+		// per new cluster: the cluster whose sphere and cone it keeps, or -1.
+		int[] kept = new int[newFirst.length];
+		int found = 0, at = 0;
+		for (int c = 0; c < first.length - 1; c++) {
+			int start = at;
+			for (int i = first[c]; i < first[c + 1]; i++) {
+				if (newIndex[triangles[i]] >= 0) {
+					newTriangles[at++] = newIndex[triangles[i]];
+				}
+			}
+			if (at > start) {
+				newFirst[found] = start;
+				kept[found++] = !all && at - start == first[c + 1] - first[c] ? c : -1;
+			}
+		}
+		if (added > 0) {
+			float[] centroids = new float[n * 3];
+			for (int i = 0; i < n; i++) {
+				if (previousIndex[i] < 0) {
+					centroid(vertices, i, centroids);
+					newTriangles[at++] = i;
+				}
+			}
+			int before = found;
+			found = split(newTriangles, centroids, n - added, n, newFirst, found);
+			Arrays.fill(kept, before, found, -1);
+		}
+		newFirst[found] = n;
+
+		Meshlets meshlets = new Meshlets(newTriangles, Arrays.copyOf(newFirst, found + 1), newSize);
+		for (int c = 0; c < found; c++) {
+			if (kept[c] >= 0) {
+				System.arraycopy(spheres, kept[c] * 4, meshlets.spheres, c * 4, 4);
+				System.arraycopy(cones, kept[c] * 4, meshlets.cones, c * 4, 4);
+			} else {
+				meshlets.fit(c, vertices, MIN_HEIGHT * newSize);
+			}
+		}
+		return meshlets;
+	}
+
+	/**
+	 * @return the most clusters that splitting n triangles can make.
+	 */
+	private static int maxClusters(int n) {
+		return Math.max(1, (n + MAX_TRIANGLES - 1) / MAX_TRIANGLES * 2);
+	}
+
+	/**
+	 * Works out the centroid of the ith of some packed triangles, into the
+	 * same place of centroids.
+	 */
+	private static void centroid(float[] vertices, int i, float[] centroids) {
+		for (int a = 0; a < 3; a++) {
+			centroids[i * 3 + a] = (vertices[i * 9 + a] + vertices[i * 9 + 3 + a] + vertices[i * 9 + 6 + a]) / 3;
+		}
+	}
+
+	/**
+	 * @return the largest extent of packed vertices along any axis.
+	 */
+	private static float size(float[] vertices) {
+		float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+		float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+		for (int p = 0; p < vertices.length; p += 3) {
+			for (int a = 0; a < 3; a++) {
+				min[a] = Math.min(min[a], vertices[p + a]);
+				max[a] = Math.max(max[a], vertices[p + a]);
+			}
+		}
+		return Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2]));
+	}
+
+	/**
+	 * Splits triangles[lo..hi) into clusters, recording where each starts.
+	 *
+	 * @return how many clusters have been found so far.
+	 */
+	private static int split(int[] triangles, float[] centroids, int lo, int hi, int[] first, int found) {
+		if (hi - lo <= MAX_TRIANGLES) {
+			if (hi > lo) {
+				first[found++] = lo;
+			}
+			return found;
+		}
+		float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+		float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+		for (int i = lo; i < hi; i++) {
+			for (int a = 0; a < 3; a++) {
+				float c = centroids[triangles[i] * 3 + a];
+				min[a] = Math.min(min[a], c);
+				max[a] = Math.max(max[a], c);
+			}
+		}
+		int axis = 0;
+		for (int a = 1; a < 3; a++) {
+			if (max[a] - min[a] > max[axis] - min[axis]) {
+				axis = a;
+			}
+		}
+		int mid = (lo + hi) >>> 1;
+		BVH.select(triangles, centroids, axis, lo, hi - 1, mid);
+		found = split(triangles, centroids, lo, mid, first, found);
+		return split(triangles, centroids, mid, hi, first, found);
+	}
+
+	/**
+	 * Works out a cluster's bounding sphere and cone of normals, leaving the
+	 * cone out if any triangle is less tall than minHeight.
+	 */
+	private void fit(int cluster, float[] v, float minHeight) {
+		float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+		float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+		float[] normals = new float[(first[cluster + 1] - first[cluster]) * 3];
+		float[] axis = new float[3];
+		boolean reliable = true;
+		for (int i = first[cluster], k = 0; i < first[cluster + 1]; i++, k += 3) {
+			int o = triangles[i] * 9;
+			for (int p = o; p < o + 9; p += 3) {
+				for (int a = 0; a < 3; a++) {
+					min[a] = Math.min(min[a], v[p + a]);
+					max[a] = Math.max(max[a], v[p + a]);
+				}
+			}
+			// the same normal as Pipeline.isHidden, (b - a) x (c - b).
+			float[] ab = { v[o + 3] - v[o], v[o + 4] - v[o + 1], v[o + 5] - v[o + 2] };
+			float[] bc = { v[o + 6] - v[o + 3], v[o + 7] - v[o + 4], v[o + 8] - v[o + 5] };
+			Vector3D.cross(ab, 0, bc, 0, normals, k);
+			// the cross product's length is the longer edge times the height
+			// from it.
+			float length = Vector3D.normalize(normals, k);
+			float edge = (float) Math.sqrt(Math.max(Vector3D.dot(ab, 0, ab, 0), Vector3D.dot(bc, 0, bc, 0)));
+			if (!(length > minHeight * edge)) {
+				reliable = false;
+			}
+			for (int a = 0; a < 3; a++) {
+				axis[a] += normals[k + a];
+			}
+		}
+
+		int s = cluster * 4;
+		float radius = 0;
+		for (int a = 0; a < 3; a++) {
+			spheres[s + a] = (min[a] + max[a]) / 2;
+		}
+		for (int i = first[cluster]; i < first[cluster + 1]; i++) {
+			for (int p = triangles[i] * 9; p < triangles[i] * 9 + 9; p += 3) {
+				float dx = v[p] - spheres[s], dy = v[p + 1] - spheres[s + 1], dz = v[p + 2] - spheres[s + 2];
+				radius = Math.max(radius, (float) Math.sqrt(dx * dx + dy * dy + dz * dz));
+			}
+		}
+		spheres[s + 3] = radius;
+
+		// the cone's edge is the normal furthest from its axis. A cone wider
+		// than a half-space can never be all facing away.
+		float length = Vector3D.normalize(axis, 0);
+		float cosine = 1;
+		for (int k = 0; k < normals.length; k += 3) {
+			cosine = Math.min(cosine, Vector3D.dot(axis, 0, normals, k));
+		}
+		System.arraycopy(axis, 0, cones, s, 3);
+		if (reliable && length > 0 && cosine > 0) {
+			cones[s + 3] = -((float) Math.sqrt(1 - cosine * cosine) + CONE_MARGIN);
+		} else {
+			cones[s + 3] = -2;
+		}
+	}
+
+	/**
+	 * Finds the triangles of the clusters that might be seen looking straight
+	 * down the z-axis, skipping whole clusters that face away from the viewer
+	 * or are off the canvas.
+	 *
+	 * @param view
+	 * 			The view being drawn, already updated for its camera.
+	 * @param area
+	 * 			The visible part of the canvas.
+	 * @return the indexes (into the polygon list) of the triangles that might
+	 * 			be visible, cluster by cluster.
+	 */
+	public int[] cull(ViewBuffer view, Rectangle area) {
+		int[] result = new int[triangles.length];
+		int found = 0;
+		backFacing = offCanvas = 0;
+		Vector3D viewer = view.getViewer();
+		float scale = view.getScale();
+		float[] centre = new float[3];
+		for (int c = 0; c < first.length - 1; c++) {
+			int s = c * 4;
+			if (cones[s] * viewer.x + cones[s + 1] * viewer.y + cones[s + 2] * viewer.z < cones[s + 3]) {
+				backFacing++;
+				continue;
+			}
+			view.toCanvas(spheres, s, centre);
+			float r = spheres[s + 3] * scale + PIXEL_MARGIN;
+			if (centre[0] + r < area.x || centre[0] - r > area.x + area.width
+					|| centre[1] + r < area.y || centre[1] - r > area.y + area.height) {
+				offCanvas++;
+				continue;
+			}
+			int count = first[c + 1] - first[c];
+			System.arraycopy(triangles, first[c], result, found, count);
+			found += count;
+		}
+		return Arrays.copyOf(result, found);
+	}
+
+	/**
+	 * @return how many clusters the triangles were split into.
+	 */
+	public int getClusterCount() {
+		return first.length - 1;
+	}
+
+	/**
+	 * @return how many clusters the last cull skipped as facing away.
+	 */
+	public int getBackFacingCount() {
+		return backFacing;
+	}
+
+	/**
+	 * @return how many clusters the last cull skipped as off the canvas.
+	 */
+	public int getOffCanvasCount() {
+		return offCanvas;
+	}
+
+	@Override
+	public String toString() {
+		return "meshlets: " + getClusterCount() + " clusters, last skipped " + backFacing + " facing away and "
+				+ offCanvas + " off the canvas";
+	}
+}
@@ -0,0 +1,352 @@
+package renderer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import renderer.Scene.Polygon;
+
+/**
+ * Watches a model file and reads it again whenever it changes, e.g. each time
+ * an artist saves it from another program, without holding up drawing.
+ *
+ * A thread of its own waits on a WatchService for changes to the file's
+ * folder. Programs often write a file in several goes, so once the file has
+ * changed the watcher waits until it has been left alone for SETTLE_MS before
+ * reading it. Only the lines that aren't the same as a line of the last
+ * version are parsed again, and the lines that are keep their old polygons,
+ * so LevelOfDetail.rebuild can tell what has changed and keep what it can.
+ * That is all done on the watcher's thread, and the finished levels are then
+ * handed to a listener, which should swap them in between frames. Simplifying
+ * the coarser levels takes far longer than the rest, so when only some
+ * polygons have changed the listener is told twice: first with the new level
+ * 0 and the old simplified levels, then again once they have been simplified
+ * afresh. A file that can't be read, e.g. because it is only half written, is
+ * reported and skipped, leaving the last version that could be.
+ */
+public class ModelWatcher {
+
+	/** How long the file must be left alone before it is read, in ms. */
+	public static final long SETTLE_MS = 100;
+
+	/**
+	 * Told about each new version of the file, on the watcher's thread.
+	 */
+	public interface Listener {
+		void reloaded(Reload reload);
+	}
+
+	private final File file;
+	private final ArrayList<Vector3D> lights;
+	private final Listener listener;
+	private final WatchService service;
+	private final Thread thread;
+
+	// the last version read: its lines, the polygons made from them, its
+	// light source and the levels built from them.
+	private List<String> lines;
+	private List<Polygon> polygons;
+	private Vector3D light;
+	private LevelOfDetail lod;
+
+	/**
+	 * @param file
+	 * 			The model file to watch.
+	 * @param lod
+	 * 			The levels of the model as it was last loaded, which changes are
+	 * 			built from.
+	 * @param light
+	 * 			The light source the file had when it was last loaded.
+	 * @param lights
+	 * 			The light sources to keep with level 0, as LevelOfDetail.build
+	 * 			takes them. They are only kept, never read, so can belong to
+	 * 			another thread.
+	 * @param listener
+	 * 			Told about each new version of the file.
+	 * @throws IOException
+	 * 			if the file's folder can't be watched.
+	 */
+	public ModelWatcher(File file, LevelOfDetail lod, Vector3D light, ArrayList<Vector3D> lights, Listener listener)
+			throws IOException {
+		this.file = file.getAbsoluteFile();
+		this.lod = lod;
+		this.light = light;
+		this.lights = lights;
+		this.listener = listener;
+		this.service = FileSystems.getDefault().newWatchService();
+		this.file.getParentFile().toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				watch();
+			}
+		}, "watch " + file.getName());
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Starts watching. The file is read once first, in case it has changed
+	 * since it was loaded.
+	 */
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * Stops watching. A version already being read may still be handed to the
+	 * listener.
+	 */
+	public void close() {
+		try {
+			service.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void watch() {
+		reloadAndTell();
+		try {
+			while (true) {
+				WatchKey key = service.take();
+				boolean changed = mentionsFile(key);
+				// waits for the file to settle, taking in every change until then.
+				WatchKey more;
+				while ((more = service.poll(SETTLE_MS, TimeUnit.MILLISECONDS)) != null) {
+					changed |= mentionsFile(more);
+				}
+				if (changed) {
+					reloadAndTell();
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// closed, so finished.
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return whether any of a key's events are about the watched file. The
+	 * 			key is reset so it can be signalled again.
+	 */
+	private boolean mentionsFile(WatchKey key) {
+		boolean mentioned = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			Object context = event.context();
+			if (context instanceof Path && ((Path) context).getFileName().toString().equals(file.getName())) {
+				mentioned = true;
+			}
+		}
+		key.reset();
+		return mentioned;
+	}
+
+	private void reloadAndTell() {
+		try {
+			Reload reload = reload();
+			if (reload != null) {
+				listener.reloaded(reload);
+			}
+			if (lod.isStale()) {
+				listener.reloaded(resimplify());
+			}
+		} catch (IOException | RuntimeException e) {
+			System.out.println("couldn't reload " + file + ": " + e);
+		}
+	}
+
+	/**
+	 * Reads the file again straight away, as the watcher's thread does when
+	 * it changes, and builds its levels from the last version's.
+	 *
+	 * @return the new version, or null if neither its polygons nor its light
+	 * 			source have changed.
+	 * @throws IOException
+	 * 			if the file can't be read.
+	 * @throws RuntimeException
+	 * 			if it can't be parsed, in which case the last version is kept.
+	 */
+	public Reload reload() throws IOException {
+		long start = System.nanoTime();
+		List<String> read = Files.readAllLines(file.toPath());
+		if (read.isEmpty()) {
+			throw new IOException("the file is empty");
+		}
+		Vector3D newLight = Scene.parseLight(read.get(0));
+		List<String> newLines = read.subList(1, read.size());
+		List<Polygon> newPolygons = new ArrayList<>(newLines.size());
+		int[] previousIndex = new int[newLines.size()];
+		int reused = 0;
+
+		if (lines == null) {
+			// the first time, the polygons are only known from the levels, so
+			// each line is compared to the polygon at the same place.
+			List<Polygon> old = lod.getLevel(0).getPolygons();
+			for (int i = 0; i < newLines.size(); i++) {
+				Polygon parsed = Scene.parsePolygon(newLines.get(i));
+				boolean same = i < old.size() && same(old.get(i), parsed);
+				newPolygons.add(same ? old.get(i) : parsed);
+				previousIndex[i] = same ? i : -1;
+				reused += same ? 1 : 0;
+			}
+		} else {
+			// where each line of the last version was, with those that appear
+			// more than once taken in order.
+			Map<String, ArrayDeque<Integer>> old = new HashMap<>();
+			for (int i = 0; i < lines.size(); i++) {
+				ArrayDeque<Integer> at = old.get(lines.get(i));
+				if (at == null) {
+					at = new ArrayDeque<>();
+					old.put(lines.get(i), at);
+				}
+				at.add(i);
+			}
+			for (int i = 0; i < newLines.size(); i++) {
+				ArrayDeque<Integer> at = old.get(newLines.get(i));
+				Integer k = at == null ? null : at.poll();
+				if (k != null) {
+					newPolygons.add(polygons.get(k));
+					previousIndex[i] = k;
+					reused++;
+				} else {
+					newPolygons.add(Scene.parsePolygon(newLines.get(i)));
+					previousIndex[i] = -1;
+				}
+			}
+		}
+
+		LevelOfDetail previous = lod;
+		LevelOfDetail levels = LevelOfDetail.rebuild(previous, newPolygons, lights, previousIndex);
+		Vector3D oldLight = light;
+		lines = new ArrayList<>(newLines);
+		polygons = newPolygons;
+		light = newLight;
+		lod = levels;
+		if (levels == previous && newLight.equals(oldLight)) {
+			return null;
+		}
+		return new Reload(previous, levels, newLight, reused, newPolygons.size() - reused,
+				previous.getLevel(0).getPolygons().size() - reused, (System.nanoTime() - start) / 1000000, false);
+	}
+
+	/**
+	 * Simplifies the last version read again, if reload left its simplified
+	 * levels stale.
+	 *
+	 * @return the last version with new simplified levels, or null if they
+	 * 			weren't stale.
+	 */
+	public Reload resimplify() {
+		if (!lod.isStale()) {
+			return null;
+		}
+		long start = System.nanoTime();
+		LevelOfDetail previous = lod;
+		lod = previous.resimplify();
+		return new Reload(previous, lod, light, lod.getLevel(0).getPolygons().size(), 0, 0,
+				(System.nanoTime() - start) / 1000000, true);
+	}
+
+	/**
+	 * @return whether two polygons would be read from the same line.
+	 */
+	private static boolean same(Polygon a, Polygon b) {
+		for (int k = 0; k < 3; k++) {
+			if (!a.getVertices()[k].equals(b.getVertices()[k])) {
+				return false;
+			}
+		}
+		return a.getReflectanceRGB() == b.getReflectanceRGB() && a.getShininess() == b.getShininess();
+	}
+
+	/**
+	 * One new version of the file, and what it took to read it.
+	 */
+	public static class Reload {
+		private final LevelOfDetail previous, levels;
+		private final Vector3D light;
+		private final int reused, parsed, removed;
+		private final long millis;
+		// whether only the simplified levels are new.
+		private final boolean resimplified;
+
+		Reload(LevelOfDetail previous, LevelOfDetail levels, Vector3D light, int reused, int parsed, int removed,
+				long millis, boolean resimplified) {
+			this.previous = previous;
+			this.levels = levels;
+			this.light = light;
+			this.reused = reused;
+			this.parsed = parsed;
+			this.removed = removed;
+			this.millis = millis;
+			this.resimplified = resimplified;
+		}
+
+		/**
+		 * @return the levels this version was built from, which it should
+		 * 			only replace if they are still the ones being drawn.
+		 */
+		public LevelOfDetail getPrevious() {
+			return previous;
+		}
+
+		/**
+		 * @return the levels of the new version, the same as getPrevious if
+		 * 			only the light source has changed.
+		 */
+		public LevelOfDetail getLevels() {
+			return levels;
+		}
+
+		/**
+		 * @return the file's light source.
+		 */
+		public Vector3D getLight() {
+			return light;
+		}
+
+		/**
+		 * @return how many polygons were kept from the last version.
+		 */
+		public int getReusedCount() {
+			return reused;
+		}
+
+		/**
+		 * @return how many polygons were new or changed, so parsed again.
+		 */
+		public int getParsedCount() {
+			return parsed;
+		}
+
+		/**
+		 * @return how many polygons of the last version are gone.
+		 */
+		public int getRemovedCount() {
+			return removed;
+		}
+
+		@Override
+		public String toString() {
+			if (resimplified) {
+				return "simplified " + (levels.getLevelCount() - 1) + " levels again, in " + millis + " ms";
+			}
+			return "reloaded: " + reused + " polygons kept, " + parsed + " parsed, " + removed + " removed, in "
+					+ millis + " ms";
+		}
+	}
+}
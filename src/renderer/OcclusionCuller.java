@@ -0,0 +1,290 @@
+package renderer;
+
+import java.util.Arrays;
+
+/**
+ * Skips polygons that are certainly behind others before they are drawn, for
+ * frames looking straight down the z-axis.
+ *
+ * A few of the biggest, nearest polygons facing the camera are chosen as
+ * occluders and drawn first into a coarse depth buffer of CELL by CELL pixel
+ * cells. A cell only gets a depth if one occluder fills every pixel of it,
+ * and then the depth is the farthest that occluder is anywhere in the cell.
+ * Every other polygon is then checked against the cells its box of pixels
+ * covers, and is left out only if it is farther away than each of them, even
+ * allowing for how far its edgelist can step past its corners. So a polygon
+ * that is left out could never have filled a single pixel of the frame.
+ *
+ * The order of the polygons is kept, so drawing those left gives exactly the
+ * same frame as drawing them all.
+ */
+public class OcclusionCuller {
+
+	/** The width and height of a cell of the coarse depth buffer, in pixels. */
+	public static final int CELL = 8;
+
+	/** The most occluders drawn into the coarse depth buffer each frame. */
+	public static final int MAX_OCCLUDERS = 64;
+
+	// a polygon smaller than this on screen can't fill a cell.
+	private static final float MIN_OCCLUDER_AREA = 2 * CELL * CELL;
+
+	private final int width, height;
+	private final int columns, rows;
+	// the depth of each cell, by row then column, or infinity if no occluder
+	// fills it.
+	private final float[] depth;
+	// while drawing an occluder: how many rows of each cell in the current row
+	// of cells it fills, and the farthest it is in them.
+	private final int[] filled;
+	private final float[] farthest;
+
+	// about the last frame culled.
+	private int tested, culled, occluders;
+
+	/**
+	 * @param width
+	 * 			The width of the canvas.
+	 * @param height
+	 * 			The height of the canvas.
+	 */
+	public OcclusionCuller(int width, int height) {
+		this.width = width;
+		this.height = height;
+		columns = (width + CELL - 1) / CELL;
+		rows = (height + CELL - 1) / CELL;
+		depth = new float[columns * rows];
+		filled = new int[columns];
+		farthest = new float[columns];
+		Arrays.fill(farthest, Float.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 * Leaves out the polygons that are certainly hidden behind the occluders.
+	 *
+	 * @param vertices
+	 * 			The polygons' vertices, already on the canvas, as from
+	 * 			ViewBuffer.getVertices.
+	 * @param indices
+	 * 			Which of the polygons are to be drawn, in order, e.g. from
+	 * 			BVH.cull.
+	 * @return the polygons that might still be seen, in the same order.
+	 */
+	public int[] cull(float[] vertices, int[] indices) {
+		Arrays.fill(depth, Float.POSITIVE_INFINITY);
+		int[] chosen = chooseOccluders(vertices, indices);
+		occluders = chosen.length;
+		tested = indices.length;
+		culled = 0;
+		if (occluders == 0) {
+			return indices;
+		}
+		EdgeList edges = new EdgeList(0, 0);
+		for (int i : chosen) {
+			draw(Pipeline.computeEdgeList(vertices, i * 9, edges));
+		}
+
+		int[] kept = new int[indices.length];
+		int n = 0;
+		int[] box = new int[4];
+		for (int i : indices) {
+			int o = i * 9;
+			// polygons facing away aren't drawn anyway, so aren't worth testing.
+			if (Pipeline.isHidden(vertices, o) || !isOccluded(vertices, o, box)) {
+				kept[n++] = i;
+			}
+		}
+		culled = indices.length - n;
+		return Arrays.copyOf(kept, n);
+	}
+
+	/**
+	 * @return the MAX_OCCLUDERS polygons facing the camera with the biggest
+	 * 			area on screen, weighted towards those nearer the camera.
+	 */
+	private int[] chooseOccluders(float[] vertices, int[] indices) {
+		// those big enough to fill a cell, and how near each is.
+		int[] candidates = new int[16];
+		float[] areas = new float[16], nears = new float[16];
+		int count = 0;
+		float nearest = Float.POSITIVE_INFINITY, farthestZ = Float.NEGATIVE_INFINITY;
+		for (int i : indices) {
+			int o = i * 9;
+			float area = Math.abs((vertices[o + 3] - vertices[o]) * (vertices[o + 7] - vertices[o + 1])
+					- (vertices[o + 4] - vertices[o + 1]) * (vertices[o + 6] - vertices[o])) / 2;
+			if (area < MIN_OCCLUDER_AREA || Pipeline.isHidden(vertices, o)) {
+				continue;
+			}
+			if (count == candidates.length) {
+				candidates = Arrays.copyOf(candidates, count * 2);
+				areas = Arrays.copyOf(areas, count * 2);
+				nears = Arrays.copyOf(nears, count * 2);
+			}
+			float z = Math.min(vertices[o + 2], Math.min(vertices[o + 5], vertices[o + 8]));
+			candidates[count] = i;
+			areas[count] = area;
+			nears[count++] = z;
+			nearest = Math.min(nearest, z);
+			farthestZ = Math.max(farthestZ, z);
+		}
+		float range = farthestZ - nearest;
+
+		// a heap of the best found so far, with the worst at the top.
+		int[] best = new int[MAX_OCCLUDERS];
+		float[] scores = new float[MAX_OCCLUDERS];
+		int size = 0;
+		for (int k = 0; k < count; k++) {
+			float score = range > 0 ? areas[k] * (1 - (nears[k] - nearest) / range / 2) : areas[k];
+			if (size < MAX_OCCLUDERS) {
+				best[size] = candidates[k];
+				scores[size] = score;
+				siftUp(best, scores, size++);
+			} else if (score > scores[0]) {
+				best[0] = candidates[k];
+				scores[0] = score;
+				siftDown(best, scores, size);
+			}
+		}
+		return Arrays.copyOf(best, size);
+	}
+
+	private static void siftUp(int[] heap, float[] scores, int k) {
+		while (k > 0 && scores[(k - 1) / 2] > scores[k]) {
+			swap(heap, scores, k, (k - 1) / 2);
+			k = (k - 1) / 2;
+		}
+	}
+
+	private static void siftDown(int[] heap, float[] scores, int size) {
+		int k = 0;
+		while (k * 2 + 1 < size) {
+			int child = k * 2 + 1;
+			if (child + 1 < size && scores[child + 1] < scores[child]) {
+				child++;
+			}
+			if (scores[k] <= scores[child]) {
+				return;
+			}
+			swap(heap, scores, k, child);
+			k = child;
+		}
+	}
+
+	private static void swap(int[] heap, float[] scores, int a, int b) {
+		int i = heap[a];
+		heap[a] = heap[b];
+		heap[b] = i;
+		float s = scores[a];
+		scores[a] = scores[b];
+		scores[b] = s;
+	}
+
+	/**
+	 * Draws an occluder into the cells it fills, row by row exactly as
+	 * Pipeline.computeZBuffer would fill it in.
+	 */
+	private void draw(EdgeList edges) {
+		int top = Math.max(edges.getStartY(), 0), bottom = Math.min(edges.getEndY(), height);
+		int row = -1;
+		for (int y = top; y < bottom; y++) {
+			if (y / CELL != row) {
+				finishRow(row);
+				row = y / CELL;
+			}
+			// the pixels of the row that are filled, and the farthest of them,
+			// which is at one end or the other.
+			int left = Math.max(Math.round(edges.getLeftX(y)), 0);
+			int right = Math.min(Math.round(edges.getRightX(y)), width);
+			float z = Math.max(edges.getLeftZ(y), edges.getRightZ(y));
+			for (int c = (left + CELL - 1) / CELL; c < columns && Math.min((c + 1) * CELL, width) <= right; c++) {
+				filled[c]++;
+				farthest[c] = Math.max(farthest[c], z);
+			}
+		}
+		finishRow(row);
+	}
+
+	/**
+	 * Gives the cells in a row that the occluder filled every pixel row of
+	 * its depth there, if it is nearer than what they had.
+	 */
+	private void finishRow(int row) {
+		if (row < 0) {
+			return;
+		}
+		int pixelRows = Math.min((row + 1) * CELL, height) - row * CELL;
+		for (int c = 0; c < columns; c++) {
+			if (filled[c] == pixelRows) {
+				depth[row * columns + c] = Math.min(depth[row * columns + c], farthest[c]);
+			}
+			filled[c] = 0;
+			farthest[c] = Float.NEGATIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * @return whether a polygon is farther away than the cells at every pixel
+	 * 			it could fill.
+	 */
+	private boolean isOccluded(float[] v, int o, int[] box) {
+		// most polygons aren't behind an occluder at all, which the cell at
+		// the first corner usually shows without working out the rest.
+		float near = Math.min(v[o + 2], Math.min(v[o + 5], v[o + 8]));
+		int x = Math.round(v[o]), y = Math.round(v[o + 1]);
+		if (x >= 0 && x < width && y >= 0 && y < height && !(depth[y / CELL * columns + x / CELL] < near)) {
+			return false;
+		}
+		Pipeline.pixelBox(v, o, box, 0);
+		int left = Math.max(box[0], 0), top = Math.max(box[1], 0);
+		int right = Math.min(box[2], width), bottom = Math.min(box[3], height);
+		if (left >= right || top >= bottom) {
+			// nothing on the canvas, which isn't for this to decide.
+			return false;
+		}
+		// the nearest the polygon can be at any pixel. Filling in a row never
+		// goes past the depths at its ends, but the ends can be past the
+		// corners by up to a row's step along an edge.
+		for (int i = 0; i < 3; i++) {
+			int a = o + i * 3, b = o + (i + 1) % 3 * 3;
+			if (Math.round(v[a + 1]) != Math.round(v[b + 1])) {
+				near -= Math.abs((v[b + 2] - v[a + 2]) / (v[b + 1] - v[a + 1]));
+			}
+		}
+		// allows for rounding while stepping along the rows.
+		near -= Math.abs(near) * 1e-4f + 1e-3f;
+		for (int row = top / CELL; row <= (bottom - 1) / CELL; row++) {
+			for (int c = left / CELL; c <= (right - 1) / CELL; c++) {
+				if (!(depth[row * columns + c] < near)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return how many polygons the last frame started with.
+	 */
+	public int getTestedCount() {
+		return tested;
+	}
+
+	/**
+	 * @return how many polygons the last frame left out as hidden.
+	 */
+	public int getCulledCount() {
+		return culled;
+	}
+
+	/**
+	 * @return how many occluders the last frame was tested against.
+	 */
+	public int getOccluderCount() {
+		return occluders;
+	}
+
+	@Override
+	public String toString() {
+		return "occlusion: " + culled + " of " + tested + " polygons culled by " + occluders + " occluders";
+	}
+}
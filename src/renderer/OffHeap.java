@@ -0,0 +1,61 @@
+package renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Makes the buffers that views and visibility buffers keep their vertices and
+ * pixels in, either as ordinary arrays or outside the heap.
+ *
+ * Buffers outside the heap are never moved or scanned by the garbage
+ * collector, so keeping the big ones there means the heap doesn't need to
+ * grow with the model, and full collections don't stall on them. They are
+ * freed once the buffer itself is collected.
+ */
+public final class OffHeap {
+
+	private OffHeap() {
+	}
+
+	/**
+	 * @param count
+	 * 			How many floats the buffer holds, all 0 to start with.
+	 * @param offHeap
+	 * 			Whether to keep them outside the heap rather than in an array.
+	 */
+	public static FloatBuffer floats(int count, boolean offHeap) {
+		if (!offHeap) {
+			return FloatBuffer.wrap(new float[count]);
+		}
+		return ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+
+	/**
+	 * @param count
+	 * 			How many ints the buffer holds, all 0 to start with.
+	 * @param offHeap
+	 * 			Whether to keep them outside the heap rather than in an array.
+	 */
+	public static IntBuffer ints(int count, boolean offHeap) {
+		if (!offHeap) {
+			return IntBuffer.wrap(new int[count]);
+		}
+		return ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+
+	/**
+	 * @param count
+	 * 			How many shorts the buffer holds, all 0 to start with.
+	 * @param offHeap
+	 * 			Whether to keep them outside the heap rather than in an array.
+	 */
+	public static ShortBuffer shorts(int count, boolean offHeap) {
+		if (!offHeap) {
+			return ShortBuffer.wrap(new short[count]);
+		}
+		return ByteBuffer.allocateDirect(count * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+	}
+}
@@ -2,6 +2,8 @@ package renderer;
 
 import java.awt.Color;
 import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -18,6 +20,9 @@ import renderer.Scene.Polygon;
  */
 public class Pipeline {
 
+	/** White, packed as by Color.getRGB, which is what a cleared zbuffer is filled with. */
+	public static final int WHITE = 0xFFFFFFFF;
+
 	/**
 	 * Returns true if the given polygon is facing away from the camera (and so
 	 * should be hidden), and false otherwise. Effectively determines whether or not the
@@ -32,6 +37,39 @@ public class Pipeline {
 		return (getUnitNormal(poly).z > 0);
 	}
 
+	/**
+	 * Returns true if the polygon whose vertices are packed into an array at the
+	 * given offset is facing away from the camera, as above.
+	 * 
+	 * @param vertices
+	 * 			The packed vertices, as x, y, z for each vertex in turn.
+	 * @param offset
+	 * 			The index of the polygon's first vertex's x-value.
+	 * @return whether or not the z-component of the normal is greater than 0.
+	 */
+	public static boolean isHidden(float[] vertices, int offset) {
+		float abx = vertices[offset + 3] - vertices[offset], aby = vertices[offset + 4] - vertices[offset + 1];
+		float bcx = vertices[offset + 6] - vertices[offset + 3], bcy = vertices[offset + 7] - vertices[offset + 4];
+		return abx * bcy - aby * bcx > 0;
+	}
+
+	/**
+	 * Returns true if the given polygon is facing away from a viewer at the given
+	 * point, for when the polygon is seen in perspective rather than straight
+	 * down the z-axis.
+	 * 
+	 * @param poly
+	 * 			The polygon being calculated.
+	 * @param eye
+	 * 			The position of the viewer.
+	 * @return whether or not the polygon's normal points away from the viewer.
+	 */
+	public static boolean isHidden(Polygon poly, Vector3D eye) {
+		// only the sign matters, so the normal needn't be a unit vector.
+		Vector3D a = poly.getVertices()[0], b = poly.getVertices()[1], c = poly.getVertices()[2];
+		return b.minus(a).crossProduct(c.minus(b)).dotProduct(a.minus(eye)) >= 0;
+	}
+
 	/**
 	 * Computes the colour of a polygon on the screen, once the lights, their
 	 * angles relative to the polygon's face, and the reflectance of the polygon
@@ -82,6 +120,29 @@ public class Pipeline {
 	 * @return the total shading of the polygon, given all light sources, as a colour.
 	 */
 	public static Color getShading(Polygon poly, ArrayList<Vector3D> lightSources, ArrayList<Color> lightColours, Color ambientLight) {
+		return getShading(poly, lightSources, lightColours, ambientLight, -1);
+	}
+	
+	/**
+	 * Finds the colour from multiple light sources as above, but with some of
+	 * the lights blocked, e.g. by a shadow map.
+	 * 
+	 * @param poly
+	 * 			The polygon whose shading is being calculated.
+	 * @param lightSources
+	 * 			The directions of the light sources.
+	 * @param lightColours
+	 * 			The colours of the light sources.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @param litMask
+	 * 			Bit i is set if light source i reaches the polygon. Light sources
+	 * 			from the 32nd on always reach it.
+	 * @return the total shading of the polygon, given the light sources that
+	 * 			reach it, as a colour.
+	 */
+	public static Color getShading(Polygon poly, ArrayList<Vector3D> lightSources, ArrayList<Color> lightColours,
+			Color ambientLight, int litMask) {
 		Vector3D unitNormal = getUnitNormal(poly);
 		
 		Vector3D[] lightDirections = new Vector3D[lightSources.size()];
@@ -108,6 +169,9 @@ public class Pipeline {
 		for (int i = 0; i < 3; i++) {
 			float totalSourceValue = 0;
 			for (int j = 0; j<allTheta.length; j++) {
+				if (j < 32 && (litMask & (1 << j)) == 0) {
+					continue;
+				}
 				totalSourceValue += lightSourceIntensities[j][i] * Math.max(0, Math.cos(allTheta[j]));
 			}
 			rgbO[i] = (int) (((rgbA[i] + totalSourceValue)) * rgbR[i]);
@@ -141,7 +205,7 @@ public class Pipeline {
 	 * 			The polygon whose display colour is being calculated.
 	 * @return a unit vector defining the direction of the polygon's normal
 	 */
-	private static Vector3D getUnitNormal(Polygon poly) {
+	static Vector3D getUnitNormal(Polygon poly) {
 		Vector3D a = poly.getVertices()[0], b = poly.getVertices()[1], c = poly.getVertices()[2];
 		return b.minus(a).crossProduct(c.minus(b)).unitVector();
 	}
@@ -200,35 +264,50 @@ public class Pipeline {
 		if (scene == null) {
 			return null;
 		}
-		Transform tX = Transform.newXRotation(xAngle);
-		Transform tY = Transform.newYRotation(yAngle);
-
-		List<Polygon> newPolygons = new ArrayList<>(scene.getPolygons());
+		// rotates around the x-axis first, then the y-axis.
+		Transform t = Transform.newYRotation(yAngle).compose(Transform.newXRotation(xAngle));
+		return transformScene(scene, t, true);
+	}
 
-		for (Scene.Polygon p : newPolygons) {
-			for (int i = 0; i < p.getVertices().length; i++) {
-				if (xAngle != 0.0f) {
-					p.getVertices()[i] = tX.multiply(p.getVertices()[i]);
-				}
-				if (yAngle != 0.0f) {
-					p.getVertices()[i] = tY.multiply(p.getVertices()[i]);
-				}
-			}
+	/**
+	 * Applies a transform to every polygon in a scene, and optionally to the
+	 * light directions too. Nothing in the original scene is changed, so it can
+	 * still be used by anything else that shares it.
+	 * 
+	 * @param scene
+	 * 			The original Scene.
+	 * @param t
+	 * 			The transform to apply.
+	 * @param transformLights
+	 * 			Whether the light directions should be transformed as well.
+	 * @return a new Scene, with new Polygons and a new list of lights.
+	 */
+	public static Scene transformScene(Scene scene, Transform t, boolean transformLights) {
+		List<Polygon> newPolygons = new ArrayList<>(scene.getPolygons().size());
+		for (Polygon p : scene.getPolygons()) {
+			newPolygons.add(transformPolygon(p, t));
 		}
-		ArrayList<Vector3D> newLightSources = scene.getLights();
-
-		for (int i=0; i<newLightSources.size(); i++) {
-			if (xAngle != 0.0f) {
-				newLightSources.set(i, tX.multiply(scene.getLights().get(i)));
-			}
-			if (yAngle != 0.0f) {
-				newLightSources.set(i, tY.multiply(scene.getLights().get(i)));
+		
+		ArrayList<Vector3D> newLightSources = null;
+		if (scene.getLights() != null) {
+			newLightSources = new ArrayList<>(scene.getLights().size());
+			for (Vector3D light : scene.getLights()) {
+				newLightSources.add(transformLights ? t.multiply(light) : light);
 			}
 		}
-
 		return new Scene(newPolygons, newLightSources);
 	}
 
+	/**
+	 * @return a new polygon with each of the given polygon's vertices transformed,
+	 * 			and everything else about it the same.
+	 */
+	public static Polygon transformPolygon(Polygon poly, Transform t) {
+		Vector3D[] v = poly.getVertices();
+		return new Polygon(t.multiply(v[0]), t.multiply(v[1]), t.multiply(v[2]), poly.getReflectanceRGB(),
+				poly.getShininess());
+	}
+
 	/**
 	 * This should translate the scene by the appropriate amount.
 	 * Calculates the difference between the top-left corner of the object, and the origin.
@@ -239,20 +318,26 @@ public class Pipeline {
 	 * @return a translated scene.
 	 */
 	public static Scene translateScene(Scene scene) {
-		Rectangle bBox = boundingBox(scene.getPolygons());
-		
+		return translateScene(scene, boundingBox(scene.getPolygons()));
+	}
+	
+	/**
+	 * Translates the scene as above, but with a bounding box that has already
+	 * been worked out (e.g. by a BVH), saving a pass over every vertex.
+	 * 
+	 * @param scene
+	 * 			The current scene.
+	 * @param bBox
+	 * 			The bounding box of the scene's polygons.
+	 * @return a translated scene.
+	 */
+	public static Scene translateScene(Scene scene, Rectangle bBox) {
 		float xDiff = -bBox.x;
 		float yDiff = -bBox.y;
 		
 		Transform t = Transform.newTranslation(new Vector3D(xDiff, yDiff, 0));
-		
-		for (Scene.Polygon p : scene.getPolygons()) {
-			for (int i=0; i<p.getVertices().length; i++) {
-				p.getVertices()[i] = t.multiply(p.getVertices()[i]);
-			}
-		}
-		
-		return new Scene(scene.getPolygons(), scene.getLights());
+		// lights are directions, so moving the scene doesn't change them.
+		return transformScene(scene, t, false);
 	}
 
 	/**
@@ -264,41 +349,71 @@ public class Pipeline {
 	 * @return a new, scaled scene.
 	 */
 	public static Scene scaleScene(Scene scene) {
-		Rectangle bBox = boundingBox(scene.getPolygons());
-		
-		float width = (float) (bBox.getWidth());
-		float height = (float) (bBox.getHeight());
-		
-		float scaleFactor = 1;
-		
-		// determines whether or not the longest length of the shape is the width or height.
-		boolean useWidth = (width - GUI.CANVAS_WIDTH > height - GUI.CANVAS_HEIGHT);
+		return scaleScene(scene, boundingBox(scene.getPolygons()));
+	}
+	
+	/**
+	 * Scales the scene as above, but with a bounding box that has already
+	 * been worked out (e.g. by a BVH), saving a pass over every vertex.
+	 * 
+	 * @param scene
+	 * 			The current scene.
+	 * @param bBox
+	 * 			The bounding box of the scene's polygons.
+	 * @return a new, scaled scene.
+	 */
+	public static Scene scaleScene(Scene scene, Rectangle bBox) {
+		float scaleFactor = scaleFactor(bBox);
 		
-		if (width > GUI.CANVAS_WIDTH && useWidth) {
-			scaleFactor = GUI.CANVAS_WIDTH / width;
-		}
-		if (height > GUI.CANVAS_HEIGHT && !useWidth) {
-			scaleFactor = GUI.CANVAS_HEIGHT / height;
-		}
 		// saves processing time by stopping if the shape won't be scaled.
 		if (scaleFactor == 1.0f) {
 			return scene;
 		}
 		
 		Transform t = Transform.newScale(scaleFactor, scaleFactor, scaleFactor);
+		return transformScene(scene, t, true);
+	}
+	
+	/**
+	 * Finds the factor by which an object with the given bounding box must be
+	 * scaled so that it fits on the canvas.
+	 * 
+	 * @param bBox
+	 * 			The bounding box of the object.
+	 * @return the scale factor, which is 1 if the object already fits.
+	 */
+	public static float scaleFactor(Rectangle bBox) {
+		return scaleFactor(bBox, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+	}
+	
+	/**
+	 * Finds the factor by which an object with the given bounding box must be
+	 * scaled so that it fits in an area of the given size, e.g. a viewport.
+	 * 
+	 * @param bBox
+	 * 			The bounding box of the object.
+	 * @param width
+	 * 			The width of the area.
+	 * @param height
+	 * 			The height of the area.
+	 * @return the scale factor, which is 1 if the object already fits.
+	 */
+	public static float scaleFactor(Rectangle bBox, int width, int height) {
+		float boxWidth = (float) (bBox.getWidth());
+		float boxHeight = (float) (bBox.getHeight());
 		
-		for (Scene.Polygon p : scene.getPolygons()) {
-			for (int i=0; i<p.getVertices().length; i++) {
-				p.getVertices()[i] = t.multiply(p.getVertices()[i]);
-			}
-		}
+		float scaleFactor = 1;
 		
-		ArrayList<Vector3D> newLights = scene.getLights();
-		for (int i=0; i<newLights.size(); i++) {
-			newLights.set(i, t.multiply(newLights.get(i)));
-		}
+		// determines whether or not the longest length of the shape is the width or height.
+		boolean useWidth = (boxWidth - width > boxHeight - height);
 		
-		return new Scene(scene.getPolygons(), newLights);
+		if (boxWidth > width && useWidth) {
+			scaleFactor = width / boxWidth;
+		}
+		if (boxHeight > height && !useWidth) {
+			scaleFactor = height / boxHeight;
+		}
+		return scaleFactor;
 	}
 	
 	/**
@@ -334,6 +449,590 @@ public class Pipeline {
 				Math.round(maxY - minY));
 	}
 
+	/**
+	 * How far outside the canvas, in multiples of half its size, polygons are
+	 * allowed to go before they are clipped. Clipping as little as possible is
+	 * cheaper, but a polygon right next to the viewer can end up huge on screen,
+	 * and its edge list would be just as huge.
+	 */
+	private static final float GUARD_BAND = 2;
+
+	// the most light sources that cast shadows in drawPolygonsWithShadows.
+	private static final int MAX_SHADOWED_LIGHTS = 8;
+	
+	// the planes a projected polygon is clipped to, as {a, b, c, d} where
+	// ax + by + cz + dw >= 0 is inside: the near plane, then the four sides.
+	private static final float[][] CLIP_PLANES = {
+			{ 0, 0, 1, 0 },
+			{ 1, 0, 0, GUARD_BAND }, { -1, 0, 0, GUARD_BAND },
+			{ 0, 1, 0, GUARD_BAND }, { 0, -1, 0, GUARD_BAND } };
+
+	/**
+	 * Projects a polygon onto the canvas in perspective. The polygon is clipped
+	 * to the near plane (and to a guard band around the canvas) first, which can
+	 * turn it into several triangles, or none if it is entirely behind the
+	 * viewer. The results are divided through by w and moved onto the canvas.
+	 * 
+	 * The z-value of each projected vertex is its depth z/w, which goes from 0
+	 * at the near plane to 1 at the far plane. Unlike the depth of the original
+	 * point, z/w changes linearly across the screen, so computeEdgeList and
+	 * computeZBuffer interpolate it correctly even in perspective.
+	 * 
+	 * @param poly
+	 * 			The polygon, in the viewer's coordinates.
+	 * @param projection
+	 * 			The projection to apply, e.g. from Projection.newPerspective.
+	 * @return the visible parts of the polygon as triangles on the canvas, each
+	 * 			with the same reflectance as the original.
+	 */
+	public static List<Polygon> projectPolygon(Polygon poly, Projection projection) {
+		return projectPolygon(poly, projection, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+	}
+	
+	/**
+	 * Projects a polygon as above, onto a screen of the given size.
+	 * 
+	 * @param poly
+	 * 			The polygon, in the viewer's coordinates.
+	 * @param projection
+	 * 			The perspective projection.
+	 * @param width
+	 * 			The width of the screen, in pixels.
+	 * @param height
+	 * 			The height of the screen, in pixels.
+	 * @return the visible part of the polygon as zero or more triangles.
+	 */
+	public static List<Polygon> projectPolygon(Polygon poly, Projection projection, int width, int height) {
+		Vector3D[] v = poly.getVertices();
+		Projector projector = new Projector(null, projection, width, height);
+		int count = projector.projectViewed(
+				new float[] { v[0].x, v[0].y, v[0].z, v[1].x, v[1].y, v[1].z, v[2].x, v[2].y, v[2].z }, 0);
+		float[] t = projector.getTriangles();
+		List<Polygon> triangles = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int o = i * 9;
+			triangles.add(new Polygon(new Vector3D(t[o], t[o + 1], t[o + 2]), new Vector3D(t[o + 3], t[o + 4], t[o + 5]),
+					new Vector3D(t[o + 6], t[o + 7], t[o + 8]), poly.getReflectanceRGB(), poly.getShininess()));
+		}
+		return triangles;
+	}
+
+	/**
+	 * Projects polygons in perspective one at a time, as projectPolygon does,
+	 * without making any objects for them, so drawing a frame in perspective
+	 * makes no more garbage than drawing one straight down the z-axis. The
+	 * arrays it works in are kept from one polygon to the next, so each
+	 * thread needs its own.
+	 */
+	public static class Projector {
+		// the most vertices clipping a triangle to every plane can leave.
+		private static final int MAX_VERTICES = 3 + CLIP_PLANES.length;
+
+		private final Transform eye;
+		private final Projection projection;
+		private final int width, height;
+		// the polygon in the camera's coordinates, then in clip coordinates as
+		// x, y, z and w for each vertex, clipped from one array to the other
+		// and back, and the triangles it ends up as.
+		private final float[] viewed = new float[9];
+		private float[] clipped = new float[MAX_VERTICES * 4], into = new float[MAX_VERTICES * 4];
+		private final float[] triangles = new float[(MAX_VERTICES - 2) * 9];
+
+		/**
+		 * @param eye
+		 * 			Moves the polygons so the viewer is at the origin, looking
+		 * 			down the positive z-axis, or null if they already are.
+		 * @param projection
+		 * 			The perspective projection, e.g. from
+		 * 			Projection.newPerspective.
+		 * @param width
+		 * 			The width of the screen, in pixels.
+		 * @param height
+		 * 			The height of the screen, in pixels.
+		 */
+		public Projector(Transform eye, Projection projection, int width, int height) {
+			this.eye = eye;
+			this.projection = projection;
+			this.width = width;
+			this.height = height;
+		}
+
+		/**
+		 * Moves a polygon to the camera and, unless it faces away from the
+		 * viewer, projects it.
+		 * 
+		 * @param vertices
+		 * 			The packed vertices, as x, y, z for each vertex in turn, e.g.
+		 * 			a ViewBuffer's.
+		 * @param offset
+		 * 			The index of the polygon's first vertex's x-value.
+		 * @return how many triangles the visible part of the polygon is, now
+		 * 			at the start of getTriangles, or 0 if it faces away or is
+		 * 			out of view.
+		 */
+		public int project(float[] vertices, int offset) {
+			for (int k = 0; k < 9; k += 3) {
+				float x = vertices[offset + k], y = vertices[offset + k + 1], z = vertices[offset + k + 2];
+				if (eye == null) {
+					viewed[k] = x;
+					viewed[k + 1] = y;
+					viewed[k + 2] = z;
+				} else {
+					// in the same order as Transform.multiply, so the results
+					// are the same to the last bit.
+					viewed[k] = eye.get(0, 3) + (eye.get(0, 0) * x + eye.get(0, 1) * y + eye.get(0, 2) * z);
+					viewed[k + 1] = eye.get(1, 3) + (eye.get(1, 0) * x + eye.get(1, 1) * y + eye.get(1, 2) * z);
+					viewed[k + 2] = eye.get(2, 3) + (eye.get(2, 0) * x + eye.get(2, 1) * y + eye.get(2, 2) * z);
+				}
+			}
+			if (isHiddenFromOrigin(viewed)) {
+				return 0;
+			}
+			return projectViewed(viewed, 0);
+		}
+
+		/**
+		 * Projects a polygon already in the camera's coordinates, whichever
+		 * way it faces.
+		 * 
+		 * @return how many triangles the visible part of the polygon is, now
+		 * 			at the start of getTriangles.
+		 */
+		int projectViewed(float[] vertices, int offset) {
+			for (int k = 0; k < 3; k++) {
+				float x = vertices[offset + k * 3], y = vertices[offset + k * 3 + 1], z = vertices[offset + k * 3 + 2];
+				for (int row = 0; row < 4; row++) {
+					clipped[k * 4 + row] = projection.get(row, 0) * x + projection.get(row, 1) * y
+							+ projection.get(row, 2) * z + projection.get(row, 3);
+				}
+			}
+			int n = 3;
+			for (float[] plane : CLIP_PLANES) {
+				n = clip(n, plane);
+				if (n == 0) {
+					return 0;
+				}
+			}
+			// each vertex onto the screen, then fanned out into triangles.
+			for (int i = 0; i < n; i++) {
+				int c = i * 4;
+				float w = clipped[c + 3];
+				clipped[c] = (clipped[c] / w + 1) * width / 2;
+				clipped[c + 1] = (clipped[c + 1] / w + 1) * height / 2;
+				clipped[c + 2] = clipped[c + 2] / w;
+			}
+			for (int i = 1; i < n - 1; i++) {
+				put(i - 1, 0, 0);
+				put(i - 1, 1, i);
+				put(i - 1, 2, i + 1);
+			}
+			return n - 2;
+		}
+
+		private void put(int triangle, int corner, int vertex) {
+			System.arraycopy(clipped, vertex * 4, triangles, triangle * 9 + corner * 3, 3);
+		}
+
+		/**
+		 * Clips the convex polygon in clipped to one plane (Sutherland-Hodgman),
+		 * leaving the result in clipped.
+		 * 
+		 * @return how many vertices it has left.
+		 */
+		private int clip(int n, float[] plane) {
+			int m = 0;
+			for (int i = 0; i < n; i++) {
+				int a = i * 4, b = (i + 1) % n * 4;
+				float da = plane[0] * clipped[a] + plane[1] * clipped[a + 1] + plane[2] * clipped[a + 2]
+						+ plane[3] * clipped[a + 3];
+				float db = plane[0] * clipped[b] + plane[1] * clipped[b + 1] + plane[2] * clipped[b + 2]
+						+ plane[3] * clipped[b + 3];
+				if (da >= 0) {
+					System.arraycopy(clipped, a, into, m++ * 4, 4);
+				}
+				if ((da >= 0) != (db >= 0)) {
+					float t = da / (da - db);
+					for (int k = 0; k < 4; k++) {
+						into[m * 4 + k] = clipped[a + k] + t * (clipped[b + k] - clipped[a + k]);
+					}
+					m++;
+				}
+			}
+			float[] swap = clipped;
+			clipped = into;
+			into = swap;
+			return m;
+		}
+
+		/**
+		 * @return the triangles the last polygon projected became, packed as
+		 * 			x, y, z for each vertex in turn, with z its depth z/w.
+		 */
+		public float[] getTriangles() {
+			return triangles;
+		}
+	}
+
+	/**
+	 * As isHidden(Polygon, Vector3D), for a packed polygon and a viewer at the
+	 * origin.
+	 */
+	private static boolean isHiddenFromOrigin(float[] v) {
+		float abx = v[3] - v[0], aby = v[4] - v[1], abz = v[5] - v[2];
+		float bcx = v[6] - v[3], bcy = v[7] - v[4], bcz = v[8] - v[5];
+		float nx = aby * bcz - abz * bcy;
+		float ny = abz * bcx - abx * bcz;
+		float nz = abx * bcy - aby * bcx;
+		return nx * v[0] + ny * v[1] + nz * v[2] >= 0;
+	}
+
+	/**
+	 * Fills the zbuffer with white, and the zdepth with infinity, ready for a
+	 * new frame.
+	 */
+	public static void clearBuffers(Color[][] zBuffer, float[][] zDepth) {
+		for (int x = 0; x < zBuffer.length; x++) {
+			for (int y = 0; y < zBuffer[x].length; y++) {
+				zBuffer[x][y] = Color.white;
+				zDepth[x][y] = Float.POSITIVE_INFINITY;
+			}
+		}
+	}
+
+	/**
+	 * As above, for a zbuffer of packed colours, which is what the renderer
+	 * draws into so that filling a pixel doesn't need a Color.
+	 */
+	public static void clearBuffers(int[][] zBuffer, float[][] zDepth) {
+		for (int x = 0; x < zBuffer.length; x++) {
+			Arrays.fill(zBuffer[x], WHITE);
+			Arrays.fill(zDepth[x], Float.POSITIVE_INFINITY);
+		}
+	}
+
+	/**
+	 * Copies a zbuffer of packed colours into a new image.
+	 */
+	public static BufferedImage toImage(int[][] zBuffer) {
+		int width = zBuffer.length, height = width == 0 ? 0 : zBuffer[0].length;
+		BufferedImage image = new BufferedImage(Math.max(width, 1), Math.max(height, 1), BufferedImage.TYPE_INT_RGB);
+		// writes straight into the image's pixels, which setRGB would convert
+		// one at a time. The zbuffer is column by column and the image row by
+		// row.
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		for (int x = 0; x < width; x++) {
+			int[] column = zBuffer[x];
+			for (int y = 0; y < height; y++) {
+				pixels[x + y * width] = column[y];
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Draws polygons into the zbuffer looking straight down the z-axis, hiding,
+	 * shading and filling in each one.
+	 * 
+	 * Shading uses the original polygons and light directions rather than the
+	 * transformed ones, since the lights turn with the model and so the angle
+	 * between a polygon and a light is the same from any view. Only the
+	 * highlights of shiny polygons depend on the view, through the direction of
+	 * the viewer relative to the model.
+	 * 
+	 * @param zBuffer
+	 * 			The colour of each pixel so far.
+	 * @param zDepth
+	 * 			The depth of each pixel so far.
+	 * @param view
+	 * 			The scene as seen from the camera, already on the canvas.
+	 * @param indices
+	 * 			Which of the polygons to draw, e.g. from ViewBuffer.cull.
+	 * @param lightSources
+	 * 			The directions of the light sources, relative to the model.
+	 * @param lightColours
+	 * 			The colours of the light sources.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 */
+	public static void drawPolygons(int[][] zBuffer, float[][] zDepth, ViewBuffer view, int[] indices,
+			ArrayList<Vector3D> lightSources, ArrayList<Color> lightColours, Color ambientLight) {
+		drawPolygons(zBuffer, zDepth, view, indices, LightManager.exact(lightSources, lightColours), ambientLight);
+	}
+
+	/**
+	 * Draws polygons into the zbuffer looking straight down the z-axis as
+	 * above, shading them with lights already combined by a LightManager.
+	 * 
+	 * @param zBuffer
+	 * 			The colour of each pixel so far.
+	 * @param zDepth
+	 * 			The depth of each pixel so far.
+	 * @param view
+	 * 			The scene as seen from the camera, already on the canvas.
+	 * @param indices
+	 * 			Which of the polygons to draw, e.g. from ViewBuffer.cull.
+	 * @param lights
+	 * 			The light sources, relative to the model.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 */
+	public static void drawPolygons(int[][] zBuffer, float[][] zDepth, ViewBuffer view, int[] indices,
+			LightManager lights, Color ambientLight) {
+		List<Polygon> polygons = view.getSource().getPolygons();
+		Vector3D viewer = view.getViewer();
+		int ambient = ambientLight.getRGB();
+		float[] vertices = view.getVertices();
+		// filled in again for each polygon, rather than making one for each.
+		EdgeList edges = new EdgeList(0, 0);
+		for (int i : indices) {
+			// determines if the polygon should be rendered.
+			if (!isHidden(vertices, i * 9)) {
+				// gets the display colour of the polygon.
+				int c = lights.getShadingRGB(polygons.get(i), ambient, viewer, -1);
+				// adds the polygon's zBuffer to the total zBuffer.
+				computeZBuffer(zBuffer, zDepth, computeEdgeList(vertices, i * 9, edges), c);
+			}
+		}
+	}
+
+	/**
+	 * Draws polygons into the zbuffer looking straight down the z-axis as
+	 * drawPolygons does, but leaving out each light wherever its shadow map
+	 * says something nearer to the light is in the way.
+	 * 
+	 * Whether a pixel is lit is looked up in the shadow maps, at the point of
+	 * the original model under that pixel, so polygons can be partly in shadow.
+	 * Lights that a polygon faces away from add nothing to it anyway, so are not
+	 * looked up. Of the lights a polygon faces, only the first 8 are looked up,
+	 * and any after them light it as if nothing were in the way.
+	 * 
+	 * @param zBuffer
+	 * 			The colour of each pixel so far.
+	 * @param zDepth
+	 * 			The depth of each pixel so far.
+	 * @param view
+	 * 			The scene as seen from the camera, already on the canvas.
+	 * @param indices
+	 * 			Which of the polygons to draw, e.g. from ViewBuffer.cull.
+	 * @param lightSources
+	 * 			The directions of the light sources, relative to the model.
+	 * @param lightColours
+	 * 			The colours of the light sources.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @param shadowMaps
+	 * 			A shadow map of the view's scene for each light source, e.g.
+	 * 			from a ShadowCache.
+	 */
+	public static void drawPolygonsWithShadows(int[][] zBuffer, float[][] zDepth, ViewBuffer view, int[] indices,
+			ArrayList<Vector3D> lightSources, ArrayList<Color> lightColours, Color ambientLight,
+			ShadowMap[] shadowMaps) {
+		drawPolygonsWithShadows(zBuffer, zDepth, view, indices, LightManager.exact(lightSources, lightColours),
+				ambientLight, shadowMaps);
+	}
+
+	/**
+	 * Draws polygons with shadows as above, shading them with lights already
+	 * combined by a LightManager.
+	 * 
+	 * @param zBuffer
+	 * 			The colour of each pixel so far.
+	 * @param zDepth
+	 * 			The depth of each pixel so far.
+	 * @param view
+	 * 			The scene as seen from the camera, already on the canvas.
+	 * @param indices
+	 * 			Which of the polygons to draw, e.g. from ViewBuffer.cull.
+	 * @param lights
+	 * 			The light sources, relative to the model.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @param shadowMaps
+	 * 			A shadow map of the view's scene for each of the manager's
+	 * 			combined lights, e.g. from a ShadowCache given its directions.
+	 */
+	public static void drawPolygonsWithShadows(int[][] zBuffer, float[][] zDepth, ViewBuffer view, int[] indices,
+			LightManager lights, Color ambientLight, ShadowMap[] shadowMaps) {
+		List<Polygon> polygons = view.getSource().getPolygons();
+		Vector3D viewer = view.getViewer();
+		int ambient = ambientLight.getRGB();
+		float[] v = view.getVertices();
+		int[] tested = new int[MAX_SHADOWED_LIGHTS];
+		// per tested light: each map coordinate at the first vertex, and how it
+		// changes along x and y on the screen.
+		float[][] gradients = new float[MAX_SHADOWED_LIGHTS][9];
+		// filled in again for each polygon, rather than making one for each.
+		EdgeList edges = new EdgeList(0, 0);
+
+		for (int i : indices) {
+			int o = i * 9;
+			if (isHidden(v, o)) {
+				continue;
+			}
+			Polygon poly = polygons.get(i);
+			Vector3D normal = getUnitNormal(poly);
+			int count = 0;
+			for (int j = 0; j < shadowMaps.length && count < MAX_SHADOWED_LIGHTS; j++) {
+				if (normal.dotProduct(lights.getDirection(j)) > 0) {
+					tested[count++] = j;
+				}
+			}
+			float det = (v[o + 3] - v[o]) * (v[o + 7] - v[o + 1]) - (v[o + 6] - v[o]) * (v[o + 4] - v[o + 1]);
+			if (count == 0 || det == 0) {
+				computeZBuffer(zBuffer, zDepth, computeEdgeList(v, o, edges),
+						lights.getShadingRGB(poly, ambient, viewer, -1));
+				continue;
+			}
+			for (int t = 0; t < count; t++) {
+				Transform toMap = shadowMaps[tested[t]].getTransform();
+				Vector3D[] mv = poly.getVertices();
+				Vector3D a = toMap.multiply(mv[0]), b = toMap.multiply(mv[1]), c = toMap.multiply(mv[2]);
+				float[] at = { a.x, a.y, a.z }, bt = { b.x, b.y, b.z }, ct = { c.x, c.y, c.z };
+				for (int q = 0; q < 3; q++) {
+					float d1 = bt[q] - at[q], d2 = ct[q] - at[q];
+					gradients[t][q * 3] = at[q];
+					gradients[t][q * 3 + 1] = (d1 * (v[o + 7] - v[o + 1]) - d2 * (v[o + 4] - v[o + 1])) / det;
+					gradients[t][q * 3 + 2] = (d2 * (v[o + 3] - v[o]) - d1 * (v[o + 6] - v[o])) / det;
+				}
+			}
+
+			// the colour for each combination of the tested lights being blocked,
+			// worked out when first needed. A shaded colour is never 0, since its
+			// alpha is 255.
+			int[] colours = new int[1 << count];
+			computeEdgeList(v, o, edges);
+			float x0 = v[o], y0 = v[o + 1];
+			for (int y = edges.getStartY(); y < edges.getEndY(); y++) {
+				float slope = (edges.getRightZ(y) - edges.getLeftZ(y))
+						/ (edges.getRightX(y) - edges.getLeftX(y));
+				float z = edges.getLeftZ(y);
+				int x = Math.round(edges.getLeftX(y));
+				while (x <= Math.round(edges.getRightX(y)) - 1) {
+					if (withinBounds(zBuffer, x, y) && z < zDepth[x][y]) {
+						int blocked = 0;
+						for (int t = 0; t < count; t++) {
+							float[] g = gradients[t];
+							float dx = x - x0, dy = y - y0;
+							if (!shadowMaps[tested[t]].isLit(g[0] + g[1] * dx + g[2] * dy,
+									g[3] + g[4] * dx + g[5] * dy, g[6] + g[7] * dx + g[8] * dy)) {
+								blocked |= 1 << t;
+							}
+						}
+						if (colours[blocked] == 0) {
+							int litMask = -1;
+							for (int t = 0; t < count; t++) {
+								if ((blocked & (1 << t)) != 0) {
+									litMask &= ~(1 << tested[t]);
+								}
+							}
+							colours[blocked] = lights.getShadingRGB(poly, ambient, viewer, litMask);
+						}
+						zBuffer[x][y] = colours[blocked];
+						zDepth[x][y] = z;
+					}
+					z += slope;
+					x++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Draws polygons into the zbuffer in perspective. Each polygon is moved into
+	 * the viewer's coordinates and hidden if it faces away from the viewer,
+	 * before being projected and clipped.
+	 * 
+	 * This does more work per polygon than drawPolygons: an extra transform,
+	 * the clipping, the divide by w, and the new polygons it makes.
+	 * 
+	 * @param zBuffer
+	 * 			The colour of each pixel so far.
+	 * @param zDepth
+	 * 			The depth of each pixel so far, which will be between 0 and 1.
+	 * @param view
+	 * 			The scene as seen from the camera, already on the canvas.
+	 * @param indices
+	 * 			Which of the polygons to draw, e.g. from ViewBuffer.cull.
+	 * @param eye
+	 * 			Moves the scene so the viewer is at the origin, looking down the
+	 * 			positive z-axis.
+	 * @param projection
+	 * 			The perspective projection, e.g. from Projection.newPerspective.
+	 * @param lightSources
+	 * 			The directions of the light sources, relative to the model.
+	 * @param lightColours
+	 * 			The colours of the light sources.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 */
+	public static void drawPolygonsInPerspective(int[][] zBuffer, float[][] zDepth, ViewBuffer view,
+			int[] indices, Transform eye, Projection projection,
+			ArrayList<Vector3D> lightSources, ArrayList<Color> lightColours, Color ambientLight) {
+		drawPolygonsInPerspective(zBuffer, zDepth, view, indices, eye, projection,
+				LightManager.exact(lightSources, lightColours), ambientLight);
+	}
+
+	/**
+	 * Draws polygons into the zbuffer in perspective as above, shading them with
+	 * lights already combined by a LightManager.
+	 * 
+	 * @param zBuffer
+	 * 			The colour of each pixel so far.
+	 * @param zDepth
+	 * 			The depth of each pixel so far, which will be between 0 and 1.
+	 * @param view
+	 * 			The scene as seen from the camera, already on the canvas.
+	 * @param indices
+	 * 			Which of the polygons to draw, e.g. from ViewBuffer.cull.
+	 * @param eye
+	 * 			Moves the scene so the viewer is at the origin, looking down the
+	 * 			positive z-axis.
+	 * @param projection
+	 * 			The perspective projection, e.g. from Projection.newPerspective.
+	 * @param lights
+	 * 			The light sources, relative to the model.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 */
+	public static void drawPolygonsInPerspective(int[][] zBuffer, float[][] zDepth, ViewBuffer view,
+			int[] indices, Transform eye, Projection projection, LightManager lights, Color ambientLight) {
+		List<Polygon> polygons = view.getSource().getPolygons();
+		Vector3D viewer = view.getViewer();
+		int ambient = ambientLight.getRGB();
+		float[] v = view.getVertices();
+		Projector projector = new Projector(eye, projection, zBuffer.length, zBuffer[0].length);
+		float[] triangles = projector.getTriangles();
+		// filled in again for each triangle, rather than making one for each.
+		EdgeList edges = new EdgeList(0, 0);
+		for (int i : indices) {
+			int count = projector.project(v, i * 9);
+			if (count == 0) {
+				continue;
+			}
+			int c = lights.getShadingRGB(polygons.get(i), ambient, viewer, -1);
+			for (int t = 0; t < count; t++) {
+				computeZBuffer(zBuffer, zDepth, computeEdgeList(triangles, t * 9, edges), c);
+			}
+		}
+	}
+
+	/**
+	 * Fills in triangles already hidden, shaded and edge-listed by a
+	 * GeometryStage, in the batch's order.
+	 * 
+	 * @param zBuffer
+	 * 			The colour of each pixel so far.
+	 * @param zDepth
+	 * 			The depth of each pixel so far.
+	 * @param batch
+	 * 			The triangles to fill in.
+	 */
+	public static void drawBatch(int[][] zBuffer, float[][] zDepth, GeometryStage.Batch batch) {
+		for (int i = 0; i < batch.size(); i++) {
+			computeZBuffer(zBuffer, zDepth, batch.getEdges(i), batch.getColour(i));
+		}
+	}
+
 	/**
 	 * Computes the edgelist of a single provided polygon, as per the lecture
 	 * slides.
@@ -343,56 +1042,154 @@ public class Pipeline {
 	 * @return the edgelist of the polygon.
 	 */
 	public static EdgeList computeEdgeList(Polygon poly) {
-		Vector3D[] vectors = Arrays.copyOf(poly.getVertices(), 3);
-		
-		int minY = Integer.MAX_VALUE;
-		int maxY = -Integer.MAX_VALUE;
-		
-		for (Vector3D v : vectors) {
-			if (v.y > maxY) {
-				maxY = Math.round(v.y);
-			}
-			if (v.y < minY) {
-				minY = Math.round(v.y);
-			}
+		return computeEdgeList(poly, null);
+	}
+
+	/**
+	 * As above, filling in an edgelist that is already made.
+	 * 
+	 * @param poly
+	 * 			The given polygon being rendered at the time.
+	 * @param reuse
+	 * 			The edgelist to fill in, whatever it held before, or null to
+	 * 			make a new one.
+	 * @return reuse, or the new edgelist if it was null.
+	 */
+	public static EdgeList computeEdgeList(Polygon poly, EdgeList reuse) {
+		Vector3D[] v = poly.getVertices();
+		EdgeList edgeList = startEdgeList(reuse, v[0].y, v[1].y, v[2].y);
+		for (int i = 0; i < 3; i++) {
+			Vector3D a = v[i], b = v[(i + 1) % 3];
+			addEdge(edgeList, a.x, a.y, a.z, b.x, b.y, b.z);
 		}
-		EdgeList edgeList = new EdgeList(minY, maxY);
+		return edgeList;
+	}
 
-		Vector3D a;
-		Vector3D b;
+	/**
+	 * Computes the edgelist of a polygon whose vertices are packed into an
+	 * array, e.g. a ViewBuffer's, without making a Polygon for it first.
+	 * 
+	 * @param vertices
+	 * 			The packed vertices, as x, y, z for each vertex in turn.
+	 * @param offset
+	 * 			The index of the polygon's first vertex's x-value.
+	 * @return the edgelist of the polygon.
+	 */
+	public static EdgeList computeEdgeList(float[] vertices, int offset) {
+		return computeEdgeList(vertices, offset, null);
+	}
 
+	/**
+	 * As above, filling in an edgelist that is already made, so that drawing
+	 * a frame can use the same one for every polygon rather than making tens
+	 * of thousands of them.
+	 * 
+	 * @param vertices
+	 * 			The packed vertices, as x, y, z for each vertex in turn.
+	 * @param offset
+	 * 			The index of the polygon's first vertex's x-value.
+	 * @param reuse
+	 * 			The edgelist to fill in, whatever it held before, or null to
+	 * 			make a new one.
+	 * @return reuse, or the new edgelist if it was null.
+	 */
+	public static EdgeList computeEdgeList(float[] vertices, int offset, EdgeList reuse) {
+		EdgeList edgeList = startEdgeList(reuse, vertices[offset + 1], vertices[offset + 4], vertices[offset + 7]);
 		for (int i = 0; i < 3; i++) {
-			a = vectors[i];
-			b = vectors[(i + 1) % 3];
-
-			float slopeX = (b.x - a.x) / (b.y - a.y);
-			float slopeZ = (b.z - a.z) / (b.y - a.y);
-
-			float x = a.x;
-			int y = Math.round(a.y);
-			float z = a.z;
-
-			if (a.y < b.y) {
-				while (y <= Math.round(b.y)) {
-					edgeList.setLeftX(y, x);
-					edgeList.setLeftZ(y, z);
-					x += slopeX;
-					z += slopeZ;
-					y++;
-				}
-			} else {
-				while (y >= Math.round(b.y)) {
-					edgeList.setRightX(y, x);
-					edgeList.setRightZ(y, z);
-					x -= slopeX;
-					z -= slopeZ;
-					y--;
-				}
-			}
+			int a = offset + i * 3;
+			int b = offset + ((i + 1) % 3) * 3;
+			addEdge(edgeList, vertices[a], vertices[a + 1], vertices[a + 2], vertices[b], vertices[b + 1],
+					vertices[b + 2]);
 		}
 		return edgeList;
 	}
 
+	/**
+	 * @return reuse, reset to the rows between the highest and lowest vertex,
+	 * 			or a new edgelist for them if it was null.
+	 */
+	private static EdgeList startEdgeList(EdgeList reuse, float y0, float y1, float y2) {
+		int minY = Math.round(Math.min(y0, Math.min(y1, y2)));
+		int maxY = Math.round(Math.max(y0, Math.max(y1, y2)));
+		if (reuse == null) {
+			return new EdgeList(minY, maxY);
+		}
+		reuse.reset(minY, maxY);
+		return reuse;
+	}
+
+	/**
+	 * Steps along one edge of a polygon from a to b a row at a time, filling in
+	 * the left side of the edgelist if it goes down the screen and the right if
+	 * it goes up.
+	 */
+	private static void addEdge(EdgeList edgeList, float ax, float ay, float az, float bx, float by, float bz) {
+		float slopeX = (bx - ax) / (by - ay);
+		float slopeZ = (bz - az) / (by - ay);
+
+		float x = ax;
+		int y = Math.round(ay);
+		// z is worked out from the first end at each row rather than
+		// stepped, since a model far along the z-axis has too few bits
+		// left for small steps, and adding them up row by row could
+		// put one polygon in front of another that is nearer.
+		float z = az;
+		int steps = 0;
+
+		if (ay < by) {
+			while (y <= Math.round(by)) {
+				edgeList.setLeftX(y, x);
+				edgeList.setLeftZ(y, z);
+				x += slopeX;
+				z = az + slopeZ * ++steps;
+				y++;
+			}
+		} else {
+			while (y >= Math.round(by)) {
+				edgeList.setRightX(y, x);
+				edgeList.setRightZ(y, z);
+				x -= slopeX;
+				z = az - slopeZ * ++steps;
+				y--;
+			}
+		}
+	}
+
+	/**
+	 * Finds a box of pixels that filling in a polygon's edgelist can't go
+	 * outside. computeEdgeList steps along each edge a row at a time from its
+	 * first end, starting on the rounded row, so the last row can be a little
+	 * past the other end. The box allows for that, and for rounding.
+	 * 
+	 * @param vertices
+	 * 			The packed vertices, as x, y, z for each vertex in turn.
+	 * @param offset
+	 * 			The index of the polygon's first vertex's x-value.
+	 * @param box
+	 * 			Where to put the box, as left, top, right and bottom, with the
+	 * 			right and bottom just past the last pixel.
+	 * @param at
+	 * 			The index in box of the left.
+	 */
+	static void pixelBox(float[] vertices, int offset, int[] box, int at) {
+		float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
+		int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+		for (int i = 0; i < 3; i++) {
+			int a = offset + i * 3, b = offset + (i + 1) % 3 * 3;
+			float ax = vertices[a], ay = vertices[a + 1], bx = vertices[b], by = vertices[b + 1];
+			int rows = Math.round(by) - Math.round(ay);
+			float last = rows == 0 ? ax : ax + rows * ((bx - ax) / (by - ay));
+			minX = Math.min(minX, Math.min(ax, last));
+			maxX = Math.max(maxX, Math.max(ax, last));
+			minY = Math.min(minY, Math.round(ay));
+			maxY = Math.max(maxY, Math.round(ay));
+		}
+		box[at] = (int) Math.floor(minX) - 1;
+		box[at + 1] = minY;
+		box[at + 2] = (int) Math.ceil(maxX) + 2;
+		box[at + 3] = maxY;
+	}
+
 	/**
 	 * Fills a zbuffer with the contents of a single edge list according to the
 	 * lecture slides.
@@ -414,12 +1211,12 @@ public class Pipeline {
 	public static void computeZBuffer(Color[][] zBuffer, float[][] zDepth, EdgeList polyEdgeList, Color polyColor) {
 		for (int y = polyEdgeList.getStartY(); y < polyEdgeList.getEndY(); y++) {
 			float slope = (polyEdgeList.getRightZ(y) - polyEdgeList.getLeftZ(y))
-					/ (polyEdgeList.getRightX(y) - polyEdgeList.getLeftZ(y));
+					/ (polyEdgeList.getRightX(y) - polyEdgeList.getLeftX(y));
 
 			float z = polyEdgeList.getLeftZ(y);
 			int x = Math.round(polyEdgeList.getLeftX(y));
 			while (x <= Math.round(polyEdgeList.getRightX(y)) - 1) {
-				if (withinBounds(x, y) && z < zDepth[x][y]) {
+				if (withinBounds(zBuffer, x, y) && z < zDepth[x][y]) {
 					zBuffer[x][y] = polyColor;
 					zDepth[x][y] = z;
 				}
@@ -429,6 +1226,49 @@ public class Pipeline {
 		}
 	}
 	
+	/**
+	 * As above, for a zbuffer of packed colours, filling the polygon with a
+	 * colour packed as by Color.getRGB.
+	 */
+	public static void computeZBuffer(int[][] zBuffer, float[][] zDepth, EdgeList polyEdgeList, int polyColor) {
+		for (int y = polyEdgeList.getStartY(); y < polyEdgeList.getEndY(); y++) {
+			float slope = (polyEdgeList.getRightZ(y) - polyEdgeList.getLeftZ(y))
+					/ (polyEdgeList.getRightX(y) - polyEdgeList.getLeftX(y));
+
+			float z = polyEdgeList.getLeftZ(y);
+			int x = Math.round(polyEdgeList.getLeftX(y));
+			while (x <= Math.round(polyEdgeList.getRightX(y)) - 1) {
+				if (withinBounds(zBuffer, x, y) && z < zDepth[x][y]) {
+					zBuffer[x][y] = polyColor;
+					zDepth[x][y] = z;
+				}
+				z += slope;
+				x++;
+			}
+		}
+	}
+	
+	/**
+	 * As above, but keeping only the depths, e.g. for a shadow map, where no
+	 * colour is ever looked at.
+	 */
+	public static void computeZDepth(float[][] zDepth, EdgeList polyEdgeList) {
+		for (int y = polyEdgeList.getStartY(); y < polyEdgeList.getEndY(); y++) {
+			float slope = (polyEdgeList.getRightZ(y) - polyEdgeList.getLeftZ(y))
+					/ (polyEdgeList.getRightX(y) - polyEdgeList.getLeftX(y));
+
+			float z = polyEdgeList.getLeftZ(y);
+			int x = Math.round(polyEdgeList.getLeftX(y));
+			while (x <= Math.round(polyEdgeList.getRightX(y)) - 1) {
+				if (y >= 0 && x >= 0 && x < zDepth.length && y < zDepth[x].length && z < zDepth[x][y]) {
+					zDepth[x][y] = z;
+				}
+				z += slope;
+				x++;
+			}
+		}
+	}
+	
 	/**
 	 * A helper function that makes sure that the pixel being rendered is actually on the screen.
 	 * @param x
@@ -440,6 +1280,27 @@ public class Pipeline {
 	public static boolean withinBounds(int x, int y) {
 		return y >= 0 && x >= 0 && y < GUI.CANVAS_HEIGHT && x < GUI.CANVAS_WIDTH;
 	}
+	
+	/**
+	 * As above, but for a buffer of any size, e.g. a viewport's.
+	 * @param zBuffer
+	 * 			The buffer being drawn into, indexed by x then y.
+	 * @param x
+	 * 			The x-position of the pixel.
+	 * @param y
+	 * 			The y-position of the pixel.
+	 * @return a boolean determining whether or not the pixel is within the buffer.
+	 */
+	public static boolean withinBounds(Color[][] zBuffer, int x, int y) {
+		return y >= 0 && x >= 0 && x < zBuffer.length && y < zBuffer[x].length;
+	}
+	
+	/**
+	 * As above, for a zbuffer of packed colours.
+	 */
+	public static boolean withinBounds(int[][] zBuffer, int x, int y) {
+		return y >= 0 && x >= 0 && x < zBuffer.length && y < zBuffer[x].length;
+	}
 }
 
 // code for comp261 assignments
@@ -0,0 +1,72 @@
+package renderer;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Looks up x to the power of a whole number, for x between 0 and 1, as used
+ * by the specular highlights, instead of calling Math.pow for every polygon
+ * and light.
+ *
+ * There is a table of powers for each exponent, made the first time that
+ * exponent is used, and values between two entries are interpolated. The
+ * tables are only written once each, so can be read from any thread.
+ */
+public final class PowerTable {
+
+	/** The largest exponent there can be a table for. */
+	public static final int MAX_EXPONENT = 255;
+
+	// how many steps each table has between 0 and 1.
+	private static final int STEPS = 1024;
+
+	private static final AtomicReferenceArray<float[]> TABLES = new AtomicReferenceArray<>(MAX_EXPONENT + 1);
+
+	private PowerTable() {
+	}
+
+	/**
+	 * @param x
+	 * 			The base, between 0 and 1. Anything outside is clamped to it.
+	 * @param exponent
+	 * 			The exponent, from 0 to MAX_EXPONENT.
+	 * @return x to the power of the exponent, to within about 0.01.
+	 */
+	public static float pow(float x, int exponent) {
+		return pow(x, table(exponent));
+	}
+
+	/**
+	 * Looks up a power in a table already got from table(), which saves
+	 * finding the table again when raising several bases to the same exponent.
+	 */
+	public static float pow(float x, float[] table) {
+		if (!(x > 0)) {
+			return table[0];
+		}
+		if (x >= 1) {
+			return table[STEPS];
+		}
+		float position = x * STEPS;
+		int i = (int) position;
+		float t = position - i;
+		return table[i] + (table[i + 1] - table[i]) * t;
+	}
+
+	/**
+	 * @return the table of powers for an exponent, from 0 to MAX_EXPONENT.
+	 */
+	public static float[] table(int exponent) {
+		float[] table = TABLES.get(exponent);
+		if (table == null) {
+			table = new float[STEPS + 1];
+			for (int i = 0; i <= STEPS; i++) {
+				table[i] = (float) Math.pow((double) i / STEPS, exponent);
+			}
+			// another thread may have made the same table first.
+			if (!TABLES.compareAndSet(exponent, null, table)) {
+				table = TABLES.get(exponent);
+			}
+		}
+		return table;
+	}
+}
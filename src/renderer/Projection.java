@@ -0,0 +1,142 @@
+package renderer;
+
+/**
+ * 4x4 array representing a projective transformation, which unlike Transform
+ * can have a bottom row other than {0 0 0 1}, and so can do perspective
+ * projection.
+ *
+ * Applying it to a point gives homogeneous clip coordinates (x, y, z, w). The
+ * perspective projection here uses the same convention as the rest of the
+ * renderer, with the viewer looking down the positive z-axis, and maps the
+ * near and far planes to z/w = 0 and z/w = 1. So a point is in front of the
+ * near plane exactly when its clip z is at least 0.
+ */
+public class Projection {
+
+	private final float[][] values;
+
+	/** Construct a Projection given 4x4 array of elements */
+	private Projection(float[][] v) {
+		if (v.length != 4 || v[0].length != 4)
+			throw new IllegalArgumentException(
+					"Projection: Wrong size array for argument: " + v);
+		else
+			values = v;
+	}
+
+	/** Construct an identity Projection */
+	public static Projection identity() {
+		return new Projection(new float[][] { { 1.0f, 0.0f, 0.0f, 0.0f },
+				{ 0.0f, 1.0f, 0.0f, 0.0f }, { 0.0f, 0.0f, 1.0f, 0.0f },
+				{ 0.0f, 0.0f, 0.0f, 1.0f } });
+	}
+
+	/** Construct a Projection that does the same as an affine Transform */
+	public static Projection fromTransform(Transform t) {
+		float[][] v = new float[4][4];
+		for (int row = 0; row < 3; row++) {
+			for (int col = 0; col < 4; col++) {
+				v[row][col] = t.get(row, col);
+			}
+		}
+		v[3][3] = 1.0f;
+		return new Projection(v);
+	}
+
+	/**
+	 * Construct a perspective projection for a viewer at the origin looking
+	 * down the positive z-axis.
+	 *
+	 * @param fovY
+	 * 			The vertical field of view, in radians.
+	 * @param aspect
+	 * 			The width of the view divided by its height.
+	 * @param near
+	 * 			The distance to the near plane, which must be positive.
+	 * @param far
+	 * 			The distance to the far plane.
+	 */
+	public static Projection newPerspective(float fovY, float aspect, float near, float far) {
+		if (near <= 0 || far <= near)
+			throw new IllegalArgumentException(
+					"Projection: need 0 < near < far, got " + near + ", " + far);
+		float f = (float) (1 / Math.tan(fovY / 2));
+		float depth = far / (far - near);
+		return new Projection(new float[][] { { f / aspect, 0.0f, 0.0f, 0.0f },
+				{ 0.0f, f, 0.0f, 0.0f }, { 0.0f, 0.0f, depth, -near * depth },
+				{ 0.0f, 0.0f, 1.0f, 0.0f } });
+	}
+
+	public float get(int row, int col) {
+		return values[row][col];
+	}
+
+	/**
+	 * @return the distance to the near plane of a projection made by
+	 * 			newPerspective.
+	 */
+	public float getNear() {
+		return -values[2][3] / values[2][2];
+	}
+
+	/**
+	 * @return the distance to the far plane of a projection made by
+	 * 			newPerspective.
+	 */
+	public float getFar() {
+		return values[2][3] / (1 - values[2][2]);
+	}
+
+	/* post multiply this projection by another (this * other) */
+	public Projection compose(Projection other) {
+		float[][] ans = new float[4][4];
+		for (int row = 0; row < 4; row++) {
+			for (int col = 0; col < 4; col++) {
+				for (int i = 0; i < 4; i++) {
+					ans[row][col] += this.values[row][i] * other.values[i][col];
+				}
+			}
+		}
+		return new Projection(ans);
+	}
+
+	/* post multiply this projection by an affine transform (this * other) */
+	public Projection compose(Transform other) {
+		return compose(fromTransform(other));
+	}
+
+	/*
+	 * apply this projection to a point, giving its homogeneous clip
+	 * coordinates {x, y, z, w}
+	 */
+	public float[] multiply(Vector3D vect) {
+		if (vect == null) {
+			throw new IllegalArgumentException("multiply by null vector");
+		}
+		return multiply(vect.x, vect.y, vect.z);
+	}
+
+	/*
+	 * apply this projection to a point, giving its homogeneous clip
+	 * coordinates {x, y, z, w}
+	 */
+	public float[] multiply(float x, float y, float z) {
+		float[] ans = new float[4];
+		for (int row = 0; row < 4; row++) {
+			ans[row] = values[row][0] * x + values[row][1] * y + values[row][2] * z + values[row][3];
+		}
+		return ans;
+	}
+
+	public String toString() {
+		StringBuilder ans = new StringBuilder();
+		for (int row = 0; row < 4; row++) {
+			for (int col = 0; col < 4; col++) {
+				ans.append(values[row][col]).append(' ');
+			}
+			ans.append('\n');
+		}
+		return ans.toString();
+	}
+
+}
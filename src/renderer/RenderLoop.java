@@ -0,0 +1,146 @@
+package renderer;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs rendering on its own thread so that the Swing event thread only ever
+ * has to blit the last finished frame.
+ *
+ * Anything that changes what is drawn (key presses, loading, light changes) is
+ * submitted as a task rather than run directly, and is executed on the render
+ * thread between frames. Tasks that arrive while a frame is being drawn are
+ * queued up and all applied before the next frame, so a held-down key costs
+ * at most one extra frame of latency no matter how big the model is.
+ *
+ * Frames are double buffered: the frame being drawn is private to the render
+ * thread, and is only swapped into the front buffer once it is complete. A
+ * render can also publish a rough version of its frame before it finishes,
+ * which is swapped in the same way; the front buffer is a volatile reference,
+ * so the event thread always sees one whole frame or another, without locking.
+ */
+class RenderLoop implements Runnable {
+
+	/**
+	 * The source of new frames, i.e. GUI.render().
+	 */
+	interface FrameSource {
+		BufferedImage render();
+	}
+
+	private final FrameSource source;
+	private final Runnable onFrame;
+
+	private final ConcurrentLinkedQueue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean frameRequested = new AtomicBoolean();
+	private final Thread thread;
+
+	private volatile BufferedImage frontBuffer;
+	private volatile long framesCompleted;
+	private volatile long framesPublished;
+
+	/**
+	 * @param source
+	 * 			Called on the render thread to draw each frame.
+	 * @param onFrame
+	 * 			Called on the render thread every time a new frame has been
+	 * 			swapped into the front buffer, e.g. to schedule a repaint.
+	 */
+	RenderLoop(FrameSource source, Runnable onFrame) {
+		this.source = source;
+		this.onFrame = onFrame;
+		this.thread = new Thread(this, "render");
+		this.thread.setDaemon(true);
+	}
+
+	void start() {
+		thread.start();
+	}
+
+	/**
+	 * Queues a task to be run on the render thread before the next frame, and
+	 * requests that frame.
+	 */
+	void submit(Runnable task) {
+		pendingTasks.add(task);
+		requestFrame();
+	}
+
+	/**
+	 * Asks for a new frame. Any number of requests made while a frame is in
+	 * progress are coalesced into a single new frame.
+	 */
+	void requestFrame() {
+		frameRequested.set(true);
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Swaps an unfinished frame into the front buffer, e.g. a quick preview,
+	 * and repaints. Only called on the render thread, from within a render.
+	 */
+	void publish(BufferedImage image) {
+		frontBuffer = image;
+		framesPublished++;
+		onFrame.run();
+	}
+
+	/**
+	 * @return whether a new frame has been asked for since the current one was
+	 * 			started, so that a render can give up refining a frame that is
+	 * 			already out of date.
+	 */
+	boolean isFrameRequested() {
+		return frameRequested.get();
+	}
+
+	/**
+	 * @return the most recently completed frame, or null if nothing has been
+	 * 			drawn yet (or the last render returned null).
+	 */
+	BufferedImage getFrontBuffer() {
+		return frontBuffer;
+	}
+
+	/**
+	 * @return the number of frames that have been completed so far.
+	 */
+	long getFramesCompleted() {
+		return framesCompleted;
+	}
+
+	/**
+	 * @return the number of unfinished frames that have been published so far.
+	 */
+	long getFramesPublished() {
+		return framesPublished;
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			if (!frameRequested.getAndSet(false)) {
+				LockSupport.park(this);
+				continue;
+			}
+			// apply everything that arrived since the last frame in one go.
+			Runnable task;
+			while ((task = pendingTasks.poll()) != null) {
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+			try {
+				frontBuffer = source.render();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+			framesCompleted++;
+			onFrame.run();
+		}
+	}
+}
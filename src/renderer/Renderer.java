@@ -1,13 +1,16 @@
 package renderer;
 
 import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 /**
  * Takes a file describing a model from a number of polygons, 
  * 		and then renders that model in 3D.
@@ -21,58 +24,325 @@ public class Renderer extends GUI {
 	
 	ArrayList<Vector3D> directLightSources = new ArrayList<>();
 	
-	private Scene scene;
+	// the loaded model at several levels of detail, and the level drawn last.
+	private LevelOfDetail lod;
+	private int level;
+	
+	// the file the model was loaded from, the light source it came with, and
+	// what watches the file to reload it as it changes, or null if nothing is.
+	private File modelFile;
+	private Vector3D modelLight;
+	private ModelWatcher watcher;
+	
+	// the rotations applied to the model so far, and each level as seen through
+	// them, made when the level is first drawn.
+	private Transform camera = Transform.identity();
+	private ViewBuffer[] views;
+	
+	// bumped every time the scene's geometry or orientation changes, so that
+	// the frame cache knows a cached frame is out of date.
+	private long sceneVersion;
+	
+	private final FrameCache frameCache = new FrameCache();
+	
+	private static final float FIELD_OF_VIEW = (float) (Math.PI / 3);
+	
+	private static final int TURNTABLE_FRAMES = 72;
+	
+	// whether to draw in perspective rather than straight down the z-axis, and
+	// how far the perspective camera has moved in from where the whole model
+	// fits, as a fraction of the model's size.
+	private boolean perspective;
+	private float cameraDolly;
+	
+	// whether to show the front, side and top of the model next to the camera's
+	// view, and the viewports that draw them, made when the model is loaded.
+	private boolean multiView;
+	private ViewportRenderer viewports;
+	
+	// whether the light sources cast shadows, and their shadow maps.
+	private boolean shadows;
+	private final ShadowCache shadowCache = new ShadowCache();
+	
+	// combines the light sources into at most LIGHT_BUDGET before shading, so
+	// adding lights doesn't slow every frame down.
+	private static final int LIGHT_BUDGET = 16;
+	private final LightManager lightManager = new LightManager(LightManager.DEFAULT_MERGE_ANGLE, LIGHT_BUDGET);
+	
+	// whether slow frames are shown as a quick preview from the coarsest level
+	// first, and how many triangles make a frame slow enough to need one.
+	private boolean progressive = true;
+	private static final int PREVIEW_TRIANGLES = 20000;
+	
+	// which polygon is at each pixel of the last plain frame, and what it was
+	// drawn from, so a frame where only the lighting has changed is just shaded
+	// again.
+	private VisibilityBuffer visibility = new VisibilityBuffer(CANVAS_WIDTH, CANVAS_HEIGHT);
+	private FrameCache.Key visibilityKey;
+	
+	// split plain frames into tiles to fill them in on every core, and find
+	// the polygons of perspective frames on every core, or null if there is
+	// only one, when splitting the work up would just be extra work.
+	private static final int CORES = Runtime.getRuntime().availableProcessors();
+	private final ForkJoinPool pool = CORES > 1 ? new ForkJoinPool(CORES) : null;
+	private final TileBinner tiles = pool != null ? new TileBinner(pool, TileBinner.DEFAULT_TILE_POLYGONS) : null;
+	private final GeometryStage stage = pool != null ? new GeometryStage(pool) : null;
+	
+	// leaves out polygons certainly hidden behind big near ones, before
+	// drawing frames looking straight down the z-axis, if switched on.
+	private boolean occlusionCulling = true;
+	private final OcclusionCuller occlusion = new OcclusionCuller(CANVAS_WIDTH, CANVAS_HEIGHT);
+	
+	// whether the views' copies of the vertices and the visibility buffer are
+	// kept outside the heap, for models too big to comfortably fit in it.
+	private boolean offHeap;
+	
+	// how the edges are smoothed when looking straight down the z-axis.
+	private AntiAliasing antiAliasing = new AntiAliasing(AntiAliasing.Mode.OFF, CANVAS_WIDTH, CANVAS_HEIGHT);
 	
 	protected void onLoad(File file) throws IOException {
-		List<String> allLines = Files.readAllLines(file.toPath());
-		List<Scene.Polygon> polys = new ArrayList<>();
+		Scene loaded = Scene.load(file);
+		List<Scene.Polygon> polys = loaded.getPolygons();
 		
-		String splitData[] = allLines.get(0).split(" ");
-		float[] lightVector = new float[3];
+		// adds the starting light source and colour
+		modelLight = loaded.getLights().get(0);
+		directLightSources.add(modelLight);
+		directLightColours.add(new Color(100, 100, 100));
 		
-		for (int i = 0; i < lightVector.length; i++) {
-			lightVector[i] = Float.parseFloat(splitData[i]);
-		}
-		Vector3D lightSource = new Vector3D(lightVector[0], lightVector[1], lightVector[2]);
+		long start = System.nanoTime();
+		lod = LevelOfDetail.build(polys, directLightSources);
+		level = 0;
+		camera = Transform.identity();
+		views = new ViewBuffer[lod.getLevelCount()];
+		makeViewports();
+		cameraDolly = 0;
+		sceneVersion++;
+		System.out.println(lod);
+		System.out.println("built in " + (System.nanoTime() - start) / 1000000 + " ms");
 		
-		for (int i = 1; i < allLines.size(); i++) {
-			splitData = allLines.get(i).split(" ");
-			
-			float[] polyVertices = new float[9];
-			int[] reflectance = new int[3];
-			
-			// for calculating the polygon vertices.
-			for (int j = 0; j < 9; j++) {
-				polyVertices[j] = Float.parseFloat(splitData[j]);
-			}
-			// for calculating the polygon reflectance.
-			for (int j = 9; j < splitData.length; j++) {
-				reflectance[j - 9] = Integer.parseInt(splitData[j]);
+		modelFile = file;
+		if (watcher != null) {
+			// keeps watching, but the new file.
+			watcher.close();
+			watcher = watch();
+		}
+	}
+	
+	/**
+	 * Makes the viewports that show the front, side and top of the model, for
+	 * the levels being drawn.
+	 */
+	private void makeViewports() {
+		if (viewports != null) {
+			viewports.shutdown();
+		}
+		int w = CANVAS_WIDTH / 2, h = CANVAS_HEIGHT / 2;
+		List<Viewport> quadrants = new ArrayList<>();
+		quadrants.add(new Viewport("camera", lod, camera, w, h));
+		quadrants.add(new Viewport("front", lod, Viewport.FRONT, w, h));
+		quadrants.add(new Viewport("side", lod, Viewport.SIDE, w, h));
+		quadrants.add(new Viewport("top", lod, Viewport.TOP, w, h));
+		viewports = new ViewportRenderer(quadrants);
+	}
+	
+	/**
+	 * Starts watching the model file, reloading it on the watcher's thread
+	 * whenever it changes and swapping it in between frames.
+	 * 
+	 * @return the watcher, or null if the file can't be watched.
+	 */
+	private ModelWatcher watch() {
+		try {
+			ModelWatcher started = new ModelWatcher(modelFile, lod, modelLight, directLightSources,
+					new ModelWatcher.Listener() {
+						public void reloaded(final ModelWatcher.Reload reload) {
+							runOnRenderThread(new Runnable() {
+								public void run() {
+									swapIn(reload);
+								}
+							});
+						}
+					});
+			started.start();
+			return started;
+		} catch (IOException e) {
+			System.out.println("can't watch " + modelFile + ": " + e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Swaps in a new version of the model file, keeping the camera, lights and
+	 * everything else as they are. A version built from levels that have
+	 * since been replaced, e.g. by loading another file, is dropped.
+	 */
+	private void swapIn(ModelWatcher.Reload reload) {
+		if (reload.getPrevious() != lod) {
+			return;
+		}
+		// the file's light source is replaced, if it hasn't been removed.
+		for (int i = 0; i < directLightSources.size(); i++) {
+			if (directLightSources.get(i) == modelLight) {
+				directLightSources.set(i, reload.getLight());
 			}
-			polys.add(new Scene.Polygon(polyVertices, reflectance));
 		}
-		
-		// adds the starting light source and colour
-		directLightSources.add(lightSource);
-		directLightColours.add(new Color(100, 100, 100));
-		
-		scene = new Scene(polys, directLightSources);
+		modelLight = reload.getLight();
+		if (reload.getLevels() != lod) {
+			lod = reload.getLevels();
+			level = 0;
+			views = new ViewBuffer[lod.getLevelCount()];
+			makeViewports();
+		}
+		sceneVersion++;
+		System.out.println(reload);
 	}
 	
     protected void onKeyPress(KeyEvent ev) {
+    	if (lod == null) {
+    		return;
+    	}
     	// WASD and arrow keys can be used interchangeably
         if(ev.getKeyCode() == KeyEvent.VK_LEFT || ev.getKeyCode() == KeyEvent.VK_A){
-            scene = Pipeline.rotateScene(scene, 0,(float) (-0.1*Math.PI));
+            rotate(0,(float) (-0.1*Math.PI));
             
         }else if(ev.getKeyCode() == KeyEvent.VK_RIGHT || ev.getKeyCode() == KeyEvent.VK_D){
-            scene = Pipeline.rotateScene(scene, 0,(float) (0.1*Math.PI));
+            rotate(0,(float) (0.1*Math.PI));
         
         }else if(ev.getKeyCode() == KeyEvent.VK_UP|| ev.getKeyCode() == KeyEvent.VK_W){
-            scene = Pipeline.rotateScene(scene, (float) (0.1*Math.PI), 0);
+            rotate((float) (0.1*Math.PI), 0);
         
         }else if(ev.getKeyCode() == KeyEvent.VK_DOWN || ev.getKeyCode() == KeyEvent.VK_S){
-            scene = Pipeline.rotateScene(scene, (float) (-0.1*Math.PI), 0);
+            rotate((float) (-0.1*Math.PI), 0);
+        
+        }else if(ev.getKeyCode() == KeyEvent.VK_P){
+        	// switches between perspective and looking straight down the z-axis.
+        	perspective = !perspective;
+        
+        }else if(ev.getKeyCode() == KeyEvent.VK_V){
+        	// switches between the camera's view and four views at once.
+        	multiView = !multiView;
+        
+        }else if(ev.getKeyCode() == KeyEvent.VK_X){
+        	// cycles through the ways of smoothing the edges.
+        	antiAliasing = new AntiAliasing(antiAliasing.getMode().next(), CANVAS_WIDTH, CANVAS_HEIGHT);
+        	System.out.println("anti-aliasing: " + antiAliasing.getMode());
+        
+        }else if(ev.getKeyCode() == KeyEvent.VK_H){
+        	// switches shadows on and off.
+        	shadows = !shadows;
+        
+        }else if(ev.getKeyCode() == KeyEvent.VK_Q){
+        	// moves the perspective camera in towards (and through) the model.
+        	cameraDolly += 0.1f;
+        
+        }else if(ev.getKeyCode() == KeyEvent.VK_E){
+        	cameraDolly -= 0.1f;
+        
+        }else if(ev.getKeyCode() == KeyEvent.VK_G){
+        	// switches the quick preview of slow frames on and off. The finished
+        	// frames look the same either way.
+        	progressive = !progressive;
+        	System.out.println("progressive: " + progressive);
+        	return;
+        }else if(ev.getKeyCode() == KeyEvent.VK_C){
+        	// switches occlusion culling on and off. The frames look the same
+        	// either way, since only polygons no pixel would show are culled.
+        	occlusionCulling = !occlusionCulling;
+        	System.out.println("occlusion culling: " + occlusionCulling);
+        	return;
+        }else if(ev.getKeyCode() == KeyEvent.VK_O){
+        	// moves the big buffers into or out of the heap. They are made again
+        	// as they are next needed, and the frames look the same either way.
+        	offHeap = !offHeap;
+        	views = new ViewBuffer[lod.getLevelCount()];
+        	visibility = new VisibilityBuffer(CANVAS_WIDTH, CANVAS_HEIGHT, offHeap, visibility.getDepth());
+        	visibilityKey = null;
+        	System.out.println("off heap: " + offHeap);
+        	return;
+        }else if(ev.getKeyCode() == KeyEvent.VK_Z){
+        	// cycles through the ways of keeping the depth at each pixel of
+        	// plain frames. Rounding depths to fewer bits can change which of
+        	// two very close polygons is in front, so the frame is drawn again.
+        	visibility = new VisibilityBuffer(CANVAS_WIDTH, CANVAS_HEIGHT, offHeap, visibility.getDepth().next());
+        	visibilityKey = null;
+        	System.out.println("depth: " + visibility.getDepth());
+        }else if(ev.getKeyCode() == KeyEvent.VK_R){
+        	// starts or stops reloading the model file whenever it is saved.
+        	if (watcher == null) {
+        		watcher = watch();
+        	} else {
+        		watcher.close();
+        		watcher = null;
+        	}
+        	System.out.println("watching " + modelFile + ": " + (watcher != null));
+        	return;
+        }else if(ev.getKeyCode() == KeyEvent.VK_T){
+        	// writes a turntable of the model, as seen now, to the turntable folder.
+        	exportTurntable();
+        	return;
+        }else if(ev.getKeyCode() == KeyEvent.VK_I){
+        	// prints how well the frame cache is doing, and the level being drawn.
+        	System.out.println(frameCache);
+        	System.out.println(shadowCache);
+        	System.out.println(lightManager);
+        	System.out.println(visibility.getVisibleCount() + " polygons visible in the last plain frame");
+        	System.out.println(lod.getMeshlets(level));
+        	if (occlusionCulling) {
+        		System.out.println(occlusion);
+        	}
+        	if (tiles != null) {
+        		System.out.println(tiles);
+        	}
+        	System.out.println("drawing level of detail " + level + " ("
+        			+ lod.getLevel(level).getPolygons().size() + " triangles)");
+        	return;
+        }else{
+        	return;
         }
+        sceneVersion++;
+    }
+    
+    /**
+     * Exports a turntable of the full detail model from the current camera, on
+     * its own thread so that the GUI keeps drawing while it's written.
+     */
+    private void exportTurntable() {
+    	int[] ambientLight = getAmbientLight();
+    	Color ambient = new Color(ambientLight[0], ambientLight[1], ambientLight[2]);
+    	final TurntableExporter exporter = new TurntableExporter(lod.getLevel(0), lod.getBVH(0),
+    			directLightSources, directLightColours, ambient, CANVAS_WIDTH, CANVAS_HEIGHT);
+    	final Transform start = camera;
+    	Thread thread = new Thread(new Runnable() {
+    		public void run() {
+    			try {
+    				exporter.export(new File("turntable"), TURNTABLE_FRAMES, start);
+    				System.out.println(exporter);
+    			} catch (IOException e) {
+    				e.printStackTrace();
+    			}
+    		}
+    	}, "turntable");
+    	thread.setDaemon(true);
+    	thread.start();
+    }
+    
+    /**
+     * Turns the camera by the given angles, in the same order as
+     * Pipeline.rotateScene. The model itself is left alone.
+     */
+    private void rotate(float xAngle, float yAngle) {
+    	camera = Transform.newYRotation(yAngle).compose(Transform.newXRotation(xAngle)).compose(camera);
+    }
+    
+    /**
+     * @return the given level as seen by the camera, fitted to the canvas.
+     */
+    private ViewBuffer view(int level) {
+    	if (views[level] == null) {
+    		views[level] = new ViewBuffer(lod.getLevel(level), lod.getBVH(level), CANVAS_WIDTH, CANVAS_HEIGHT, offHeap);
+    	}
+    	views[level].update(camera);
+    	return views[level];
     }
     
     @Override
@@ -98,63 +368,241 @@ public class Renderer extends GUI {
 		}
 	}
 	
+	@Override
+	protected void onMouseClick(MouseEvent ev) {
+		// picking follows a ray straight down the z-axis, so it only matches what's
+		// on screen when not in perspective, and showing just the camera's view.
+		if (lod == null || perspective || multiView) {
+			return;
+		}
+		// picks from the level that is on screen.
+		int picked = view(level).getBVH().pick(ev.getX(), ev.getY());
+		if (picked >= 0) {
+			System.out.println("picked " + lod.getLevel(level).getPolygons().get(picked));
+		}
+	}
+	
 	@Override
 	protected BufferedImage render() {
-		if (scene == null) {
+		if (lod == null) {
 			return null;
 		}
 		
-		scene = Pipeline.translateScene(scene);
-		scene = Pipeline.scaleScene(scene);
-		Color[][] zBuffer = new Color[CANVAS_WIDTH][CANVAS_HEIGHT];
-		float[][] zDepth = new float[CANVAS_WIDTH][CANVAS_HEIGHT];
+		// nothing that affects the image has changed, so reuse the last frame.
+		int[] ambientLight = getAmbientLight();
+		FrameCache.Key key = new FrameCache.Key(sceneVersion, perspective, cameraDolly, multiView, antiAliasing.getMode(), shadows,
+				directLightSources, directLightColours, ambientLight);
+		BufferedImage cached = frameCache.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		Color ambient = new Color(ambientLight[0], ambientLight[1], ambientLight[2]);
+		lightManager.update(directLightSources, directLightColours);
 		
-		EdgeList edges;
-
-		for (int x = 0; x < CANVAS_WIDTH; x++) {
-			for (int y = 0; y < CANVAS_HEIGHT; y++) {
-				zBuffer[x][y] = Color.white;
-				zDepth[x][y] = Float.POSITIVE_INFINITY;
+		if (multiView) {
+			BufferedImage image = renderViewports(ambient);
+			frameCache.put(key, image);
+			return image;
+		}
+		
+		// in perspective the model can be much bigger on screen than it is when
+		// fitted, so the full detail level is always used. Otherwise the smallest
+		// level is used to work out how big the model is on screen.
+		level = perspective ? 0 : lod.selectLevel(view(lod.getLevelCount() - 1).getScale());
+		
+		// shadows and smoothing both depend on more than which polygon is at
+		// each pixel, so are always drawn in full. Perspective has neither.
+		boolean plain = perspective || !shadows && antiAliasing.getMode() == AntiAliasing.Mode.OFF;
+		FrameCache.Key geometry = new FrameCache.Key(sceneVersion, perspective, cameraDolly, level);
+		if (plain && geometry.equals(visibilityKey)) {
+			// only the lights have changed since the last frame.
+			BufferedImage image = visibility.shade(lightManager, ambient);
+			frameCache.put(key, image);
+			return image;
+		}
+		
+		if (progressive && isSlow(level)) {
+			BufferedImage preview = renderPreview(ambient);
+			showProgress(preview);
+			if (isFrameOutOfDate()) {
+				// something has changed already, so rather than finish a frame
+				// no one will see, leave the preview up until the next one.
+				return preview;
 			}
 		}
 		
-		for (Scene.Polygon p : scene.getPolygons()) {
-			// determines if the polygon should be rendered.
-			if (!Pipeline.isHidden(p)) {
-				// gets the display colour of the polygon.
-				Color c = Pipeline.getShading(
-						p, 
-						scene.getLights(), 
-						directLightColours,
-						new Color(
-								getAmbientLight()[0], 
-								getAmbientLight()[1], 
-								getAmbientLight()[2]));
-				// gets the edgelist of the polygon.
-				edges = Pipeline.computeEdgeList(p);
-				// adds the polygon's zBuffer to the total zBuffer.
-				Pipeline.computeZBuffer(zBuffer, zDepth, edges, c);
+		ViewBuffer view = view(level);
+		BVH bvh = view.getBVH();
+		
+		if (!perspective && antiAliasing.getMode() != AntiAliasing.Mode.OFF) {
+			// smoothing draws into buffers of its own.
+			BufferedImage image = antiAliasing.render(view,
+					lod.getMeshlets(level).cull(view, new Rectangle(0, 0, CANVAS_WIDTH, CANVAS_HEIGHT)), lightManager,
+					ambient);
+			frameCache.put(key, image);
+			return image;
+		}
+		
+		BufferedImage image;
+		if (perspective) {
+			Transform eye = perspectiveView(bvh);
+			Projection projection = perspectiveProjection(bvh);
+			// only the polygons whose part of the BVH is in view are considered.
+			int[] visible = bvh.cull(projection.compose(eye));
+			if (stage != null) {
+				// left unshaded, since the visibility buffer shades what is seen.
+				visibility.draw(view, stage.processInPerspective(view, visible, eye, projection, CANVAS_WIDTH,
+						CANVAS_HEIGHT, null, null));
+			} else {
+				visibility.drawInPerspective(view, visible, eye, projection);
+			}
+			visibilityKey = geometry;
+			image = visibility.shade(lightManager, ambient);
+		} else {
+			// only the polygons whose cluster is on the canvas and faces the
+			// viewer, and that aren't certainly hidden, are considered.
+			int[] visible = lod.getMeshlets(level).cull(view, new Rectangle(0, 0, CANVAS_WIDTH, CANVAS_HEIGHT));
+			if (occlusionCulling) {
+				visible = occlusion.cull(view.getVertices(), visible);
+			}
+			if (shadows) {
+				int[][] zBuffer = new int[CANVAS_WIDTH][CANVAS_HEIGHT];
+				float[][] zDepth = new float[CANVAS_WIDTH][CANVAS_HEIGHT];
+				Pipeline.clearBuffers(zBuffer, zDepth);
+				// the shadow maps are only redrawn if a light or the level has changed.
+				ShadowMap[] maps = shadowCache.get(lod.getLevel(level), lightManager.getDirections());
+				Pipeline.drawPolygonsWithShadows(zBuffer, zDepth, view, visible, lightManager, ambient, maps);
+				image = convertBitmapToImage(zBuffer);
+			} else {
+				if (tiles != null) {
+					visibility.draw(view, visible, tiles);
+				} else {
+					visibility.draw(view, visible);
+				}
+				visibilityKey = geometry;
+				image = visibility.shade(lightManager, ambient);
 			}
 		}
 		
+		frameCache.put(key, image);
+		return image;
+	}
+	
+	/**
+	 * @return whether drawing the given level as things are set up now will
+	 * 			take long enough to be worth showing a preview first.
+	 */
+	private boolean isSlow(int level) {
+		if (level == lod.getLevelCount() - 1 && !perspective && !shadows
+				&& antiAliasing.getMode() == AntiAliasing.Mode.OFF) {
+			// the preview would be the same as the frame.
+			return false;
+		}
+		return shadows || antiAliasing.getMode() != AntiAliasing.Mode.OFF
+				|| lod.getLevel(level).getPolygons().size() >= PREVIEW_TRIANGLES;
+	}
+	
+	/**
+	 * Draws a quick, rough version of the frame: the coarsest level of detail,
+	 * without shadows or smoothing, but otherwise as the full frame will be.
+	 */
+	private BufferedImage renderPreview(Color ambient) {
+		ViewBuffer view = view(lod.getLevelCount() - 1);
+		BVH bvh = view.getBVH();
+		int[][] zBuffer = new int[CANVAS_WIDTH][CANVAS_HEIGHT];
+		float[][] zDepth = new float[CANVAS_WIDTH][CANVAS_HEIGHT];
+		Pipeline.clearBuffers(zBuffer, zDepth);
+		if (perspective) {
+			Transform eye = perspectiveView(bvh);
+			Projection projection = perspectiveProjection(bvh);
+			Pipeline.drawPolygonsInPerspective(zBuffer, zDepth, view, bvh.cull(projection.compose(eye)), eye,
+					projection, lightManager, ambient);
+		} else {
+			Pipeline.drawPolygons(zBuffer, zDepth, view, bvh.cull(new Rectangle(0, 0, CANVAS_WIDTH, CANVAS_HEIGHT)),
+					lightManager, ambient);
+		}
 		return convertBitmapToImage(zBuffer);
 	}
 	
 	/**
-	 * Converts a 2D array of Colors to a BufferedImage. Assumes that bitmap is
-	 * indexed by column then row and has imageHeight rows and imageWidth
-	 * columns. Note that image.setRGB requires x (col) and y (row) are given in
-	 * that order.
+	 * Draws the camera's view and the front, side and top of the model all at
+	 * once, and puts them in the four corners of the canvas.
 	 */
-	private BufferedImage convertBitmapToImage(Color[][] bitmap) {
+	private BufferedImage renderViewports(Color ambient) {
+		viewports.getViewports().get(0).setCamera(camera);
+		List<BufferedImage> images = viewports.render(lightManager, ambient);
+		
 		BufferedImage image = new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT, BufferedImage.TYPE_INT_RGB);
-		for (int x = 0; x < CANVAS_WIDTH; x++) {
-			for (int y = 0; y < CANVAS_HEIGHT; y++) {
-				image.setRGB(x, y, bitmap[x][y].getRGB());
-			}
+		Graphics2D g = image.createGraphics();
+		for (int i = 0; i < images.size(); i++) {
+			g.drawImage(images.get(i), (i % 2) * CANVAS_WIDTH / 2, (i / 2) * CANVAS_HEIGHT / 2, null);
 		}
+		g.setColor(Color.LIGHT_GRAY);
+		g.drawLine(CANVAS_WIDTH / 2, 0, CANVAS_WIDTH / 2, CANVAS_HEIGHT);
+		g.drawLine(0, CANVAS_HEIGHT / 2, CANVAS_WIDTH, CANVAS_HEIGHT / 2);
+		g.dispose();
 		return image;
 	}
+	
+	private Transform perspectiveView(BVH bvh) {
+		return perspectiveView(bvh, cameraDolly);
+	}
+	
+	private Projection perspectiveProjection(BVH bvh) {
+		return perspectiveProjection(bvh, cameraDolly);
+	}
+	
+	/**
+	 * Works out where the perspective camera is. It sits in front of the middle
+	 * of the fitted model, at the distance where the whole model just fits in
+	 * view, moved in by the dolly. An empty scene has no size or depth, so the
+	 * camera stays at the origin.
+	 * 
+	 * @param dolly
+	 * 			How far the camera has moved in, as a fraction of the model's
+	 * 			size, or out if negative.
+	 * @return the transform that moves the camera to the origin, looking down
+	 * 			the z-axis.
+	 */
+	public static Transform perspectiveView(BVH bvh, float dolly) {
+		Rectangle bounds = bvh.getBounds();
+		float size = Math.max(bounds.width, bounds.height);
+		float cameraZ = bvh.getDepthRange()[0] - cameraDistance(size, dolly);
+		return Transform.newTranslation(-bounds.x - bounds.width / 2f, -bounds.y - bounds.height / 2f, -cameraZ);
+	}
+	
+	/**
+	 * @param dolly
+	 * 			How far the camera has moved in, as in perspectiveView.
+	 * @return a perspective projection whose far plane is just past the back of
+	 * 			the model, wherever the camera has moved to.
+	 */
+	public static Projection perspectiveProjection(BVH bvh, float dolly) {
+		Rectangle bounds = bvh.getBounds();
+		float size = Math.max(bounds.width, bounds.height);
+		float[] depthRange = bvh.getDepthRange();
+		// once the camera is past the back of the model nothing can be seen,
+		// but the far plane must still be past the near one.
+		float far = Math.max(cameraDistance(size, dolly) + depthRange[1] - depthRange[0] + 1, 2);
+		return Projection.newPerspective(FIELD_OF_VIEW, (float) CANVAS_WIDTH / CANVAS_HEIGHT, 1, far);
+	}
+	
+	/**
+	 * @return how far the camera is in front of the model, which is negative
+	 * 			once it has moved in past the front.
+	 */
+	private static float cameraDistance(float size, float dolly) {
+		return (float) (size / 2 / Math.tan(FIELD_OF_VIEW / 2)) - dolly * size;
+	}
+	
+	/**
+	 * Converts a 2D array of packed colours to a BufferedImage. Assumes that
+	 * bitmap is indexed by column then row and has imageHeight rows and
+	 * imageWidth columns.
+	 */
+	private BufferedImage convertBitmapToImage(int[][] bitmap) {
+		return Pipeline.toImage(bitmap);
+	}
 
 	public static void main(String[] args) {
 		new Renderer();
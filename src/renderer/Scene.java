@@ -1,6 +1,9 @@
 package renderer;
 
 import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -24,6 +27,65 @@ public class Scene {
           this.polygons = polygons;
 	}
 	
+	/**
+	 * Reads a model file. The first line is the direction of the light source,
+	 * and every line after that is a polygon, as nine coordinates followed by
+	 * the three components of its reflectance, and optionally its shininess.
+	 * 
+	 * @param file
+	 * 			The model file.
+	 * @return a new scene with the file's polygons and its one light source.
+	 * @throws IOException
+	 * 			if the file can't be read.
+	 */
+	public static Scene load(File file) throws IOException {
+		List<String> allLines = Files.readAllLines(file.toPath());
+		List<Polygon> polys = new ArrayList<>();
+		
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		lights.add(parseLight(allLines.get(0)));
+		
+		for (int i = 1; i < allLines.size(); i++) {
+			polys.add(parsePolygon(allLines.get(i)));
+		}
+		return new Scene(polys, lights);
+	}
+	
+	/**
+	 * Reads the first line of a model file, the direction of the light source.
+	 */
+	static Vector3D parseLight(String line) {
+		String splitData[] = line.split(" ");
+		float[] lightVector = new float[3];
+		
+		for (int i = 0; i < lightVector.length; i++) {
+			lightVector[i] = Float.parseFloat(splitData[i]);
+		}
+		return new Vector3D(lightVector[0], lightVector[1], lightVector[2]);
+	}
+	
+	/**
+	 * Reads one polygon's line of a model file.
+	 */
+	static Polygon parsePolygon(String line) {
+		String splitData[] = line.split(" ");
+		
+		float[] polyVertices = new float[9];
+		int[] reflectance = new int[3];
+		
+		// for calculating the polygon vertices.
+		for (int j = 0; j < 9; j++) {
+			polyVertices[j] = Float.parseFloat(splitData[j]);
+		}
+		// for calculating the polygon reflectance.
+		for (int j = 9; j < 12; j++) {
+			reflectance[j - 9] = Integer.parseInt(splitData[j]);
+		}
+		// matte unless the line says otherwise.
+		int shininess = splitData.length > 12 ? Integer.parseInt(splitData[12]) : 0;
+		return new Polygon(polyVertices, reflectance, shininess);
+	}
+	
 	public ArrayList<Vector3D> getLights() {
           return lightSources;
 	}
@@ -40,7 +102,10 @@ public class Scene {
 	 */
 	public static class Polygon {
 		private Vector3D[] vertices;
-		private Color reflectance;
+		// packed as 0xAARRGGBB, as Color.getRGB gives, so shading doesn't have
+		// to go through a Color.
+		private int reflectance;
+		private int shininess;
 
 		/**
 		 * @param points
@@ -68,7 +133,20 @@ public class Scene {
 			int r = color[0];
 			int g = color[1];
 			int b = color[2];
-			this.reflectance = new Color(r, g, b);
+			this.reflectance = new Color(r, g, b).getRGB();
+		}
+
+		/**
+		 * Makes a shiny polygon, with a specular highlight.
+		 * 
+		 * @param shininess
+		 *            How tight the polygon's highlights are, from 0 to
+		 *            PowerTable.MAX_EXPONENT, as the exponent of the specular
+		 *            term. 0 means the polygon is matte and has none.
+		 */
+		public Polygon(float[] points, int[] color, int shininess) {
+			this(points, color);
+			this.shininess = checkShininess(shininess);
 		}
 
 		/**
@@ -77,17 +155,63 @@ public class Scene {
 		 */
 		public Polygon(Vector3D a, Vector3D b, Vector3D c, Color color) {
 			this.vertices = new Vector3D[] { a, b, c };
-			this.reflectance = color;
+			this.reflectance = color.getRGB();
+		}
+
+		/**
+		 * As above, for a shiny polygon.
+		 */
+		public Polygon(Vector3D a, Vector3D b, Vector3D c, Color color, int shininess) {
+			this(a, b, c, color);
+			this.shininess = checkShininess(shininess);
+		}
+
+		/**
+		 * As above, with the reflectance packed into an int as by
+		 * Color.getRGB, e.g. from another polygon's getReflectanceRGB.
+		 */
+		public Polygon(Vector3D a, Vector3D b, Vector3D c, int rgb, int shininess) {
+			this.vertices = new Vector3D[] { a, b, c };
+			this.reflectance = rgb | 0xFF000000;
+			this.shininess = checkShininess(shininess);
+		}
+
+		private static int checkShininess(int shininess) {
+			if (shininess < 0 || shininess > PowerTable.MAX_EXPONENT) {
+				throw new IllegalArgumentException("shininess must be from 0 to " + PowerTable.MAX_EXPONENT
+						+ ", not " + shininess);
+			}
+			return shininess;
 		}
 
 		public Vector3D[] getVertices() {
 			return vertices;
 		}
 
+		/**
+		 * @return the reflectance as a new Color. The renderer itself uses
+		 *         getReflectanceRGB, which doesn't make one.
+		 */
 		public Color getReflectance() {
+			return new Color(reflectance);
+		}
+
+		/**
+		 * @return the reflectance packed into an int as 0xAARRGGBB, with the
+		 *         alpha always 255.
+		 */
+		public int getReflectanceRGB() {
 			return reflectance;
 		}
 
+		/**
+		 * @return the exponent of the polygon's specular highlight, or 0 if it
+		 *         is matte.
+		 */
+		public int getShininess() {
+			return shininess;
+		}
+
 		@Override
 		public String toString() {
 			String str = "polygon:";
@@ -95,7 +219,7 @@ public class Scene {
 			for (Vector3D p : vertices)
 				str += "\n  " + p.toString();
 
-			str += "\n  " + reflectance.toString();
+			str += "\n  " + getReflectance().toString();
 
 			return str;
 		}
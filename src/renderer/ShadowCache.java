@@ -0,0 +1,56 @@
+package renderer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the shadow maps of the light sources from one frame to the next, and
+ * only draws a new one when a light source has changed direction or the model
+ * (or level of detail) being drawn has changed. Moving the camera never needs
+ * a new shadow map, since the light sources turn with the model.
+ */
+public class ShadowCache {
+
+	private List<ShadowMap> maps = new ArrayList<>();
+	private int builds;
+
+	/**
+	 * @param scene
+	 * 			The model being drawn.
+	 * @param lightSources
+	 * 			The directions of the light sources.
+	 * @return a shadow map for each light source, in the same order.
+	 */
+	public ShadowMap[] get(Scene scene, List<Vector3D> lightSources) {
+		ShadowMap[] result = new ShadowMap[lightSources.size()];
+		List<ShadowMap> kept = new ArrayList<>(lightSources.size());
+		for (int i = 0; i < result.length; i++) {
+			Vector3D light = lightSources.get(i);
+			for (ShadowMap map : maps) {
+				if (map.getScene() == scene && map.getLight().equals(light)) {
+					result[i] = map;
+					break;
+				}
+			}
+			if (result[i] == null) {
+				result[i] = new ShadowMap(scene, light);
+				builds++;
+			}
+			kept.add(result[i]);
+		}
+		maps = kept;
+		return result;
+	}
+
+	/**
+	 * @return how many shadow maps have been drawn so far.
+	 */
+	public int getBuilds() {
+		return builds;
+	}
+
+	@Override
+	public String toString() {
+		return "shadow cache: " + maps.size() + " maps, " + builds + " built";
+	}
+}
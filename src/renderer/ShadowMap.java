@@ -0,0 +1,154 @@
+package renderer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import renderer.Scene.Polygon;
+
+/**
+ * The depth of a scene as seen from a directional light, for working out
+ * which points the light reaches.
+ *
+ * The scene is turned so that the light shines straight down the z-axis,
+ * stretched to fill a square map, and drawn into a depth buffer with the same
+ * rasteriser as the main pass. A point is lit if it is no further from the
+ * light than the nearest surface drawn at its place in the map.
+ *
+ * The light sources turn with the model, so a shadow map only depends on the
+ * model and the light's direction, and can be kept however the camera moves.
+ */
+public class ShadowMap {
+
+	/** The width and height of a shadow map, in texels. */
+	public static final int SIZE = 1024;
+
+	/**
+	 * How much further than the stored depth a point can be and still be lit,
+	 * in texels, so surfaces don't shadow themselves through rounding.
+	 */
+	private static final float BIAS = 2;
+
+	private final Scene scene;
+	private final Vector3D light;
+	// takes the model's coordinates to the map's, with z being the distance
+	// from the light.
+	private final Transform toMap;
+	private final float[][] depth;
+
+	/**
+	 * Draws a shadow map of a scene.
+	 *
+	 * @param scene
+	 * 			The model, which is only read.
+	 * @param light
+	 * 			The direction of the light source, pointing from the model
+	 * 			towards the light, as in Renderer.directLightSources.
+	 */
+	public ShadowMap(Scene scene, Vector3D light) {
+		this.scene = scene;
+		this.light = light;
+
+		// turns the model so that the light shines down the positive z-axis.
+		Vector3D d = light.unitVector();
+		float dx = -d.x, dy = -d.y, dz = -d.z;
+		float r = (float) Math.sqrt(dx * dx + dz * dz);
+		Transform turn = Transform.newXRotation((float) Math.atan2(dy, r))
+				.compose(Transform.newYRotation((float) Math.atan2(-dx, dz)));
+
+		List<Polygon> polygons = scene.getPolygons();
+		float[] vertices = new float[polygons.size() * 9];
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < polygons.size(); i++) {
+			Vector3D[] v = polygons.get(i).getVertices();
+			for (int k = 0; k < 3; k++) {
+				Vector3D t = turn.multiply(v[k]);
+				minX = Math.min(minX, t.x);
+				minY = Math.min(minY, t.y);
+				minZ = Math.min(minZ, t.z);
+				maxX = Math.max(maxX, t.x);
+				maxY = Math.max(maxY, t.y);
+			}
+		}
+		// a texel of border, so that the edges of the model are inside the map.
+		float size = Math.max(maxX - minX, maxY - minY);
+		float scale = size > 0 ? (SIZE - 2) / size : 1;
+		this.toMap = Transform.newTranslation(1, 1, 0)
+				.compose(Transform.newScale(scale, scale, scale))
+				.compose(Transform.newTranslation(-minX, -minY, -minZ))
+				.compose(turn);
+
+		for (int i = 0; i < polygons.size(); i++) {
+			Vector3D[] v = polygons.get(i).getVertices();
+			for (int k = 0; k < 3; k++) {
+				Vector3D t = toMap.multiply(v[k]);
+				vertices[i * 9 + k * 3] = t.x;
+				vertices[i * 9 + k * 3 + 1] = t.y;
+				vertices[i * 9 + k * 3 + 2] = t.z;
+			}
+		}
+
+		// both sides of every polygon cast shadows, so none are hidden. The
+		// rasteriser only draws polygons wound one way, so the others are drawn
+		// with two of their vertices swapped.
+		depth = new float[SIZE][SIZE];
+		for (float[] column : depth) {
+			Arrays.fill(column, Float.POSITIVE_INFINITY);
+		}
+		float[] swapped = new float[9];
+		EdgeList edges = new EdgeList(0, 0);
+		for (int o = 0; o < vertices.length; o += 9) {
+			if (Pipeline.isHidden(vertices, o)) {
+				System.arraycopy(vertices, o, swapped, 0, 3);
+				System.arraycopy(vertices, o + 6, swapped, 3, 3);
+				System.arraycopy(vertices, o + 3, swapped, 6, 3);
+				Pipeline.computeZDepth(depth, Pipeline.computeEdgeList(swapped, 0, edges));
+			} else {
+				Pipeline.computeZDepth(depth, Pipeline.computeEdgeList(vertices, o, edges));
+			}
+		}
+	}
+
+	/**
+	 * @return the scene the map was drawn from.
+	 */
+	public Scene getScene() {
+		return scene;
+	}
+
+	/**
+	 * @return the direction of the light the map was drawn from.
+	 */
+	public Vector3D getLight() {
+		return light;
+	}
+
+	/**
+	 * @return the transform from the model's coordinates to the map's, where x
+	 * 			and y are in texels and z is the distance from the light.
+	 */
+	public Transform getTransform() {
+		return toMap;
+	}
+
+	/**
+	 * Checks whether the light reaches a point given in the map's coordinates.
+	 * Points outside the map are always lit.
+	 */
+	public boolean isLit(float x, float y, float z) {
+		int ix = (int) x, iy = (int) y;
+		if (x < 0 || y < 0 || ix >= SIZE || iy >= SIZE) {
+			return true;
+		}
+		return z <= depth[ix][iy] + BIAS;
+	}
+
+	/**
+	 * Checks whether the light reaches a point given in the model's
+	 * coordinates.
+	 */
+	public boolean isLit(Vector3D point) {
+		Vector3D p = toMap.multiply(point);
+		return isLit(p.x, p.y, p.z);
+	}
+}
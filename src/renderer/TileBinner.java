@@ -0,0 +1,296 @@
+package renderer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fills in a frame's polygons on several threads at once by splitting the
+ * canvas into tiles, each drawn by one thread, so no two threads ever write
+ * the same pixel.
+ *
+ * The tiles aren't a fixed grid. The whole canvas starts as one tile, and any
+ * tile covered by more than a set number of polygons is split in half across
+ * its longer side, and its polygons shared out between the halves, until
+ * every tile is either light enough or as small as tiles go. So where a model
+ * like the car crowds most of its polygons into a small part of the canvas,
+ * that part ends up in many small tiles and the rest in a few big ones. Each
+ * split is a fork-join task, so idle threads steal the halves of busy tiles.
+ *
+ * Within a tile the polygons are drawn in the order given, so the frame is
+ * the same as drawing them one after another on one thread.
+ *
+ * How long each thread spent binning and drawing during the last frame is
+ * kept, as a fraction of the time the frame took, to check the work was
+ * spread evenly.
+ */
+public class TileBinner {
+
+	/** The default number of polygons a tile can have before it is split. */
+	public static final int DEFAULT_TILE_POLYGONS = 1024;
+
+	/** Tiles are never split below this width or height, in pixels. */
+	public static final int MIN_TILE = 16;
+
+	// how many polygons each task finds the boxes of in the first pass.
+	private static final int BOX_CHUNK = 1024;
+
+	private final ForkJoinPool pool;
+	private final int tilePolygons;
+
+	// about the last frame drawn: how many tiles it was split into, how long
+	// it took, how long each thread was busy and which thread asked for it.
+	private int tiles;
+	private long elapsed;
+	private Map<Thread, AtomicLong> busy = new ConcurrentHashMap<>();
+	private Thread caller;
+
+	/**
+	 * @param pool
+	 * 			The threads to draw on.
+	 * @param tilePolygons
+	 * 			The most polygons a tile can have before it is split.
+	 */
+	public TileBinner(ForkJoinPool pool, int tilePolygons) {
+		if (tilePolygons < 1) {
+			throw new IllegalArgumentException("tiles must be able to hold a polygon: " + tilePolygons);
+		}
+		this.pool = pool;
+		this.tilePolygons = tilePolygons;
+	}
+
+	/**
+	 * Makes a binner that draws on the common fork-join pool, with the default
+	 * tile size.
+	 */
+	public TileBinner() {
+		this(ForkJoinPool.commonPool(), DEFAULT_TILE_POLYGONS);
+	}
+
+	/**
+	 * Finds the boxes of the polygons facing the camera, bins them into tiles
+	 * and fills each tile in, on the pool's threads, waiting for all of them.
+	 *
+	 * @param vertices
+	 * 			The polygons' vertices, already on the canvas, as from
+	 * 			ViewBuffer.getVertices.
+	 * @param indices
+	 * 			Which of the polygons to draw, in order.
+	 * @param target
+	 * 			The buffer to fill, already cleared.
+	 */
+	void draw(float[] vertices, int[] indices, VisibilityBuffer target) {
+		long start = System.nanoTime();
+		busy = new ConcurrentHashMap<>();
+		caller = Thread.currentThread();
+		AtomicInteger tileCount = new AtomicInteger();
+		boolean[] facing = new boolean[indices.length];
+		int[] boxes = new int[indices.length * 4];
+		pool.invoke(new BoxTask(vertices, indices, facing, boxes, 0, indices.length));
+
+		int[] list = new int[indices.length];
+		int n = 0;
+		for (int k = 0; k < indices.length; k++) {
+			if (facing[k]) {
+				list[n++] = k;
+			}
+		}
+		pool.invoke(new TileTask(vertices, indices, boxes, target, tileCount, list, n, 0, 0, target.getWidth(),
+				target.getHeight()));
+		tiles = tileCount.get();
+		elapsed = System.nanoTime() - start;
+	}
+
+	/**
+	 * @return how many tiles the last frame was split into.
+	 */
+	public int getTileCount() {
+		return tiles;
+	}
+
+	/**
+	 * @return for each of the pool's threads, then the thread that asked for
+	 * 			the frame, the fraction of the last frame's time it spent
+	 * 			binning or drawing polygons. Threads that did nothing, or
+	 * 			weren't started, count as 0.
+	 */
+	public double[] getUtilisation() {
+		List<Thread> workers = new ArrayList<>(busy.keySet());
+		workers.remove(caller);
+		Collections.sort(workers, new Comparator<Thread>() {
+			public int compare(Thread a, Thread b) {
+				return a.getName().compareTo(b.getName());
+			}
+		});
+		double[] utilisation = new double[Math.max(pool.getParallelism(), workers.size()) + 1];
+		for (int i = 0; i < workers.size(); i++) {
+			utilisation[i] = fraction(busy.get(workers.get(i)));
+		}
+		utilisation[utilisation.length - 1] = fraction(busy.get(caller));
+		return utilisation;
+	}
+
+	private double fraction(AtomicLong nanos) {
+		return nanos == null || elapsed <= 0 ? 0 : Math.min(1, (double) nanos.get() / elapsed);
+	}
+
+	/**
+	 * Adds to how long the current thread has been busy this frame.
+	 */
+	private void addBusy(long nanos) {
+		Thread thread = Thread.currentThread();
+		AtomicLong total = busy.get(thread);
+		if (total == null) {
+			busy.putIfAbsent(thread, new AtomicLong());
+			total = busy.get(thread);
+		}
+		total.addAndGet(nanos);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder("binning: ").append(tiles).append(" tiles, utilisation");
+		for (double u : getUtilisation()) {
+			s.append(' ').append(Math.round(u * 100)).append('%');
+		}
+		return s.toString();
+	}
+
+	/**
+	 * Finds which of a run of the polygons face the camera, and the box of
+	 * pixels each of those could fill.
+	 */
+	private class BoxTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final float[] vertices;
+		private final int[] indices;
+		private final boolean[] facing;
+		private final int[] boxes;
+		private final int lo, hi;
+
+		BoxTask(float[] vertices, int[] indices, boolean[] facing, int[] boxes, int lo, int hi) {
+			this.vertices = vertices;
+			this.indices = indices;
+			this.facing = facing;
+			this.boxes = boxes;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > BOX_CHUNK) {
+				int mid = (lo + hi) >>> 1;
+				BoxTask right = new BoxTask(vertices, indices, facing, boxes, mid, hi);
+				right.fork();
+				new BoxTask(vertices, indices, facing, boxes, lo, mid).compute();
+				right.join();
+				return;
+			}
+			long start = System.nanoTime();
+			for (int k = lo; k < hi; k++) {
+				int o = indices[k] * 9;
+				if (Pipeline.isHidden(vertices, o)) {
+					continue;
+				}
+				facing[k] = true;
+				Pipeline.pixelBox(vertices, o, boxes, k * 4);
+			}
+			addBusy(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Draws the polygons in one tile, first splitting it if it has too many.
+	 */
+	private class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final float[] vertices;
+		private final int[] indices;
+		private final int[] boxes;
+		private final VisibilityBuffer target;
+		private final AtomicInteger tileCount;
+		// which of the polygons might cover the tile, as positions in indices.
+		private final int[] list;
+		private final int count;
+		private final int left, top, right, bottom;
+
+		TileTask(float[] vertices, int[] indices, int[] boxes, VisibilityBuffer target, AtomicInteger tileCount,
+				int[] list, int count, int left, int top, int right, int bottom) {
+			this.vertices = vertices;
+			this.indices = indices;
+			this.boxes = boxes;
+			this.target = target;
+			this.tileCount = tileCount;
+			this.list = list;
+			this.count = count;
+			this.left = left;
+			this.top = top;
+			this.right = right;
+			this.bottom = bottom;
+		}
+
+		@Override
+		protected void compute() {
+			int width = right - left, height = bottom - top;
+			if (count > tilePolygons && Math.max(width, height) >= MIN_TILE * 2) {
+				long start = System.nanoTime();
+				TileTask first, second;
+				if (width >= height) {
+					int split = left + width / 2;
+					first = part(left, top, split, bottom);
+					second = part(split, top, right, bottom);
+				} else {
+					int split = top + height / 2;
+					first = part(left, top, right, split);
+					second = part(left, split, right, bottom);
+				}
+				addBusy(System.nanoTime() - start);
+				second.fork();
+				first.compute();
+				second.join();
+				return;
+			}
+
+			long start = System.nanoTime();
+			tileCount.incrementAndGet();
+			// a polygon in several tiles has its edges found for each of them,
+			// which costs less than keeping every polygon's edges between the
+			// passes. The tile fills one edgelist in again for each polygon.
+			EdgeList edges = new EdgeList(0, 0);
+			for (int i = 0; i < count; i++) {
+				int k = list[i];
+				target.fill(Pipeline.computeEdgeList(vertices, indices[k] * 9, edges), indices[k], left, top, right,
+						bottom);
+			}
+			addBusy(System.nanoTime() - start);
+		}
+
+		/**
+		 * @return a task for part of this tile, with the polygons whose boxes
+		 * 			overlap it, still in order.
+		 */
+		private TileTask part(int partLeft, int partTop, int partRight, int partBottom) {
+			int[] partList = new int[count];
+			int n = 0;
+			for (int i = 0; i < count; i++) {
+				int k = list[i];
+				if (boxes[k * 4] < partRight && boxes[k * 4 + 2] > partLeft && boxes[k * 4 + 1] < partBottom
+						&& boxes[k * 4 + 3] > partTop) {
+					partList[n++] = k;
+				}
+			}
+			return new TileTask(vertices, indices, boxes, target, tileCount, partList, n, partLeft, partTop, partRight,
+					partBottom);
+		}
+	}
+}
@@ -1,8 +1,13 @@
 package renderer;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
 /**
  * 3x4 array representing an affine transformation (= a 4x4 martrix in which the
  * bottom row is always {0 0 0 1} ) Note that this cannot be used for
- * perspective projection tranformations since these require a non-0 bottom row.
+ * perspective projection tranformations since these require a non-0 bottom row;
+ * use Projection for those.
  * 
  * The class provides static methods to construct translation, scaling, and
  * rotation matrices, and methods to multiply a translation by a vector or
@@ -89,6 +94,11 @@ public class Transform {
 		return new Transform(ans);
 	}
 
+	/* get the element at the given row (0-2) and column (0-3) */
+	public float get(int row, int col) {
+		return values[row][col];
+	}
+
 	/* apply this transform to a vector */
 	public Vector3D multiply(Vector3D vect) {
 		if (values == null || values[0] == null || values[1] == null
@@ -110,6 +120,55 @@ public class Transform {
 		return new Vector3D(x, y, z);
 	}
 
+	/*
+	 * apply this transform to count vectors kept as separate arrays of x, y
+	 * and z values, starting at the given index, putting the results at the
+	 * start of three more arrays. Written as one plain loop over whole arrays
+	 * so that the JIT can turn it into SIMD instructions, which it can't for
+	 * the vectors one at a time.
+	 */
+	public void multiply(float[] xs, float[] ys, float[] zs, int start, int count, float[] outX, float[] outY,
+			float[] outZ) {
+		float m00 = values[0][0], m01 = values[0][1], m02 = values[0][2], m03 = values[0][3];
+		float m10 = values[1][0], m11 = values[1][1], m12 = values[1][2], m13 = values[1][3];
+		float m20 = values[2][0], m21 = values[2][1], m22 = values[2][2], m23 = values[2][3];
+		for (int i = 0; i < count; i++) {
+			float x = xs[start + i], y = ys[start + i], z = zs[start + i];
+			outX[i] = m00 * x + m01 * y + m02 * z + m03;
+			outY[i] = m10 * x + m11 * y + m12 * z + m13;
+			outZ[i] = m20 * x + m21 * y + m22 * z + m23;
+		}
+	}
+
+	/*
+	 * as above, reading the vectors from buffers, which may be outside the
+	 * heap, by index.
+	 */
+	public void multiply(FloatBuffer xs, FloatBuffer ys, FloatBuffer zs, int start, int count, float[] outX,
+			float[] outY, float[] outZ) {
+		float m00 = values[0][0], m01 = values[0][1], m02 = values[0][2], m03 = values[0][3];
+		float m10 = values[1][0], m11 = values[1][1], m12 = values[1][2], m13 = values[1][3];
+		float m20 = values[2][0], m21 = values[2][1], m22 = values[2][2], m23 = values[2][3];
+		for (int i = 0; i < count; i++) {
+			float x = xs.get(start + i), y = ys.get(start + i), z = zs.get(start + i);
+			outX[i] = m00 * x + m01 * y + m02 * z + m03;
+			outY[i] = m10 * x + m11 * y + m12 * z + m13;
+			outZ[i] = m20 * x + m21 * y + m22 * z + m23;
+		}
+	}
+
+	/* two transforms are equal if all their elements are */
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof Transform
+				&& Arrays.deepEquals(values, ((Transform) other).values);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.deepHashCode(values);
+	}
+
 	public String toString() {
 		StringBuilder ans = new StringBuilder();
 		for (int row = 0; row < 3; row++) {
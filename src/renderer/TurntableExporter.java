@@ -0,0 +1,275 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Exports a turntable of a model: a sequence of frames turning it once around
+ * the y-axis, written out as numbered PNG files.
+ *
+ * Each frame goes through three stages, each on its own thread: drawing it
+ * into a z-buffer, converting the z-buffer to an image, and encoding the image
+ * to a file. The stages are joined by small bounded queues, so while one frame
+ * is being encoded the next is being converted and the one after that drawn,
+ * and the whole export takes about as long as the slowest stage rather than
+ * all three added up. The z-buffers are reused, being passed back to the
+ * drawing stage once they have been converted.
+ */
+public class TurntableExporter {
+
+	/** How many frames can be waiting between two stages. */
+	private static final int QUEUE_SIZE = 4;
+
+	private final Scene scene;
+	private final BVH bvh;
+	private final ArrayList<Vector3D> lightSources;
+	private final ArrayList<Color> lightColours;
+	private final Color ambientLight;
+	private final int width;
+	private final int height;
+
+	// how long each stage spent working, rather than waiting, in nanoseconds.
+	private final AtomicLong renderTime = new AtomicLong();
+	private final AtomicLong convertTime = new AtomicLong();
+	private final AtomicLong encodeTime = new AtomicLong();
+	private long totalTime;
+
+	/**
+	 * @param scene
+	 * 			The model, which is only read.
+	 * @param bvh
+	 * 			A BVH over the model's polygons.
+	 * @param lightSources
+	 * 			The directions of the light sources, relative to the model. These
+	 * 			are copied, so may be changed once the exporter is made.
+	 * @param lightColours
+	 * 			The colours of the light sources, which are also copied.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @param width
+	 * 			The width of each frame, in pixels.
+	 * @param height
+	 * 			The height of each frame, in pixels.
+	 */
+	public TurntableExporter(Scene scene, BVH bvh, ArrayList<Vector3D> lightSources, ArrayList<Color> lightColours,
+			Color ambientLight, int width, int height) {
+		this.scene = scene;
+		this.bvh = bvh;
+		this.lightSources = new ArrayList<>(lightSources);
+		this.lightColours = new ArrayList<>(lightColours);
+		this.ambientLight = ambientLight;
+		this.width = width;
+		this.height = height;
+	}
+
+	/** A frame on its way through the stages. */
+	private static class Frame {
+		final int index;
+		final int[][] zBuffer;
+		final BufferedImage image;
+
+		Frame(int index, int[][] zBuffer, BufferedImage image) {
+			this.index = index;
+			this.zBuffer = zBuffer;
+			this.image = image;
+		}
+	}
+
+	/** Passed down the stages after the last frame, to tell them to stop. */
+	private static final Frame END = new Frame(-1, null, null);
+
+	/**
+	 * Draws and writes out a turntable, waiting until every frame is written.
+	 *
+	 * @param directory
+	 * 			Where to write the frames, as frame000.png, frame001.png, etc.
+	 * 			It is made if it doesn't exist.
+	 * @param frames
+	 * 			How many frames to make one full turn in.
+	 * @param start
+	 * 			The camera for the first frame. Later frames are turned further
+	 * 			around the y-axis from it.
+	 * @throws IOException
+	 * 			if a frame couldn't be written.
+	 */
+	public void export(final File directory, final int frames, final Transform start) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("couldn't make " + directory);
+		}
+		renderTime.set(0);
+		convertTime.set(0);
+		encodeTime.set(0);
+		long begin = System.nanoTime();
+
+		final BlockingQueue<int[][]> free = new ArrayBlockingQueue<>(QUEUE_SIZE + 1);
+		final BlockingQueue<Frame> drawn = new ArrayBlockingQueue<>(QUEUE_SIZE);
+		final BlockingQueue<Frame> converted = new ArrayBlockingQueue<>(QUEUE_SIZE);
+		// enough buffers that the drawing stage can fill the queue and still have
+		// one to draw into.
+		for (int i = 0; i < QUEUE_SIZE + 1; i++) {
+			free.add(new int[width][height]);
+		}
+		final AtomicReference<Exception> failure = new AtomicReference<>();
+		final Thread[] stages = new Thread[3];
+
+		stages[0] = stage("turntable-render", failure, stages, new Stage() {
+			public void run() throws Exception {
+				ViewBuffer view = new ViewBuffer(scene, bvh, width, height);
+				float[][] zDepth = new float[width][height];
+				for (int i = 0; i < frames; i++) {
+					int[][] zBuffer = free.take();
+					long t = System.nanoTime();
+					float angle = (float) (2 * Math.PI * i / frames);
+					view.update(Transform.newYRotation(angle).compose(start));
+					Pipeline.clearBuffers(zBuffer, zDepth);
+					Pipeline.drawPolygons(zBuffer, zDepth, view, view.getBVH().cull(new Rectangle(0, 0, width, height)),
+							lightSources, lightColours, ambientLight);
+					renderTime.addAndGet(System.nanoTime() - t);
+					drawn.put(new Frame(i, zBuffer, null));
+				}
+				drawn.put(END);
+			}
+		});
+
+		stages[1] = stage("turntable-convert", failure, stages, new Stage() {
+			public void run() throws Exception {
+				for (Frame frame = drawn.take(); frame != END; frame = drawn.take()) {
+					long t = System.nanoTime();
+					BufferedImage image = Pipeline.toImage(frame.zBuffer);
+					convertTime.addAndGet(System.nanoTime() - t);
+					free.put(frame.zBuffer);
+					converted.put(new Frame(frame.index, null, image));
+				}
+				converted.put(END);
+			}
+		});
+
+		stages[2] = stage("turntable-encode", failure, stages, new Stage() {
+			public void run() throws Exception {
+				for (Frame frame = converted.take(); frame != END; frame = converted.take()) {
+					long t = System.nanoTime();
+					File file = new File(directory, String.format("frame%03d.png", frame.index));
+					if (!ImageIO.write(frame.image, "png", file)) {
+						throw new IOException("no PNG writer available");
+					}
+					encodeTime.addAndGet(System.nanoTime() - t);
+				}
+			}
+		});
+
+		for (Thread stage : stages) {
+			stage.start();
+		}
+		try {
+			for (Thread stage : stages) {
+				stage.join();
+			}
+		} catch (InterruptedException e) {
+			for (Thread stage : stages) {
+				stage.interrupt();
+			}
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while exporting", e);
+		}
+		totalTime = System.nanoTime() - begin;
+
+		Exception e = failure.get();
+		if (e instanceof IOException) {
+			throw (IOException) e;
+		} else if (e != null) {
+			throw new IOException(e);
+		}
+	}
+
+	/** The work done by one stage. */
+	private interface Stage {
+		void run() throws Exception;
+	}
+
+	/**
+	 * Makes the thread for a stage. If any stage fails, the failure is recorded
+	 * and every other stage is interrupted, so none of them are left waiting on
+	 * a queue that will never be filled or emptied.
+	 */
+	private static Thread stage(String name, final AtomicReference<Exception> failure, final Thread[] stages,
+			final Stage stage) {
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					stage.run();
+				} catch (InterruptedException e) {
+					// another stage failed.
+				} catch (Exception e) {
+					if (failure.compareAndSet(null, e)) {
+						for (Thread t : stages) {
+							if (t != Thread.currentThread()) {
+								t.interrupt();
+							}
+						}
+					}
+				}
+			}
+		}, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/**
+	 * Exports a turntable of a model file without opening the GUI, using the
+	 * file's light source and the GUI's default colours.
+	 *
+	 * Usage: TurntableExporter model.txt outputDirectory [frames]
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("usage: TurntableExporter model.txt outputDirectory [frames]");
+			return;
+		}
+		Scene scene = Scene.load(new File(args[0]));
+		int frames = args.length > 2 ? Integer.parseInt(args[2]) : 36;
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(new Color(100, 100, 100));
+
+		TurntableExporter exporter = new TurntableExporter(scene, BVH.build(scene.getPolygons()), scene.getLights(),
+				colours, new Color(128, 128, 128), GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		exporter.export(new File(args[1]), frames, Transform.identity());
+		System.out.println(exporter);
+	}
+
+	/**
+	 * @return how long the last export took from start to finish, in
+	 * 			milliseconds.
+	 */
+	public long getTotalMillis() {
+		return totalTime / 1000000;
+	}
+
+	/**
+	 * @return how long each stage of the last export was busy for, in
+	 * 			milliseconds: drawing, converting, then encoding.
+	 */
+	public long[] getStageMillis() {
+		return new long[] { renderTime.get() / 1000000, convertTime.get() / 1000000, encodeTime.get() / 1000000 };
+	}
+
+	/**
+	 * @return how long the last export took, and how long each stage of it was
+	 * 			busy for.
+	 */
+	@Override
+	public String toString() {
+		return String.format("turntable: %d ms total; render %d ms, convert %d ms, encode %d ms",
+				totalTime / 1000000, renderTime.get() / 1000000, convertTime.get() / 1000000,
+				encodeTime.get() / 1000000);
+	}
+}
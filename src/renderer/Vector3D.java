@@ -3,23 +3,31 @@ package renderer;
  * An immutable 3D vector or position. Note that it is safe to make the fields
  * public because they are final and cannot be modified.
  * 
+ * The magnitude is only worked out the first time it is asked for, since most
+ * vectors, e.g. the vertices made by Transform.multiply, never need it.
+ * 
+ * There are also static versions of the common operations for vectors packed
+ * into float arrays, as x, y, z at an offset, for code that keeps its vectors
+ * that way rather than making a Vector3D for each.
+ * 
  * @author Pondy
  */
 public class Vector3D {
 	public final float x;
 	public final float y;
 	public final float z;
-	public final float mag;
+	// negative until first worked out. Working it out twice on different
+	// threads gives the same value, so it needs no locking.
+	private float mag;
 
 	/**
-	 * Construct a new vector, with the specified x, y, z components computes
-	 * and caches the magnitude.
+	 * Construct a new vector, with the specified x, y, z components.
 	 */
 	public Vector3D(float x, float y, float z) {
 		this.x = x;
 		this.y = y;
 		this.z = z;
-		this.mag = (float) Math.sqrt(x * x + y * y + z * z);
+		this.mag = -1;
 	}
 
 	/** A private constructor, used only within this class */
@@ -30,11 +38,23 @@ public class Vector3D {
 		this.mag = mag;
 	}
 
+	/**
+	 * Returns the magnitude of this vector, computing and caching it the first
+	 * time.
+	 */
+	public float mag() {
+		if (mag < 0) {
+			mag = (float) Math.sqrt(x * x + y * y + z * z);
+		}
+		return mag;
+	}
+
 	/**
 	 * Constructs and returns a unit vector in the same direction as this
 	 * vector.
 	 */
 	public Vector3D unitVector() {
+		float mag = mag();
 		if (mag <= 0.0)
 			return new Vector3D(1.0f, 0.0f, 0.0f, 1.0f);
 		else
@@ -75,7 +95,45 @@ public class Vector3D {
 	 * Returns the cosine of the angle between this vector and the other vector.
 	 */
 	public float cosTheta(Vector3D other) {
-		return (x * other.x + y * other.y + z * other.z) / mag / other.mag;
+		return (x * other.x + y * other.y + z * other.z) / mag() / other.mag();
+	}
+
+	/**
+	 * Returns the dot product of the vectors packed into two arrays at the
+	 * given offsets.
+	 */
+	public static float dot(float[] a, int i, float[] b, int j) {
+		return a[i] * b[j] + a[i + 1] * b[j + 1] + a[i + 2] * b[j + 2];
+	}
+
+	/**
+	 * Puts the cross product of the vectors packed into two arrays at the
+	 * given offsets into a third array at its offset. The result may be
+	 * written over either of the vectors.
+	 */
+	public static void cross(float[] a, int i, float[] b, int j, float[] result, int k) {
+		float x = a[i + 1] * b[j + 2] - a[i + 2] * b[j + 1];
+		float y = a[i + 2] * b[j] - a[i] * b[j + 2];
+		float z = a[i] * b[j + 1] - a[i + 1] * b[j];
+		result[k] = x;
+		result[k + 1] = y;
+		result[k + 2] = z;
+	}
+
+	/**
+	 * Scales the vector packed into an array at the given offset to a unit
+	 * vector, in place, leaving it alone if it has no length.
+	 * 
+	 * @return the vector's length before it was scaled.
+	 */
+	public static float normalize(float[] v, int i) {
+		float length = (float) Math.sqrt(v[i] * v[i] + v[i + 1] * v[i + 1] + v[i + 2] * v[i + 2]);
+		if (length > 0) {
+			v[i] /= length;
+			v[i + 1] /= length;
+			v[i + 2] /= length;
+		}
+		return length;
 	}
 
 	@Override
@@ -90,7 +148,7 @@ public class Vector3D {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + Float.floatToIntBits(mag);
+		result = prime * result + Float.floatToIntBits(mag());
 		result = prime * result + Float.floatToIntBits(x);
 		result = prime * result + Float.floatToIntBits(y);
 		result = prime * result + Float.floatToIntBits(z);
@@ -106,7 +164,7 @@ public class Vector3D {
 		if (getClass() != obj.getClass())
 			return false;
 		Vector3D other = (Vector3D) obj;
-		if (Math.abs(mag - other.mag) > 0.00001)
+		if (Math.abs(mag() - other.mag()) > 0.00001)
 			return false;
 		if (Math.abs(x - other.x) > 0.00001)
 			return false;
@@ -0,0 +1,276 @@
+package renderer;
+
+import java.awt.Rectangle;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import renderer.Scene.Polygon;
+
+/**
+ * One view of a scene: the positions of its polygons' vertices as seen by a
+ * camera, moved and scaled to fit on the canvas, along with a BVH fitted to
+ * them.
+ *
+ * The scene itself is never changed, so any number of views (e.g. on other
+ * threads) can share it. Each view keeps one array of vertices that is
+ * overwritten every time its camera moves, rather than making new polygons for
+ * every frame.
+ */
+public class ViewBuffer {
+
+	private final Scene source;
+	private final BVH bvh;
+
+	// how many vertices are transformed at a time, small enough that each
+	// block is still in the cache when it's copied into the vertices.
+	private static final int BLOCK = 1024;
+
+	// the scene's vertices, x, y and z in separate arrays so that they can be
+	// transformed a block at a time, or in buffers outside the heap instead,
+	// and the block last transformed.
+	private final float[] xs, ys, zs;
+	private final FloatBuffer offHeapX, offHeapY, offHeapZ;
+	private final int count;
+	private final float[] blockX = new float[BLOCK], blockY = new float[BLOCK], blockZ = new float[BLOCK];
+	// the transformed vertices, 9 floats per polygon, in the scene's order.
+	private final float[] vertices;
+	// the size of the area the view is fitted to.
+	private final int width;
+	private final int height;
+
+	// the camera the vertices were last transformed by, or null if never, and
+	// the direction it looks from in the scene's coordinates.
+	private Transform camera;
+	private Vector3D viewer;
+	private Rectangle bounds = new Rectangle();
+	private float scale = 1;
+	// how far the camera's coordinates are moved before they are scaled.
+	private float offsetX, offsetY;
+
+	/**
+	 * @param source
+	 * 			The scene to view, which is never changed.
+	 * @param bvh
+	 * 			A BVH built over the scene's polygons. The view refits its own
+	 * 			copy of it, so the one passed in is left alone.
+	 */
+	public ViewBuffer(Scene source, BVH bvh) {
+		this(source, bvh, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+	}
+
+	/**
+	 * Makes a view that is fitted to an area other than the canvas, e.g. a
+	 * viewport.
+	 * 
+	 * @param source
+	 * 			The scene to view, which is never changed.
+	 * @param bvh
+	 * 			A BVH built over the scene's polygons, which is copied.
+	 * @param width
+	 * 			The width of the area to fit the view to.
+	 * @param height
+	 * 			The height of the area to fit the view to.
+	 */
+	public ViewBuffer(Scene source, BVH bvh, int width, int height) {
+		this(source, bvh, width, height, false);
+	}
+
+	/**
+	 * Makes a view that may keep its copy of the scene's vertices outside the
+	 * heap, so that the heap needn't grow with the model.
+	 * 
+	 * @param source
+	 * 			The scene to view, which is never changed.
+	 * @param bvh
+	 * 			A BVH built over the scene's polygons, which is copied.
+	 * @param width
+	 * 			The width of the area to fit the view to.
+	 * @param height
+	 * 			The height of the area to fit the view to.
+	 * @param offHeap
+	 * 			Whether to keep the scene's vertices outside the heap.
+	 */
+	public ViewBuffer(Scene source, BVH bvh, int width, int height, boolean offHeap) {
+		this.source = source;
+		this.bvh = bvh.copy();
+		this.vertices = new float[source.getPolygons().size() * 9];
+		this.width = width;
+		this.height = height;
+		List<Polygon> polygons = source.getPolygons();
+		count = polygons.size() * 3;
+		// arrays are transformed faster than buffers, so buffers are only
+		// used when they must be outside the heap.
+		xs = offHeap ? null : new float[count];
+		ys = offHeap ? null : new float[count];
+		zs = offHeap ? null : new float[count];
+		offHeapX = offHeap ? OffHeap.floats(count, true) : null;
+		offHeapY = offHeap ? OffHeap.floats(count, true) : null;
+		offHeapZ = offHeap ? OffHeap.floats(count, true) : null;
+		for (int i = 0; i < polygons.size(); i++) {
+			Vector3D[] v = polygons.get(i).getVertices();
+			for (int k = 0; k < 3; k++) {
+				if (offHeap) {
+					offHeapX.put(i * 3 + k, v[k].x);
+					offHeapY.put(i * 3 + k, v[k].y);
+					offHeapZ.put(i * 3 + k, v[k].z);
+				} else {
+					xs[i * 3 + k] = v[k].x;
+					ys[i * 3 + k] = v[k].y;
+					zs[i * 3 + k] = v[k].z;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves the vertices to where the camera sees them, then moves and scales
+	 * them so that their bounding box starts at the top-left of the canvas (or
+	 * whatever area the view was made for) and fits on it, as per
+	 * Pipeline.translateScene and Pipeline.scaleScene. Does nothing if the
+	 * camera hasn't changed since the last update.
+	 *
+	 * @param camera
+	 * 			Takes the scene's coordinates to the camera's, e.g. the rotations
+	 * 			applied so far.
+	 */
+	public void update(Transform camera) {
+		if (camera.equals(this.camera)) {
+			return;
+		}
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		for (int start = 0; start < count; start += BLOCK) {
+			int block = Math.min(BLOCK, count - start);
+			if (xs != null) {
+				camera.multiply(xs, ys, zs, start, block, blockX, blockY, blockZ);
+			} else {
+				camera.multiply(offHeapX, offHeapY, offHeapZ, start, block, blockX, blockY, blockZ);
+			}
+			for (int k = 0; k < block; k++) {
+				int o = (start + k) * 3;
+				vertices[o] = blockX[k];
+				vertices[o + 1] = blockY[k];
+				vertices[o + 2] = blockZ[k];
+				minX = Math.min(minX, blockX[k]);
+				minY = Math.min(minY, blockY[k]);
+				maxX = Math.max(maxX, blockX[k]);
+				maxY = Math.max(maxY, blockY[k]);
+			}
+		}
+
+		if (count == 0) {
+			bounds = new Rectangle();
+			scale = 1;
+			offsetX = offsetY = 0;
+		} else {
+			// rounded the same way as BVH.getBounds.
+			Rectangle moved = new Rectangle(Math.round(minX), Math.round(minY),
+					Math.round(maxX - minX), Math.round(maxY - minY));
+			scale = Pipeline.scaleFactor(new Rectangle(0, 0, moved.width, moved.height), width, height);
+			float dx = -moved.x, dy = -moved.y;
+			offsetX = dx;
+			offsetY = dy;
+			for (int o = 0; o < vertices.length; o += 3) {
+				vertices[o] = (vertices[o] + dx) * scale;
+				vertices[o + 1] = (vertices[o + 1] + dy) * scale;
+				vertices[o + 2] *= scale;
+			}
+			bounds = new Rectangle(0, 0, Math.round(moved.width * scale), Math.round(moved.height * scale));
+		}
+		bvh.refit(vertices);
+		// the camera only turns the model, so the direction it looks from, the
+		// negative z-axis, is the third row of its matrix reversed.
+		viewer = new Vector3D(-camera.get(2, 0), -camera.get(2, 1), -camera.get(2, 2)).unitVector();
+		this.camera = camera;
+	}
+
+	/**
+	 * @return the scene this is a view of.
+	 */
+	public Scene getSource() {
+		return source;
+	}
+
+	/**
+	 * @return the transformed vertices, as x, y, z for each of the three
+	 * 			vertices of each polygon in turn. These are overwritten by the
+	 * 			next update, so must not be kept.
+	 */
+	public float[] getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * @return the BVH fitted to the transformed vertices.
+	 */
+	public BVH getBVH() {
+		return bvh;
+	}
+
+	/**
+	 * @return the bounding box of the view once fitted to the canvas.
+	 */
+	public Rectangle getBounds() {
+		return bounds;
+	}
+
+	/**
+	 * @return how many pixels one unit of the scene takes up in this view.
+	 */
+	public float getScale() {
+		return scale;
+	}
+
+	/**
+	 * Moves a point of the scene to where the view puts it on the canvas, as
+	 * the last update did to the vertices.
+	 *
+	 * @param point
+	 * 			A point in the scene's coordinates.
+	 * @return the point on the canvas, with its depth scaled along with it.
+	 */
+	public Vector3D toCanvas(Vector3D point) {
+		Vector3D p = camera.multiply(point);
+		return new Vector3D((p.x + offsetX) * scale, (p.y + offsetY) * scale, p.z * scale);
+	}
+
+	/**
+	 * As above, for a point packed into an array, without making any vectors,
+	 * e.g. for each cluster of Meshlets.cull.
+	 *
+	 * @param points
+	 * 			The packed points.
+	 * @param offset
+	 * 			The index of the point's x-value, followed by its y and z.
+	 * @param out
+	 * 			Where to put the point on the canvas, as x, y and z.
+	 */
+	public void toCanvas(float[] points, int offset, float[] out) {
+		float px = points[offset], py = points[offset + 1], pz = points[offset + 2];
+		// summed in the same order as Transform.multiply, so the point comes
+		// out exactly as above.
+		for (int row = 0; row < 3; row++) {
+			out[row] = camera.get(row, 3)
+					+ (camera.get(row, 0) * px + camera.get(row, 1) * py + camera.get(row, 2) * pz);
+		}
+		out[0] = (out[0] + offsetX) * scale;
+		out[1] = (out[1] + offsetY) * scale;
+		out[2] = out[2] * scale;
+	}
+
+	/**
+	 * @return the unit direction from the model towards the viewer, in the
+	 * 			model's coordinates, or null if the view hasn't been updated yet.
+	 */
+	public Vector3D getViewer() {
+		return viewer;
+	}
+
+	/**
+	 * @return the camera the vertices were last transformed by, or null if the
+	 * 			view hasn't been updated yet.
+	 */
+	public Transform getCamera() {
+		return camera;
+	}
+}
@@ -0,0 +1,140 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+/**
+ * One of several views of the same model, e.g. from the front, side and top,
+ * each with its own camera and its own buffers, so that any number of them can
+ * be drawn at the same time on different threads.
+ *
+ * The model's levels of detail (polygons, BVHs and light sources) are shared
+ * by every viewport and only ever read. Everything a viewport writes to, its
+ * vertex buffers and z-buffer, belongs to it alone.
+ */
+public class Viewport {
+
+	/** Looks at the model from where it was loaded. */
+	public static final Transform FRONT = Transform.identity();
+	/** Looks at the model from its right-hand side. */
+	public static final Transform SIDE = Transform.newYRotation((float) (Math.PI / 2));
+	/** Looks down on the model from above. */
+	public static final Transform TOP = Transform.newXRotation((float) (-Math.PI / 2));
+
+	private final String name;
+	private final LevelOfDetail lod;
+	private final int width;
+	private final int height;
+
+	// each level as seen by this viewport's camera, made when first drawn.
+	private final ViewBuffer[] views;
+	private final int[][] zBuffer;
+	private final float[][] zDepth;
+
+	private volatile Transform camera;
+	private int level;
+
+	/**
+	 * @param name
+	 * 			What the viewport shows, e.g. "front".
+	 * @param lod
+	 * 			The model, which is shared with other viewports.
+	 * @param camera
+	 * 			Takes the model's coordinates to the viewport's, e.g. FRONT.
+	 * @param width
+	 * 			The width of the viewport, in pixels.
+	 * @param height
+	 * 			The height of the viewport, in pixels.
+	 */
+	public Viewport(String name, LevelOfDetail lod, Transform camera, int width, int height) {
+		this.name = name;
+		this.lod = lod;
+		this.camera = camera;
+		this.width = width;
+		this.height = height;
+		this.views = new ViewBuffer[lod.getLevelCount()];
+		this.zBuffer = new int[width][height];
+		this.zDepth = new float[width][height];
+	}
+
+	/**
+	 * Moves the viewport's camera. Takes effect from the next render.
+	 */
+	public void setCamera(Transform camera) {
+		this.camera = camera;
+	}
+
+	public Transform getCamera() {
+		return camera;
+	}
+
+	/**
+	 * Draws the model from this viewport's camera, looking straight down the
+	 * z-axis, at the coarsest level of detail that looks the same at this size.
+	 *
+	 * Only one thread may render a given viewport at a time, but different
+	 * viewports can be rendered at once.
+	 *
+	 * @param lightSources
+	 * 			The directions of the light sources, relative to the model.
+	 * @param lightColours
+	 * 			The colours of the light sources.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @return the rendered image, which is new every time.
+	 */
+	public BufferedImage render(ArrayList<Vector3D> lightSources, ArrayList<Color> lightColours, Color ambientLight) {
+		return render(LightManager.exact(lightSources, lightColours), ambientLight);
+	}
+
+	/**
+	 * Draws the model from this viewport's camera as above, shading it with
+	 * lights already combined by a LightManager.
+	 *
+	 * @param lights
+	 * 			The light sources, relative to the model.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @return the rendered image, which is new every time.
+	 */
+	public BufferedImage render(LightManager lights, Color ambientLight) {
+		Transform camera = this.camera;
+		level = lod.selectLevel(view(lod.getLevelCount() - 1, camera).getScale());
+		ViewBuffer view = view(level, camera);
+
+		Pipeline.clearBuffers(zBuffer, zDepth);
+		Pipeline.drawPolygons(zBuffer, zDepth, view, view.getBVH().cull(new Rectangle(0, 0, width, height)),
+				lights, ambientLight);
+
+		return Pipeline.toImage(zBuffer);
+	}
+
+	private ViewBuffer view(int level, Transform camera) {
+		if (views[level] == null) {
+			views[level] = new ViewBuffer(lod.getLevel(level), lod.getBVH(level), width, height);
+		}
+		views[level].update(camera);
+		return views[level];
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the level of detail drawn last.
+	 */
+	public int getLevel() {
+		return level;
+	}
+}
@@ -0,0 +1,120 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Draws several viewports of the same model at once, one per thread of a
+ * fixed pool.
+ *
+ * The viewports share the model and only read it, and each draws into its own
+ * buffers, so they need no locking between them. The light sources are read
+ * by every viewport too, so they must not be changed while a render is in
+ * progress; the GUI only changes them on the render thread, between frames.
+ */
+public class ViewportRenderer {
+
+	private final List<Viewport> viewports;
+	private final ExecutorService pool;
+
+	/**
+	 * @param viewports
+	 * 			The viewports to draw, in the order their images are returned.
+	 * @param threads
+	 * 			How many viewports can be drawn at once, e.g. the number of
+	 * 			cores.
+	 */
+	public ViewportRenderer(List<Viewport> viewports, int threads) {
+		this.viewports = new ArrayList<>(viewports);
+		final AtomicInteger count = new AtomicInteger();
+		this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "viewport-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Makes a renderer with one thread for each viewport, up to the number of
+	 * cores.
+	 */
+	public ViewportRenderer(List<Viewport> viewports) {
+		this(viewports, Math.max(1, Math.min(viewports.size(), Runtime.getRuntime().availableProcessors())));
+	}
+
+	/**
+	 * Draws every viewport, in parallel, and waits for them all to finish.
+	 *
+	 * @param lightSources
+	 * 			The directions of the light sources, relative to the model.
+	 * @param lightColours
+	 * 			The colours of the light sources.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @return an image for each viewport, in the same order as the viewports.
+	 */
+	public List<BufferedImage> render(ArrayList<Vector3D> lightSources, ArrayList<Color> lightColours,
+			Color ambientLight) {
+		return render(LightManager.exact(lightSources, lightColours), ambientLight);
+	}
+
+	/**
+	 * Draws every viewport as above, shading them all with the same lights
+	 * already combined by a LightManager, which must not be updated until the
+	 * render has finished.
+	 *
+	 * @param lights
+	 * 			The light sources, relative to the model.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @return an image for each viewport, in the same order as the viewports.
+	 */
+	public List<BufferedImage> render(final LightManager lights, final Color ambientLight) {
+		List<Callable<BufferedImage>> tasks = new ArrayList<>(viewports.size());
+		for (final Viewport viewport : viewports) {
+			tasks.add(new Callable<BufferedImage>() {
+				public BufferedImage call() {
+					return viewport.render(lights, ambientLight);
+				}
+			});
+		}
+
+		List<BufferedImage> images = new ArrayList<>(viewports.size());
+		try {
+			for (Future<BufferedImage> future : pool.invokeAll(tasks)) {
+				images.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while drawing viewports", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		return images;
+	}
+
+	public List<Viewport> getViewports() {
+		return viewports;
+	}
+
+	/**
+	 * Stops the threads once any render in progress has finished.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+}
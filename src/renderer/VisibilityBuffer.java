@@ -0,0 +1,441 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import renderer.Scene.Polygon;
+
+/**
+ * Remembers which polygon is nearest at each pixel of a frame, rather than
+ * its colour, so that the frame can be shaded again for different lights
+ * without transforming, hiding or filling in any polygons. Since shading is
+ * flat, each polygon that can be seen is only shaded once, however many
+ * pixels it covers.
+ *
+ * The renderer draws into this whenever the model or camera has changed, and
+ * otherwise, e.g. while the ambient light slider is being dragged, only calls
+ * shade() again.
+ *
+ * The ids and depths are kept column by column in arrays, or in buffers
+ * outside the heap instead. Arrays are filled in faster, so buffers are only
+ * used when they must be outside the heap.
+ *
+ * Each frame's depths are moved into the range 0 (the nearest vertex) to 1
+ * (the farthest) before they are compared, so a model far from the origin
+ * steps along its rows in as fine steps as one at it. That also lets the
+ * depths be kept as 16 bit integers, in half the memory.
+ *
+ * In perspective the depths come as z/w, which crowds most of the range
+ * against the near plane. Integer depths are made from the distance from the
+ * camera instead, so they are as fine at the back of the model as the front.
+ */
+public class VisibilityBuffer {
+
+	/** The id of a pixel no polygon covers. */
+	public static final int BACKGROUND = -1;
+
+	/**
+	 * How the depth at each pixel is kept. There is no 24 bit mode, since it
+	 * would take a whole int, as much memory as a float and less precise.
+	 */
+	public enum Depth {
+		/** A float, as precise as the vertices themselves. */
+		FLOAT(0),
+		/** An integer of 16 bits, in half the memory of a float. */
+		BITS_16(16);
+
+		private final int bits;
+
+		private Depth(int bits) {
+			this.bits = bits;
+		}
+
+		/**
+		 * @return how many bits the depth is rounded to, or 0 if it isn't.
+		 */
+		public int getBits() {
+			return bits;
+		}
+
+		/**
+		 * @return the next way of keeping depths, going back to the first
+		 * 			after the last.
+		 */
+		public Depth next() {
+			return values()[(ordinal() + 1) % values().length];
+		}
+	}
+
+	private final int width, height;
+	private final Depth depth;
+	// the ids, and the depths in whichever of these the mode keeps them in,
+	// with only the arrays made in the heap and only the buffers outside it.
+	// 16 bit depths are kept less 32768, so that they compare the same as
+	// shorts.
+	private final int[] ids;
+	private final float[] zDepth;
+	private final short[] shortDepth;
+	private final IntBuffer offHeapIds;
+	private final FloatBuffer offHeapZDepth;
+	private final ShortBuffer offHeapShortDepth;
+	// what the depths of the current frame are moved by and then scaled by to
+	// go from 0 to 1, and then scaled by again to round them to integers.
+	private float near, range, levels;
+	// whether the frame's depths are made into distances before they are
+	// rounded, and if so where its near and far planes are.
+	private boolean linear;
+	private float nearPlane, farPlane;
+
+	private List<Polygon> polygons;
+	private Vector3D viewer;
+	// the polygons covering at least one pixel, each once.
+	private int[] visible = new int[0];
+	private int[] colours = new int[0];
+
+	/**
+	 * @param width
+	 * 			The width of the frame, in pixels.
+	 * @param height
+	 * 			The height of the frame, in pixels.
+	 */
+	public VisibilityBuffer(int width, int height) {
+		this(width, height, false);
+	}
+
+	/**
+	 * @param width
+	 * 			The width of the frame, in pixels.
+	 * @param height
+	 * 			The height of the frame, in pixels.
+	 * @param offHeap
+	 * 			Whether to keep the ids and depths outside the heap.
+	 */
+	public VisibilityBuffer(int width, int height, boolean offHeap) {
+		this(width, height, offHeap, Depth.FLOAT);
+	}
+
+	/**
+	 * @param width
+	 * 			The width of the frame, in pixels.
+	 * @param height
+	 * 			The height of the frame, in pixels.
+	 * @param offHeap
+	 * 			Whether to keep the ids and depths outside the heap.
+	 * @param depth
+	 * 			How to keep the depth at each pixel.
+	 */
+	public VisibilityBuffer(int width, int height, boolean offHeap, Depth depth) {
+		this.width = width;
+		this.height = height;
+		this.depth = depth;
+		int pixels = width * height;
+		ids = offHeap ? null : new int[pixels];
+		zDepth = !offHeap && depth == Depth.FLOAT ? new float[pixels] : null;
+		shortDepth = !offHeap && depth == Depth.BITS_16 ? new short[pixels] : null;
+		offHeapIds = offHeap ? OffHeap.ints(pixels, true) : null;
+		offHeapZDepth = offHeap && depth == Depth.FLOAT ? OffHeap.floats(pixels, true) : null;
+		offHeapShortDepth = offHeap && depth == Depth.BITS_16 ? OffHeap.shorts(pixels, true) : null;
+		// the largest integer is left for pixels nothing has covered, so even
+		// the farthest depth is nearer than them.
+		levels = depth == Depth.FLOAT ? 1 : (1 << depth.getBits()) - 2;
+	}
+
+	/**
+	 * Finds the nearest polygon at each pixel looking straight down the
+	 * z-axis, as Pipeline.drawPolygons would draw them.
+	 *
+	 * @param view
+	 * 			The scene as seen from the camera, already on the canvas.
+	 * @param indices
+	 * 			Which of the polygons to draw, e.g. from ViewBuffer.cull.
+	 */
+	public void draw(ViewBuffer view, int[] indices) {
+		clear(view, null);
+		float[] vertices = view.getVertices();
+		// filled in again for each polygon, rather than making one for each.
+		EdgeList edges = new EdgeList(0, 0);
+		for (int i : indices) {
+			if (!Pipeline.isHidden(vertices, i * 9)) {
+				fill(Pipeline.computeEdgeList(vertices, i * 9, edges), i);
+			}
+		}
+		findVisible();
+	}
+
+	/**
+	 * Finds the nearest polygon at each pixel looking straight down the z-axis
+	 * as above, splitting the work between threads by tiles of the canvas.
+	 *
+	 * @param view
+	 * 			The scene as seen from the camera, already on the canvas.
+	 * @param indices
+	 * 			Which of the polygons to draw, e.g. from ViewBuffer.cull.
+	 * @param tiles
+	 * 			Splits the canvas up and draws the tiles.
+	 */
+	public void draw(ViewBuffer view, int[] indices, TileBinner tiles) {
+		clear(view, null);
+		tiles.draw(view.getVertices(), indices, this);
+		findVisible();
+	}
+
+	/**
+	 * Finds the nearest polygon at each pixel from triangles a GeometryStage
+	 * has already hidden and edge-listed, in the batch's order.
+	 *
+	 * @param view
+	 * 			The view the batch was made from.
+	 * @param batch
+	 * 			The triangles to fill in.
+	 */
+	public void draw(ViewBuffer view, GeometryStage.Batch batch) {
+		clear(view, batch.getProjection());
+		for (int i = 0; i < batch.size(); i++) {
+			fill(batch.getEdges(i), batch.getId(i));
+		}
+		findVisible();
+	}
+
+	/**
+	 * Finds the nearest polygon at each pixel in perspective, as
+	 * Pipeline.drawPolygonsInPerspective would draw them.
+	 *
+	 * @param view
+	 * 			The scene as seen from the camera, before the perspective
+	 * 			camera is placed.
+	 * @param indices
+	 * 			Which of the polygons to draw.
+	 * @param eye
+	 * 			The transform from the view's space to the perspective camera's.
+	 * @param projection
+	 * 			The perspective projection onto the canvas.
+	 */
+	public void drawInPerspective(ViewBuffer view, int[] indices, Transform eye, Projection projection) {
+		clear(view, projection);
+		float[] v = view.getVertices();
+		Pipeline.Projector projector = new Pipeline.Projector(eye, projection, width, height);
+		float[] triangles = projector.getTriangles();
+		// filled in again for each triangle, rather than making one for each.
+		EdgeList edges = new EdgeList(0, 0);
+		for (int i : indices) {
+			int count = projector.project(v, i * 9);
+			for (int t = 0; t < count; t++) {
+				fill(Pipeline.computeEdgeList(triangles, t * 9, edges), i);
+			}
+		}
+		findVisible();
+	}
+
+	/**
+	 * Shades the polygons found by the last draw and makes an image of them.
+	 *
+	 * @param lights
+	 * 			The light sources, relative to the model.
+	 * @param ambientLight
+	 * 			The colour of the ambient light.
+	 * @return the frame, the same as drawing it with these lights would give.
+	 */
+	public BufferedImage shade(LightManager lights, Color ambientLight) {
+		int ambient = ambientLight.getRGB();
+		for (int i : visible) {
+			colours[i] = lights.getShadingRGB(polygons.get(i), ambient, viewer, -1);
+		}
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int id = id(x * height + y);
+				pixels[x + y * width] = id == BACKGROUND ? Pipeline.WHITE : colours[id];
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * @return the index of the polygon nearest at a pixel of the last frame
+	 * 			drawn, or BACKGROUND.
+	 */
+	public int getId(int x, int y) {
+		return id(x * height + y);
+	}
+
+	private int id(int i) {
+		return ids != null ? ids[i] : offHeapIds.get(i);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public Depth getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return how many polygons cover at least one pixel of the last frame.
+	 */
+	public int getVisibleCount() {
+		return visible.length;
+	}
+
+	/**
+	 * Empties the buffer for a new frame, and works out how to move its
+	 * depths into the range 0 to 1.
+	 *
+	 * @param projection
+	 * 			The projection of a frame in perspective, which has already
+	 * 			put every depth from 0 at the near plane to 1 at the far one,
+	 * 			or null. Otherwise the range is from the nearest vertex of the
+	 * 			view to the farthest.
+	 */
+	private void clear(ViewBuffer view, Projection projection) {
+		polygons = view.getSource().getPolygons();
+		viewer = view.getViewer();
+		if (colours.length < polygons.size()) {
+			colours = new int[polygons.size()];
+		}
+		float[] depthRange = projection != null ? new float[] { 0, 1 } : view.getBVH().getDepthRange();
+		linear = projection != null && depth != Depth.FLOAT;
+		if (linear) {
+			nearPlane = projection.getNear();
+			farPlane = projection.getFar();
+		}
+		near = depthRange[0];
+		// a model flat on to the camera has every depth the same.
+		range = depthRange[1] > depthRange[0] ? 1 / (depthRange[1] - depthRange[0]) : 1;
+		if (ids != null) {
+			Arrays.fill(ids, BACKGROUND);
+			if (depth == Depth.FLOAT) {
+				Arrays.fill(zDepth, Float.POSITIVE_INFINITY);
+			} else {
+				Arrays.fill(shortDepth, Short.MAX_VALUE);
+			}
+		} else {
+			for (int i = 0; i < width * height; i++) {
+				offHeapIds.put(i, BACKGROUND);
+				if (depth == Depth.FLOAT) {
+					offHeapZDepth.put(i, Float.POSITIVE_INFINITY);
+				} else {
+					offHeapShortDepth.put(i, Short.MAX_VALUE);
+				}
+			}
+		}
+	}
+
+	private void fill(EdgeList edges, int id) {
+		fill(edges, id, 0, 0, width, height);
+	}
+
+	/**
+	 * Fills in a polygon's id wherever it is nearer than what is there
+	 * already, as Pipeline.computeZBuffer does with colours, but only inside
+	 * the given box, so that threads drawing different boxes never write the
+	 * same pixel.
+	 */
+	void fill(EdgeList edges, int id, int left, int top, int right, int bottom) {
+		// the depths along each row are moved into the frame's range, and for
+		// integer depths scaled up to the integers' range, before stepping.
+		// Depths to be made into distances are stepped as they are.
+		float scale = linear ? 1 : range * levels;
+		for (int y = Math.max(edges.getStartY(), top); y < Math.min(edges.getEndY(), bottom); y++) {
+			float slope = (edges.getRightZ(y) - edges.getLeftZ(y)) * scale / (edges.getRightX(y) - edges.getLeftX(y));
+			float z = (edges.getLeftZ(y) - near) * scale;
+			int x = Math.round(edges.getLeftX(y));
+			int end = Math.min(Math.round(edges.getRightX(y)), right);
+			// stepped rather than jumped to the edge, so that z comes out the
+			// same whichever tile the row is drawn in.
+			for (; x < left; x++) {
+				z += slope;
+			}
+			// the same loops over arrays and buffers, each kept to one kind
+			// so that the JIT can inline its reads and writes.
+			if (depth == Depth.FLOAT && ids != null) {
+				for (; x < end; x++, z += slope) {
+					int i = x * height + y;
+					if (z < zDepth[i]) {
+						ids[i] = id;
+						zDepth[i] = z;
+					}
+				}
+			} else if (depth == Depth.FLOAT) {
+				for (; x < end; x++, z += slope) {
+					int i = x * height + y;
+					if (z < offHeapZDepth.get(i)) {
+						offHeapIds.put(i, id);
+						offHeapZDepth.put(i, z);
+					}
+				}
+			} else if (ids != null) {
+				for (; x < end; x++, z += slope) {
+					int i = x * height + y;
+					int d = quantise(linear ? linearise(z) : z) - 32768;
+					if (d < shortDepth[i]) {
+						ids[i] = id;
+						shortDepth[i] = (short) d;
+					}
+				}
+			} else {
+				for (; x < end; x++, z += slope) {
+					int i = x * height + y;
+					int d = quantise(linear ? linearise(z) : z) - 32768;
+					if (d < offHeapShortDepth.get(i)) {
+						offHeapIds.put(i, id);
+						offHeapShortDepth.put(i, (short) d);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a depth already scaled up to the integers' range, rounded to the
+	 * 			nearest integer in it. Edge lists can step a little past their
+	 * 			ends, so the depth can be just outside the range.
+	 */
+	private int quantise(float z) {
+		return Math.min(Math.max((int) (z + 0.5f), 0), (int) levels);
+	}
+
+	/**
+	 * @return a depth from 0 at the near plane to 1 at the far one, as z/w,
+	 * 			made into how far it is from the near plane, scaled up to the
+	 * 			integers' range.
+	 */
+	private float linearise(float z) {
+		float span = farPlane - nearPlane;
+		float distance = nearPlane * farPlane / (farPlane - Math.min(Math.max(z, 0), 1) * span);
+		return (distance - nearPlane) / span * levels;
+	}
+
+	/**
+	 * Lists each polygon left covering a pixel once, so shade() doesn't shade
+	 * polygons that were drawn over, or the same polygon for every pixel.
+	 */
+	private void findVisible() {
+		boolean[] seen = new boolean[polygons.size()];
+		int count = 0;
+		for (int i = 0; i < width * height; i++) {
+			int id = id(i);
+			if (id != BACKGROUND && !seen[id]) {
+				seen[id] = true;
+				count++;
+			}
+		}
+		visible = new int[count];
+		for (int i = 0, n = 0; n < count; i++) {
+			if (seen[i]) {
+				visible[n++] = i;
+			}
+		}
+	}
+}
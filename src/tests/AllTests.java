@@ -11,7 +11,14 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 
 @RunWith(Suite.class)
-@SuiteClasses({ EdgeListTests.class, ZBufferTests.class, PolygonHidingTests.class, ShadingTests.class, RotationTests.class })
+@SuiteClasses({ EdgeListTests.class, ZBufferTests.class, PolygonHidingTests.class, ShadingTests.class, RotationTests.class,
+	FrameCacheTests.class, BVHTests.class, MeshSimplifierTests.class,
+	ProjectionTests.class, ViewBufferTests.class, ViewportTests.class,
+	TurntableExporterTests.class, AntiAliasingTests.class, ShadowTests.class, LightManagerTests.class,
+	SpecularTests.class, VisibilityBufferTests.class,
+	Vector3DTests.class, TileBinnerTests.class, GeometryStageTests.class,
+	OcclusionCullerTests.class, MeshletsTests.class,
+	ModelWatcherTests.class })
 public class AllTests {
 
 }
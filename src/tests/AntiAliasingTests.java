@@ -0,0 +1,98 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.AntiAliasing;
+import renderer.AntiAliasing.Mode;
+import renderer.BVH;
+import renderer.GUI;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.Vector3D;
+import renderer.ViewBuffer;
+
+public class AntiAliasingTests {
+
+	private static final ArrayList<Color> NO_LIGHTS = new ArrayList<>();
+
+	/**
+	 * A square from x = 10.5 to 40 and y = 0 to 40, split along a diagonal into
+	 * two triangles of the same colour, and a triangle facing away at the origin
+	 * so that the square isn't moved when fitted to the canvas.
+	 */
+	private static ViewBuffer square() {
+		List<Polygon> polys = new ArrayList<>();
+		int[] col = new int[] { 200, 100, 50 };
+		polys.add(new Polygon(new float[] { 10.5f, 0, 1, 10.5f, 40, 1, 40, 0, 1 }, col));
+		polys.add(new Polygon(new float[] { 40, 0, 1, 10.5f, 40, 1, 40, 40, 1 }, col));
+		polys.add(new Polygon(new float[] { 0, 0, 5, 1, 0, 5, 0, 1, 5 }, col));
+		Scene scene = new Scene(polys, new ArrayList<Vector3D>());
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(polys));
+		view.update(Transform.identity());
+		return view;
+	}
+
+	private static BufferedImage render(Mode mode, ViewBuffer view) {
+		int[] all = view.getBVH().cull(new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT));
+		return new AntiAliasing(mode, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT).render(view, all, new ArrayList<Vector3D>(),
+				NO_LIGHTS, Color.WHITE);
+	}
+
+	@Test
+	/** With smoothing off, the image should be the same as the normal pipeline's. */
+	public void testOffMatchesPipeline() {
+		ViewBuffer view = square();
+		int[][] zBuffer = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		float[][] zDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		Pipeline.clearBuffers(zBuffer, zDepth);
+		Pipeline.drawPolygons(zBuffer, zDepth, view, new int[] { 0, 1, 2 }, new ArrayList<Vector3D>(), NO_LIGHTS,
+				Color.WHITE);
+
+		BufferedImage image = render(Mode.OFF, view);
+		for (int x = 0; x < 60; x++) {
+			for (int y = 0; y < 60; y++) {
+				assertEquals(zBuffer[x][y], image.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	/** A pixel half covered by an edge should come out halfway between the polygon and the background. */
+	public void testEdgeIsBlended() {
+		ViewBuffer view = square();
+		for (Mode mode : new Mode[] { Mode.SUPERSAMPLE_2X, Mode.SUPERSAMPLE_4X, Mode.COVERAGE }) {
+			BufferedImage image = render(mode, view);
+			Color inside = new Color(image.getRGB(25, 20));
+			Color edge = new Color(image.getRGB(10, 20));
+			assertEquals(mode.toString(), (inside.getRed() + 255) / 2, edge.getRed(), 2);
+			assertEquals(mode.toString(), (inside.getGreen() + 255) / 2, edge.getGreen(), 2);
+			assertEquals(mode.toString(), (inside.getBlue() + 255) / 2, edge.getBlue(), 2);
+			assertEquals(mode.toString(), Color.WHITE.getRGB(), image.getRGB(5, 20));
+		}
+	}
+
+	@Test
+	/** The edge shared by the two triangles shouldn't let the background show through. */
+	public void testNoSeam() {
+		ViewBuffer view = square();
+		for (Mode mode : new Mode[] { Mode.SUPERSAMPLE_2X, Mode.SUPERSAMPLE_4X, Mode.COVERAGE }) {
+			BufferedImage image = render(mode, view);
+			int inside = image.getRGB(25, 20);
+			for (int y = 1; y < 39; y++) {
+				for (int x = 12; x < 39; x++) {
+					assertEquals(mode + " at " + x + ", " + y, inside, image.getRGB(x, y));
+				}
+			}
+		}
+	}
+}
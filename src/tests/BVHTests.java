@@ -0,0 +1,81 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.BVH;
+import renderer.Pipeline;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+
+public class BVHTests {
+
+	/** A row of n small triangles, each at its own z, 10 units apart along x. */
+	private static List<Polygon> row(int n) {
+		List<Polygon> polys = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			float x = i * 10;
+			polys.add(new Polygon(new float[] { x, 0, i, x + 5, 0, i, x, 5, i }, new int[] { 0, 0, 0 }));
+		}
+		return polys;
+	}
+
+	@Test
+	/** The bounds should match a plain scan over every vertex. */
+	public void testBoundsMatchBoundingBox() {
+		List<Polygon> polys = row(1000);
+		BVH bvh = BVH.build(polys);
+		assertEquals(Pipeline.boundingBox(polys), bvh.getBounds());
+	}
+
+	@Test
+	/** Only triangles overlapping the area should come back from culling. */
+	public void testCull() {
+		List<Polygon> polys = row(100);
+		BVH bvh = BVH.build(polys);
+
+		int[] visible = bvh.cull(new Rectangle(95, 0, 20, 5));
+		Arrays.sort(visible);
+		assertArrayEquals(new int[] { 9, 10, 11 }, visible);
+		assertEquals(100, bvh.cull(new Rectangle(0, 0, 1000, 10)).length);
+		assertEquals(0, bvh.cull(new Rectangle(0, 100, 1000, 10)).length);
+	}
+
+	@Test
+	/** Picking should find the nearest of two overlapping triangles. */
+	public void testPickNearest() {
+		List<Polygon> polys = row(10);
+		polys.add(new Polygon(new float[] { 40, 0, -5, 45, 0, -5, 40, 5, -5 }, new int[] { 0, 0, 0 }));
+		BVH bvh = BVH.build(polys);
+
+		assertEquals(10, bvh.pick(41, 1));
+		assertEquals(2, bvh.pick(21, 1));
+		assertEquals(-1, bvh.pick(8, 1));
+	}
+
+	@Test
+	/** After moving the polygons, refitting should catch the boxes up. */
+	public void testRefit() {
+		BVH bvh = BVH.build(row(50));
+		List<Polygon> polys = new ArrayList<>();
+		for (Polygon p : row(50)) {
+			polys.add(Pipeline.transformPolygon(p, Transform.newTranslation(0, 100, 0)));
+		}
+		bvh.refit(polys);
+		assertEquals(Pipeline.boundingBox(polys), bvh.getBounds());
+		assertEquals(3, bvh.pick(31, 101));
+	}
+
+	@Test
+	/** The memory should count the packed vertices, which are 36 bytes a triangle. */
+	public void testMemoryBytes() {
+		BVH bvh = BVH.build(row(1000));
+		assertTrue(bvh.getMemoryBytes() > 1000 * (36 + 4));
+	}
+}
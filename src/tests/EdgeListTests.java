@@ -1,6 +1,7 @@
 package tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
@@ -113,6 +114,28 @@ public class EdgeListTests {
 		assertEquals(7.33333, el.getLeftZ(4), 1e-3);
 		assertEquals(8.33333, el.getRightZ(4), 1e-3);
 	}
+
+	@Test
+	/**
+	 * An edgelist filled in again for a shorter polygon than it had before
+	 * should hold the same as a new one.
+	 */
+	public void testReuse() {
+		Polygon tall = new Polygon(new float[] { 0, 0, 0, 0, 100, 50, 70, 0, 30 }, new int[] { 0, 0, 0 });
+		Polygon poly = new Polygon(new float[] { 3, 5, 0, 3, 11, 11, 10, 5, 3 }, new int[] { 0, 0, 0 });
+
+		EdgeList expected = Pipeline.computeEdgeList(poly);
+		EdgeList reused = Pipeline.computeEdgeList(tall);
+		assertSame(reused, Pipeline.computeEdgeList(poly, reused));
+		assertEquals(expected.getStartY(), reused.getStartY());
+		assertEquals(expected.getEndY(), reused.getEndY());
+		for (int y = expected.getStartY(); y <= expected.getEndY(); y++) {
+			assertEquals(expected.getLeftX(y), reused.getLeftX(y), 0);
+			assertEquals(expected.getRightX(y), reused.getRightX(y), 0);
+			assertEquals(expected.getLeftZ(y), reused.getLeftZ(y), 0);
+			assertEquals(expected.getRightZ(y), reused.getRightZ(y), 0);
+		}
+	}
 }
 
 // code for COMP261 assignments
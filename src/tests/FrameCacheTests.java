@@ -0,0 +1,49 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import renderer.FrameCache;
+import renderer.Vector3D;
+
+public class FrameCacheTests {
+
+	@Test
+	/** Asking again with the same state should give back the same frame. */
+	public void testHitOnUnchangedState() {
+		FrameCache cache = new FrameCache();
+		BufferedImage frame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		lights.add(new Vector3D(0, 0, -1));
+
+		assertNull(cache.get(new FrameCache.Key(1L, lights, new int[] { 1, 2, 3 })));
+		cache.put(new FrameCache.Key(1L, lights, new int[] { 1, 2, 3 }), frame);
+
+		assertSame(frame, cache.get(new FrameCache.Key(1L, lights, new int[] { 1, 2, 3 })));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	/** Changing the ambient light, the lights, or the view should all miss. */
+	public void testMissOnChangedState() {
+		FrameCache cache = new FrameCache();
+		BufferedImage frame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(Color.red);
+
+		cache.put(new FrameCache.Key(1L, colours, new int[] { 1, 2, 3 }), frame);
+		assertNull(cache.get(new FrameCache.Key(1L, colours, new int[] { 1, 2, 4 })));
+		assertNull(cache.get(new FrameCache.Key(2L, colours, new int[] { 1, 2, 3 })));
+
+		// the key takes a copy, so changing the list afterwards is noticed.
+		colours.add(Color.blue);
+		assertNull(cache.get(new FrameCache.Key(1L, colours, new int[] { 1, 2, 3 })));
+		assertEquals(3, cache.getMisses());
+	}
+}
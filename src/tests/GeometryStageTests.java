@@ -0,0 +1,161 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.GeometryStage;
+import renderer.LightManager;
+import renderer.Pipeline;
+import renderer.Projection;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.ViewBuffer;
+
+public class GeometryStageTests {
+
+	/** Enough random triangles for several chunks, most of them overlapping. */
+	private static Scene scene() {
+		Random random = new Random(11);
+		List<Polygon> polys = new ArrayList<>();
+		for (int i = 0; i < GeometryStage.CHUNK * 3 + 100; i++) {
+			float x = random.nextFloat() * 500, y = random.nextFloat() * 500;
+			int[] colour = { random.nextInt(256), random.nextInt(256), random.nextInt(256) };
+			polys.add(TestScenes.triangle(random, x, y, 0, 60, 100, colour));
+		}
+		return TestScenes.scene(polys);
+	}
+
+	private static LightManager lights(Scene scene) {
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(new Color(150, 120, 100));
+		return LightManager.exact(new ArrayList<>(scene.getLights()), colours);
+	}
+
+	private static void assertSameFrame(int[][] expected, int[][] actual) {
+		for (int x = 0; x < GUI.CANVAS_WIDTH; x++) {
+			for (int y = 0; y < GUI.CANVAS_HEIGHT; y++) {
+				assertEquals("pixel " + x + ", " + y, expected[x][y], actual[x][y]);
+			}
+		}
+	}
+
+	@Test
+	/** Filling in a batch found on several threads gives the same frame as Pipeline.drawPolygons. */
+	public void testSameAsDrawing() {
+		Scene scene = scene();
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.identity());
+		LightManager lights = lights(scene);
+		Color ambient = new Color(40, 40, 40);
+
+		int[][] expected = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		float[][] expectedDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		Pipeline.clearBuffers(expected, expectedDepth);
+		Pipeline.drawPolygons(expected, expectedDepth, view, TestScenes.all(scene), lights, ambient);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			GeometryStage.Batch batch = new GeometryStage(pool).process(view, TestScenes.all(scene), lights, ambient);
+			int[][] actual = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+			float[][] actualDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+			Pipeline.clearBuffers(actual, actualDepth);
+			Pipeline.drawBatch(actual, actualDepth, batch);
+			assertSameFrame(expected, actual);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	/** The same goes for Pipeline.drawPolygonsInPerspective, where polygons can be clipped into several triangles. */
+	public void testSameInPerspective() {
+		Scene scene = scene();
+		BVH bvh = BVH.build(scene.getPolygons());
+		ViewBuffer view = new ViewBuffer(scene, bvh);
+		view.update(Transform.identity());
+		LightManager lights = lights(scene);
+		Color ambient = new Color(40, 40, 40);
+		Transform eye = Transform.newTranslation(-250, -250, 150);
+		Projection projection = Projection.newPerspective((float) (Math.PI / 3), 1, 1, 1000);
+
+		int[][] expected = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		float[][] expectedDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		Pipeline.clearBuffers(expected, expectedDepth);
+		Pipeline.drawPolygonsInPerspective(expected, expectedDepth, view, TestScenes.all(scene), eye, projection, lights,
+				ambient);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			GeometryStage.Batch batch = new GeometryStage(pool).processInPerspective(view, TestScenes.all(scene), eye,
+					projection, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT, lights, ambient);
+			int[][] actual = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+			float[][] actualDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+			Pipeline.clearBuffers(actual, actualDepth);
+			Pipeline.drawBatch(actual, actualDepth, batch);
+			assertSameFrame(expected, actual);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	/** A stage used again, after a bigger frame in perspective, still gives the same frame. */
+	public void testReused() {
+		Scene scene = scene();
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.identity());
+		LightManager lights = lights(scene);
+		Color ambient = new Color(40, 40, 40);
+		int[] some = Arrays.copyOf(TestScenes.all(scene), GeometryStage.CHUNK + 10);
+
+		int[][] expected = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		float[][] expectedDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		Pipeline.clearBuffers(expected, expectedDepth);
+		Pipeline.drawPolygons(expected, expectedDepth, view, some, lights, ambient);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			GeometryStage stage = new GeometryStage(pool);
+			stage.processInPerspective(view, TestScenes.all(scene), Transform.newTranslation(-250, -250, 150),
+					Projection.newPerspective((float) (Math.PI / 3), 1, 1, 1000), GUI.CANVAS_WIDTH,
+					GUI.CANVAS_HEIGHT, lights, ambient);
+			GeometryStage.Batch batch = stage.process(view, some, lights, ambient);
+			int[][] actual = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+			float[][] actualDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+			Pipeline.clearBuffers(actual, actualDepth);
+			Pipeline.drawBatch(actual, actualDepth, batch);
+			assertSameFrame(expected, actual);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	/** The chunks' triangles are joined in the order their polygons were given. */
+	public void testOrder() {
+		Scene scene = scene();
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.identity());
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			GeometryStage.Batch batch = new GeometryStage(pool).process(view, TestScenes.all(scene), null, null);
+			assertTrue(batch.size() > GeometryStage.CHUNK);
+			for (int i = 1; i < batch.size(); i++) {
+				assertTrue(batch.getId(i - 1) < batch.getId(i));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import renderer.LightManager;
+import renderer.Pipeline;
+import renderer.Scene.Polygon;
+import renderer.Vector3D;
+
+public class LightManagerTests {
+
+	private static final Color AMBIENT = new Color(40, 40, 40);
+
+	/** A polygon facing along the positive z-axis. */
+	private static Polygon facing() {
+		return new Polygon(new float[] { 0, 0, 0, 10, 0, 0, 0, 10, 0 }, new int[] { 200, 150, 100 });
+	}
+
+	private static void assertColourNear(Color expected, Color actual) {
+		assertEquals(expected.getRed(), actual.getRed(), 1);
+		assertEquals(expected.getGreen(), actual.getGreen(), 1);
+		assertEquals(expected.getBlue(), actual.getBlue(), 1);
+	}
+
+	@Test
+	/** An exact manager should shade the same as Pipeline.getShading. */
+	public void testExactMatchesPipeline() {
+		Random random = new Random(1);
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		ArrayList<Color> colours = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			lights.add(new Vector3D(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat()));
+			colours.add(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+		}
+		LightManager manager = LightManager.exact(lights, colours);
+		assertEquals(5, manager.getLightCount());
+		assertColourNear(Pipeline.getShading(facing(), lights, colours, AMBIENT),
+				manager.getShading(facing(), AMBIENT));
+	}
+
+	@Test
+	/** Lights pointing the same way should become one, without losing any light. */
+	public void testParallelLightsMerge() {
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		ArrayList<Color> colours = new ArrayList<>();
+		lights.add(new Vector3D(0, 0, 1));
+		lights.add(new Vector3D(0, 0.01f, 1));
+		lights.add(new Vector3D(0, 0, 5));
+		for (int i = 0; i < 3; i++) {
+			colours.add(new Color(60, 60, 60));
+		}
+		LightManager manager = new LightManager();
+		manager.update(lights, colours);
+		assertEquals(1, manager.getLightCount());
+		// together the lights are brighter than any one light can be.
+		assertColourNear(Pipeline.getShading(facing(), lights, colours, AMBIENT),
+				manager.getShading(facing(), AMBIENT));
+	}
+
+	@Test
+	/** Lights far apart should be kept separate while within the budget. */
+	public void testDistantLightsKept() {
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		ArrayList<Color> colours = new ArrayList<>();
+		lights.add(new Vector3D(0, 0, 1));
+		lights.add(new Vector3D(1, 0, 0));
+		lights.add(new Vector3D(0, -1, 0));
+		for (int i = 0; i < 3; i++) {
+			colours.add(new Color(100, 100, 100));
+		}
+		LightManager manager = new LightManager();
+		manager.update(lights, colours);
+		assertEquals(3, manager.getLightCount());
+	}
+
+	@Test
+	/** Black lights and lights with no direction add nothing, so are dropped. */
+	public void testUselessLightsDropped() {
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		ArrayList<Color> colours = new ArrayList<>();
+		lights.add(new Vector3D(0, 0, 1));
+		colours.add(Color.BLACK);
+		lights.add(new Vector3D(0, 0, 0));
+		colours.add(Color.WHITE);
+		lights.add(new Vector3D(1, 0, 0));
+		colours.add(Color.WHITE);
+		LightManager manager = new LightManager();
+		manager.update(lights, colours);
+		assertEquals(3, manager.getGivenCount());
+		assertEquals(1, manager.getLightCount());
+	}
+
+	@Test
+	/** However many lights there are, no more than the budget should be shaded with. */
+	public void testBudget() {
+		Random random = new Random(2);
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		ArrayList<Color> colours = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			lights.add(new Vector3D(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f));
+			colours.add(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+		}
+		LightManager manager = new LightManager(LightManager.DEFAULT_MERGE_ANGLE, 8);
+		manager.update(lights, colours);
+		assertEquals(1000, manager.getGivenCount());
+		assertTrue(manager.getLightCount() <= 8);
+		assertTrue(manager.getLightCount() > 0);
+	}
+
+	@Test
+	/** The lights should only be combined again once they have changed. */
+	public void testOnlyRecombinesOnChange() {
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		ArrayList<Color> colours = new ArrayList<>();
+		lights.add(new Vector3D(0, 0, 1));
+		colours.add(Color.GRAY);
+		LightManager manager = new LightManager();
+		manager.update(lights, colours);
+		manager.update(lights, colours);
+		assertEquals(1, manager.getRebuilds());
+		Vector3D direction = manager.getDirection(0);
+
+		lights.add(new Vector3D(1, 0, 0));
+		colours.add(Color.GRAY);
+		manager.update(lights, colours);
+		assertEquals(2, manager.getRebuilds());
+		assertEquals(2, manager.getLightCount());
+
+		lights.remove(1);
+		colours.remove(1);
+		manager.update(lights, colours);
+		manager.update(lights, colours);
+		assertEquals(3, manager.getRebuilds());
+		assertNotSame(direction, manager.getDirection(0));
+	}
+}
@@ -0,0 +1,55 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.MeshSimplifier;
+import renderer.Pipeline;
+import renderer.Scene.Polygon;
+
+public class MeshSimplifierTests {
+
+	/** A flat n by n grid of squares, each split into two triangles. */
+	private static List<Polygon> grid(int n) {
+		List<Polygon> polys = new ArrayList<>();
+		int[] col = new int[] { 0, 0, 0 };
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				polys.add(new Polygon(new float[] { i, j, 0, i + 1, j, 0, i + 1, j + 1, 0 }, col));
+				polys.add(new Polygon(new float[] { i, j, 0, i + 1, j + 1, 0, i, j + 1, 0 }, col));
+			}
+		}
+		return polys;
+	}
+
+	@Test
+	/**
+	 * A flat grid can be simplified a long way without changing its shape at
+	 * all, so the error should stay at zero and the outline should stay put.
+	 */
+	public void testFlatGrid() {
+		List<Polygon> polys = grid(16);
+		List<MeshSimplifier.Result> levels = new MeshSimplifier(polys).simplify(256, 64);
+
+		assertEquals(2, levels.size());
+		assertEquals(256, levels.get(0).polygons.size());
+		assertEquals(64, levels.get(1).polygons.size());
+		assertEquals(0, levels.get(1).error, 1e-3);
+		assertEquals(Pipeline.boundingBox(polys), Pipeline.boundingBox(levels.get(1).polygons));
+	}
+
+	@Test
+	/** Simplifying shouldn't turn any triangles around to face the other way. */
+	public void testNoFlips() {
+		List<Polygon> polys = grid(10);
+		for (MeshSimplifier.Result r : new MeshSimplifier(polys).simplify(100, 20)) {
+			for (Polygon p : r.polygons) {
+				assertTrue(Pipeline.isHidden(p));
+			}
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.Meshlets;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.Vector3D;
+import renderer.ViewBuffer;
+
+public class MeshletsTests {
+
+	private static final Rectangle CANVAS = new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+
+	/**
+	 * A sphere of latitude/longitude quads with 4 * n * n triangles facing
+	 * outwards, including the slivers at its poles.
+	 */
+	private static Scene sphere(int n) {
+		List<Polygon> polys = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < 2 * n; j++) {
+				float[] a = point(i, j, n), b = point(i + 1, j, n), c = point(i + 1, j + 1, n), d = point(i, j + 1, n);
+				polys.add(new Polygon(join(a, b, c), new int[] { 100, 100, 100 }));
+				polys.add(new Polygon(join(a, c, d), new int[] { 100, 100, 100 }));
+			}
+		}
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		lights.add(new Vector3D(0, 0, -1));
+		return new Scene(polys, lights);
+	}
+
+	private static float[] point(int i, int j, int n) {
+		double theta = Math.PI * i / n, phi = Math.PI * j / n;
+		return new float[] { (float) (100 * Math.sin(theta) * Math.cos(phi)), (float) (100 * Math.cos(theta)),
+				(float) (100 * Math.sin(theta) * Math.sin(phi)) };
+	}
+
+	private static float[] join(float[] a, float[] b, float[] c) {
+		return new float[] { a[0], a[1], a[2], b[0], b[1], b[2], c[0], c[1], c[2] };
+	}
+
+	@Test
+	/** Skipping clusters should never skip a triangle facing the camera, from any direction. */
+	public void testKeepsFacing() {
+		Scene scene = sphere(40);
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		Meshlets meshlets = Meshlets.build(scene.getPolygons());
+		int skipped = 0;
+		for (int t = 0; t < 30; t++) {
+			view.update(Transform.newYRotation(t * 0.7f).compose(Transform.newXRotation(t * 0.45f)));
+			boolean[] kept = new boolean[scene.getPolygons().size()];
+			for (int i : meshlets.cull(view, CANVAS)) {
+				kept[i] = true;
+			}
+			for (int i = 0; i < kept.length; i++) {
+				assertTrue("triangle " + i + " at " + t, kept[i] || Pipeline.isHidden(view.getVertices(), i * 9));
+			}
+			skipped += meshlets.getBackFacingCount();
+		}
+		assertTrue(skipped > 0);
+	}
+
+	@Test
+	/** On a smooth enough model, most of the back goes with whole clusters. */
+	public void testSkipsBack() {
+		Scene scene = sphere(80);
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newXRotation(0.3f));
+		Meshlets meshlets = Meshlets.build(scene.getPolygons());
+		int[] kept = meshlets.cull(view, CANVAS);
+		int hidden = 0;
+		for (int i = 0; i < scene.getPolygons().size(); i++) {
+			if (Pipeline.isHidden(view.getVertices(), i * 9)) {
+				hidden++;
+			}
+		}
+		assertTrue(scene.getPolygons().size() - kept.length > hidden / 2);
+	}
+
+	@Test
+	/** Every triangle is in exactly one cluster, of at most MAX_TRIANGLES. */
+	public void testClusters() {
+		Scene scene = sphere(20);
+		Meshlets meshlets = Meshlets.build(scene.getPolygons());
+		int size = scene.getPolygons().size();
+		assertTrue(meshlets.getClusterCount() >= size / Meshlets.MAX_TRIANGLES);
+		assertTrue(meshlets.getClusterCount() <= size * 2 / Meshlets.MAX_TRIANGLES + 1);
+
+		// a flat square facing the camera has nothing to skip.
+		List<Polygon> polys = new ArrayList<>();
+		for (int x = 0; x < 30; x++) {
+			for (int y = 0; y < 30; y++) {
+				polys.add(new Polygon(new float[] { x, y, 0, x, y + 1, 0, x + 1, y, 0 }, new int[] { 0, 0, 0 }));
+				polys.add(new Polygon(new float[] { x + 1, y, 0, x, y + 1, 0, x + 1, y + 1, 0 }, new int[] { 0, 0, 0 }));
+			}
+		}
+		Scene square = new Scene(polys, scene.getLights());
+		ViewBuffer view = new ViewBuffer(square, BVH.build(polys));
+		view.update(Transform.identity());
+		assertFalse(Pipeline.isHidden(view.getVertices(), 0));
+		int[] kept = Meshlets.build(polys).cull(view, CANVAS);
+		boolean[] seen = new boolean[polys.size()];
+		for (int i : kept) {
+			assertFalse(seen[i]);
+			seen[i] = true;
+		}
+		assertEquals(polys.size(), kept.length);
+	}
+
+	@Test
+	/** Clusters wholly outside the area are skipped, but none that reach into it. */
+	public void testOffCanvas() {
+		Scene scene = sphere(40);
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.identity());
+		Meshlets meshlets = Meshlets.build(scene.getPolygons());
+		Rectangle area = new Rectangle(0, 0, 100, 100);
+		boolean[] kept = new boolean[scene.getPolygons().size()];
+		for (int i : meshlets.cull(view, area)) {
+			kept[i] = true;
+		}
+		assertTrue(meshlets.getOffCanvasCount() > 0);
+		for (int i : view.getBVH().cull(area)) {
+			assertTrue(kept[i] || Pipeline.isHidden(view.getVertices(), i * 9));
+		}
+	}
+
+	@Test
+	/**
+	 * After removing some triangles and adding one in the middle, every
+	 * triangle should be in one cluster, the new one in a cluster of its own,
+	 * and skipping clusters should still never skip one facing the camera.
+	 */
+	public void testRemap() {
+		Scene scene = sphere(40);
+		List<Polygon> old = scene.getPolygons();
+		Meshlets before = Meshlets.build(old);
+		List<Polygon> polys = new ArrayList<>();
+		List<Integer> previous = new ArrayList<>();
+		for (int i = 10; i < old.size(); i++) {
+			if (i == old.size() / 2) {
+				Vector3D[] v = old.get(5).getVertices();
+				polys.add(new Polygon(v[0], v[1], v[2], old.get(5).getReflectance()));
+				previous.add(-1);
+			}
+			polys.add(old.get(i));
+			previous.add(i);
+		}
+		int[] previousIndex = new int[previous.size()];
+		for (int i = 0; i < previousIndex.length; i++) {
+			previousIndex[i] = previous.get(i);
+		}
+		Meshlets meshlets = before.remap(polys, previousIndex);
+		assertEquals(before.getClusterCount() + 1, meshlets.getClusterCount());
+
+		Scene changed = new Scene(polys, scene.getLights());
+		ViewBuffer view = new ViewBuffer(changed, BVH.build(polys));
+		int skipped = 0;
+		for (int t = 0; t < 30; t++) {
+			view.update(Transform.newYRotation(t * 0.7f).compose(Transform.newXRotation(t * 0.45f)));
+			int[] culled = meshlets.cull(view, CANVAS);
+			boolean[] kept = new boolean[polys.size()];
+			for (int i : culled) {
+				assertFalse(kept[i]);
+				kept[i] = true;
+			}
+			for (int i = 0; i < kept.length; i++) {
+				assertTrue("triangle " + i + " at " + t, kept[i] || Pipeline.isHidden(view.getVertices(), i * 9));
+			}
+			skipped += meshlets.getBackFacingCount();
+		}
+		assertTrue(skipped > 0);
+	}
+}
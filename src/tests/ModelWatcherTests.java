@@ -0,0 +1,240 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import renderer.GUI;
+import renderer.LevelOfDetail;
+import renderer.ModelWatcher;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.Vector3D;
+import renderer.ViewBuffer;
+
+public class ModelWatcherTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * @return the lines of a model file of a flat 32 by 32 grid of squares,
+	 * 			all facing away from the camera.
+	 */
+	private static List<String> grid() {
+		List<String> lines = new ArrayList<>();
+		lines.add("0 0 -1");
+		for (int x = 0; x < 32; x++) {
+			for (int y = 0; y < 32; y++) {
+				lines.add(x + " " + y + " 0 " + (x + 1) + " " + y + " 0 " + x + " " + (y + 1) + " 0 200 100 50");
+				lines.add((x + 1) + " " + y + " 0 " + (x + 1) + " " + (y + 1) + " 0 " + x + " " + (y + 1)
+						+ " 0 200 100 50");
+			}
+		}
+		return lines;
+	}
+
+	private File write(List<String> lines) throws IOException {
+		File file = new File(folder.getRoot(), "model.txt");
+		Files.write(file.toPath(), lines);
+		return file;
+	}
+
+	/** Loads a file as the renderer does, and makes a watcher for it told nothing. */
+	private static ModelWatcher watcher(File file, ArrayList<Vector3D> lights) throws IOException {
+		Scene scene = Scene.load(file);
+		lights.add(scene.getLights().get(0));
+		LevelOfDetail lod = LevelOfDetail.build(scene.getPolygons(), lights);
+		return new ModelWatcher(file, lod, scene.getLights().get(0), lights, null);
+	}
+
+	@Test
+	/** Only changed lines should be parsed again, and the rest keep their polygons. */
+	public void testIncremental() throws IOException {
+		List<String> lines = grid();
+		File file = write(lines);
+		ModelWatcher watcher = watcher(file, new ArrayList<Vector3D>());
+		// the file is the same as when it was loaded.
+		assertNull(watcher.reload());
+
+		lines.set(10, "9 9 0 10 9 0 9 10 5 0 0 255");
+		write(lines);
+		ModelWatcher.Reload reload = watcher.reload();
+		assertEquals(2047, reload.getReusedCount());
+		assertEquals(1, reload.getParsedCount());
+		assertEquals(1, reload.getRemovedCount());
+		List<Polygon> before = reload.getPrevious().getLevel(0).getPolygons();
+		List<Polygon> after = reload.getLevels().getLevel(0).getPolygons();
+		for (int i = 0; i < after.size(); i++) {
+			if (i == 9) {
+				assertNotSame(before.get(i), after.get(i));
+				assertEquals(5, after.get(i).getVertices()[2].z, 0);
+			} else {
+				assertSame(before.get(i), after.get(i));
+			}
+		}
+
+		// the simplified levels come afterwards, keeping level 0.
+		assertTrue(reload.getLevels().isStale());
+		assertEquals(reload.getPrevious().getLevelCount(), reload.getLevels().getLevelCount());
+		assertSame(reload.getPrevious().getLevel(1), reload.getLevels().getLevel(1));
+		LevelOfDetail stale = reload.getLevels();
+		reload = watcher.resimplify();
+		assertSame(stale, reload.getPrevious());
+		assertFalse(reload.getLevels().isStale());
+		assertSame(stale.getLevel(0), reload.getLevels().getLevel(0));
+		assertSame(stale.getBVH(0), reload.getLevels().getBVH(0));
+		assertNotSame(stale.getLevel(1), reload.getLevels().getLevel(1));
+		assertNull(watcher.resimplify());
+
+		// lines can move, and still keep their polygons.
+		lines.add(lines.remove(1));
+		write(lines);
+		reload = watcher.reload();
+		assertEquals(2048, reload.getReusedCount());
+		assertSame(after.get(0), reload.getLevels().getLevel(0).getPolygons().get(2047));
+	}
+
+	@Test
+	/** A polygon changed in place should be found by the refitted BVH and meshlets. */
+	public void testRefitted() throws IOException {
+		List<String> lines = grid();
+		File file = write(lines);
+		ModelWatcher watcher = watcher(file, new ArrayList<Vector3D>());
+		// turned round to face the camera, and moved out of the grid.
+		lines.set(100, "40 40 0 40 41 0 41 40 0 0 0 255");
+		write(lines);
+		LevelOfDetail lod = watcher.reload().getLevels();
+
+		Scene scene = lod.getLevel(0);
+		ViewBuffer view = new ViewBuffer(scene, lod.getBVH(0));
+		view.update(Transform.identity());
+		assertFalse(Pipeline.isHidden(view.getVertices(), 99 * 9));
+		Rectangle canvas = new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		int[] kept = lod.getMeshlets(0).cull(view, canvas);
+		assertTrue(contains(kept, 99));
+		assertTrue(contains(view.getBVH().cull(canvas), 99));
+		float[] v = view.getVertices();
+		assertEquals(99, view.getBVH().pick((v[99 * 9] + v[99 * 9 + 3] + v[99 * 9 + 6]) / 3,
+				(v[99 * 9 + 1] + v[99 * 9 + 4] + v[99 * 9 + 7]) / 3));
+	}
+
+	@Test
+	/**
+	 * Adding a line should keep the simplified levels and the clusters of the
+	 * polygons after it, rather than building everything again.
+	 */
+	public void testInsertedLine() throws IOException {
+		List<String> lines = grid();
+		File file = write(lines);
+		ModelWatcher watcher = watcher(file, new ArrayList<Vector3D>());
+		// read once as loaded, so that lines are then matched wherever they are.
+		assertNull(watcher.reload());
+		lines.add(10, "40 40 0 40 41 0 41 40 0 0 0 255");
+		write(lines);
+		ModelWatcher.Reload reload = watcher.reload();
+		assertEquals(2048, reload.getReusedCount());
+		assertEquals(1, reload.getParsedCount());
+		LevelOfDetail lod = reload.getLevels();
+		assertTrue(lod.isStale());
+		assertSame(reload.getPrevious().getLevel(1), lod.getLevel(1));
+		assertEquals(reload.getPrevious().getMeshlets(0).getClusterCount() + 1, lod.getMeshlets(0).getClusterCount());
+
+		Scene scene = lod.getLevel(0);
+		ViewBuffer view = new ViewBuffer(scene, lod.getBVH(0));
+		view.update(Transform.identity());
+		Rectangle canvas = new Rectangle(0, 0, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		assertTrue(contains(lod.getMeshlets(0).cull(view, canvas), 9));
+		assertTrue(contains(view.getBVH().cull(canvas), 9));
+	}
+
+	private static boolean contains(int[] indices, int i) {
+		for (int k : indices) {
+			if (k == i) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	/** Changing only the light source should keep the levels. */
+	public void testLightOnly() throws IOException {
+		List<String> lines = grid();
+		File file = write(lines);
+		ModelWatcher watcher = watcher(file, new ArrayList<Vector3D>());
+		lines.set(0, "1 0 0");
+		write(lines);
+		ModelWatcher.Reload reload = watcher.reload();
+		assertSame(reload.getPrevious(), reload.getLevels());
+		assertEquals(new Vector3D(1, 0, 0), reload.getLight());
+	}
+
+	@Test
+	/** A file that can't be parsed is skipped, and the next is compared with the last good one. */
+	public void testBadFile() throws IOException {
+		List<String> lines = grid();
+		File file = write(lines);
+		ModelWatcher watcher = watcher(file, new ArrayList<Vector3D>());
+		List<String> half = new ArrayList<>(lines);
+		half.add("1 2 3 4");
+		write(half);
+		try {
+			watcher.reload();
+			fail("half a line shouldn't parse");
+		} catch (RuntimeException expected) {
+		}
+		lines.add("40 40 0 40 41 0 41 40 0 0 0 255");
+		write(lines);
+		ModelWatcher.Reload reload = watcher.reload();
+		assertEquals(2048, reload.getReusedCount());
+		assertEquals(1, reload.getParsedCount());
+		assertEquals(2049, reload.getLevels().getLevel(0).getPolygons().size());
+	}
+
+	@Test
+	/** Saving the file while it is watched should reload it on the watcher's thread. */
+	public void testWatching() throws Exception {
+		List<String> lines = grid();
+		File file = write(lines);
+		Scene scene = Scene.load(file);
+		ArrayList<Vector3D> lights = new ArrayList<>(scene.getLights());
+		LevelOfDetail lod = LevelOfDetail.build(scene.getPolygons(), lights);
+		final LinkedBlockingQueue<ModelWatcher.Reload> reloads = new LinkedBlockingQueue<>();
+		ModelWatcher watcher = new ModelWatcher(file, lod, lights.get(0), lights, new ModelWatcher.Listener() {
+			public void reloaded(ModelWatcher.Reload reload) {
+				reloads.add(reload);
+			}
+		});
+		watcher.start();
+		try {
+			// lets the first read, of the file as loaded, finish.
+			Thread.sleep(ModelWatcher.SETTLE_MS * 3);
+			lines.set(1, "0 0 0 1 0 0 0 1 3 200 100 50");
+			write(lines);
+			ModelWatcher.Reload reload = reloads.poll(10, TimeUnit.SECONDS);
+			assertNotNull(reload);
+			assertSame(lod, reload.getPrevious());
+			assertEquals(1, reload.getParsedCount());
+			ModelWatcher.Reload simplified = reloads.poll(10, TimeUnit.SECONDS);
+			assertNotNull(simplified);
+			assertSame(reload.getLevels(), simplified.getPrevious());
+			assertFalse(simplified.getLevels().isStale());
+		} finally {
+			watcher.close();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.OcclusionCuller;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.ViewBuffer;
+import renderer.VisibilityBuffer;
+
+public class OcclusionCullerTests {
+
+	/**
+	 * Lots of small triangles scattered over the canvas at all depths, some of
+	 * them flat, with a few big squares in front of parts of them.
+	 */
+	private static Scene scene(long seed, int walls) {
+		Random random = new Random(seed);
+		List<Polygon> polys = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			float x = random.nextFloat() * 600, y = random.nextFloat() * 600, z = random.nextFloat() * 120;
+			polys.add(TestScenes.triangle(random, x, y, z, 20, i % 2 == 0 ? 0.01f : 20, new int[] { 100, 100, 100 }));
+		}
+		for (int i = 0; i < walls; i++) {
+			float x = random.nextFloat() * 400, y = random.nextFloat() * 400, z = random.nextFloat() * 90;
+			float s = 150 + random.nextFloat() * 150;
+			// both windings, so one of each pair faces the camera however it is turned.
+			polys.add(new Polygon(new float[] { x, y, z, x + s, y, z, x, y + s, z }, new int[] { 200, 0, 0 }));
+			polys.add(new Polygon(new float[] { x, y, z, x, y + s, z, x + s, y, z }, new int[] { 200, 0, 0 }));
+			polys.add(new Polygon(new float[] { x + s, y + s, z, x, y + s, z, x + s, y, z }, new int[] { 200, 0, 0 }));
+			polys.add(new Polygon(new float[] { x + s, y + s, z, x + s, y, z, x, y + s, z }, new int[] { 200, 0, 0 }));
+		}
+		return TestScenes.scene(polys);
+	}
+
+	@Test
+	/** Leaving out the culled polygons should never change which polygon is at any pixel. */
+	public void testSameFrame() {
+		int culled = 0;
+		for (int seed = 0; seed < 5; seed++) {
+			Scene scene = scene(seed, 4);
+			ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+			view.update(Transform.newYRotation(seed * 0.05f).compose(Transform.newXRotation(seed * 0.03f)));
+			OcclusionCuller occlusion = new OcclusionCuller(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+			int[] kept = occlusion.cull(view.getVertices(), TestScenes.all(scene));
+
+			VisibilityBuffer expected = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+			expected.draw(view, TestScenes.all(scene));
+			VisibilityBuffer actual = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+			actual.draw(view, kept);
+			for (int x = 0; x < GUI.CANVAS_WIDTH; x++) {
+				for (int y = 0; y < GUI.CANVAS_HEIGHT; y++) {
+					assertEquals("pixel " + x + ", " + y, expected.getId(x, y), actual.getId(x, y));
+				}
+			}
+			assertEquals(scene.getPolygons().size() - kept.length, occlusion.getCulledCount());
+			culled += occlusion.getCulledCount();
+		}
+		assertTrue(culled > 0);
+	}
+
+	@Test
+	/** The polygons left keep their order, and the walls, which are the occluders, are kept. */
+	public void testOrderAndWalls() {
+		Scene scene = scene(7, 4);
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.identity());
+		OcclusionCuller occlusion = new OcclusionCuller(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		int[] kept = occlusion.cull(view.getVertices(), TestScenes.all(scene));
+		assertTrue(occlusion.getCulledCount() > 0);
+		assertTrue(occlusion.getOccluderCount() > 0);
+		for (int i = 1; i < kept.length; i++) {
+			assertTrue(kept[i - 1] < kept[i]);
+		}
+		// the walls are the last 16 polygons.
+		int size = scene.getPolygons().size();
+		for (int i = size - 16; i < size; i++) {
+			if (!Pipeline.isHidden(view.getVertices(), i * 9)) {
+				assertTrue("wall " + i, Arrays.binarySearch(kept, i) >= 0);
+			}
+		}
+	}
+
+	@Test
+	/** Without big polygons to hide behind, nothing is culled. */
+	public void testNoOccluders() {
+		Scene scene = scene(3, 0);
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.identity());
+		OcclusionCuller occlusion = new OcclusionCuller(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		int[] indices = TestScenes.all(scene);
+		assertEquals(indices.length, occlusion.cull(view.getVertices(), indices).length);
+		assertEquals(0, occlusion.getCulledCount());
+	}
+}
@@ -0,0 +1,96 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.Pipeline;
+import renderer.Projection;
+import renderer.Renderer;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class ProjectionTests {
+
+	private static final Projection PERSPECTIVE = Projection.newPerspective((float) (Math.PI / 2), 1, 1, 100);
+
+	@Test
+	/** The near plane should end up at depth 0 and the far plane at depth 1. */
+	public void testDepthRange() {
+		float[] near = PERSPECTIVE.multiply(new Vector3D(0, 0, 1));
+		float[] far = PERSPECTIVE.multiply(new Vector3D(0, 0, 100));
+		assertEquals(0, near[2] / near[3], 1e-5);
+		assertEquals(1, far[2] / far[3], 1e-5);
+	}
+
+	@Test
+	/** A point at 45 degrees with a 90 degree field of view is on the edge of the canvas. */
+	public void testProjectOntoCanvas() {
+		Polygon poly = new Polygon(new float[] { 0, 0, 10, 10, 0, 10, 0, 10, 10 }, new int[] { 0, 0, 0 });
+		List<Polygon> projected = Pipeline.projectPolygon(poly, PERSPECTIVE);
+
+		assertEquals(1, projected.size());
+		Vector3D[] v = projected.get(0).getVertices();
+		assertEquals(GUI.CANVAS_WIDTH / 2, v[0].x, 1e-3);
+		assertEquals(GUI.CANVAS_WIDTH, v[1].x, 1e-3);
+		assertEquals(GUI.CANVAS_HEIGHT, v[2].y, 1e-3);
+	}
+
+	@Test
+	/** Polygons behind the viewer disappear, and ones crossing the near plane are cut. */
+	public void testNearPlaneClipping() {
+		Polygon behind = new Polygon(new float[] { 0, 0, -5, 1, 0, -5, 0, 1, -5 }, new int[] { 0, 0, 0 });
+		assertTrue(Pipeline.projectPolygon(behind, PERSPECTIVE).isEmpty());
+
+		// one corner behind the near plane turns the triangle into a quad.
+		Polygon crossing = new Polygon(new float[] { 0, 0, 0, 1, 0, 5, 0, 1, 5 }, new int[] { 0, 0, 0 });
+		List<Polygon> projected = Pipeline.projectPolygon(crossing, PERSPECTIVE);
+		assertEquals(2, projected.size());
+		for (Polygon p : projected) {
+			for (Vector3D v : p.getVertices()) {
+				assertTrue(v.z >= -1e-5);
+			}
+		}
+	}
+
+	@Test
+	/** However far the camera dollies out, the whole model should stay between the near and far planes. */
+	public void testDollyOut() {
+		List<Polygon> polys = new ArrayList<>();
+		polys.add(new Polygon(new float[] { 0, 0, 0, 200, 0, 0, 0, 200, 0 }, new int[] { 0, 0, 0 }));
+		polys.add(new Polygon(new float[] { 0, 0, 300, 200, 0, 300, 200, 200, 300 }, new int[] { 0, 0, 0 }));
+		BVH bvh = BVH.build(polys);
+		for (float dolly : new float[] { 0, -0.1f, -1, -5 }) {
+			Transform eye = Renderer.perspectiveView(bvh, dolly);
+			Projection projection = Renderer.perspectiveProjection(bvh, dolly);
+			for (Polygon poly : polys) {
+				for (Vector3D v : poly.getVertices()) {
+					float[] clip = projection.multiply(eye.multiply(v));
+					float depth = clip[2] / clip[3];
+					assertTrue(dolly + ": " + depth, depth >= 0 && depth <= 1);
+				}
+			}
+		}
+	}
+
+	@Test
+	/** An empty scene should still give a camera and projection that can be used. */
+	public void testEmptyScene() {
+		BVH bvh = BVH.build(new ArrayList<Polygon>());
+		Transform eye = Renderer.perspectiveView(bvh, 0);
+		Projection projection = Renderer.perspectiveProjection(bvh, 0);
+		assertTrue(projection.getFar() > projection.getNear());
+		float[] clip = projection.multiply(eye.multiply(new Vector3D(0, 0, 1.5f)));
+		for (float c : clip) {
+			assertFalse(Float.isNaN(c) || Float.isInfinite(c));
+		}
+		// the point is halfway from the near plane at 1 to the far plane at 2.
+		assertEquals(2 / 3f, clip[2] / clip[3], 1e-5);
+	}
+}
@@ -0,0 +1,106 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.ShadowCache;
+import renderer.ShadowMap;
+import renderer.Transform;
+import renderer.Vector3D;
+import renderer.ViewBuffer;
+
+public class ShadowTests {
+
+	/**
+	 * A floor 200 by 100 at z = 100, facing the viewer, with a 50 by 60 panel
+	 * in front of it at z = 0. A light coming in at 45 degrees from the right
+	 * puts the panel's shadow 100 to the left of it on the floor, from x = 0
+	 * to 50.
+	 */
+	private static Scene scene() {
+		List<Polygon> polys = new ArrayList<>();
+		int[] white = new int[] { 255, 255, 255 };
+		polys.add(new Polygon(new float[] { 0, 0, 100, 0, 100, 100, 200, 0, 100 }, white));
+		polys.add(new Polygon(new float[] { 200, 0, 100, 0, 100, 100, 200, 100, 100 }, white));
+		polys.add(new Polygon(new float[] { 100, 20, 0, 100, 80, 0, 150, 20, 0 }, white));
+		polys.add(new Polygon(new float[] { 150, 20, 0, 100, 80, 0, 150, 80, 0 }, white));
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		lights.add(new Vector3D(1, 0, -1));
+		return new Scene(polys, lights);
+	}
+
+	private static int[][] draw(Scene scene, ViewBuffer view, ShadowMap[] maps) {
+		int[][] zBuffer = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		float[][] zDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		Pipeline.clearBuffers(zBuffer, zDepth);
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(new Color(200, 200, 200));
+		Pipeline.drawPolygonsWithShadows(zBuffer, zDepth, view, new int[] { 0, 1, 2, 3 }, scene.getLights(),
+				colours, new Color(50, 50, 50), maps);
+		return zBuffer;
+	}
+
+	@Test
+	/** The floor should be darker where the panel blocks the light, and nowhere else. */
+	public void testShadowFallsBehindPanel() {
+		Scene scene = scene();
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.identity());
+		int[][] image = draw(scene, view, new ShadowCache().get(scene, scene.getLights()));
+
+		Color lit = new Color(image[175][50]);
+		Color shadowed = new Color(image[25][50]);
+		assertEquals(lit.getRGB(), image[75][50]);
+		assertTrue(shadowed.getRed() < lit.getRed());
+		// the panel is lit, and in front of its own shadow.
+		assertEquals(lit.getRGB(), image[125][50]);
+		// only the ambient light reaches the shadow.
+		assertEquals(50, shadowed.getRed());
+		assertEquals(lit.getRGB(), image[25][10]);
+	}
+
+	@Test
+	/** A point on the floor behind the panel is in shadow, and one beside it isn't. */
+	public void testIsLit() {
+		ShadowMap map = new ShadowMap(scene(), new Vector3D(1, 0, -1));
+		assertFalse(map.isLit(new Vector3D(25, 50, 100)));
+		assertTrue(map.isLit(new Vector3D(75, 50, 100)));
+		assertTrue(map.isLit(new Vector3D(125, 50, 0)));
+	}
+
+	@Test
+	/** Shadow maps should be kept while the lights don't change, however the camera moves. */
+	public void testCache() {
+		Scene scene = scene();
+		ShadowCache cache = new ShadowCache();
+		ShadowMap[] first = cache.get(scene, scene.getLights());
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		for (int i = 0; i < 5; i++) {
+			view.update(Transform.newYRotation(i * 0.3f));
+			ShadowMap[] maps = cache.get(scene, scene.getLights());
+			draw(scene, view, maps);
+			assertSame(first[0], maps[0]);
+		}
+		assertEquals(1, cache.getBuilds());
+
+		ArrayList<Vector3D> moved = new ArrayList<>(scene.getLights());
+		moved.add(new Vector3D(0, 1, 0));
+		ShadowMap[] more = cache.get(scene, moved);
+		assertSame(first[0], more[0]);
+		assertEquals(2, cache.getBuilds());
+
+		moved.set(0, new Vector3D(-1, 0, -1));
+		assertNotSame(first[0], cache.get(scene, moved)[0]);
+		assertEquals(3, cache.getBuilds());
+	}
+}
@@ -0,0 +1,107 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import renderer.LightManager;
+import renderer.PowerTable;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Vector3D;
+
+public class SpecularTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final Vector3D VIEWER = new Vector3D(0, 0, -1);
+	private static final Color AMBIENT = new Color(20, 20, 20);
+
+	/** A grey polygon facing the viewer, along the negative z-axis. */
+	private static Polygon facing(int shininess) {
+		return new Polygon(new float[] { 0, 0, 0, 0, 10, 0, 10, 0, 0 }, new int[] { 100, 100, 100 }, shininess);
+	}
+
+	private static LightManager light(Vector3D direction) {
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		lights.add(direction);
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(new Color(100, 100, 100));
+		return LightManager.exact(lights, colours);
+	}
+
+	@Test
+	/** The table should agree with Math.pow, including between its entries. */
+	public void testPowerTable() {
+		for (int exponent : new int[] { 0, 1, 2, 8, 32, 128, PowerTable.MAX_EXPONENT }) {
+			for (float x = 0; x <= 1; x += 0.0037f) {
+				assertEquals((float) Math.pow(x, exponent), PowerTable.pow(x, exponent), 0.01f);
+			}
+			assertEquals(1, PowerTable.pow(1, exponent), 0);
+			assertEquals(1, PowerTable.pow(2, exponent), 0);
+		}
+		assertEquals(0, PowerTable.pow(-0.5f, 4), 0);
+		assertEquals(0, PowerTable.pow(Float.NaN, 4), 0);
+	}
+
+	@Test
+	/**
+	 * With the light straight behind the viewer, the half-way direction is the
+	 * normal, so the whole of the light's colour is added to the diffuse colour.
+	 */
+	public void testHighlightFacingLight() {
+		LightManager lights = light(new Vector3D(0, 0, -1));
+		Color matte = lights.getShading(facing(0), AMBIENT, VIEWER);
+		Color shiny = lights.getShading(facing(32), AMBIENT, VIEWER);
+		assertEquals(Math.min(255, matte.getRed() + 100), shiny.getRed(), 1);
+		assertEquals(shiny.getRed(), shiny.getBlue());
+	}
+
+	@Test
+	/** The highlight should fade as the light moves away, faster for shinier polygons. */
+	public void testHighlightFades() {
+		LightManager lights = light(new Vector3D(0.5f, 0, -1));
+		int matte = lights.getShading(facing(0), AMBIENT, VIEWER).getRed();
+		int dull = lights.getShading(facing(4), AMBIENT, VIEWER).getRed();
+		int shiny = lights.getShading(facing(64), AMBIENT, VIEWER).getRed();
+		assertTrue(dull > shiny);
+		assertTrue(shiny >= matte);
+		assertTrue(dull < matte + 100);
+	}
+
+	@Test
+	/** Without a viewer, or lit from behind, a shiny polygon shades as a matte one. */
+	public void testNoHighlight() {
+		LightManager lights = light(new Vector3D(0, 0, -1));
+		assertEquals(lights.getShading(facing(0), AMBIENT, VIEWER), lights.getShading(facing(32), AMBIENT));
+		LightManager behind = light(new Vector3D(0, 0, 1));
+		assertEquals(behind.getShading(facing(0), AMBIENT, VIEWER), behind.getShading(facing(32), AMBIENT, VIEWER));
+	}
+
+	@Test
+	/** A model file can give a polygon's shininess after its reflectance. */
+	public void testLoadShininess() throws IOException {
+		File file = folder.newFile("shiny.txt");
+		Files.write(file.toPath(), Arrays.asList("0 0 -1", "0 0 0 0 10 0 10 0 0 100 150 200 48",
+				"0 0 0 10 0 0 10 10 0 100 150 200"));
+		Scene scene = Scene.load(file);
+		assertEquals(48, scene.getPolygons().get(0).getShininess());
+		assertEquals(new Color(100, 150, 200), scene.getPolygons().get(0).getReflectance());
+		assertEquals(0, scene.getPolygons().get(1).getShininess());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShininessOutOfRange() {
+		facing(PowerTable.MAX_EXPONENT + 1);
+	}
+}
@@ -0,0 +1,50 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Vector3D;
+
+/**
+ * Makes the scenes of many random triangles that the tests of drawing whole
+ * frames use, each laying them out as suits what it checks.
+ */
+public class TestScenes {
+
+	/**
+	 * @return a triangle whose corners are at random within a box, size
+	 * 			across from (x, y) and depth deep from z.
+	 */
+	static Polygon triangle(Random random, float x, float y, float z, float size, float depth, int[] colour) {
+		float[] v = new float[9];
+		for (int k = 0; k < 3; k++) {
+			v[k * 3] = x + random.nextFloat() * size;
+			v[k * 3 + 1] = y + random.nextFloat() * size;
+			v[k * 3 + 2] = z + random.nextFloat() * depth;
+		}
+		return new Polygon(v, colour);
+	}
+
+	/**
+	 * @return the polygons lit by one light shining straight into the canvas.
+	 */
+	static Scene scene(List<Polygon> polys) {
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		lights.add(new Vector3D(0, 0, -1));
+		return new Scene(polys, lights);
+	}
+
+	/**
+	 * @return the index of every polygon in the scene, in order.
+	 */
+	static int[] all(Scene scene) {
+		int[] indices = new int[scene.getPolygons().size()];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = i;
+		}
+		return indices;
+	}
+}
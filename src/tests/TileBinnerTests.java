@@ -0,0 +1,92 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.TileBinner;
+import renderer.Transform;
+import renderer.ViewBuffer;
+import renderer.VisibilityBuffer;
+
+public class TileBinnerTests {
+
+	/**
+	 * Lots of small random triangles crowded into one corner of a model, with
+	 * a few big ones across all of it, so the corner's tiles have to be split
+	 * much further than the rest.
+	 */
+	private static Scene scene() {
+		Random random = new Random(5);
+		List<Polygon> polys = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			boolean big = i % 100 == 0;
+			float x = big ? 0 : random.nextFloat() * 100, y = big ? 0 : random.nextFloat() * 100;
+			polys.add(TestScenes.triangle(random, x, y, 0, big ? 1000 : 15, 100, new int[] { 100, 100, 100 }));
+		}
+		return TestScenes.scene(polys);
+	}
+
+	@Test
+	/** Drawing by tiles on several threads should find the same polygon at every pixel as drawing on one. */
+	public void testSameAsOneThread() {
+		Scene scene = scene();
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.identity());
+		VisibilityBuffer expected = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		expected.draw(view, TestScenes.all(scene));
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			TileBinner tiles = new TileBinner(pool, 16);
+			VisibilityBuffer actual = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+			actual.draw(view, TestScenes.all(scene), tiles);
+			for (int x = 0; x < GUI.CANVAS_WIDTH; x++) {
+				for (int y = 0; y < GUI.CANVAS_HEIGHT; y++) {
+					assertEquals("pixel " + x + ", " + y, expected.getId(x, y), actual.getId(x, y));
+				}
+			}
+			assertEquals(expected.getVisibleCount(), actual.getVisibleCount());
+			assertTrue(tiles.getTileCount() > 10);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	/** There is a utilisation for each thread and the caller, each a fraction of the frame. */
+	public void testUtilisation() {
+		Scene scene = scene();
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.identity());
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			TileBinner tiles = new TileBinner(pool, 16);
+			new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT).draw(view, TestScenes.all(scene), tiles);
+			double[] utilisation = tiles.getUtilisation();
+			assertEquals(4, utilisation.length);
+			double total = 0;
+			for (double u : utilisation) {
+				assertTrue(u >= 0 && u <= 1);
+				total += u;
+			}
+			assertTrue(total > 0);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyTiles() {
+		new TileBinner(ForkJoinPool.commonPool(), 0);
+	}
+}
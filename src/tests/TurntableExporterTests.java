@@ -0,0 +1,72 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import renderer.BVH;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.TurntableExporter;
+import renderer.Vector3D;
+
+public class TurntableExporterTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static TurntableExporter exporter() {
+		List<Polygon> polys = new ArrayList<>();
+		polys.add(new Polygon(new float[] { 0, 0, 0, 0, 50, 0, 80, 0, 20 }, new int[] { 200, 100, 50 }));
+		polys.add(new Polygon(new float[] { 0, 0, 0, 80, 0, 20, 0, 0, 60 }, new int[] { 50, 100, 200 }));
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		lights.add(new Vector3D(0, 0, -1));
+		Scene scene = new Scene(polys, lights);
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(Color.WHITE);
+		return new TurntableExporter(scene, BVH.build(polys), lights, colours, Color.GRAY, 64, 48);
+	}
+
+	@Test
+	/** Every frame should be written, in order, at the right size. */
+	public void testWritesEveryFrame() throws IOException {
+		File dir = new File(folder.getRoot(), "frames");
+		exporter().export(dir, 12, Transform.identity());
+
+		String[] names = dir.list();
+		Arrays.sort(names);
+		assertEquals(12, names.length);
+		assertEquals("frame000.png", names[0]);
+		assertEquals("frame011.png", names[11]);
+
+		BufferedImage first = ImageIO.read(new File(dir, "frame000.png"));
+		BufferedImage later = ImageIO.read(new File(dir, "frame003.png"));
+		assertEquals(64, first.getWidth());
+		assertEquals(48, first.getHeight());
+		assertFalse(Arrays.equals(first.getRGB(0, 0, 64, 48, null, 0, 64), later.getRGB(0, 0, 64, 48, null, 0, 64)));
+	}
+
+	@Test(expected = IOException.class, timeout = 10000)
+	/** A frame failing to write should stop every stage and come back as an exception. */
+	public void testFailure() throws IOException {
+		File dir = folder.newFolder("frames");
+		// a directory (that can't just be deleted) where a frame should go, so writing it fails part way through.
+		File blocked = new File(dir, "frame002.png");
+		assertTrue(blocked.mkdir());
+		assertTrue(new File(blocked, "file").createNewFile());
+		exporter().export(dir, 40, Transform.identity());
+	}
+}
@@ -0,0 +1,46 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import renderer.Vector3D;
+
+public class Vector3DTests {
+
+	@Test
+	/** The magnitude is worked out when asked for, and unit vectors have a magnitude of 1. */
+	public void testMagnitude() {
+		assertEquals(13, new Vector3D(3, 4, 12).mag(), 1e-5);
+		assertEquals(0, new Vector3D(0, 0, 0).mag(), 0);
+		assertEquals(1, new Vector3D(3, 4, 12).unitVector().mag(), 1e-5);
+		assertEquals(new Vector3D(1, 0, 0), new Vector3D(0, 0, 0).unitVector());
+		assertEquals(new Vector3D(3, 4, 12), new Vector3D(1, 2, 3).plus(new Vector3D(2, 2, 9)));
+	}
+
+	@Test
+	/** The packed operations should agree with the Vector3D ones, at any offset. */
+	public void testPackedOperations() {
+		Vector3D a = new Vector3D(1, -2, 3), b = new Vector3D(-4, 5, 0.5f);
+		float[] packed = { 9, 1, -2, 3, -4, 5, 0.5f, 0, 0, 0 };
+		assertEquals(a.dotProduct(b), Vector3D.dot(packed, 1, packed, 4), 1e-5);
+
+		Vector3D cross = a.crossProduct(b);
+		Vector3D.cross(packed, 1, packed, 4, packed, 7);
+		assertEquals(cross, new Vector3D(packed[7], packed[8], packed[9]));
+		// the result can go over one of the vectors.
+		Vector3D.cross(packed, 1, packed, 4, packed, 1);
+		assertEquals(cross, new Vector3D(packed[1], packed[2], packed[3]));
+
+		assertEquals(cross.mag(), Vector3D.normalize(packed, 7), 1e-4);
+		assertEquals(cross.unitVector(), new Vector3D(packed[7], packed[8], packed[9]));
+	}
+
+	@Test
+	/** A vector with no length is left as it is. */
+	public void testNormalizeZero() {
+		float[] zero = new float[3];
+		assertEquals(0, Vector3D.normalize(zero, 0), 0);
+		assertArrayEquals(new float[3], zero, 0);
+	}
+}
@@ -0,0 +1,128 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.Vector3D;
+import renderer.ViewBuffer;
+
+public class ViewBufferTests {
+
+	private static Scene scene() {
+		List<Polygon> polys = new ArrayList<>();
+		polys.add(new Polygon(new float[] { 10, 20, 5, 300, 40, 8, 50, 900, 2 }, new int[] { 0, 0, 0 }));
+		polys.add(new Polygon(new float[] { -40, 0, 0, 20, 10, 0, 0, 60, 3 }, new int[] { 0, 0, 0 }));
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		lights.add(new Vector3D(0, 0, -1));
+		return new Scene(polys, lights);
+	}
+
+	@Test
+	/** Rotating a scene should leave the original polygons and lights as they were. */
+	public void testRotateLeavesSourceAlone() {
+		Scene scene = scene();
+		Vector3D before = scene.getPolygons().get(0).getVertices()[1];
+		Vector3D light = scene.getLights().get(0);
+
+		Scene rotated = Pipeline.rotateScene(scene, 1, 2);
+
+		assertSame(before, scene.getPolygons().get(0).getVertices()[1]);
+		assertEquals(300, before.x, 0);
+		assertSame(light, scene.getLights().get(0));
+		assertEquals(-1, light.z, 0);
+		assertNotSame(scene.getPolygons().get(0), rotated.getPolygons().get(0));
+	}
+
+	@Test
+	/** A view should end up where rotating, translating and scaling the scene puts it. */
+	public void testMatchesPipeline() {
+		Scene scene = scene();
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newYRotation(1).compose(Transform.newXRotation(0.5f)));
+
+		Scene expected = Pipeline.rotateScene(scene, 0.5f, 1);
+		expected = Pipeline.translateScene(expected);
+		expected = Pipeline.scaleScene(expected);
+
+		float[] v = view.getVertices();
+		for (int i = 0; i < 2; i++) {
+			for (int k = 0; k < 3; k++) {
+				Vector3D e = expected.getPolygons().get(i).getVertices()[k];
+				assertEquals(e.x, v[i * 9 + k * 3], 1e-2);
+				assertEquals(e.y, v[i * 9 + k * 3 + 1], 1e-2);
+				assertEquals(e.z, v[i * 9 + k * 3 + 2], 1e-2);
+			}
+		}
+		assertEquals(Pipeline.boundingBox(expected.getPolygons()), view.getBVH().getBounds());
+	}
+
+	@Test
+	/** Two views of the same scene should not affect each other. */
+	public void testViewsAreIndependent() {
+		Scene scene = scene();
+		BVH bvh = BVH.build(scene.getPolygons());
+		ViewBuffer a = new ViewBuffer(scene, bvh);
+		ViewBuffer b = new ViewBuffer(scene, bvh);
+		a.update(Transform.identity());
+		float[] before = a.getVertices().clone();
+		Rectangle bounds = a.getBVH().getBounds();
+
+		b.update(Transform.newZRotation(2));
+
+		assertArrayEquals(before, a.getVertices(), 0);
+		assertEquals(bounds, a.getBVH().getBounds());
+		assertNotEquals(bounds, b.getBVH().getBounds());
+	}
+
+	@Test
+	/** Transforming separate arrays of x, y and z values should agree with transforming each vector. */
+	public void testBulkTransform() {
+		Transform transform = Transform.newYRotation(0.7f).compose(Transform.newTranslation(3, -4, 5))
+				.compose(Transform.newScale(2, 1, 0.5f));
+		float[] xs = { 9, 1, -2, 3.5f }, ys = { 9, 4, 0, -7 }, zs = { 9, 0.25f, 6, 10 };
+		float[] outX = new float[3], outY = new float[3], outZ = new float[3];
+		transform.multiply(xs, ys, zs, 1, 3, outX, outY, outZ);
+		for (int i = 0; i < 3; i++) {
+			Vector3D expected = transform.multiply(new Vector3D(xs[i + 1], ys[i + 1], zs[i + 1]));
+			assertEquals(expected, new Vector3D(outX[i], outY[i], outZ[i]));
+		}
+	}
+
+	@Test
+	/** A view keeping the scene's vertices outside the heap should see them the same way. */
+	public void testOffHeap() {
+		Scene scene = scene();
+		Transform camera = Transform.newXRotation(0.3f).compose(Transform.newYRotation(1.1f));
+		ViewBuffer onHeap = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		onHeap.update(camera);
+		ViewBuffer offHeap = new ViewBuffer(scene, BVH.build(scene.getPolygons()), GUI.CANVAS_WIDTH,
+				GUI.CANVAS_HEIGHT, true);
+		offHeap.update(camera);
+		assertArrayEquals(onHeap.getVertices(), offHeap.getVertices(), 0);
+		assertEquals(onHeap.getBounds(), offHeap.getBounds());
+	}
+
+	@Test
+	/** A packed point should go to exactly where the same point as a vector goes on the canvas. */
+	public void testPackedToCanvas() {
+		Scene scene = scene();
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newYRotation(1).compose(Transform.newXRotation(0.5f)));
+		float[] points = { 0, 3.5f, -2, 7.25f };
+		float[] out = new float[3];
+		view.toCanvas(points, 1, out);
+		Vector3D expected = view.toCanvas(new Vector3D(3.5f, -2, 7.25f));
+		assertArrayEquals(new float[] { expected.x, expected.y, expected.z }, out, 0);
+	}
+}
@@ -0,0 +1,91 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.LevelOfDetail;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.Vector3D;
+import renderer.Viewport;
+import renderer.ViewportRenderer;
+
+public class ViewportTests {
+
+	/** A grid of triangles at different heights, so each side looks different. */
+	private static List<Polygon> model() {
+		List<Polygon> polys = new ArrayList<>();
+		int[] col = new int[] { 200, 100, 50 };
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < 10; j++) {
+				float z = (i * j) % 7;
+				polys.add(new Polygon(new float[] { i * 10, j * 10, z, i * 10, j * 10 + 10, z, i * 10 + 10, j * 10, z + 3 },
+						col));
+			}
+		}
+		return polys;
+	}
+
+	private static int[] pixels(BufferedImage image) {
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+	}
+
+	@Test
+	/** Drawing viewports in parallel should give the same images as drawing each on its own. */
+	public void testParallelMatchesSequential() {
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		lights.add(new Vector3D(1, -1, -1));
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(new Color(100, 100, 100));
+		Color ambient = new Color(128, 128, 128);
+		LevelOfDetail lod = LevelOfDetail.build(model(), lights);
+
+		Transform[] cameras = { Viewport.FRONT, Viewport.SIDE, Viewport.TOP, Transform.newZRotation(1) };
+		List<Viewport> viewports = new ArrayList<>();
+		List<int[]> expected = new ArrayList<>();
+		for (Transform camera : cameras) {
+			viewports.add(new Viewport("test", lod, camera, 200, 150));
+			expected.add(pixels(new Viewport("alone", lod, camera, 200, 150).render(lights, colours, ambient)));
+		}
+
+		ViewportRenderer renderer = new ViewportRenderer(viewports, 4);
+		for (int run = 0; run < 3; run++) {
+			List<BufferedImage> images = renderer.render(lights, colours, ambient);
+			assertEquals(cameras.length, images.size());
+			for (int i = 0; i < cameras.length; i++) {
+				assertEquals(200, images.get(i).getWidth());
+				assertEquals(150, images.get(i).getHeight());
+				assertArrayEquals(expected.get(i), pixels(images.get(i)));
+			}
+		}
+		renderer.shutdown();
+
+		// the views really are different.
+		assertFalse(Arrays.equals(expected.get(0), expected.get(1)));
+	}
+
+	@Test
+	/** Rendering should only read the shared model. */
+	public void testModelUnchanged() {
+		List<Polygon> polys = model();
+		Vector3D before = polys.get(5).getVertices()[1];
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		lights.add(new Vector3D(0, 0, -1));
+		LevelOfDetail lod = LevelOfDetail.build(polys, lights);
+
+		Viewport side = new Viewport("side", lod, Viewport.SIDE, 100, 100);
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(Color.WHITE);
+		side.render(lights, colours, Color.BLACK);
+
+		assertSame(before, lod.getLevel(0).getPolygons().get(5).getVertices()[1]);
+		assertEquals(-1, lights.get(0).z, 0);
+	}
+}
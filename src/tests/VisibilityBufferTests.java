@@ -0,0 +1,293 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import renderer.BVH;
+import renderer.GUI;
+import renderer.GeometryStage;
+import renderer.LightManager;
+import renderer.Pipeline;
+import renderer.Projection;
+import renderer.Renderer;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.Transform;
+import renderer.Vector3D;
+import renderer.ViewBuffer;
+import renderer.VisibilityBuffer;
+import renderer.VisibilityBuffer.Depth;
+
+public class VisibilityBufferTests {
+
+	private static final int[] ALL = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19 };
+
+	/** Twenty random, overlapping triangles of random colours and shininess. */
+	private static Scene scene() {
+		Random random = new Random(3);
+		List<Polygon> polys = new ArrayList<>();
+		for (int i = 0; i < ALL.length; i++) {
+			float[] v = new float[9];
+			for (int j = 0; j < 9; j++) {
+				v[j] = random.nextFloat() * (j % 3 == 2 ? 200 : 400);
+			}
+			polys.add(new Polygon(v, new int[] { random.nextInt(256), random.nextInt(256), random.nextInt(256) },
+					random.nextInt(64)));
+		}
+		ArrayList<Vector3D> lights = new ArrayList<>();
+		lights.add(new Vector3D(0.3f, -0.4f, -1));
+		return new Scene(polys, lights);
+	}
+
+	private static LightManager lights(Scene scene, Color colour) {
+		ArrayList<Color> colours = new ArrayList<>();
+		colours.add(colour);
+		return LightManager.exact(new ArrayList<>(scene.getLights()), colours);
+	}
+
+	private static ViewBuffer view(Scene scene) {
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(scene.getPolygons()));
+		view.update(Transform.newYRotation(0.4f).compose(Transform.newXRotation(0.2f)));
+		return view;
+	}
+
+	private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+		for (int x = 0; x < expected.getWidth(); x++) {
+			for (int y = 0; y < expected.getHeight(); y++) {
+				assertEquals("pixel " + x + ", " + y, expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	/** Shading the visible polygons afterwards should give the same frame as shading them while drawing. */
+	public void testSameAsDrawing() {
+		Scene scene = scene();
+		ViewBuffer view = view(scene);
+		LightManager lights = lights(scene, new Color(150, 120, 100));
+		Color ambient = new Color(40, 50, 60);
+
+		int[][] zBuffer = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		float[][] zDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		Pipeline.clearBuffers(zBuffer, zDepth);
+		Pipeline.drawPolygons(zBuffer, zDepth, view, ALL, lights, ambient);
+
+		VisibilityBuffer visibility = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		visibility.draw(view, ALL);
+		assertSameImage(Pipeline.toImage(zBuffer), visibility.shade(lights, ambient));
+		assertTrue(visibility.getVisibleCount() > 0);
+		assertTrue(visibility.getVisibleCount() <= ALL.length);
+	}
+
+	@Test
+	/** The same in perspective. */
+	public void testSameAsDrawingInPerspective() {
+		Scene scene = scene();
+		ViewBuffer view = view(scene);
+		LightManager lights = lights(scene, new Color(150, 120, 100));
+		Color ambient = new Color(40, 50, 60);
+		Transform eye = Transform.newTranslation(-200, -200, 500);
+		Projection projection = Projection.newPerspective((float) (Math.PI / 3), 1, 1, 1000);
+
+		int[][] zBuffer = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		float[][] zDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		Pipeline.clearBuffers(zBuffer, zDepth);
+		Pipeline.drawPolygonsInPerspective(zBuffer, zDepth, view, ALL, eye, projection, lights, ambient);
+
+		VisibilityBuffer visibility = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		visibility.drawInPerspective(view, ALL, eye, projection);
+		assertSameImage(Pipeline.toImage(zBuffer), visibility.shade(lights, ambient));
+		assertTrue(visibility.getVisibleCount() > 0);
+	}
+
+	@Test
+	/** Shading again with new lights should give the frame a full redraw with them would. */
+	public void testShadeAgain() {
+		Scene scene = scene();
+		ViewBuffer view = view(scene);
+		VisibilityBuffer visibility = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		visibility.draw(view, ALL);
+		visibility.shade(lights(scene, new Color(150, 120, 100)), new Color(40, 50, 60));
+
+		LightManager brighter = lights(scene, new Color(200, 200, 200));
+		Color ambient = new Color(90, 80, 70);
+		BufferedImage again = visibility.shade(brighter, ambient);
+
+		int[][] zBuffer = new int[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		float[][] zDepth = new float[GUI.CANVAS_WIDTH][GUI.CANVAS_HEIGHT];
+		Pipeline.clearBuffers(zBuffer, zDepth);
+		Pipeline.drawPolygons(zBuffer, zDepth, view, ALL, brighter, ambient);
+		assertSameImage(Pipeline.toImage(zBuffer), again);
+	}
+
+	@Test
+	/** Pixels no polygon covers are the background, and the rest name a polygon that was drawn. */
+	public void testIds() {
+		Scene scene = scene();
+		VisibilityBuffer visibility = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		visibility.draw(view(scene), new int[] { 4, 7 });
+		boolean background = false;
+		for (int x = 0; x < GUI.CANVAS_WIDTH; x++) {
+			for (int y = 0; y < GUI.CANVAS_HEIGHT; y++) {
+				int id = visibility.getId(x, y);
+				assertTrue(id == VisibilityBuffer.BACKGROUND || id == 4 || id == 7);
+				background |= id == VisibilityBuffer.BACKGROUND;
+			}
+		}
+		assertTrue(background);
+	}
+
+	@Test
+	/** Keeping the ids and depths outside the heap should make no difference to the frame. */
+	public void testOffHeap() {
+		Scene scene = scene();
+		ViewBuffer view = view(scene);
+		LightManager lights = lights(scene, new Color(150, 120, 100));
+		Color ambient = new Color(40, 50, 60);
+		VisibilityBuffer onHeap = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		onHeap.draw(view, ALL);
+		VisibilityBuffer offHeap = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT, true);
+		offHeap.draw(view, ALL);
+		assertSameImage(onHeap.shade(lights, ambient), offHeap.shade(lights, ambient));
+		assertEquals(onHeap.getVisibleCount(), offHeap.getVisibleCount());
+	}
+
+	@Test
+	/** Depths rounded to 16 bit integers should only change the nearest polygon where two are very nearly as near. */
+	public void testDepthModes() {
+		Scene scene = scene();
+		ViewBuffer view = view(scene);
+		VisibilityBuffer exact = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		exact.draw(view, ALL);
+		VisibilityBuffer rounded = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT, false, Depth.BITS_16);
+		assertEquals(Depth.BITS_16, rounded.getDepth());
+		rounded.draw(view, ALL);
+		int differ = 0, covered = 0;
+		for (int x = 0; x < GUI.CANVAS_WIDTH; x++) {
+			for (int y = 0; y < GUI.CANVAS_HEIGHT; y++) {
+				if (exact.getId(x, y) != rounded.getId(x, y)) {
+					differ++;
+				}
+				if (exact.getId(x, y) != VisibilityBuffer.BACKGROUND) {
+					covered++;
+				}
+			}
+		}
+		// only along the lines where polygons cross.
+		assertTrue("" + differ, differ < covered / 1000);
+	}
+
+	@Test
+	/**
+	 * A square just behind another, drawn first, should be hidden at every
+	 * pixel however far along the z-axis the model is, and however the depths
+	 * are kept. The squares are tilted slightly differently so that stepping
+	 * along them can't go wrong the same way for both.
+	 */
+	public void testNoFighting() {
+		for (float far : new float[] { 0, 1e5f, 1e6f }) {
+			List<Polygon> polys = new ArrayList<>();
+			square(polys, far + 4.5f, 0.09f, new int[] { 0, 0, 255 });
+			square(polys, far, 0.1f, new int[] { 255, 0, 0 });
+			Scene scene = new Scene(polys, scene().getLights());
+			ViewBuffer view = new ViewBuffer(scene, BVH.build(polys));
+			view.update(Transform.identity());
+			for (Depth depth : Depth.values()) {
+				VisibilityBuffer visibility = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT, false, depth);
+				visibility.draw(view, new int[] { 0, 1, 2, 3 });
+				for (int x = 0; x < 400; x++) {
+					for (int y = 0; y < 400; y++) {
+						assertTrue(far + ", " + depth + ": pixel " + x + ", " + y, visibility.getId(x, y) >= 2);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	/**
+	 * In perspective, a square between 5 and 1 units behind another should
+	 * be hidden at every pixel however the depths are kept, both drawn
+	 * straight from the view and from a geometry stage's batch.
+	 */
+	public void testNoFightingInPerspective() {
+		List<Polygon> polys = new ArrayList<>();
+		square(polys, 5, 0.09f, new int[] { 0, 0, 255 });
+		square(polys, 0, 0.1f, new int[] { 255, 0, 0 });
+		Scene scene = new Scene(polys, scene().getLights());
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(polys));
+		view.update(Transform.identity());
+		Transform eye = Renderer.perspectiveView(view.getBVH(), 0);
+		Projection projection = Renderer.perspectiveProjection(view.getBVH(), 0);
+		int[] all = { 0, 1, 2, 3 };
+		GeometryStage stage = new GeometryStage(ForkJoinPool.commonPool());
+		for (Depth depth : Depth.values()) {
+			VisibilityBuffer visibility = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT, false, depth);
+			for (int pass = 0; pass < 2; pass++) {
+				if (pass == 0) {
+					visibility.drawInPerspective(view, all, eye, projection);
+				} else {
+					visibility.draw(view, stage.processInPerspective(view, all, eye, projection, GUI.CANVAS_WIDTH,
+							GUI.CANVAS_HEIGHT, null, null));
+				}
+				int front = 0;
+				for (int x = 0; x < GUI.CANVAS_WIDTH; x++) {
+					for (int y = 0; y < GUI.CANVAS_HEIGHT; y++) {
+						int id = visibility.getId(x, y);
+						assertTrue(depth + ", pass " + pass + ": pixel " + x + ", " + y,
+								id == VisibilityBuffer.BACKGROUND || id >= 2);
+						front += id >= 2 ? 1 : 0;
+					}
+				}
+				assertTrue(front > 0);
+			}
+		}
+	}
+
+	@Test
+	/** A polygon at the farthest depth of the model should still cover the background, however depths are kept. */
+	public void testFarthestShows() {
+		List<Polygon> polys = new ArrayList<>();
+		polys.add(new Polygon(new float[] { 0, 0, 0, 10, 10, 0, 10, 0, 0 }, new int[] { 255, 0, 0 }));
+		square(polys, 100, 0, new int[] { 0, 0, 255 });
+		for (int i = 1; i < 3; i++) {
+			// flat at the far end, rather than tilted by square.
+			Vector3D[] v = polys.get(i).getVertices();
+			polys.set(i, new Polygon(new float[] { v[0].x, v[0].y, 100, v[1].x, v[1].y, 100, v[2].x, v[2].y, 100 },
+					new int[] { 0, 0, 255 }));
+		}
+		Scene scene = new Scene(polys, scene().getLights());
+		ViewBuffer view = new ViewBuffer(scene, BVH.build(polys));
+		view.update(Transform.identity());
+		for (Depth depth : Depth.values()) {
+			VisibilityBuffer visibility = new VisibilityBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT, false, depth);
+			visibility.draw(view, new int[] { 0, 1, 2 });
+			for (int x = 20; x < 400; x++) {
+				for (int y = 20; y < 400; y++) {
+					assertTrue(depth + ": pixel " + x + ", " + y, visibility.getId(x, y) >= 1);
+				}
+			}
+		}
+	}
+
+	/** Adds a 400 by 400 square, facing the camera, whose depth rises along x and y by the given slopes. */
+	private static void square(List<Polygon> polys, float z, float slopeX, int[] colour) {
+		float[][] c = new float[4][];
+		for (int i = 0; i < 4; i++) {
+			float x = i == 1 || i == 2 ? 400 : 0, y = i >= 2 ? 400 : 0;
+			c[i] = new float[] { x, y, z + x * slopeX + y * 0.1f };
+		}
+		polys.add(new Polygon(new float[] { c[0][0], c[0][1], c[0][2], c[2][0], c[2][1], c[2][2], c[1][0], c[1][1],
+				c[1][2] }, colour));
+		polys.add(new Polygon(new float[] { c[0][0], c[0][1], c[0][2], c[3][0], c[3][1], c[3][2], c[2][0], c[2][1],
+				c[2][2] }, colour));
+	}
+}